@@ -43,5 +43,12 @@ public class LegalSettings extends DashboardFragment {
     }
 
     public static final BaseSearchIndexProvider SEARCH_INDEX_DATA_PROVIDER =
-            new BaseSearchIndexProvider(R.xml.about_legal);
+            new BaseSearchIndexProvider(R.xml.about_legal) {
+
+                @Override
+                public int getNonIndexableKeysDependencies() {
+                    // Availability depends on installed activities and modules, and on resources.
+                    return DEPENDENCY_PACKAGES;
+                }
+            };
 }
@@ -37,6 +37,8 @@ import android.util.Log;
 import androidx.annotation.VisibleForTesting;
 
 import com.android.settings.applications.ProcStatsData;
+import com.android.settings.core.PreferenceXmlMetadataCache;
+import com.android.settings.core.SettingsExecutor;
 import com.android.settings.datausage.lib.DataUsageLib;
 import com.android.settings.network.MobileNetworkRepository;
 import com.android.settingslib.net.DataUsageController;
@@ -48,6 +50,7 @@ import org.json.JSONObject;
 import java.io.File;
 import java.io.FileDescriptor;
 import java.io.PrintWriter;
+import java.util.Map;
 
 public class SettingsDumpService extends Service {
 
@@ -67,6 +70,10 @@ public class SettingsDumpService extends Service {
     @VisibleForTesting
     static final String KEY_ANOMALY_DETECTION = "anomaly_detection";
     @VisibleForTesting
+    static final String KEY_PREFERENCE_XML_CACHE = "preference_xml_cache";
+    @VisibleForTesting
+    static final String KEY_EXECUTOR = "executor";
+    @VisibleForTesting
     static final Intent BROWSER_INTENT =
             new Intent("android.intent.action.VIEW", Uri.parse("http://"));
 
@@ -98,6 +105,8 @@ public class SettingsDumpService extends Service {
                 dump.put(KEY_DATAUSAGE, dumpDataUsage());
                 dump.put(KEY_MEMORY, dumpMemory());
                 dump.put(KEY_DEFAULT_BROWSER_APP, dumpDefaultBrowser());
+                dump.put(KEY_PREFERENCE_XML_CACHE, dumpPreferenceXmlCache());
+                dump.put(KEY_EXECUTOR, dumpExecutor());
             } catch (Exception e) {
                 Log.w(TAG, "exception in dump: ", e);
             }
@@ -183,6 +192,26 @@ public class SettingsDumpService extends Service {
         return obj;
     }
 
+    @VisibleForTesting
+    JSONObject dumpPreferenceXmlCache() throws JSONException {
+        JSONObject obj = new JSONObject();
+        obj.put("size", PreferenceXmlMetadataCache.size());
+        obj.put("hits", PreferenceXmlMetadataCache.getHitCount());
+        obj.put("misses", PreferenceXmlMetadataCache.getMissCount());
+        obj.put("invalidations", PreferenceXmlMetadataCache.getInvalidationCount());
+        return obj;
+    }
+
+    @VisibleForTesting
+    JSONObject dumpExecutor() throws JSONException {
+        JSONObject obj = new JSONObject();
+        for (Map.Entry<String, SettingsExecutor.TaskStats> entry :
+                SettingsExecutor.getInstance().getTaskStats().entrySet()) {
+            obj.put(entry.getKey(), entry.getValue().toString());
+        }
+        return obj;
+    }
+
     @VisibleForTesting
     String dumpDefaultBrowser() {
         final ResolveInfo resolveInfo = getPackageManager().resolveActivity(
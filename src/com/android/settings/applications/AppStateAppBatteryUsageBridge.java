@@ -23,6 +23,7 @@ import android.os.Build;
 import android.util.Log;
 
 import com.android.internal.annotations.VisibleForTesting;
+import com.android.settings.fuelgauge.BatteryOptimizeModeSnapshot;
 import com.android.settingslib.applications.ApplicationsState;
 import com.android.settingslib.applications.ApplicationsState.AppEntry;
 import com.android.settingslib.applications.ApplicationsState.AppFilter;
@@ -84,8 +85,15 @@ public class AppStateAppBatteryUsageBridge extends AppStateBaseBridge {
         if (DEBUG) {
             Log.d(TAG, "Start loadAllExtraInfo()");
         }
-        mAppSession.getAllApps().stream().forEach(appEntry ->
-                updateExtraInfo(appEntry, appEntry.info.packageName, appEntry.info.uid));
+        // Reads the modes of all the apps from one shared snapshot instead of one AppOps call per
+        // app.
+        final BatteryOptimizeModeSnapshot snapshot = BatteryOptimizeModeSnapshot.get(mContext);
+        mAppSession.getAllApps().stream().forEach(appEntry -> {
+            final String pkg = appEntry.info.packageName;
+            final int uid = appEntry.info.uid;
+            appEntry.extraInfo = getAppBatteryUsageState(
+                    pkg, snapshot.getMode(uid, pkg), snapshot.isAllowlisted(uid, pkg));
+        });
         if (DEBUG) {
             Log.d(TAG, "End loadAllExtraInfo()");
         }
@@ -99,6 +107,10 @@ public class AppStateAppBatteryUsageBridge extends AppStateBaseBridge {
         boolean allowListed = mPowerAllowlistBackend.isAllowlisted(pkg, uid);
         int aomMode =
                 mAppOpsManager.checkOpNoThrow(AppOpsManager.OP_RUN_ANY_IN_BACKGROUND, uid, pkg);
+        return getAppBatteryUsageState(pkg, aomMode, allowListed);
+    }
+
+    private static Object getAppBatteryUsageState(String pkg, int aomMode, boolean allowListed) {
         @OptimizationMode int mode = MODE_UNKNOWN;
         String modeName = "";
         if (aomMode == AppOpsManager.MODE_IGNORED && !allowListed) {
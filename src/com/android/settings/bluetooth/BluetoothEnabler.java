@@ -32,6 +32,7 @@ import android.widget.Toast;
 import androidx.annotation.VisibleForTesting;
 
 import com.android.settings.R;
+import com.android.settings.core.SettingsExecutor;
 import com.android.settings.network.SatelliteRepository;
 import com.android.settings.network.SatelliteWarningDialogActivity;
 import com.android.settings.widget.SwitchWidgetController;
@@ -40,7 +41,6 @@ import com.android.settingslib.WirelessUtils;
 import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
 
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -130,14 +130,16 @@ public final class BluetoothEnabler implements SwitchWidgetController.OnSwitchCh
                 Context.RECEIVER_EXPORTED_UNAUDITED);
         mValidListener = true;
 
-        new Thread(() -> {
-            try {
-                mIsSatelliteOn.set(mSatelliteRepository.requestIsEnabled(
-                        Executors.newSingleThreadExecutor()).get(3000, TimeUnit.MILLISECONDS));
-            } catch (InterruptedException | ExecutionException | TimeoutException e) {
-                Log.e(TAG, "Error to get satellite status : " + e);
-            }
-        }).start();
+        SettingsExecutor.getInstance().execute(SettingsExecutor.LANE_PREFETCH,
+                "BluetoothSatelliteState", () -> {
+                    // The result is delivered inline, no thread is needed for it.
+                    try {
+                        mIsSatelliteOn.set(mSatelliteRepository.requestIsEnabled(Runnable::run)
+                                .get(3000, TimeUnit.MILLISECONDS));
+                    } catch (InterruptedException | ExecutionException | TimeoutException e) {
+                        Log.e(TAG, "Error to get satellite status : " + e);
+                    }
+                });
     }
 
     public void pause() {
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Memoizes {@link BasePreferenceController#getAvailabilityStatus()} of the controllers declaring
+ * {@link BasePreferenceController#getAvailabilityDependencies()}.
+ * <p>
+ * Entries are keyed by controller class, preference key and user, so the instances created by a
+ * page, by search and by slices share the same status. An entry is reused while the
+ * {@link InvalidationBus} generation of its dependencies is the one it was computed with.
+ */
+final class AvailabilityCache {
+
+    private static AvailabilityCache sInstance;
+
+    private final Context mAppContext;
+    private final InvalidationBus mBus;
+    private final Map<String, Entry> mEntries = new ConcurrentHashMap<>();
+
+    private static final class Entry {
+        final int mStatus;
+        final long mGeneration;
+
+        Entry(int status, long generation) {
+            mStatus = status;
+            mGeneration = generation;
+        }
+    }
+
+    /**
+     * Returns the cache of the application of {@code context}. The cache is tied to one
+     * application instance so cached statuses never outlive it.
+     */
+    static synchronized AvailabilityCache getInstance(Context context) {
+        final Context appContext = context.getApplicationContext() != null
+                ? context.getApplicationContext() : context;
+        if (sInstance == null || sInstance.mAppContext != appContext) {
+            sInstance = new AvailabilityCache(appContext, InvalidationBus.getInstance(appContext));
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    AvailabilityCache(Context appContext, InvalidationBus bus) {
+        mAppContext = appContext;
+        mBus = bus;
+    }
+
+    @BasePreferenceController.AvailabilityStatus
+    int getAvailabilityStatus(@NonNull BasePreferenceController controller, int userId,
+            @NonNull InvalidationBus.Dependencies dependencies) {
+        final String key = controller.getClass().getName() + '/' + controller.getPreferenceKey()
+                + '/' + userId;
+        final long generation = mBus.getGeneration(dependencies);
+        final Entry entry = mEntries.get(key);
+        if (entry != null && entry.mGeneration == generation) {
+            return entry.mStatus;
+        }
+        final int status = controller.getAvailabilityStatus();
+        // The generation is captured before computing, so a change racing with the computation
+        // leaves a stale generation behind and the next query recomputes.
+        mEntries.put(key, new Entry(status, generation));
+        return status;
+    }
+}
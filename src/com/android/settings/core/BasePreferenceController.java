@@ -217,6 +217,34 @@ public abstract class BasePreferenceController extends AbstractPreferenceControl
     @AvailabilityStatus
     public abstract int getAvailabilityStatus();
 
+    /**
+     * @return the inputs {@link #getAvailabilityStatus()} depends on, to have the status cached
+     * until one of them changes. The cached status is shared by every controller of the same
+     * class, key and user, including the ones created by search and slices, so only declare
+     * dependencies when the status is derived from nothing but the context and those inputs.
+     * </p>
+     * Returns {@code null} by default: the status is evaluated on every call.
+     */
+    @Nullable
+    public InvalidationBus.Dependencies getAvailabilityDependencies() {
+        return null;
+    }
+
+    /**
+     * @return the {@link AvailabilityStatus} of the Setting, from the cache when the controller
+     * declares {@link #getAvailabilityDependencies()} and none of them changed since it was
+     * evaluated.
+     */
+    @AvailabilityStatus
+    public final int getCachedAvailabilityStatus() {
+        final InvalidationBus.Dependencies dependencies = getAvailabilityDependencies();
+        if (dependencies == null) {
+            return getAvailabilityStatus();
+        }
+        return AvailabilityCache.getInstance(mContext)
+                .getAvailabilityStatus(this, mContext.getUserId(), dependencies);
+    }
+
     @Override
     public String getPreferenceKey() {
         return mPreferenceKey;
@@ -257,7 +285,7 @@ public abstract class BasePreferenceController extends AbstractPreferenceControl
             return false;
         }
 
-        final int availabilityStatus = getAvailabilityStatus();
+        final int availabilityStatus = getCachedAvailabilityStatus();
         return (availabilityStatus == AVAILABLE
                 || availabilityStatus == AVAILABLE_UNSEARCHABLE
                 || availabilityStatus == DISABLED_DEPENDENT_SETTING);
@@ -271,7 +299,7 @@ public abstract class BasePreferenceController extends AbstractPreferenceControl
      * Note that a return value of {@code true} does not mean that the setting is available.
      */
     public final boolean isSupported() {
-        return getAvailabilityStatus() != UNSUPPORTED_ON_DEVICE;
+        return getCachedAvailabilityStatus() != UNSUPPORTED_ON_DEVICE;
     }
 
     /**
@@ -280,7 +308,7 @@ public abstract class BasePreferenceController extends AbstractPreferenceControl
     @Override
     public void displayPreference(PreferenceScreen screen) {
         super.displayPreference(screen);
-        if (getAvailabilityStatus() == DISABLED_DEPENDENT_SETTING) {
+        if (getCachedAvailabilityStatus() == DISABLED_DEPENDENT_SETTING) {
             // Disable preference if it depends on another setting.
             final Preference preference = screen.findPreference(getPreferenceKey());
             if (preference != null) {
@@ -304,7 +332,7 @@ public abstract class BasePreferenceController extends AbstractPreferenceControl
      */
     public void updateNonIndexableKeys(List<String> keys) {
         final boolean shouldSuppressFromSearch = !isAvailable()
-                || getAvailabilityStatus() == AVAILABLE_UNSEARCHABLE;
+                || getCachedAvailabilityStatus() == AVAILABLE_UNSEARCHABLE;
         if (shouldSuppressFromSearch) {
             final String key = getPreferenceKey();
             if (TextUtils.isEmpty(key)) {
@@ -24,6 +24,7 @@ import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.net.Uri;
 import android.os.AsyncTask;
 import android.text.TextUtils;
 import android.util.ArraySet;
@@ -57,6 +58,8 @@ public class CategoryMixin implements LifecycleObserver {
     private final Context mContext;
     private final PackageReceiver mPackageReceiver = new PackageReceiver();
     private final List<CategoryListener> mCategoryListeners = new ArrayList<>();
+    // Packages changed since the last update, accessed by the update tasks.
+    private final Set<String> mChangedPackages = new ArraySet<>();
     private int mCategoriesUpdateTaskCount;
     private boolean mFirstOnResume = true;
 
@@ -169,11 +172,32 @@ public class CategoryMixin implements LifecycleObserver {
         @Override
         protected Set<String> doInBackground(Boolean... params) {
             mPreviousTileMap = mCategoryManager.getTileByComponentMap();
-            mCategoryManager.reloadAllCategories(mContext);
+            if (params[0]) {
+                if (!reloadChangedPackages()) {
+                    // None of the changed packages affects the tiles.
+                    return new ArraySet<>();
+                }
+            } else {
+                mCategoryManager.reloadAllCategories(mContext);
+            }
             mCategoryManager.updateCategoryFromDenylist(sTileDenylist);
             return getChangedCategories(params[0]);
         }
 
+        // Reloads the categories for the changed packages, returns whether any was reloaded.
+        private boolean reloadChangedPackages() {
+            final Set<String> packages;
+            synchronized (mChangedPackages) {
+                packages = new ArraySet<>(mChangedPackages);
+                mChangedPackages.clear();
+            }
+            boolean reloaded = false;
+            for (String packageName : packages) {
+                reloaded |= mCategoryManager.reloadCategoriesForPackage(mContext, packageName);
+            }
+            return reloaded;
+        }
+
         @Override
         protected void onPostExecute(Set<String> categories) {
             if (categories == null || !categories.isEmpty()) {
@@ -226,6 +250,11 @@ public class CategoryMixin implements LifecycleObserver {
     private class PackageReceiver extends BroadcastReceiver {
         @Override
         public void onReceive(Context context, Intent intent) {
+            final Uri data = intent.getData();
+            synchronized (mChangedPackages) {
+                // An unknown package reloads all the categories.
+                mChangedPackages.add(data != null ? data.getSchemeSpecificPart() : "");
+            }
             updateCategories(true /* fromBroadcast */);
         }
     }
@@ -0,0 +1,331 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.UserManager;
+import android.provider.DeviceConfig;
+import android.telephony.SubscriptionManager;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+import android.util.Log;
+
+import androidx.annotation.IntDef;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Process-wide invalidation signals for the state Settings derives from system services.
+ * <p>
+ * Every input has a generation counter that is bumped when it changes. A cache captures the
+ * generation of the inputs a value depends on when computing it, and reuses the value while
+ * that generation is unchanged. The well-known inputs are {@link Source} flags; settings uris
+ * and broadcast actions are observed lazily, the first time a cache depends on them.
+ */
+public class InvalidationBus {
+
+    private static final String TAG = "InvalidationBus";
+
+    /** Well-known inputs, observed as soon as the bus is created. */
+    @IntDef(flag = true, value = {
+            SOURCE_NONE,
+            SOURCE_PACKAGES,
+            SOURCE_USER_RESTRICTIONS,
+            SOURCE_DEVICE_CONFIG,
+            SOURCE_SUBSCRIPTIONS})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface Source {
+    }
+
+    /** No well-known input. */
+    public static final int SOURCE_NONE = 0;
+    /** Installed, removed or updated packages. */
+    public static final int SOURCE_PACKAGES = 1;
+    /** User restrictions. */
+    public static final int SOURCE_USER_RESTRICTIONS = 1 << 1;
+    /** {@link DeviceConfig} flags of the namespaces read by Settings. */
+    public static final int SOURCE_DEVICE_CONFIG = 1 << 2;
+    /** The active subscriptions. */
+    public static final int SOURCE_SUBSCRIPTIONS = 1 << 3;
+
+    private static final int[] SOURCES = {
+            SOURCE_PACKAGES,
+            SOURCE_USER_RESTRICTIONS,
+            SOURCE_DEVICE_CONFIG,
+            SOURCE_SUBSCRIPTIONS,
+    };
+
+    // DeviceConfig namespaces read by Settings availability checks.
+    private static final String[] DEVICE_CONFIG_NAMESPACES = {
+            DeviceConfig.NAMESPACE_SETTINGS_UI,
+            DeviceConfig.NAMESPACE_PRIVACY,
+    };
+
+    private static InvalidationBus sInstance;
+
+    // Null when nothing is observed, in which case only explicit invalidations bump generations.
+    @Nullable
+    private final Context mContext;
+    private final long[] mGenerations = new long[SOURCES.length];
+    private final Map<Uri, Long> mUriGenerations = new ArrayMap<>();
+    private final Map<String, Long> mBroadcastGenerations = new ArrayMap<>();
+    private final List<Listener> mListeners = new CopyOnWriteArrayList<>();
+
+    /** Notified when well-known inputs change. */
+    public interface Listener {
+        /**
+         * @param sources the {@link Source} flags of the inputs that changed
+         */
+        void onInvalidated(@Source int sources);
+    }
+
+    /** Returns the process-wide bus, observing the well-known inputs on first use. */
+    public static synchronized InvalidationBus getInstance(Context context) {
+        if (sInstance == null) {
+            // The bus lives as long as the process, it must not hold an activity.
+            sInstance = new InvalidationBus(context.getApplicationContext());
+            sInstance.registerListeners();
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    InvalidationBus() {
+        this(null);
+    }
+
+    private InvalidationBus(@Nullable Context context) {
+        mContext = context;
+    }
+
+    /** Adds a listener notified when well-known inputs change. */
+    public void addListener(@NonNull Listener listener) {
+        mListeners.add(listener);
+    }
+
+    /** Removes a listener added with {@link #addListener(Listener)}. */
+    public void removeListener(@NonNull Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Returns the generation of {@code dependencies}. It is unchanged for as long as none of the
+     * inputs changes, and increases as soon as one of them does.
+     */
+    public long getGeneration(@NonNull Dependencies dependencies) {
+        long generation = 0;
+        synchronized (this) {
+            for (int i = 0; i < SOURCES.length; i++) {
+                if ((dependencies.mSources & SOURCES[i]) != 0) {
+                    generation += mGenerations[i];
+                }
+            }
+            for (Uri uri : dependencies.mUris) {
+                Long uriGeneration = mUriGenerations.get(uri);
+                if (uriGeneration == null) {
+                    uriGeneration = 0L;
+                    mUriGenerations.put(uri, uriGeneration);
+                    observeUri(uri);
+                }
+                generation += uriGeneration;
+            }
+            for (Map.Entry<String, Integer> broadcast : dependencies.mBroadcasts.entrySet()) {
+                final String action = broadcast.getKey();
+                Long broadcastGeneration = mBroadcastGenerations.get(action);
+                if (broadcastGeneration == null) {
+                    broadcastGeneration = 0L;
+                    mBroadcastGenerations.put(action, broadcastGeneration);
+                    observeBroadcast(action, broadcast.getValue());
+                }
+                generation += broadcastGeneration;
+            }
+        }
+        // Every counter only increases, so the sum changes as soon as one of them does.
+        return generation;
+    }
+
+    /** Invalidates everything depending on one of {@code sources}. */
+    public void invalidate(@Source int sources) {
+        synchronized (this) {
+            for (int i = 0; i < SOURCES.length; i++) {
+                if ((sources & SOURCES[i]) != 0) {
+                    mGenerations[i]++;
+                }
+            }
+        }
+        for (Listener listener : mListeners) {
+            listener.onInvalidated(sources);
+        }
+    }
+
+    /** Invalidates everything depending on {@code uri}. */
+    public synchronized void invalidateUri(@NonNull Uri uri) {
+        final Long generation = mUriGenerations.get(uri);
+        if (generation != null) {
+            mUriGenerations.put(uri, generation + 1);
+        }
+    }
+
+    /** Invalidates everything depending on the broadcast {@code action}. */
+    public synchronized void invalidateBroadcast(@NonNull String action) {
+        final Long generation = mBroadcastGenerations.get(action);
+        if (generation != null) {
+            mBroadcastGenerations.put(action, generation + 1);
+        }
+    }
+
+    private void registerListeners() {
+        final IntentFilter packageFilter = new IntentFilter();
+        packageFilter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        packageFilter.addDataScheme("package");
+        mContext.registerReceiver(new SourceReceiver(SOURCE_PACKAGES), packageFilter,
+                Context.RECEIVER_NOT_EXPORTED);
+        mContext.registerReceiver(new SourceReceiver(SOURCE_USER_RESTRICTIONS),
+                new IntentFilter(UserManager.ACTION_USER_RESTRICTIONS_CHANGED),
+                Context.RECEIVER_NOT_EXPORTED);
+
+        for (String namespace : DEVICE_CONFIG_NAMESPACES) {
+            DeviceConfig.addOnPropertiesChangedListener(namespace, mContext.getMainExecutor(),
+                    properties -> invalidate(SOURCE_DEVICE_CONFIG));
+        }
+
+        final SubscriptionManager subscriptionManager =
+                mContext.getSystemService(SubscriptionManager.class);
+        if (subscriptionManager != null) {
+            subscriptionManager.addOnSubscriptionsChangedListener(mContext.getMainExecutor(),
+                    new SubscriptionManager.OnSubscriptionsChangedListener() {
+                        @Override
+                        public void onSubscriptionsChanged() {
+                            invalidate(SOURCE_SUBSCRIPTIONS);
+                        }
+                    });
+        }
+    }
+
+    private void observeUri(Uri uri) {
+        if (mContext == null) {
+            return;
+        }
+        // Without a handler, changes are dispatched on the binder thread.
+        mContext.getContentResolver().registerContentObserver(uri, false /* notifyForDescendants */,
+                new ContentObserver(null /* handler */) {
+                    @Override
+                    public void onChange(boolean selfChange) {
+                        invalidateUri(uri);
+                    }
+                });
+    }
+
+    private void observeBroadcast(String action, int receiverFlags) {
+        if (mContext == null) {
+            return;
+        }
+        mContext.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                invalidateBroadcast(action);
+            }
+        }, new IntentFilter(action), receiverFlags);
+    }
+
+    private class SourceReceiver extends BroadcastReceiver {
+        private final int mSource;
+
+        SourceReceiver(int source) {
+            mSource = source;
+        }
+
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Log.d(TAG, "Invalidating on " + intent.getAction());
+            invalidate(mSource);
+        }
+    }
+
+    /** The inputs a cached value depends on. */
+    public static final class Dependencies {
+        final int mSources;
+        final Set<Uri> mUris;
+        // Broadcast action to the flags its receiver is registered with.
+        final Map<String, Integer> mBroadcasts;
+
+        private Dependencies(int sources, Set<Uri> uris, Map<String, Integer> broadcasts) {
+            mSources = sources;
+            mUris = uris;
+            mBroadcasts = broadcasts;
+        }
+
+        /** Returns dependencies on the well-known {@code sources} only. */
+        public static Dependencies of(@Source int sources) {
+            return new Dependencies(sources, Collections.emptySet(), Collections.emptyMap());
+        }
+
+        /** Builder of {@link Dependencies}. */
+        public static final class Builder {
+            private int mSources = SOURCE_NONE;
+            private final Set<Uri> mUris = new ArraySet<>();
+            private final Map<String, Integer> mBroadcasts = new ArrayMap<>();
+
+            /** Adds well-known {@code sources}. */
+            public Builder addSources(@Source int sources) {
+                mSources |= sources;
+                return this;
+            }
+
+            /** Adds a settings uri, e.g. from {@link android.provider.Settings.Global#getUriFor}. */
+            public Builder addUri(@NonNull Uri uri) {
+                mUris.add(uri);
+                return this;
+            }
+
+            /**
+             * Adds a broadcast action. The receiver is registered once per action, with the
+             * flags of the first dependency on it.
+             *
+             * @param receiverFlags {@link Context#RECEIVER_EXPORTED} for the actions sent by the
+             *                      system or other apps, {@link Context#RECEIVER_NOT_EXPORTED}
+             *                      for the ones sent by Settings itself
+             */
+            public Builder addBroadcast(@NonNull String action, int receiverFlags) {
+                mBroadcasts.put(action, receiverFlags);
+                return this;
+            }
+
+            public Dependencies build() {
+                return new Dependencies(mSources, new ArraySet<>(mUris),
+                        new ArrayMap<>(mBroadcasts));
+            }
+        }
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_CONTROLLER;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_FOR_WORK;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_KEY;
+
+import android.annotation.XmlRes;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Bundle;
+import android.text.TextUtils;
+import android.util.ArrayMap;
+import android.util.Log;
+import android.util.SparseArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Process-wide index of the {@link BasePreferenceController}s declared in preference xml.
+ * <p>
+ * The first lookup for a xml resource parses it once and resolves the constructor of every
+ * declared controller. Subsequent lookups skip both the xml parsing and the
+ * {@code Class.forName()}/{@code getConstructor()} work and only invoke the resolved factory.
+ * The index is dropped whenever the resource configuration changes, since qualified resources
+ * may declare a different set of controllers.
+ */
+public final class PreferenceControllerBindingIndex {
+
+    private static final String TAG = "PrefCtrlBindingIndex";
+
+    static final int METADATA_FLAGS = MetadataFlag.FLAG_NEED_KEY
+            | MetadataFlag.FLAG_NEED_PREF_CONTROLLER
+            | MetadataFlag.FLAG_INCLUDE_PREF_SCREEN
+            | MetadataFlag.FLAG_FOR_WORK;
+
+    private static final Object sLock = new Object();
+    private static final SparseArray<List<Binding>> sBindingsByXml = new SparseArray<>();
+    private static final Map<String, ControllerFactory> sFactoryByClassName = new ArrayMap<>();
+    @Nullable
+    private static Configuration sConfiguration;
+
+    private PreferenceControllerBindingIndex() {
+    }
+
+    /**
+     * Creates a {@link BasePreferenceController} for a preference key.
+     */
+    interface ControllerFactory {
+        /**
+         * @return a new controller, or {@code null} if the controller could not be created.
+         */
+        @Nullable
+        BasePreferenceController create(Context context, String key, boolean forWork);
+    }
+
+    /**
+     * A controller declared in preference xml together with the factory creating it.
+     */
+    static final class Binding {
+        final String mControllerName;
+        @Nullable
+        final String mKey;
+        final boolean mForWork;
+        @NonNull
+        final ControllerFactory mFactory;
+
+        Binding(String controllerName, @Nullable String key, boolean forWork,
+                @NonNull ControllerFactory factory) {
+            mControllerName = controllerName;
+            mKey = key;
+            mForWork = forWork;
+            mFactory = factory;
+        }
+
+        @Nullable
+        BasePreferenceController create(Context context) {
+            return mFactory.create(context, mKey, mForWork);
+        }
+    }
+
+    /**
+     * Returns the controller bindings declared in {@code xmlResId}, or {@code null} if the xml
+     * could not be parsed and callers should fall back to the reflective path.
+     */
+    @Nullable
+    static List<Binding> getBindings(Context context, @XmlRes int xmlResId) {
+        final Configuration configuration = context.getResources().getConfiguration();
+        synchronized (sLock) {
+            if (!isCachedConfigurationLocked(configuration)) {
+                sBindingsByXml.clear();
+                sConfiguration = new Configuration(configuration);
+            }
+            final List<Binding> cached = sBindingsByXml.get(xmlResId);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        final List<Bundle> preferenceMetadata;
+        try {
+            preferenceMetadata = PreferenceXmlMetadataCache.extractMetadata(context, xmlResId,
+                    METADATA_FLAGS);
+        } catch (IOException | XmlPullParserException e) {
+            Log.e(TAG, "Failed to parse preference xml for building controller index", e);
+            return null;
+        }
+
+        final List<Binding> bindings = new ArrayList<>();
+        for (Bundle metadata : preferenceMetadata) {
+            final String controllerName = metadata.getString(METADATA_CONTROLLER);
+            if (TextUtils.isEmpty(controllerName)) {
+                continue;
+            }
+            final ControllerFactory factory = getFactory(controllerName);
+            if (factory == null) {
+                continue;
+            }
+            bindings.add(new Binding(controllerName, metadata.getString(METADATA_KEY),
+                    metadata.getBoolean(METADATA_FOR_WORK, false), factory));
+        }
+
+        final List<Binding> result = Collections.unmodifiableList(bindings);
+        synchronized (sLock) {
+            if (isCachedConfigurationLocked(configuration)) {
+                sBindingsByXml.put(xmlResId, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Clears all cached bindings and resolved constructors.
+     */
+    @VisibleForTesting
+    public static void clear() {
+        synchronized (sLock) {
+            sBindingsByXml.clear();
+            sFactoryByClassName.clear();
+            sConfiguration = null;
+        }
+    }
+
+    // Same as the metadata cache the bindings are built from, window changes keep the bindings.
+    private static boolean isCachedConfigurationLocked(Configuration configuration) {
+        return sConfiguration != null
+                && (sConfiguration.diff(configuration)
+                        & PreferenceXmlMetadataCache.RESOURCE_CONFIG_CHANGES) == 0;
+    }
+
+    @Nullable
+    private static ControllerFactory getFactory(String controllerName) {
+        synchronized (sLock) {
+            if (sFactoryByClassName.containsKey(controllerName)) {
+                return sFactoryByClassName.get(controllerName);
+            }
+        }
+        final ControllerFactory factory = resolveFactory(controllerName);
+        synchronized (sLock) {
+            sFactoryByClassName.put(controllerName, factory);
+        }
+        return factory;
+    }
+
+    /**
+     * Resolves the constructor of {@code controllerName} with the same preference as
+     * {@link BasePreferenceController#createInstance}: a Context-only constructor first, then a
+     * (Context, String) constructor taking the preference key.
+     */
+    @Nullable
+    private static ControllerFactory resolveFactory(String controllerName) {
+        final Class<?> clazz;
+        try {
+            clazz = Class.forName(controllerName);
+        } catch (ClassNotFoundException e) {
+            Log.w(TAG, "Cannot find controller class: " + controllerName);
+            return null;
+        }
+        if (!BasePreferenceController.class.isAssignableFrom(clazz)) {
+            Log.w(TAG, "Not a BasePreferenceController: " + controllerName);
+            return null;
+        }
+        try {
+            final Constructor<?> constructor = clazz.getConstructor(Context.class);
+            return (context, key, forWork) -> newInstance(constructor, controllerName, context);
+        } catch (NoSuchMethodException e) {
+            // Fall through to the keyed constructor.
+        }
+        try {
+            final Constructor<?> constructor = clazz.getConstructor(Context.class, String.class);
+            return (context, key, forWork) -> {
+                if (TextUtils.isEmpty(key)) {
+                    Log.w(TAG, "Controller requires key but it's not defined in xml: "
+                            + controllerName);
+                    return null;
+                }
+                final BasePreferenceController controller =
+                        newInstance(constructor, controllerName, context, key);
+                if (controller != null) {
+                    controller.setForWork(forWork);
+                }
+                return controller;
+            };
+        } catch (NoSuchMethodException e) {
+            Log.w(TAG, "Cannot find valid constructor for controller: " + controllerName);
+            return null;
+        }
+    }
+
+    @Nullable
+    private static BasePreferenceController newInstance(Constructor<?> constructor,
+            String controllerName, Object... params) {
+        try {
+            return (BasePreferenceController) constructor.newInstance(params);
+        } catch (InstantiationException | IllegalArgumentException | InvocationTargetException
+                | IllegalAccessException e) {
+            Log.w(TAG, "Cannot instantiate controller: " + controllerName, e);
+            return null;
+        }
+    }
+}
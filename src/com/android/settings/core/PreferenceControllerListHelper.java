@@ -27,10 +27,12 @@ import android.text.TextUtils;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import androidx.preference.PreferenceManager;
 import androidx.preference.PreferenceScreen;
 
-import com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag;
+import com.android.settings.core.PreferenceControllerBindingIndex.Binding;
 import com.android.settingslib.core.AbstractPreferenceController;
 
 import org.xmlpull.v1.XmlPullParserException;
@@ -54,12 +56,39 @@ public class PreferenceControllerListHelper {
     @NonNull
     public static List<BasePreferenceController> getPreferenceControllersFromXml(Context context,
             @XmlRes int xmlResId) {
+        final List<Binding> bindings =
+                PreferenceControllerBindingIndex.getBindings(context, xmlResId);
+        if (bindings == null) {
+            return getPreferenceControllersFromXmlReflectively(context, xmlResId);
+        }
+        final List<BasePreferenceController> controllers = new ArrayList<>(bindings.size());
+        for (Binding binding : bindings) {
+            BasePreferenceController controller = binding.create(context);
+            if (controller == null) {
+                controller = createControllerReflectively(context, binding.mControllerName,
+                        binding.mKey, binding.mForWork);
+            }
+            if (controller != null) {
+                controllers.add(controller);
+            }
+        }
+        return controllers;
+    }
+
+    /**
+     * Instantiates a list of controller based on xml definition, parsing the xml and resolving
+     * every controller through reflection without going through
+     * {@link PreferenceControllerBindingIndex}.
+     */
+    @VisibleForTesting
+    @NonNull
+    static List<BasePreferenceController> getPreferenceControllersFromXmlReflectively(
+            Context context, @XmlRes int xmlResId) {
         final List<BasePreferenceController> controllers = new ArrayList<>();
         List<Bundle> preferenceMetadata;
         try {
             preferenceMetadata = PreferenceXmlParserUtils.extractMetadata(context, xmlResId,
-                    MetadataFlag.FLAG_NEED_KEY | MetadataFlag.FLAG_NEED_PREF_CONTROLLER
-                            | MetadataFlag.FLAG_INCLUDE_PREF_SCREEN  | MetadataFlag.FLAG_FOR_WORK);
+                    PreferenceControllerBindingIndex.METADATA_FLAGS);
         } catch (IOException | XmlPullParserException e) {
             Log.e(TAG, "Failed to parse preference xml for getting controllers", e);
             return controllers;
@@ -70,31 +99,38 @@ public class PreferenceControllerListHelper {
             if (TextUtils.isEmpty(controllerName)) {
                 continue;
             }
-            BasePreferenceController controller;
-            try {
-                controller = BasePreferenceController.createInstance(context, controllerName);
-            } catch (IllegalStateException e) {
-                Log.d(TAG, "Could not find Context-only controller for pref: " + controllerName);
-                final String key = metadata.getString(METADATA_KEY);
-                final boolean isWorkProfile = metadata.getBoolean(METADATA_FOR_WORK, false);
-                if (TextUtils.isEmpty(key)) {
-                    Log.w(TAG, "Controller requires key but it's not defined in xml: "
-                            + controllerName);
-                    continue;
-                }
-                try {
-                    controller = BasePreferenceController.createInstance(context, controllerName,
-                            key, isWorkProfile);
-                } catch (IllegalStateException e2) {
-                    Log.w(TAG, "Cannot instantiate controller from reflection: " + controllerName);
-                    continue;
-                }
+            final BasePreferenceController controller = createControllerReflectively(context,
+                    controllerName, metadata.getString(METADATA_KEY),
+                    metadata.getBoolean(METADATA_FOR_WORK, false));
+            if (controller != null) {
+                controllers.add(controller);
             }
-            controllers.add(controller);
         }
         return controllers;
     }
 
+    @Nullable
+    private static BasePreferenceController createControllerReflectively(Context context,
+            String controllerName, @Nullable String key, boolean isWorkProfile) {
+        try {
+            return BasePreferenceController.createInstance(context, controllerName);
+        } catch (IllegalStateException e) {
+            Log.d(TAG, "Could not find Context-only controller for pref: " + controllerName);
+            if (TextUtils.isEmpty(key)) {
+                Log.w(TAG, "Controller requires key but it's not defined in xml: "
+                        + controllerName);
+                return null;
+            }
+            try {
+                return BasePreferenceController.createInstance(context, controllerName,
+                        key, isWorkProfile);
+            } catch (IllegalStateException e2) {
+                Log.w(TAG, "Cannot instantiate controller from reflection: " + controllerName);
+                return null;
+            }
+        }
+    }
+
     /**
      * Checks if the given PreferenceScreen will be empty due to all preferences being unavailable.
      *
@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_APPEND;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_CONTROLLER;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_FOR_WORK;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_HIGHLIGHTABLE_MENU_KEY;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_ICON;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_KEY;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_KEYWORDS;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_PREF_TYPE;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_SEARCHABLE;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_SUMMARY;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_TITLE;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_UNAVAILABLE_SLICE_SUBTITLE;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_USER_RESTRICTION;
+import static com.android.settings.core.PreferenceXmlParserUtils.PREF_SCREEN_TAG;
+
+import android.annotation.XmlRes;
+import android.content.Context;
+import android.content.pm.ActivityInfo;
+import android.content.res.Configuration;
+import android.os.Bundle;
+import android.text.TextUtils;
+import android.util.SparseArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Process-wide cache of the metadata extracted by
+ * {@link PreferenceXmlParserUtils#extractMetadata(Context, int, int)}.
+ * <p>
+ * Entries are keyed by xml resource and remember the superset of flags they were parsed with, so
+ * search, slices and dashboard callers asking for different flags share a single parse of each
+ * xml. The cache is dropped when a configuration field the parsed values depend on (locale,
+ * ui mode, density, font scale, ...) changes, or explicitly through
+ * {@link #invalidate()} when an interesting configuration change is observed.
+ */
+public final class PreferenceXmlMetadataCache {
+
+    /** Flags always parsed so that any subset of flags can be served from an entry. */
+    private static final int BASE_FLAGS =
+            MetadataFlag.FLAG_INCLUDE_PREF_SCREEN | MetadataFlag.FLAG_NEED_PREF_TYPE;
+
+    private static final int[] FLAGS = {
+            MetadataFlag.FLAG_NEED_PREF_TYPE,
+            MetadataFlag.FLAG_NEED_KEY,
+            MetadataFlag.FLAG_NEED_PREF_CONTROLLER,
+            MetadataFlag.FLAG_NEED_PREF_TITLE,
+            MetadataFlag.FLAG_NEED_PREF_SUMMARY,
+            MetadataFlag.FLAG_NEED_PREF_ICON,
+            MetadataFlag.FLAG_NEED_KEYWORDS,
+            MetadataFlag.FLAG_NEED_SEARCHABLE,
+            MetadataFlag.FLAG_NEED_PREF_APPEND,
+            MetadataFlag.FLAG_UNAVAILABLE_SLICE_SUBTITLE,
+            MetadataFlag.FLAG_FOR_WORK,
+            MetadataFlag.FLAG_NEED_HIGHLIGHTABLE_MENU_KEY,
+            MetadataFlag.FLAG_NEED_USER_RESTRICTION,
+    };
+
+    private static final String[] FLAG_KEYS = {
+            METADATA_PREF_TYPE,
+            METADATA_KEY,
+            METADATA_CONTROLLER,
+            METADATA_TITLE,
+            METADATA_SUMMARY,
+            METADATA_ICON,
+            METADATA_KEYWORDS,
+            METADATA_SEARCHABLE,
+            METADATA_APPEND,
+            METADATA_UNAVAILABLE_SLICE_SUBTITLE,
+            METADATA_FOR_WORK,
+            METADATA_HIGHLIGHTABLE_MENU_KEY,
+            METADATA_USER_RESTRICTION,
+    };
+
+    /**
+     * The configuration changes that affect the parsed titles, summaries and icons. Window
+     * changes such as a resize or a rotation don't, and keep the cache.
+     */
+    static final int RESOURCE_CONFIG_CHANGES = ActivityInfo.CONFIG_LOCALE
+            | ActivityInfo.CONFIG_LAYOUT_DIRECTION
+            | ActivityInfo.CONFIG_MCC
+            | ActivityInfo.CONFIG_MNC
+            | ActivityInfo.CONFIG_UI_MODE
+            | ActivityInfo.CONFIG_DENSITY
+            | ActivityInfo.CONFIG_FONT_SCALE;
+
+    private static final Object sLock = new Object();
+    private static final SparseArray<Entry> sEntries = new SparseArray<>();
+    @Nullable
+    private static Configuration sConfiguration;
+    private static long sHitCount;
+    private static long sMissCount;
+    private static long sInvalidationCount;
+
+    private PreferenceXmlMetadataCache() {
+    }
+
+    private static final class Entry {
+        final int mFlags;
+        final List<Bundle> mMetadata;
+
+        Entry(int flags, List<Bundle> metadata) {
+            mFlags = flags;
+            mMetadata = metadata;
+        }
+    }
+
+    /**
+     * Same as {@link PreferenceXmlParserUtils#extractMetadata(Context, int, int)}, but served
+     * from the cache whenever the xml was already parsed with a superset of {@code flags}.
+     * The returned bundles are copies and can be modified by the caller.
+     */
+    @NonNull
+    public static List<Bundle> extractMetadata(Context context, @XmlRes int xmlResId, int flags)
+            throws IOException, XmlPullParserException {
+        if (xmlResId <= 0) {
+            return PreferenceXmlParserUtils.extractMetadata(context, xmlResId, flags);
+        }
+        final Configuration configuration = context.getResources().getConfiguration();
+        int parseFlags = flags | BASE_FLAGS;
+        synchronized (sLock) {
+            if (!isCachedConfigurationLocked(configuration)) {
+                clearLocked();
+                sConfiguration = new Configuration(configuration);
+            }
+            final Entry entry = sEntries.get(xmlResId);
+            if (entry != null) {
+                if ((entry.mFlags & parseFlags) == parseFlags) {
+                    sHitCount++;
+                    return project(entry.mMetadata, flags);
+                }
+                // Widen the entry so that both the old and the new callers are served by it.
+                parseFlags |= entry.mFlags;
+            }
+            sMissCount++;
+        }
+
+        final List<Bundle> metadata =
+                PreferenceXmlParserUtils.extractMetadata(context, xmlResId, parseFlags);
+        synchronized (sLock) {
+            if (isCachedConfigurationLocked(configuration)) {
+                final Entry entry = sEntries.get(xmlResId);
+                if (entry == null || (entry.mFlags & parseFlags) != entry.mFlags) {
+                    sEntries.put(xmlResId, new Entry(parseFlags, metadata));
+                }
+            }
+        }
+        return project(metadata, flags);
+    }
+
+    /**
+     * Drops every cached entry. Called when an interesting configuration change (e.g. locale)
+     * happens, as the parsed titles and summaries are no longer valid.
+     */
+    public static void invalidate() {
+        synchronized (sLock) {
+            clearLocked();
+        }
+    }
+
+    /** Returns the number of lookups served from the cache. */
+    public static long getHitCount() {
+        synchronized (sLock) {
+            return sHitCount;
+        }
+    }
+
+    /** Returns the number of lookups that had to parse the xml. */
+    public static long getMissCount() {
+        synchronized (sLock) {
+            return sMissCount;
+        }
+    }
+
+    /** Returns the number of times the cache was dropped. */
+    public static long getInvalidationCount() {
+        synchronized (sLock) {
+            return sInvalidationCount;
+        }
+    }
+
+    /** Returns the number of xml resources currently cached. */
+    public static int size() {
+        synchronized (sLock) {
+            return sEntries.size();
+        }
+    }
+
+    @VisibleForTesting
+    static void reset() {
+        synchronized (sLock) {
+            sEntries.clear();
+            sConfiguration = null;
+            sHitCount = 0;
+            sMissCount = 0;
+            sInvalidationCount = 0;
+        }
+    }
+
+    private static boolean isCachedConfigurationLocked(Configuration configuration) {
+        return sConfiguration != null
+                && (sConfiguration.diff(configuration) & RESOURCE_CONFIG_CHANGES) == 0;
+    }
+
+    private static void clearLocked() {
+        if (sEntries.size() > 0) {
+            sInvalidationCount++;
+        }
+        sEntries.clear();
+    }
+
+    /**
+     * Copies {@code metadata} keeping only what {@link PreferenceXmlParserUtils} would have
+     * returned for {@code flags}.
+     */
+    private static List<Bundle> project(List<Bundle> metadata, int flags) {
+        final boolean includePrefScreen = hasFlag(flags, MetadataFlag.FLAG_INCLUDE_PREF_SCREEN);
+        final List<Bundle> result = new ArrayList<>(metadata.size());
+        for (Bundle bundle : metadata) {
+            if (!includePrefScreen
+                    && TextUtils.equals(PREF_SCREEN_TAG, bundle.getString(METADATA_PREF_TYPE))) {
+                continue;
+            }
+            final Bundle copy = new Bundle(bundle);
+            for (int i = 0; i < FLAGS.length; i++) {
+                if (!hasFlag(flags, FLAGS[i])) {
+                    copy.remove(FLAG_KEYS[i]);
+                }
+            }
+            if (!includePrefScreen) {
+                copy.remove(METADATA_APPEND);
+            }
+            result.add(copy);
+        }
+        return result;
+    }
+
+    private static boolean hasFlag(int flags, int flag) {
+        return (flags & flag) != 0;
+    }
+}
@@ -0,0 +1,403 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.ArrayMap;
+import android.util.Log;
+
+import androidx.annotation.IntDef;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.android.settingslib.utils.ThreadUtils;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * The thread pool shared by the background work of Settings, instead of the threads, pools and
+ * {@link android.os.AsyncTask}s each feature would otherwise create on its own.
+ * <p>
+ * Every task is queued in a {@link Lane}: queued tasks run in the order of their lane, then in
+ * submission order, and each runs at the thread priority of its lane. A running task is never
+ * preempted, so a task must not wait for other tasks of the pool. Tasks are named after their
+ * feature; they are traced under that name, their queue and run times are aggregated per name for
+ * {@link #getTaskStats} and logged when slow.
+ */
+public class SettingsExecutor {
+
+    private static final String TAG = "SettingsExecutor";
+
+    /** The lanes of the pool, in the order their tasks are run. */
+    @IntDef({LANE_UI_CRITICAL, LANE_PREFETCH, LANE_MAINTENANCE})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface Lane {
+    }
+
+    /** Content of the screen being shown, which the user is waiting for. */
+    public static final int LANE_UI_CRITICAL = 0;
+    /** Content likely to be shown soon, or shown progressively after the screen appeared. */
+    public static final int LANE_PREFETCH = 1;
+    /** Work nobody waits for, such as indexing or writes. */
+    public static final int LANE_MAINTENANCE = 2;
+
+    private static final int[] THREAD_PRIORITIES = {
+            Process.THREAD_PRIORITY_DEFAULT,
+            Process.THREAD_PRIORITY_BACKGROUND,
+            Process.THREAD_PRIORITY_LOWEST};
+
+    private static final int MIN_THREADS = 4;
+    private static final int MAX_THREADS = 8;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+    private static final long SLOW_TASK_THRESHOLD_MS = 200;
+
+    private static SettingsExecutor sInstance;
+
+    private final ThreadPoolExecutor mPool;
+    private final AtomicLong mNextSequence = new AtomicLong();
+    private final Map<String, TaskStats> mTaskStats = new ArrayMap<>();
+
+    /** Returns the process-wide executor. */
+    public static synchronized SettingsExecutor getInstance() {
+        if (sInstance == null) {
+            sInstance = new SettingsExecutor(Math.max(MIN_THREADS,
+                    Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors())));
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    SettingsExecutor(int threads) {
+        final AtomicInteger count = new AtomicInteger();
+        // The queue only ever holds LaneTasks, which order themselves by lane.
+        mPool = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(),
+                runnable -> new Thread(runnable, "SettingsExecutor-" + count.incrementAndGet()));
+        mPool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Returns an {@link ExecutorService} running its tasks in {@code lane}, for the code written
+     * against one. It can't be shut down, its tasks are simply canceled when no longer needed.
+     *
+     * @param name the name of the tasks, for tracing and {@link #getTaskStats}
+     */
+    @NonNull
+    public ExecutorService getExecutor(@Lane int lane, @NonNull String name) {
+        return new LaneExecutor(lane, name);
+    }
+
+    /**
+     * Returns an executor running its tasks one at a time in {@code lane}, in submission order,
+     * for the code that relies on a single background thread.
+     */
+    @NonNull
+    public Executor newSerialExecutor(@Lane int lane, @NonNull String name) {
+        return new SerialExecutor(new LaneExecutor(lane, name));
+    }
+
+    /** Runs {@code runnable} in {@code lane}. */
+    @NonNull
+    public Future<?> execute(@Lane int lane, @NonNull String name, @NonNull Runnable runnable) {
+        final LaneTask<Void> task = new LaneTask<>(lane, name, runnable, null);
+        mPool.execute(task);
+        return task;
+    }
+
+    /** Runs {@code callable} in {@code lane}. */
+    @NonNull
+    public <T> Future<T> submit(@Lane int lane, @NonNull String name,
+            @NonNull Callable<T> callable) {
+        final LaneTask<T> task = new LaneTask<>(lane, name, callable);
+        mPool.execute(task);
+        return task;
+    }
+
+    /**
+     * Runs {@code callable} in {@code lane} until {@code owner} is destroyed, then posts its result
+     * to {@code onResult} on the main thread. The task is canceled, and interrupted if running,
+     * when {@code owner} is destroyed first; {@code onResult} is then never called. Must be called
+     * on the main thread.
+     */
+    @NonNull
+    public <T> Future<T> submit(@NonNull LifecycleOwner owner, @Lane int lane,
+            @NonNull String name, @NonNull Callable<T> callable,
+            @Nullable Consumer<T> onResult) {
+        final Lifecycle lifecycle = owner.getLifecycle();
+        final LaneTask<T> task = new LaneTask<>(lane, name, callable);
+        if (lifecycle.getCurrentState() == Lifecycle.State.DESTROYED) {
+            task.cancel(false /* mayInterruptIfRunning */);
+            return task;
+        }
+        final DefaultLifecycleObserver observer = new DefaultLifecycleObserver() {
+            @Override
+            public void onDestroy(@NonNull LifecycleOwner destroyed) {
+                task.cancel(true /* mayInterruptIfRunning */);
+            }
+        };
+        task.mOnDone = () -> ThreadUtils.postOnMainThread(() -> {
+            lifecycle.removeObserver(observer);
+            if (onResult == null || task.isCancelled()
+                    || lifecycle.getCurrentState() == Lifecycle.State.DESTROYED) {
+                return;
+            }
+            try {
+                onResult.accept(task.get());
+            } catch (ExecutionException | InterruptedException e) {
+                Log.w(TAG, "Task " + name + " failed", e);
+            }
+        });
+        lifecycle.addObserver(observer);
+        mPool.execute(task);
+        return task;
+    }
+
+    /** Runs {@code callable} in {@code lane} until {@code owner} is destroyed. */
+    @NonNull
+    public <T> Future<T> submit(@NonNull LifecycleOwner owner, @Lane int lane,
+            @NonNull String name, @NonNull Callable<T> callable) {
+        return submit(owner, lane, name, callable, null /* onResult */);
+    }
+
+    /** Returns a copy of the statistics of the tasks run so far, per task name. */
+    @NonNull
+    public Map<String, TaskStats> getTaskStats() {
+        final Map<String, TaskStats> copy = new ArrayMap<>();
+        synchronized (mTaskStats) {
+            mTaskStats.forEach((name, stats) -> copy.put(name, stats.copy()));
+        }
+        return copy;
+    }
+
+    private void onTaskRun(String name, long queueMillis, long runMillis) {
+        final String stats;
+        synchronized (mTaskStats) {
+            TaskStats existing = mTaskStats.get(name);
+            if (existing == null) {
+                existing = new TaskStats();
+                mTaskStats.put(name, existing);
+            }
+            existing.add(queueMillis, runMillis);
+            stats = existing.toString();
+        }
+        if (queueMillis + runMillis >= SLOW_TASK_THRESHOLD_MS) {
+            Log.w(TAG, "Slow task " + name + ": queued " + queueMillis + " ms, ran " + runMillis
+                    + " ms, " + stats);
+        }
+    }
+
+    /** Queue and run time statistics of the tasks of one name. */
+    public static final class TaskStats {
+        int mCount;
+        long mTotalQueueMillis;
+        long mMaxQueueMillis;
+        long mTotalRunMillis;
+        long mMaxRunMillis;
+
+        void add(long queueMillis, long runMillis) {
+            mCount++;
+            mTotalQueueMillis += queueMillis;
+            mMaxQueueMillis = Math.max(mMaxQueueMillis, queueMillis);
+            mTotalRunMillis += runMillis;
+            mMaxRunMillis = Math.max(mMaxRunMillis, runMillis);
+        }
+
+        TaskStats copy() {
+            final TaskStats copy = new TaskStats();
+            copy.mCount = mCount;
+            copy.mTotalQueueMillis = mTotalQueueMillis;
+            copy.mMaxQueueMillis = mMaxQueueMillis;
+            copy.mTotalRunMillis = mTotalRunMillis;
+            copy.mMaxRunMillis = mMaxRunMillis;
+            return copy;
+        }
+
+        public int getCount() {
+            return mCount;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + mCount
+                    + ", queue avg=" + (mTotalQueueMillis / mCount) + " ms, max="
+                    + mMaxQueueMillis + " ms"
+                    + ", run avg=" + (mTotalRunMillis / mCount) + " ms, max="
+                    + mMaxRunMillis + " ms";
+        }
+    }
+
+    private final class LaneTask<T> extends FutureTask<T> implements Comparable<LaneTask<?>> {
+        final int mLane;
+        final String mName;
+        final long mSequence = mNextSequence.getAndIncrement();
+        final long mQueueTime = SystemClock.elapsedRealtime();
+        // Called once the task completed, failed or was canceled.
+        volatile Runnable mOnDone;
+
+        LaneTask(@Lane int lane, String name, Callable<T> callable) {
+            super(callable);
+            mLane = lane;
+            mName = name;
+        }
+
+        LaneTask(@Lane int lane, String name, Runnable runnable, T result) {
+            super(runnable, result);
+            mLane = lane;
+            mName = name;
+        }
+
+        @Override
+        public void run() {
+            if (isDone()) {
+                return;
+            }
+            final long startTime = SystemClock.elapsedRealtime();
+            Process.setThreadPriority(THREAD_PRIORITIES[mLane]);
+            Trace.beginSection(mName);
+            try {
+                super.run();
+            } finally {
+                Trace.endSection();
+                onTaskRun(mName, startTime - mQueueTime,
+                        SystemClock.elapsedRealtime() - startTime);
+            }
+        }
+
+        @Override
+        protected void done() {
+            final Runnable onDone = mOnDone;
+            if (onDone != null) {
+                onDone.run();
+            }
+        }
+
+        @Override
+        public int compareTo(LaneTask<?> other) {
+            if (mLane != other.mLane) {
+                return Integer.compare(mLane, other.mLane);
+            }
+            return Long.compare(mSequence, other.mSequence);
+        }
+    }
+
+    private final class LaneExecutor extends AbstractExecutorService {
+        private final int mLane;
+        private final String mName;
+
+        LaneExecutor(@Lane int lane, String name) {
+            mLane = lane;
+            mName = name;
+        }
+
+        @Override
+        protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+            return new LaneTask<>(mLane, mName, callable);
+        }
+
+        @Override
+        protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+            return new LaneTask<>(mLane, mName, runnable, value);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            mPool.execute(command instanceof LaneTask
+                    ? command : new LaneTask<Void>(mLane, mName, command, null));
+        }
+
+        @Override
+        public void shutdown() {
+            throw new UnsupportedOperationException("The pool is shared");
+        }
+
+        @NonNull
+        @Override
+        public List<Runnable> shutdownNow() {
+            throw new UnsupportedOperationException("The pool is shared");
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, @NonNull TimeUnit unit) {
+            return false;
+        }
+    }
+
+    private static final class SerialExecutor implements Executor {
+        private final Executor mExecutor;
+        private final ArrayDeque<Runnable> mTasks = new ArrayDeque<>();
+        private Runnable mActive;
+
+        SerialExecutor(Executor executor) {
+            mExecutor = executor;
+        }
+
+        @Override
+        public synchronized void execute(Runnable command) {
+            mTasks.add(() -> {
+                try {
+                    command.run();
+                } finally {
+                    scheduleNext();
+                }
+            });
+            if (mActive == null) {
+                scheduleNext();
+            }
+        }
+
+        private synchronized void scheduleNext() {
+            mActive = mTasks.poll();
+            if (mActive != null) {
+                mExecutor.execute(mActive);
+            }
+        }
+    }
+}
@@ -17,6 +17,10 @@ package com.android.settings.dashboard;
 
 import android.content.ComponentName;
 import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.os.UserHandle;
+import android.os.UserManager;
 import android.text.TextUtils;
 import android.util.ArrayMap;
 import android.util.ArraySet;
@@ -25,6 +29,7 @@ import android.util.Pair;
 
 import androidx.annotation.VisibleForTesting;
 
+import com.android.settings.core.PreferenceXmlMetadataCache;
 import com.android.settings.homepage.HighlightableMenu;
 import com.android.settings.safetycenter.SafetyCenterManagerWrapper;
 import com.android.settingslib.applications.InterestingConfigChanges;
@@ -38,6 +43,7 @@ import com.google.android.setupcompat.util.WizardManagerHelper;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -49,16 +55,47 @@ public class CategoryManager {
     private static final String TAG = "CategoryManager";
     private static final boolean DEBUG = false;
 
+    // The actions TileUtils resolves tiles for, as activities and as content providers. The
+    // first three are private to TileUtils.
+    private static final String SETTINGS_ACTION = "com.android.settings.action.SETTINGS";
+    private static final String OPERATOR_SETTINGS_ACTION =
+            "com.android.settings.OPERATOR_APPLICATION_SETTING";
+    private static final String MANUFACTURER_SETTINGS_ACTION =
+            "com.android.settings.MANUFACTURER_APPLICATION_SETTING";
+    private static final String[] TILE_ACTIONS = {
+            SETTINGS_ACTION,
+            OPERATOR_SETTINGS_ACTION,
+            MANUFACTURER_SETTINGS_ACTION,
+            TileUtils.EXTRA_SETTINGS_ACTION,
+            TileUtils.IA_SETTINGS_ACTION};
+
     private static CategoryManager sInstance;
     private final InterestingConfigChanges mInterestingConfigChanges;
 
-    // Tile cache (key: <packageName, activityName>, value: tile)
+    // Serializes the loads. Reads never take it once the categories are loaded.
+    private final Object mLoadLock = new Object();
+
+    // Tile cache (key: <packageName, activityName>, value: tile), guarded by mLoadLock.
     private final Map<Pair<String, String>, Tile> mTileByComponentCache;
 
-    // Tile cache (key: category key, value: category)
-    private final Map<String, DashboardCategory> mCategoryByKeyMap;
+    // The loaded categories, replaced as a whole by each load so that reads see either the
+    // previous or the new categories. Null until the first load.
+    private volatile LoadedCategories mLoadedCategories;
 
-    private List<DashboardCategory> mCategories;
+    // Components whose tiles are left out of the loaded categories, guarded by mLoadLock.
+    private final Set<ComponentName> mTileDenylist = new ArraySet<>();
+
+    private static final class LoadedCategories {
+        final List<DashboardCategory> mCategories;
+        // Tile cache (key: category key, value: category)
+        final Map<String, DashboardCategory> mCategoryByKeyMap;
+
+        LoadedCategories(List<DashboardCategory> categories,
+                Map<String, DashboardCategory> categoryByKeyMap) {
+            mCategories = categories;
+            mCategoryByKeyMap = categoryByKeyMap;
+        }
+    }
 
     public static CategoryManager get(Context context) {
         if (sInstance == null) {
@@ -69,60 +106,88 @@ public class CategoryManager {
 
     CategoryManager(Context context) {
         mTileByComponentCache = new ArrayMap<>();
-        mCategoryByKeyMap = new ArrayMap<>();
         mInterestingConfigChanges = new InterestingConfigChanges();
         mInterestingConfigChanges.applyNewConfig(context.getResources());
     }
 
-    public synchronized DashboardCategory getTilesByCategory(Context context, String categoryKey) {
-        tryInitCategories(context);
-
-        return mCategoryByKeyMap.get(categoryKey);
+    public DashboardCategory getTilesByCategory(Context context, String categoryKey) {
+        final LoadedCategories loaded = tryInitCategories(context);
+        return loaded == null ? null : loaded.mCategoryByKeyMap.get(categoryKey);
     }
 
-    public synchronized List<DashboardCategory> getCategories(Context context) {
+    public List<DashboardCategory> getCategories(Context context) {
         if (!WizardManagerHelper.isUserSetupComplete(context)) {
             return new ArrayList<>();
         }
-        tryInitCategories(context);
-        return mCategories;
+        final LoadedCategories loaded = tryInitCategories(context);
+        return loaded == null ? null : loaded.mCategories;
     }
 
-    public synchronized void reloadAllCategories(Context context) {
-        final boolean forceClearCache = mInterestingConfigChanges.applyNewConfig(
-                context.getResources());
-        mCategories = null;
-        tryInitCategories(context, forceClearCache);
+    /**
+     * Reloads all the categories. The previously loaded categories keep being returned until the
+     * new ones are loaded.
+     */
+    public void reloadAllCategories(Context context) {
+        synchronized (mLoadLock) {
+            final boolean forceClearCache = mInterestingConfigChanges.applyNewConfig(
+                    context.getResources());
+            if (forceClearCache) {
+                PreferenceXmlMetadataCache.invalidate();
+            }
+            loadCategories(context, forceClearCache);
+        }
     }
 
     /**
-     * Update category from deny list
-     * @param tileDenylist
+     * Reloads the categories after {@code packageName} was added, changed or removed.
+     * <p>
+     * Most package changes don't affect any tile, so the loaded categories are kept when the
+     * package neither contributed tiles nor declares any now. Otherwise only the cached tiles of
+     * the package are dropped before reloading, so its removed tiles don't come back and its
+     * changed tiles are rebuilt while the tiles of the other packages are reused.
+     *
+     * @return whether the categories were reloaded
      */
-    public synchronized void updateCategoryFromDenylist(Set<ComponentName> tileDenylist) {
-        if (mCategories == null) {
-            Log.w(TAG, "Category is null, skipping denylist update");
-            return;
+    public boolean reloadCategoriesForPackage(Context context, String packageName) {
+        synchronized (mLoadLock) {
+            if (mLoadedCategories != null && !TextUtils.isEmpty(packageName)
+                    && !hasCachedTiles(packageName) && !declaresTiles(context, packageName)) {
+                return false;
+            }
+            evictCachedTiles(packageName);
+            reloadAllCategories(context);
+            return true;
         }
-        for (int i = 0; i < mCategories.size(); i++) {
-            DashboardCategory category = mCategories.get(i);
-            for (int j = 0; j < category.getTilesCount(); j++) {
-                Tile tile = category.getTile(j);
-                if (tileDenylist.contains(tile.getIntent().getComponent())) {
-                    category.removeTile(j--);
-                }
+    }
+
+    /**
+     * Update category from deny list. The loaded categories are replaced by filtered copies, as
+     * they may be read concurrently, and the deny list is applied to the next loads as well.
+     * @param tileDenylist
+     */
+    public void updateCategoryFromDenylist(Set<ComponentName> tileDenylist) {
+        synchronized (mLoadLock) {
+            mTileDenylist.clear();
+            mTileDenylist.addAll(tileDenylist);
+            final LoadedCategories loaded = mLoadedCategories;
+            if (loaded == null) {
+                Log.w(TAG, "Category is null, skipping denylist update");
+                return;
             }
+            mLoadedCategories = filterDenylistedTilesLocked(
+                    loaded.mCategories, loaded.mCategoryByKeyMap);
         }
     }
 
     /** Return the current tile map */
-    public synchronized Map<ComponentName, Tile> getTileByComponentMap() {
+    public Map<ComponentName, Tile> getTileByComponentMap() {
         final Map<ComponentName, Tile> result = new ArrayMap<>();
-        if (mCategories == null) {
+        final LoadedCategories loaded = mLoadedCategories;
+        if (loaded == null) {
             Log.w(TAG, "Category is null, no tiles");
             return result;
         }
-        mCategories.forEach(category -> {
+        loaded.mCategories.forEach(category -> {
             for (int i = 0; i < category.getTilesCount(); i++) {
                 final Tile tile = category.getTile(i);
                 result.put(tile.getIntent().getComponent(), tile);
@@ -140,53 +205,123 @@ public class CategoryManager {
         }
     }
 
-    private synchronized void tryInitCategories(Context context) {
-        // Keep cached tiles by default. The cache is only invalidated when InterestingConfigChange
-        // happens.
-        tryInitCategories(context, false /* forceClearCache */);
+    private LoadedCategories tryInitCategories(Context context) {
+        final LoadedCategories loaded = mLoadedCategories;
+        if (loaded != null) {
+            return loaded;
+        }
+        synchronized (mLoadLock) {
+            if (mLoadedCategories == null) {
+                // Keep cached tiles by default. The cache is only invalidated when
+                // InterestingConfigChange happens.
+                loadCategories(context, false /* forceClearCache */);
+            }
+            return mLoadedCategories;
+        }
     }
 
-    private synchronized void tryInitCategories(Context context, boolean forceClearCache) {
+    // Must be called with mLoadLock held.
+    private void loadCategories(Context context, boolean forceClearCache) {
         if (!WizardManagerHelper.isUserSetupComplete(context)) {
             // Don't init while setup wizard is still running.
             return;
         }
-        if (mCategories == null) {
-            final boolean firstLoading = mCategoryByKeyMap.isEmpty();
-            if (forceClearCache) {
-                mTileByComponentCache.clear();
-            }
-            mCategoryByKeyMap.clear();
-            mCategories = TileUtils.getCategories(context, mTileByComponentCache);
-            for (DashboardCategory category : mCategories) {
-                mCategoryByKeyMap.put(category.key, category);
+        final boolean firstLoading = mLoadedCategories == null;
+        if (forceClearCache) {
+            mTileByComponentCache.clear();
+        }
+        final List<DashboardCategory> categories =
+                TileUtils.getCategories(context, mTileByComponentCache);
+        final Map<String, DashboardCategory> categoryByKeyMap = new ArrayMap<>();
+        for (DashboardCategory category : categories) {
+            categoryByKeyMap.put(category.key, category);
+        }
+        backwardCompatCleanupForCategory(mTileByComponentCache, categoryByKeyMap);
+        mergeSecurityPrivacyKeys(context, mTileByComponentCache, categoryByKeyMap);
+        sortCategories(context, categoryByKeyMap);
+        filterDuplicateTiles(categoryByKeyMap);
+        mLoadedCategories = filterDenylistedTilesLocked(categories, categoryByKeyMap);
+        if (firstLoading) {
+            logTiles(context);
+
+            final DashboardCategory homepageCategory = categoryByKeyMap.get(
+                    CategoryKey.CATEGORY_HOMEPAGE);
+            if (homepageCategory == null) {
+                return;
             }
-            backwardCompatCleanupForCategory(mTileByComponentCache, mCategoryByKeyMap);
-            mergeSecurityPrivacyKeys(context, mTileByComponentCache, mCategoryByKeyMap);
-            sortCategories(context, mCategoryByKeyMap);
-            filterDuplicateTiles(mCategoryByKeyMap);
-            if (firstLoading) {
-                logTiles(context);
-
-                final DashboardCategory homepageCategory = mCategoryByKeyMap.get(
-                        CategoryKey.CATEGORY_HOMEPAGE);
-                if (homepageCategory == null) {
-                    return;
+            for (Tile tile : homepageCategory.getTiles()) {
+                final String key = tile.getKey(context);
+                if (TextUtils.isEmpty(key)) {
+                    Log.w(TAG, "Key hint missing for homepage tile: " + tile.getTitle(context));
+                    continue;
                 }
-                for (Tile tile : homepageCategory.getTiles()) {
-                    final String key = tile.getKey(context);
-                    if (TextUtils.isEmpty(key)) {
-                        Log.w(TAG, "Key hint missing for homepage tile: " + tile.getTitle(context));
-                        continue;
-                    }
-                    HighlightableMenu.addMenuKey(key);
+                HighlightableMenu.addMenuKey(key);
+            }
+        }
+    }
+
+    // Returns copies of the categories without the tiles of mTileDenylist, leaving the given
+    // categories untouched. Must be called with mLoadLock held.
+    private LoadedCategories filterDenylistedTilesLocked(List<DashboardCategory> categories,
+            Map<String, DashboardCategory> categoryByKeyMap) {
+        final Map<DashboardCategory, DashboardCategory> copies = new IdentityHashMap<>();
+        final Map<String, DashboardCategory> filteredCategoryByKeyMap = new ArrayMap<>();
+        for (Entry<String, DashboardCategory> entry : categoryByKeyMap.entrySet()) {
+            filteredCategoryByKeyMap.put(entry.getKey(),
+                    copies.computeIfAbsent(entry.getValue(), this::copyWithoutDenylistedTiles));
+        }
+        final List<DashboardCategory> filteredCategories = new ArrayList<>(categories.size());
+        for (DashboardCategory category : categories) {
+            filteredCategories.add(
+                    copies.computeIfAbsent(category, this::copyWithoutDenylistedTiles));
+        }
+        return new LoadedCategories(filteredCategories, filteredCategoryByKeyMap);
+    }
+
+    private DashboardCategory copyWithoutDenylistedTiles(DashboardCategory category) {
+        final DashboardCategory copy = new DashboardCategory(category.key);
+        for (int i = 0; i < category.getTilesCount(); i++) {
+            final Tile tile = category.getTile(i);
+            if (!mTileDenylist.contains(tile.getIntent().getComponent())) {
+                copy.addTile(tile);
+            }
+        }
+        return copy;
+    }
+
+    private boolean hasCachedTiles(String packageName) {
+        for (Pair<String, String> key : mTileByComponentCache.keySet()) {
+            if (TextUtils.equals(key.first, packageName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void evictCachedTiles(String packageName) {
+        mTileByComponentCache.keySet().removeIf(key -> TextUtils.equals(key.first, packageName));
+    }
+
+    // Whether the package declares any component resolved by TileUtils, in any profile.
+    private static boolean declaresTiles(Context context, String packageName) {
+        final PackageManager pm = context.getPackageManager();
+        final UserManager userManager = context.getSystemService(UserManager.class);
+        for (UserHandle user : userManager.getUserProfiles()) {
+            for (String action : TILE_ACTIONS) {
+                final Intent intent = new Intent(action).setPackage(packageName);
+                if (!pm.queryIntentActivitiesAsUser(intent, 0 /* flags */,
+                        user.getIdentifier()).isEmpty()
+                        || !pm.queryIntentContentProvidersAsUser(intent, 0 /* flags */,
+                        user.getIdentifier()).isEmpty()) {
+                    return true;
                 }
             }
         }
+        return false;
     }
 
     @VisibleForTesting
-    synchronized void backwardCompatCleanupForCategory(
+    void backwardCompatCleanupForCategory(
             Map<Pair<String, String>, Tile> tileByComponentCache,
             Map<String, DashboardCategory> categoryByKeyMap) {
         // A package can use a) CategoryKey, b) old category keys, c) both.
@@ -242,7 +377,7 @@ public class CategoryManager {
      * CategoryKey#CATEGORY_MORE_SECURITY_PRIVACY_SETTINGS}
      */
     @VisibleForTesting
-    synchronized void mergeSecurityPrivacyKeys(
+    void mergeSecurityPrivacyKeys(
             Context context,
             Map<Pair<String, String>, Tile> tileByComponentCache,
             Map<String, DashboardCategory> categoryByKeyMap) {
@@ -274,7 +409,7 @@ public class CategoryManager {
      * scan.
      */
     @VisibleForTesting
-    synchronized void sortCategories(Context context,
+    void sortCategories(Context context,
             Map<String, DashboardCategory> categoryByKeyMap) {
         for (Entry<String, DashboardCategory> categoryEntry : categoryByKeyMap.entrySet()) {
             categoryEntry.getValue().sortTiles(context.getPackageName());
@@ -286,7 +421,7 @@ public class CategoryManager {
      * same intent for ActivityTile, and also the ones having the same description for ProviderTile.
      */
     @VisibleForTesting
-    synchronized void filterDuplicateTiles(Map<String, DashboardCategory> categoryByKeyMap) {
+    void filterDuplicateTiles(Map<String, DashboardCategory> categoryByKeyMap) {
         for (Entry<String, DashboardCategory> categoryEntry : categoryByKeyMap.entrySet()) {
             final DashboardCategory category = categoryEntry.getValue();
             final int count = category.getTilesCount();
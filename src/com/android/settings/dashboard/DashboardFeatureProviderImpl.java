@@ -96,12 +96,15 @@ public class DashboardFeatureProviderImpl implements DashboardFeatureProvider {
     private final MetricsFeatureProvider mMetricsFeatureProvider;
     private final CategoryManager mCategoryManager;
     private final PackageManager mPackageManager;
+    @VisibleForTesting
+    DynamicTileDataLoader mTileDataLoader;
 
     public DashboardFeatureProviderImpl(Context context) {
         mContext = context.getApplicationContext();
         mCategoryManager = CategoryManager.get(context);
         mMetricsFeatureProvider = FeatureFactory.getFeatureFactory().getMetricsFeatureProvider();
         mPackageManager = context.getPackageManager();
+        mTileDataLoader = DynamicTileDataLoader.getInstance();
     }
 
     @Override
@@ -283,8 +286,7 @@ public class DashboardFeatureProviderImpl implements DashboardFeatureProvider {
     }
 
     private void refreshTitle(Uri uri, Preference preference, DynamicDataObserver observer) {
-        ThreadUtils.postOnBackgroundThread(() -> {
-            final Map<String, IContentProvider> providerMap = new ArrayMap<>();
+        mTileDataLoader.load(uri, providerMap -> {
             final String titleFromUri = TileUtils.getTextFromUri(
                     mContext, uri, providerMap, META_DATA_PREFERENCE_TITLE);
             if (!TextUtils.equals(titleFromUri, preference.getTitle())) {
@@ -313,8 +315,7 @@ public class DashboardFeatureProviderImpl implements DashboardFeatureProvider {
     }
 
     private void refreshSummary(Uri uri, Preference preference, DynamicDataObserver observer) {
-        ThreadUtils.postOnBackgroundThread(() -> {
-            final Map<String, IContentProvider> providerMap = new ArrayMap<>();
+        mTileDataLoader.load(uri, providerMap -> {
             final String summaryFromUri = TileUtils.getTextFromUri(
                     mContext, uri, providerMap, META_DATA_PREFERENCE_SUMMARY);
             if (!TextUtils.equals(summaryFromUri, preference.getSummary())) {
@@ -365,8 +366,7 @@ public class DashboardFeatureProviderImpl implements DashboardFeatureProvider {
     }
 
     private void refreshSwitch(Uri uri, Preference preference, DynamicDataObserver observer) {
-        ThreadUtils.postOnBackgroundThread(() -> {
-            final Map<String, IContentProvider> providerMap = new ArrayMap<>();
+        mTileDataLoader.load(uri, providerMap -> {
             final boolean checked = TileUtils.getBooleanFromUri(mContext, uri, providerMap,
                     EXTRA_SWITCH_CHECKED_STATE);
             observer.post(() -> {
@@ -400,7 +400,9 @@ public class DashboardFeatureProviderImpl implements DashboardFeatureProvider {
             // Reserve the icon space to avoid preference padding change.
             preference.setIconSpaceReserved(true);
 
-            ThreadUtils.postOnBackgroundThread(() -> {
+            final Uri uri = TileUtils.getCompleteUri(tile, META_DATA_PREFERENCE_ICON_URI,
+                    METHOD_GET_PROVIDER_ICON);
+            mTileDataLoader.load(uri, providerMap -> {
                 final Intent intent = tile.getIntent();
                 String packageName = null;
                 if (!TextUtils.isEmpty(intent.getPackage())) {
@@ -408,9 +410,6 @@ public class DashboardFeatureProviderImpl implements DashboardFeatureProvider {
                 } else if (intent.getComponent() != null) {
                     packageName = intent.getComponent().getPackageName();
                 }
-                final Map<String, IContentProvider> providerMap = new ArrayMap<>();
-                final Uri uri = TileUtils.getCompleteUri(tile, META_DATA_PREFERENCE_ICON_URI,
-                        METHOD_GET_PROVIDER_ICON);
                 final Pair<String, Integer> iconInfo = TileUtils.getIconFromUri(
                         mContext, packageName, uri, providerMap);
                 if (iconInfo == null) {
@@ -21,6 +21,8 @@ import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.preference.PreferenceManager.OnActivityResultListener;
 import android.text.TextUtils;
 import android.util.ArrayMap;
@@ -64,8 +66,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Base fragment for dashboard style UI containing a list of static and dynamic setting items.
@@ -83,6 +85,12 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
             new ArrayMap<>();
     private final List<DynamicDataObserver> mRegisteredObservers = new ArrayList<>();
     private final List<AbstractPreferenceController> mControllers = new ArrayList<>();
+    private final Handler mTileUpdateHandler = new Handler(Looper.getMainLooper());
+    // Preferences of the dashboard tiles, with the tile data they were bound to.
+    private final ArrayMap<String, BoundTile> mBoundTiles = new ArrayMap<>();
+    // Index of the preferences found by key, see findIndexedPreference().
+    private final ArrayMap<String, Preference> mPreferenceIndex = new ArrayMap<>();
+    private PreferenceScreen mIndexedScreen;
     @VisibleForTesting
     UiBlockerController mBlockerController;
     private DashboardFeatureProvider mDashboardFeatureProvider;
@@ -193,10 +201,10 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
 
         if (categories == null) {
             // force refreshing
-            refreshDashboardTiles(getLogTag());
+            refreshDashboardTiles(getLogTag(), /* forceRebind= */ true);
         } else if (categories.contains(categoryKey)) {
             Log.i(TAG, "refresh tiles for " + categoryKey);
-            refreshDashboardTiles(getLogTag());
+            refreshDashboardTiles(getLogTag(), /* forceRebind= */ false);
         }
     }
 
@@ -205,7 +213,7 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
         checkUiBlocker(mControllers);
         refreshAllPreferences(getLogTag());
         mControllers.stream()
-                .map(controller -> (Preference) findPreference(controller.getPreferenceKey()))
+                .map(controller -> findIndexedPreference(controller.getPreferenceKey()))
                 .filter(Objects::nonNull)
                 .forEach(preference -> {
                     // Give all controllers a chance to handle click.
@@ -272,6 +280,13 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
         }
     }
 
+    @Override
+    public void onDestroy() {
+        // Drop the pending tile updates, the preferences they update are gone with the fragment.
+        mTileUpdateHandler.removeCallbacksAndMessages(null);
+        super.onDestroy();
+    }
+
     @Override
     protected abstract int getPreferenceScreenResId();
 
@@ -406,7 +421,7 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
                     continue;
                 }
 
-                final Preference preference = screen.findPreference(key);
+                final Preference preference = findIndexedPreference(key);
                 if (preference == null) {
                     Log.d(TAG, String.format("Cannot find preference with key %s in Controller %s",
                             key, controller.getClass().getSimpleName()));
@@ -432,15 +447,22 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
         // Add resource based tiles.
         displayResourceTiles();
 
-        refreshDashboardTiles(tag);
+        refreshDashboardTiles(tag, /* forceRebind= */ true);
+
+        onAllPreferencesAdded(tag);
+
+        updatePreferenceVisibility(mPreferenceControllers);
+    }
 
+    /**
+     * Called once all preferences are added to the screen, reports the activity fully drawn.
+     */
+    protected void onAllPreferencesAdded(String tag) {
         final Activity activity = getActivity();
         if (activity != null) {
             Log.d(tag, "All preferences added, reporting fully drawn");
             activity.reportFullyDrawn();
         }
-
-        updatePreferenceVisibility(mPreferenceControllers);
     }
 
     /**
@@ -453,8 +475,8 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
         }
         for (List<AbstractPreferenceController> controllerList : mPreferenceControllers.values()) {
             for (AbstractPreferenceController controller : controllerList) {
-                final String key = controller.getPreferenceKey();
-                final Preference preference = findPreference(key);
+                final Preference preference =
+                        findIndexedPreference(controller.getPreferenceKey());
                 if (preference == null) {
                     continue;
                 }
@@ -479,8 +501,8 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
         for (List<AbstractPreferenceController> controllerList :
                 preferenceControllers.values()) {
             for (AbstractPreferenceController controller : controllerList) {
-                final String key = controller.getPreferenceKey();
-                final Preference preference = findPreference(key);
+                final Preference preference =
+                        findIndexedPreference(controller.getPreferenceKey());
                 if (preference == null) {
                     continue;
                 }
@@ -495,10 +517,56 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
         }
     }
 
+    /**
+     * Returns the preference with {@code key} in the current screen.
+     * <p>
+     * Lookups are cached, so that refreshing every controller does not walk the whole hierarchy
+     * once per controller. A cached preference is only returned while it is still attached to the
+     * current screen with the same key, otherwise the hierarchy is searched again.
+     */
+    @Nullable
+    @VisibleForTesting
+    Preference findIndexedPreference(@Nullable String key) {
+        final PreferenceScreen screen = getPreferenceScreen();
+        if (screen == null || TextUtils.isEmpty(key)) {
+            return null;
+        }
+        if (screen != mIndexedScreen) {
+            mPreferenceIndex.clear();
+            mIndexedScreen = screen;
+        }
+        Preference preference = mPreferenceIndex.get(key);
+        if (preference != null && key.equals(preference.getKey())
+                && isAttachedTo(preference, screen)) {
+            return preference;
+        }
+        preference = screen.findPreference(key);
+        if (preference != null) {
+            mPreferenceIndex.put(key, preference);
+        } else {
+            mPreferenceIndex.remove(key);
+        }
+        return preference;
+    }
+
+    private static boolean isAttachedTo(Preference preference, PreferenceScreen screen) {
+        for (PreferenceGroup parent = preference.getParent(); parent != null;
+                parent = parent.getParent()) {
+            if (parent == screen) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Refresh preference items backed by DashboardCategory.
+     * <p>
+     * The screen is reconciled with the tiles: preferences are only added for new tiles and
+     * removed for tiles that are gone. Existing preferences are rebound only when their tile
+     * changed since they were bound, or when {@code forceRebind} is set.
      */
-    private void refreshDashboardTiles(final String tag) {
+    private void refreshDashboardTiles(final String tag, boolean forceRebind) {
         final PreferenceScreen screen = getPreferenceScreen();
 
         final DashboardCategory category =
@@ -533,11 +601,22 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
             }
             final List<DynamicDataObserver> observers;
             if (mDashboardTilePrefKeys.containsKey(key)) {
+                final BoundTile boundTile = mBoundTiles.get(key);
+                if (!forceRebind && boundTile != null && boundTile.isBoundTo(tile)) {
+                    // Unchanged, the registered observers keep the preference up to date.
+                    remove.remove(key);
+                    continue;
+                }
                 // Have the key already, will rebind.
-                final Preference preference = screen.findPreference(key);
+                final Preference preference =
+                        boundTile != null && isAttachedTo(boundTile.mPreference, screen)
+                                ? boundTile.mPreference : screen.findPreference(key);
                 observers = mDashboardFeatureProvider.bindPreferenceToTileAndGetObservers(
                         getActivity(), this, forceRoundedIcons, preference, tile, key,
                         mPlaceholderPreferenceController.getOrder());
+                if (preference != null) {
+                    mBoundTiles.put(key, new BoundTile(preference, tile));
+                }
             } else {
                 // Don't have this key, add it.
                 final Preference pref = createPreference(tile);
@@ -568,6 +647,7 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
                 }
                 registerDynamicDataObservers(observers);
                 mDashboardTilePrefKeys.put(key, observers);
+                mBoundTiles.put(key, new BoundTile(pref, tile));
             }
             if (observers != null) {
                 pendingObservers.addAll(observers);
@@ -579,6 +659,7 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
         for (Map.Entry<String, List<DynamicDataObserver>> entry : remove.entrySet()) {
             final String key = entry.getKey();
             mDashboardTilePrefKeys.remove(key);
+            mBoundTiles.remove(key);
             if (Flags.dynamicInjectionCategory()) {
                 screen.removePreferenceRecursively(key);
             } else {
@@ -590,18 +671,75 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
             unregisterDynamicDataObservers(entry.getValue());
         }
 
-        // Wait for pending observers to update UI.
+        // Apply the first data of pending observers in a single UI update.
         if (!pendingObservers.isEmpty()) {
-            final CountDownLatch mainLatch = new CountDownLatch(1);
-            new Thread(() -> {
-                pendingObservers.forEach(observer ->
-                        awaitObserverLatch(observer.getCountDownLatch()));
-                mainLatch.countDown();
-            }).start();
-            Log.d(tag, "Start waiting observers");
-            awaitObserverLatch(mainLatch);
-            Log.d(tag, "Stop waiting observers");
-            pendingObservers.forEach(DynamicDataObserver::updateUi);
+            updateUiWhenObserversLoaded(tag, pendingObservers);
+        }
+    }
+
+    /**
+     * Calls {@link DynamicDataObserver#updateUi()} for all {@code observers} at once, when all of
+     * them are loaded or after {@link #TIMEOUT_MILLIS}, whichever comes first. The main thread is
+     * never blocked: observers loaded after the timeout update their preference on their own.
+     */
+    private void updateUiWhenObserversLoaded(String tag, List<DynamicDataObserver> observers) {
+        final AtomicInteger remaining = new AtomicInteger(observers.size());
+        final AtomicBoolean updated = new AtomicBoolean();
+        final Runnable updateUi = new Runnable() {
+            @Override
+            public void run() {
+                if (updated.getAndSet(true)) {
+                    return;
+                }
+                mTileUpdateHandler.removeCallbacks(this);
+                Log.d(tag, (observers.size() - remaining.get()) + "/" + observers.size()
+                        + " observers loaded, updating UI");
+                observers.forEach(DynamicDataObserver::updateUi);
+            }
+        };
+        mTileUpdateHandler.postDelayed(updateUi, TIMEOUT_MILLIS);
+        observers.forEach(observer -> observer.setOnLoadedListener(() -> {
+            if (remaining.decrementAndGet() == 0) {
+                mTileUpdateHandler.post(updateUi);
+            }
+        }));
+        if (remaining.get() == 0) {
+            // Everything was loaded synchronously, no need to wait for the next frame.
+            updateUi.run();
+        }
+    }
+
+    /** A dashboard tile preference and a snapshot of the tile it was bound to. */
+    private static final class BoundTile {
+        final Preference mPreference;
+        final Tile mTile;
+        @Nullable
+        final Bundle mMetaData;
+
+        BoundTile(Preference preference, Tile tile) {
+            mPreference = preference;
+            mTile = tile;
+            mMetaData = tile.getMetaData() == null ? null : new Bundle(tile.getMetaData());
+        }
+
+        /** Whether binding {@code tile} would not change the preference. */
+        boolean isBoundTo(Tile tile) {
+            return mTile == tile && isSameMetaData(mMetaData, tile.getMetaData());
+        }
+
+        private static boolean isSameMetaData(@Nullable Bundle a, @Nullable Bundle b) {
+            if (a == null || b == null) {
+                return a == b;
+            }
+            if (!a.keySet().equals(b.keySet())) {
+                return false;
+            }
+            for (String key : a.keySet()) {
+                if (!Objects.equals(a.get(key), b.get(key))) {
+                    return false;
+                }
+            }
+            return true;
         }
     }
 
@@ -665,12 +803,4 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
             resolver.unregisterContentObserver(observer);
         });
     }
-
-    private void awaitObserverLatch(CountDownLatch latch) {
-        try {
-            latch.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException e) {
-            // Do nothing
-        }
-    }
 }
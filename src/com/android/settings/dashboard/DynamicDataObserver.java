@@ -32,6 +32,7 @@ public abstract class DynamicDataObserver extends ContentObserver {
     private Runnable mUpdateRunnable;
     private CountDownLatch mCountDownLatch;
     private boolean mUpdateDelegated;
+    private Runnable mOnLoadedListener;
 
     protected DynamicDataObserver() {
         super(new Handler(Looper.getMainLooper()));
@@ -59,6 +60,18 @@ public abstract class DynamicDataObserver extends ContentObserver {
         return mCountDownLatch;
     }
 
+    /**
+     * Sets the callback to run once the first data is loaded and ready to be applied by
+     * {@link #updateUi()}. Runs it right away if the data is already loaded.
+     */
+    synchronized void setOnLoadedListener(Runnable listener) {
+        if (mCountDownLatch.getCount() == 0) {
+            listener.run();
+        } else {
+            mOnLoadedListener = listener;
+        }
+    }
+
     @Override
     public void onChange(boolean selfChange) {
         onDataChanged();
@@ -70,6 +83,10 @@ public abstract class DynamicDataObserver extends ContentObserver {
         } else {
             mUpdateRunnable = runnable;
             mCountDownLatch.countDown();
+            if (mOnLoadedListener != null) {
+                mOnLoadedListener.run();
+                mOnLoadedListener = null;
+            }
         }
     }
 }
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.dashboard;
+
+import android.app.settings.SettingsEnums;
+import android.content.IContentProvider;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.ArrayMap;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.core.SettingsExecutor;
+import com.android.settings.overlay.FeatureFactory;
+import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Loads the dynamic metadata (title, summary, switch state, icon) of injected tiles in the
+ * prefetch lane of {@link SettingsExecutor}.
+ * <p>
+ * Queries are coalesced per provider authority: all the queries pending for one authority run
+ * back to back in a single task sharing the acquired {@link IContentProvider}, instead of one
+ * background task and one provider acquisition per uri. The latency of every tile query is
+ * reported through {@link MetricsFeatureProvider} keyed by the tile uri, and slow queries are
+ * also logged.
+ */
+public class DynamicTileDataLoader {
+
+    private static final String TAG = "DynamicTileDataLoader";
+
+    private static final long SLOW_QUERY_THRESHOLD_MS = 100;
+
+    private static DynamicTileDataLoader sInstance;
+
+    private final Executor mExecutor;
+    private final MetricsFeatureProvider mMetricsFeatureProvider;
+    // Pending queries per authority. An authority is present while a task draining it is either
+    // scheduled or running, so new queries join that task instead of scheduling another one.
+    private final Map<String, List<Request>> mPendingRequests = new ArrayMap<>();
+    private final Map<String, LatencyCounter> mLatencyCounters = new ArrayMap<>();
+
+    /**
+     * Queries one tile uri.
+     */
+    public interface TileQuery {
+        /**
+         * @param providerMap the providers acquired for the authority being queried, shared by
+         *                    every query of the same task
+         */
+        void query(@NonNull Map<String, IContentProvider> providerMap);
+    }
+
+    /** Returns the process-wide loader. */
+    public static synchronized DynamicTileDataLoader getInstance() {
+        if (sInstance == null) {
+            sInstance = new DynamicTileDataLoader(SettingsExecutor.getInstance().getExecutor(
+                    SettingsExecutor.LANE_PREFETCH, "DynamicTileData"),
+                    FeatureFactory.getFeatureFactory().getMetricsFeatureProvider());
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    DynamicTileDataLoader(Executor executor, MetricsFeatureProvider metricsFeatureProvider) {
+        mExecutor = executor;
+        mMetricsFeatureProvider = metricsFeatureProvider;
+    }
+
+    /**
+     * Runs {@code query} in the background, together with the other queries pending for the
+     * authority of {@code uri}.
+     */
+    public void load(@NonNull Uri uri, @NonNull TileQuery query) {
+        final String authority = String.valueOf(uri.getAuthority());
+        synchronized (mPendingRequests) {
+            final List<Request> pending = mPendingRequests.get(authority);
+            if (pending != null) {
+                pending.add(new Request(uri, query));
+                return;
+            }
+            final List<Request> requests = new ArrayList<>();
+            requests.add(new Request(uri, query));
+            mPendingRequests.put(authority, requests);
+        }
+        mExecutor.execute(() -> drain(authority));
+    }
+
+    /** Returns the latency counter of {@code uri}, or {@code null} if it was never queried. */
+    @VisibleForTesting
+    @Nullable
+    LatencyCounter getLatencyCounter(@NonNull Uri uri) {
+        synchronized (mLatencyCounters) {
+            return mLatencyCounters.get(uri.toString());
+        }
+    }
+
+    private void drain(String authority) {
+        final Map<String, IContentProvider> providerMap = new ArrayMap<>();
+        while (true) {
+            final List<Request> requests;
+            synchronized (mPendingRequests) {
+                requests = mPendingRequests.get(authority);
+                if (requests.isEmpty()) {
+                    mPendingRequests.remove(authority);
+                    return;
+                }
+                mPendingRequests.put(authority, new ArrayList<>());
+            }
+            for (Request request : requests) {
+                final long startTime = SystemClock.elapsedRealtime();
+                try {
+                    request.mQuery.query(providerMap);
+                } catch (RuntimeException e) {
+                    Log.w(TAG, "Failed to load tile data from " + request.mUri, e);
+                }
+                onQueryFinished(request.mUri, SystemClock.elapsedRealtime() - startTime);
+            }
+        }
+    }
+
+    private void onQueryFinished(Uri uri, long latency) {
+        final String key = uri.toString();
+        final LatencyCounter counter;
+        synchronized (mLatencyCounters) {
+            LatencyCounter existing = mLatencyCounters.get(key);
+            if (existing == null) {
+                existing = new LatencyCounter();
+                mLatencyCounters.put(key, existing);
+            }
+            existing.add(latency);
+            counter = existing;
+        }
+        mMetricsFeatureProvider.action(SettingsEnums.PAGE_UNKNOWN,
+                SettingsEnums.ACTION_SETTINGS_TILE_DATA_LOAD, SettingsEnums.PAGE_UNKNOWN, key,
+                (int) latency);
+        if (latency >= SLOW_QUERY_THRESHOLD_MS) {
+            Log.w(TAG, "Slow tile query " + uri + ": " + latency + " ms, " + counter);
+        }
+    }
+
+    /** Latency statistics of the queries of one tile uri. */
+    @VisibleForTesting
+    static final class LatencyCounter {
+        int mCount;
+        long mTotalMillis;
+        long mMaxMillis;
+
+        void add(long latency) {
+            mCount++;
+            mTotalMillis += latency;
+            mMaxMillis = Math.max(mMaxMillis, latency);
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + mCount + ", avg=" + (mTotalMillis / mCount) + " ms, max="
+                    + mMaxMillis + " ms";
+        }
+    }
+
+    private static final class Request {
+        final Uri mUri;
+        final TileQuery mQuery;
+
+        Request(Uri uri, TileQuery query) {
+            mUri = uri;
+            mQuery = query;
+        }
+    }
+}
@@ -111,6 +111,9 @@ public class StorageCategoryFragment extends DashboardFragment
             mPreferenceController.setVolume(null);
             return;
         }
+
+        mStorageCacheHelper = new StorageCacheHelper(getContext(), mUserId,
+                mSelectedStorageEntry.getFsUuid());
         if (mStorageCacheHelper.hasCachedSizeInfo() && mSelectedStorageEntry.isPrivate()) {
             StorageCacheHelper.StorageCache cachedData = mStorageCacheHelper.retrieveCachedSize();
             mPreferenceController.setVolume(mSelectedStorageEntry.getVolumeInfo());
@@ -129,7 +132,8 @@ public class StorageCategoryFragment extends DashboardFragment
                 mPreferenceController.setVolume(null);
             }
 
-            // Stats data is only available on private volumes.
+            // Stats data is only available on private volumes. The cached sizes shown above are
+            // only a first paint, they are always replaced by fresh ones.
             getLoaderManager().restartLoader(STORAGE_JOB_ID, Bundle.EMPTY, this);
             getLoaderManager()
                  .restartLoader(VOLUME_SIZE_JOB_ID, Bundle.EMPTY, new VolumeSizeCallbacks());
@@ -228,6 +232,20 @@ public class StorageCategoryFragment extends DashboardFragment
         setNonCurrentUsersVisible(true);
     }
 
+    // Shows the sizes of the current user while the other users are still loading.
+    private void onReceivedPartialSizes(SparseArray<StorageAsyncLoader.StorageResult> result) {
+        if (mStorageInfo == null || mAppsResult != null || result.get(mUserId) == null) {
+            return;
+        }
+
+        setLoading(false /* loading */, false /* animate */);
+
+        mPreferenceController.setVolume(mSelectedStorageEntry.getVolumeInfo());
+        mPreferenceController.setUsedSize(mStorageInfo.totalBytes - mStorageInfo.freeBytes);
+        mPreferenceController.setTotalSize(mStorageInfo.totalBytes);
+        mPreferenceController.onPartialLoad(result, mUserId);
+    }
+
     @Override
     public int getMetricsCategory() {
         if (mProfileType == ProfileSelectFragment.ProfileType.WORK) {
@@ -281,10 +299,12 @@ public class StorageCategoryFragment extends DashboardFragment
     public Loader<SparseArray<StorageAsyncLoader.StorageResult>> onCreateLoader(int id,
             Bundle args) {
         final Context context = getContext();
-        return new StorageAsyncLoader(context, mUserManager,
+        final StorageAsyncLoader loader = new StorageAsyncLoader(context, mUserManager,
                 mSelectedStorageEntry.getFsUuid(),
                 new StorageStatsSource(context),
                 context.getPackageManager());
+        loader.setPartialResultListener(this::onReceivedPartialSizes);
+        return loader;
     }
 
     @Override
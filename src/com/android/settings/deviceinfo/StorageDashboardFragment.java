@@ -243,6 +243,9 @@ public class StorageDashboardFragment extends DashboardFragment
             return;
         }
 
+        mStorageCacheHelper = new StorageCacheHelper(getContext(), mUserId,
+                mSelectedStorageEntry.getFsUuid());
+
         if (mStorageCacheHelper.hasCachedSizeInfo() && mSelectedStorageEntry.isPrivate()) {
             StorageCacheHelper.StorageCache cachedData = mStorageCacheHelper.retrieveCachedSize();
             mPreferenceController.setVolume(mSelectedStorageEntry.getVolumeInfo());
@@ -263,7 +266,8 @@ public class StorageDashboardFragment extends DashboardFragment
                 // onReceivedSizes will setVolume with the volume of selected storage.
                 mPreferenceController.setVolume(null);
             }
-            // Stats data is only available on private volumes.
+            // Stats data is only available on private volumes. The cached sizes shown above are
+            // only a first paint, they are always replaced by fresh ones.
             getLoaderManager().restartLoader(STORAGE_JOB_ID, Bundle.EMPTY, this);
             getLoaderManager()
                  .restartLoader(VOLUME_SIZE_JOB_ID, Bundle.EMPTY, new VolumeSizeCallbacks());
@@ -402,6 +406,20 @@ public class StorageDashboardFragment extends DashboardFragment
         setNonCurrentUsersVisible(true);
     }
 
+    // Shows the sizes of the current user while the other users are still loading.
+    private void onReceivedPartialSizes(SparseArray<StorageAsyncLoader.StorageResult> result) {
+        if (mStorageInfo == null || mAppsResult != null || result.get(mUserId) == null) {
+            return;
+        }
+
+        setLoading(false /* loading */, false /* animate */);
+
+        mPreferenceController.setVolume(mSelectedStorageEntry.getVolumeInfo());
+        mPreferenceController.setUsedSize(mStorageInfo.totalBytes - mStorageInfo.freeBytes);
+        mPreferenceController.setTotalSize(mStorageInfo.totalBytes);
+        mPreferenceController.onPartialLoad(result, mUserId);
+    }
+
     @Override
     public int getMetricsCategory() {
         return SettingsEnums.SETTINGS_STORAGE_CATEGORY;
@@ -478,10 +496,12 @@ public class StorageDashboardFragment extends DashboardFragment
     public Loader<SparseArray<StorageAsyncLoader.StorageResult>> onCreateLoader(int id,
             Bundle args) {
         final Context context = getContext();
-        return new StorageAsyncLoader(context, mUserManager,
+        final StorageAsyncLoader loader = new StorageAsyncLoader(context, mUserManager,
                 mSelectedStorageEntry.getFsUuid(),
                 new StorageStatsSource(context),
                 context.getPackageManager());
+        loader.setPartialResultListener(this::onReceivedPartialSizes);
+        return loader;
     }
 
     @Override
@@ -42,5 +42,12 @@ public class FirmwareVersionSettings extends DashboardFragment {
     }
 
     public static final BaseSearchIndexProvider SEARCH_INDEX_DATA_PROVIDER =
-            new BaseSearchIndexProvider(R.xml.firmware_version);
+            new BaseSearchIndexProvider(R.xml.firmware_version) {
+
+                @Override
+                public int getNonIndexableKeysDependencies() {
+                    // Availability only depends on build properties and device capabilities.
+                    return DEPENDENCY_NONE;
+                }
+            };
 }
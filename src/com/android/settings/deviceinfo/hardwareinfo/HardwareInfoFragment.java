@@ -51,5 +51,11 @@ public class HardwareInfoFragment extends DashboardFragment {
                 protected boolean isPageSearchEnabled(Context context) {
                     return context.getResources().getBoolean(R.bool.config_show_device_model);
                 }
+
+                @Override
+                public int getNonIndexableKeysDependencies() {
+                    // Availability only depends on resources and build properties.
+                    return DEPENDENCY_NONE;
+                }
             };
 }
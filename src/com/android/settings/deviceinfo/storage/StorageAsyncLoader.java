@@ -30,6 +30,7 @@ import android.content.pm.UserInfo;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.CancellationSignal;
 import android.os.Environment;
 import android.os.UserHandle;
 import android.os.UserManager;
@@ -37,16 +38,30 @@ import android.os.storage.StorageManager;
 import android.provider.MediaStore;
 import android.provider.MediaStore.Files.FileColumns;
 import android.provider.MediaStore.MediaColumns;
+import android.util.ArrayMap;
 import android.util.ArraySet;
 import android.util.Log;
 import android.util.SparseArray;
 
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.core.os.OperationCanceledException;
+
+import com.android.internal.util.ArrayUtils;
+import com.android.settings.core.SettingsExecutor;
 import com.android.settingslib.applications.StorageStatsSource;
 import com.android.settingslib.utils.AsyncLoaderCompat;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 /**
  * StorageAsyncLoader is a Loader which loads categorized app information and external stats for all
@@ -57,27 +72,72 @@ public class StorageAsyncLoader
     private UserManager mUserManager;
     private static final String TAG = "StorageAsyncLoader";
 
+    // Whether MediaStore groups the files query, cleared the first time it doesn't.
+    @VisibleForTesting
+    static volatile boolean sFilesAggregationSupported = true;
+
     private String mUuid;
     private StorageStatsSource mStatsManager;
     private PackageManager mPackageManager;
-    private ArraySet<String> mSeenPackages;
+    private final Executor mExecutor;
+    private PartialResultListener mPartialResultListener;
+    // Cancels the running load, guarded by this.
+    private CancellationSignal mCancellationSignal;
 
     public StorageAsyncLoader(Context context, UserManager userManager,
             String uuid, StorageStatsSource source, PackageManager pm) {
+        this(context, userManager, uuid, source, pm, SettingsExecutor.getInstance().getExecutor(
+                SettingsExecutor.LANE_UI_CRITICAL, "StorageSizing"));
+    }
+
+    @VisibleForTesting
+    StorageAsyncLoader(Context context, UserManager userManager,
+            String uuid, StorageStatsSource source, PackageManager pm, Executor executor) {
         super(context);
         mUserManager = userManager;
         mUuid = uuid;
         mStatsManager = source;
         mPackageManager = pm;
+        mExecutor = executor;
+    }
+
+    /** Sets the listener receiving the results of the users loaded so far. */
+    public void setPartialResultListener(@Nullable PartialResultListener listener) {
+        mPartialResultListener = listener;
     }
 
     @Override
     public SparseArray<StorageResult> loadInBackground() {
-        return getStorageResultsForUsers();
+        final CancellationSignal signal;
+        synchronized (this) {
+            if (isLoadInBackgroundCanceled()) {
+                throw new OperationCanceledException();
+            }
+            signal = new CancellationSignal();
+            mCancellationSignal = signal;
+        }
+        try {
+            return getStorageResultsForUsers(signal);
+        } catch (android.os.OperationCanceledException e) {
+            throw new OperationCanceledException();
+        } finally {
+            synchronized (this) {
+                mCancellationSignal = null;
+            }
+        }
     }
 
-    private SparseArray<StorageResult> getStorageResultsForUsers() {
-        mSeenPackages = new ArraySet<>();
+    @Override
+    public void cancelLoadInBackground() {
+        super.cancelLoadInBackground();
+        synchronized (this) {
+            if (mCancellationSignal != null) {
+                mCancellationSignal.cancel();
+            }
+        }
+    }
+
+    private SparseArray<StorageResult> getStorageResultsForUsers(CancellationSignal signal) {
         final SparseArray<StorageResult> results = new SparseArray<>();
         final List<UserInfo> infos = mUserManager.getUsers();
 
@@ -85,50 +145,48 @@ public class StorageAsyncLoader
         Collections.sort(infos,
                 (userInfo, otherUser) -> Integer.compare(userInfo.id, otherUser.id));
 
+        // Queue the sizing of all the users at once, the first user first.
+        final List<UserSizing> sizings = new ArrayList<>();
         for (UserInfo info : infos) {
-            final StorageResult result = getAppsAndGamesSize(info.id);
-            final Bundle media = new Bundle();
-            media.putString(ContentResolver.QUERY_ARG_SQL_SELECTION, MediaColumns.VOLUME_NAME
-                    + "= '" + MediaStore.VOLUME_EXTERNAL_PRIMARY + "'");
-            result.imagesSize = getFilesSize(info.id, MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
-                    media /* queryArgs */);
-            result.videosSize = getFilesSize(info.id, MediaStore.Video.Media.EXTERNAL_CONTENT_URI,
-                    media /* queryArgs */);
-            result.audioSize = getFilesSize(info.id, MediaStore.Audio.Media.EXTERNAL_CONTENT_URI,
-                    media /* queryArgs */);
-            result.systemSize = getSystemSize();
-
-            final Bundle documentsQueryArgs = new Bundle();
-            documentsQueryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION,
-                    FileColumns.MEDIA_TYPE + "=" + FileColumns.MEDIA_TYPE_DOCUMENT);
-            result.documentsSize = getFilesSize(info.id,
-                    MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL_PRIMARY),
-                    documentsQueryArgs);
-
-            final Bundle otherQueryArgs = new Bundle();
-            otherQueryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION,
-                    FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_IMAGE
-                            + " AND " + FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_VIDEO
-                            + " AND " + FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_AUDIO
-                            + " AND " + FileColumns.MEDIA_TYPE + "!="
-                            + FileColumns.MEDIA_TYPE_DOCUMENT
-                            + " AND " + FileColumns.MIME_TYPE + " IS NOT NULL");
-            result.otherSize = getFilesSize(info.id,
-                    MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL_PRIMARY),
-                    otherQueryArgs);
-
-            final Bundle trashQueryArgs = new Bundle();
-            trashQueryArgs.putInt(MediaStore.QUERY_ARG_MATCH_TRASHED, MediaStore.MATCH_ONLY);
-            result.trashSize = getFilesSize(info.id,
-                    MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL_PRIMARY),
-                    trashQueryArgs);
-
-            results.put(info.id, result);
+            sizings.add(new UserSizing(info.id, signal));
+        }
+        signal.setOnCancelListener(() -> sizings.forEach(UserSizing::cancel));
+
+        final long systemSize = getSystemSize();
+        final ArraySet<String> seenPackages = new ArraySet<>();
+        try {
+            for (int i = 0; i < sizings.size(); i++) {
+                final UserSizing sizing = sizings.get(i);
+                final StorageResult result = sizing.getResult(seenPackages);
+                result.systemSize = systemSize;
+                results.put(sizing.mUserId, result);
+                if (i < sizings.size() - 1) {
+                    notifyPartialResult(results.clone(), signal);
+                }
+            }
+        } catch (RuntimeException e) {
+            // Don't leave the sizing of the next users running for nothing.
+            sizings.forEach(UserSizing::cancel);
+            throw e;
         }
         return results;
     }
 
-    private long getFilesSize(int userId, Uri uri, Bundle queryArgs) {
+    private void notifyPartialResult(SparseArray<StorageResult> results,
+            CancellationSignal signal) {
+        final PartialResultListener listener = mPartialResultListener;
+        if (listener == null) {
+            return;
+        }
+        ThreadUtils.postOnMainThread(() -> {
+            if (!signal.isCanceled()) {
+                listener.onPartialResult(results);
+            }
+        });
+    }
+
+    private FilesSize getFilesSize(int userId, CancellationSignal signal) {
+        signal.throwIfCanceled();
         final Context perUserContext;
         try {
             perUserContext = getContext().createPackageContextAsUser(
@@ -137,14 +195,143 @@ public class StorageAsyncLoader
                 UserHandle.of(userId));
         } catch (NameNotFoundException e) {
             Log.e(TAG, "Not able to get Context for user ID " + userId);
-            return 0L;
+            return new FilesSize();
+        }
+
+        final ContentResolver resolver = perUserContext.getContentResolver();
+        if (sFilesAggregationSupported) {
+            final FilesSize size = getAggregatedFilesSize(resolver, signal);
+            if (size != null) {
+                return size;
+            }
+        }
+        return getFilesSizeByCategory(resolver, signal);
+    }
+
+    /**
+     * Sums the files of all the categories in one query grouped by media type and trash state.
+     * Returns {@code null} when MediaStore doesn't answer the query, and stops using it for the
+     * process once MediaStore rejects the grouping.
+     */
+    @Nullable
+    private static FilesSize getAggregatedFilesSize(ContentResolver resolver,
+            CancellationSignal signal) {
+        final Bundle queryArgs = new Bundle();
+        // Every file counted by one of the categories of getFilesSizeByCategory.
+        queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION,
+                MediaColumns.IS_TRASHED + "=1"
+                        + " OR " + FileColumns.MIME_TYPE + " IS NOT NULL"
+                        + " OR " + FileColumns.MEDIA_TYPE + " IN ("
+                        + FileColumns.MEDIA_TYPE_IMAGE + "," + FileColumns.MEDIA_TYPE_VIDEO + ","
+                        + FileColumns.MEDIA_TYPE_AUDIO + "," + FileColumns.MEDIA_TYPE_DOCUMENT
+                        + ")");
+        queryArgs.putString(ContentResolver.QUERY_ARG_SQL_GROUP_BY,
+                FileColumns.MEDIA_TYPE + "," + MediaColumns.IS_TRASHED);
+        queryArgs.putInt(MediaStore.QUERY_ARG_MATCH_TRASHED, MediaStore.MATCH_INCLUDE);
+
+        try (Cursor cursor = resolver.query(
+                MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL_PRIMARY),
+                new String[] {FileColumns.MEDIA_TYPE, MediaColumns.IS_TRASHED,
+                        "sum(" + MediaColumns.SIZE + ")"},
+                queryArgs,
+                signal)) {
+            if (cursor == null) {
+                return null;
+            }
+            if (!isHonored(cursor, ContentResolver.QUERY_ARG_SQL_GROUP_BY)) {
+                // The sums of all the categories would be mixed up.
+                Log.w(TAG, "Files grouping not honored, querying each category instead");
+                sFilesAggregationSupported = false;
+                return null;
+            }
+            final FilesSize size = new FilesSize();
+            while (cursor.moveToNext()) {
+                final long bytes = cursor.getLong(2);
+                if (cursor.getInt(1) != 0) {
+                    size.mTrash += bytes;
+                    continue;
+                }
+                switch (cursor.getInt(0)) {
+                    case FileColumns.MEDIA_TYPE_IMAGE:
+                        size.mImages += bytes;
+                        break;
+                    case FileColumns.MEDIA_TYPE_VIDEO:
+                        size.mVideos += bytes;
+                        break;
+                    case FileColumns.MEDIA_TYPE_AUDIO:
+                        size.mAudio += bytes;
+                        break;
+                    case FileColumns.MEDIA_TYPE_DOCUMENT:
+                        size.mDocuments += bytes;
+                        break;
+                    default:
+                        size.mOther += bytes;
+                        break;
+                }
+            }
+            return size;
+        } catch (IllegalArgumentException | UnsupportedOperationException e) {
+            Log.w(TAG, "Files grouping rejected, querying each category instead", e);
+            sFilesAggregationSupported = false;
+            return null;
         }
+    }
+
+    // Providers not reporting the honored arguments are assumed to honor them.
+    private static boolean isHonored(Cursor cursor, String queryArg) {
+        final Bundle extras = cursor.getExtras();
+        final String[] honoredArgs = extras != null
+                ? extras.getStringArray(ContentResolver.EXTRA_HONORED_ARGS) : null;
+        return honoredArgs == null || ArrayUtils.contains(honoredArgs, queryArg);
+    }
+
+    private static FilesSize getFilesSizeByCategory(ContentResolver resolver,
+            CancellationSignal signal) {
+        final FilesSize size = new FilesSize();
+        final Bundle media = new Bundle();
+        media.putString(ContentResolver.QUERY_ARG_SQL_SELECTION, MediaColumns.VOLUME_NAME
+                + "= '" + MediaStore.VOLUME_EXTERNAL_PRIMARY + "'");
+        size.mImages = getFilesSize(resolver, MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
+                media /* queryArgs */, signal);
+        size.mVideos = getFilesSize(resolver, MediaStore.Video.Media.EXTERNAL_CONTENT_URI,
+                media /* queryArgs */, signal);
+        size.mAudio = getFilesSize(resolver, MediaStore.Audio.Media.EXTERNAL_CONTENT_URI,
+                media /* queryArgs */, signal);
 
-        try (Cursor cursor = perUserContext.getContentResolver().query(
+        final Bundle documentsQueryArgs = new Bundle();
+        documentsQueryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION,
+                FileColumns.MEDIA_TYPE + "=" + FileColumns.MEDIA_TYPE_DOCUMENT);
+        size.mDocuments = getFilesSize(resolver,
+                MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL_PRIMARY),
+                documentsQueryArgs, signal);
+
+        final Bundle otherQueryArgs = new Bundle();
+        otherQueryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION,
+                FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_IMAGE
+                        + " AND " + FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_VIDEO
+                        + " AND " + FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_AUDIO
+                        + " AND " + FileColumns.MEDIA_TYPE + "!="
+                        + FileColumns.MEDIA_TYPE_DOCUMENT
+                        + " AND " + FileColumns.MIME_TYPE + " IS NOT NULL");
+        size.mOther = getFilesSize(resolver,
+                MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL_PRIMARY),
+                otherQueryArgs, signal);
+
+        final Bundle trashQueryArgs = new Bundle();
+        trashQueryArgs.putInt(MediaStore.QUERY_ARG_MATCH_TRASHED, MediaStore.MATCH_ONLY);
+        size.mTrash = getFilesSize(resolver,
+                MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL_PRIMARY),
+                trashQueryArgs, signal);
+        return size;
+    }
+
+    private static long getFilesSize(ContentResolver resolver, Uri uri, Bundle queryArgs,
+            CancellationSignal signal) {
+        try (Cursor cursor = resolver.query(
                 uri,
                 new String[] {"sum(" + MediaColumns.SIZE + ")"},
                 queryArgs,
-                null /* cancellationSignal */)) {
+                signal)) {
             if (cursor == null) {
                 return 0L;
             }
@@ -162,13 +349,16 @@ public class StorageAsyncLoader
         }
     }
 
-    private StorageResult getAppsAndGamesSize(int userId) {
+    private AppsSize getAppsAndGamesSize(int userId, CancellationSignal signal) {
+        signal.throwIfCanceled();
         Log.d(TAG, "Loading apps");
         final List<ApplicationInfo> applicationInfos =
                 mPackageManager.getInstalledApplicationsAsUser(0, userId);
-        final StorageResult result = new StorageResult();
+        final AppsSize appsSize = new AppsSize();
+        final StorageResult result = appsSize.mResult;
         final UserHandle myUser = UserHandle.of(userId);
         for (int i = 0, size = applicationInfos.size(); i < size; i++) {
+            signal.throwIfCanceled();
             final ApplicationInfo app = applicationInfos.get(i);
 
             StorageStatsSource.AppStorageStats stats;
@@ -192,13 +382,9 @@ public class StorageAsyncLoader
                 blamedSize = blamedSize - cacheBytes + cacheQuota;
             }
 
-            // Code bytes may share between different profiles. To know all the duplicate code size
-            // and we can get a reasonable system size in StorageItemPreferenceController.
-            if (mSeenPackages.contains(app.packageName)) {
-                result.duplicateCodeSize += stats.getCodeBytes();
-            } else {
-                mSeenPackages.add(app.packageName);
-            }
+            // Code bytes may be shared between profiles, they are attributed to the first user
+            // once all the users are loaded.
+            appsSize.mCodeBytes.put(app.packageName, stats.getCodeBytes());
 
             switch (app.category) {
                 case CATEGORY_GAME:
@@ -228,7 +414,86 @@ public class StorageAsyncLoader
             Log.w(TAG, e);
         }
         Log.d(TAG, "Obtaining result completed");
-        return result;
+        return appsSize;
+    }
+
+    private static <T> T getSize(FutureTask<T> task) {
+        try {
+            return task.get();
+        } catch (CancellationException | InterruptedException e) {
+            throw new OperationCanceledException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // The sizes of the apps of one user.
+    private static final class AppsSize {
+        final StorageResult mResult = new StorageResult();
+        // Package name to code bytes.
+        final ArrayMap<String, Long> mCodeBytes = new ArrayMap<>();
+    }
+
+    // The sizes of the files of one user.
+    private static final class FilesSize {
+        long mImages;
+        long mVideos;
+        long mAudio;
+        long mDocuments;
+        long mOther;
+        long mTrash;
+    }
+
+    // The sizing of one user, split into tasks run concurrently on the executor.
+    private final class UserSizing {
+        final int mUserId;
+        private final List<FutureTask<?>> mTasks = new ArrayList<>();
+        private final FutureTask<AppsSize> mApps;
+        private final FutureTask<FilesSize> mFiles;
+
+        UserSizing(int userId, CancellationSignal signal) {
+            mUserId = userId;
+            mApps = submit(() -> getAppsAndGamesSize(userId, signal));
+            mFiles = submit(() -> getFilesSize(userId, signal));
+        }
+
+        private <T> FutureTask<T> submit(Callable<T> callable) {
+            final FutureTask<T> task = new FutureTask<>(callable);
+            mTasks.add(task);
+            mExecutor.execute(task);
+            return task;
+        }
+
+        void cancel() {
+            mTasks.forEach(task -> task.cancel(false /* mayInterruptIfRunning */));
+        }
+
+        /**
+         * Waits for the sizes of the user. The users must be collected in ascending order, so the
+         * code shared with the previous users (in {@code seenPackages}) is attributed to them.
+         */
+        StorageResult getResult(ArraySet<String> seenPackages) {
+            final AppsSize appsSize = getSize(mApps);
+            final StorageResult result = appsSize.mResult;
+            for (int i = 0; i < appsSize.mCodeBytes.size(); i++) {
+                // Code bytes may share between different profiles. To know all the duplicate code
+                // size and we can get a reasonable system size in StorageItemPreferenceController.
+                if (!seenPackages.add(appsSize.mCodeBytes.keyAt(i))) {
+                    result.duplicateCodeSize += appsSize.mCodeBytes.valueAt(i);
+                }
+            }
+            final FilesSize filesSize = getSize(mFiles);
+            result.imagesSize = filesSize.mImages;
+            result.videosSize = filesSize.mVideos;
+            result.audioSize = filesSize.mAudio;
+            result.documentsSize = filesSize.mDocuments;
+            result.otherSize = filesSize.mOther;
+            result.trashSize = filesSize.mTrash;
+            return result;
+        }
     }
 
     @Override
@@ -263,4 +528,13 @@ public class StorageAsyncLoader
         /** Overrides this method to get storage result once it's available. */
         void handleResult(SparseArray<StorageResult> result);
     }
+
+    /** Receives the results of the users loaded so far, before the load finishes. */
+    public interface PartialResultListener {
+        /**
+         * Called on the main thread each time the result of one more user is complete, the users
+         * being completed in ascending user id order.
+         */
+        void onPartialResult(SparseArray<StorageResult> result);
+    }
 }
@@ -18,39 +18,92 @@ package com.android.settings.deviceinfo.storage;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.util.ArrayMap;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.utils.ThreadUtils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * A utility class to cache and restore the storage size information.
+ * <p>
+ * The sizes of each user and volume are kept in a small binary snapshot, written atomically in
+ * the background, which also records when the sizes were computed. The sizes cached by previous
+ * versions in shared preferences are migrated to the snapshot of the primary volume.
  */
 public class StorageCacheHelper {
 
-    private static final String SHARED_PREFERENCE_NAME = "StorageCache";
-    private static final String TOTAL_SIZE_KEY = "total_size_key";
-    private static final String TOTAL_USED_SIZE_KEY = "total_used_size_key";
-    private static final String IMAGES_SIZE_KEY = "images_size_key";
-    private static final String VIDEOS_SIZE_KEY = "videos_size_key";
-    private static final String AUDIO_SIZE_KEY = "audio_size_key";
-    private static final String APPS_SIZE_KEY = "apps_size_key";
-    private static final String GAMES_SIZE_KEY = "games_size_key";
-    private static final String DOCUMENTS_SIZE_KEY = "documents_size_key";
-    private static final String OTHER_SIZE_KEY = "other_size_key";
-    private static final String TRASH_SIZE_KEY = "trash_size_key";
-    private static final String SYSTEM_SIZE_KEY = "system_size_key";
-    private static final String TEMPORARY_FILES_SIZE_KEY = "temporary_files_size_key";
-    private static final String USED_SIZE_KEY = "used_size_key";
-
-    private final SharedPreferences mSharedPreferences;
+    private static final String TAG = "StorageCacheHelper";
+    private static final String LEGACY_SHARED_PREFERENCE_NAME = "StorageCache";
+    private static final String LEGACY_TOTAL_SIZE_KEY = "total_size_key";
+    private static final String LEGACY_TOTAL_USED_SIZE_KEY = "total_used_size_key";
+    private static final String LEGACY_IMAGES_SIZE_KEY = "images_size_key";
+    private static final String LEGACY_VIDEOS_SIZE_KEY = "videos_size_key";
+    private static final String LEGACY_AUDIO_SIZE_KEY = "audio_size_key";
+    private static final String LEGACY_APPS_SIZE_KEY = "apps_size_key";
+    private static final String LEGACY_GAMES_SIZE_KEY = "games_size_key";
+    private static final String LEGACY_DOCUMENTS_SIZE_KEY = "documents_size_key";
+    private static final String LEGACY_OTHER_SIZE_KEY = "other_size_key";
+    private static final String LEGACY_TRASH_SIZE_KEY = "trash_size_key";
+    private static final String LEGACY_SYSTEM_SIZE_KEY = "system_size_key";
+    private static final String LEGACY_TEMPORARY_FILES_SIZE_KEY = "temporary_files_size_key";
+    private static final String LEGACY_USED_SIZE_KEY = "used_size_key";
+    private static final String SNAPSHOT_DIR = "storage_cache";
+    private static final String PRIMARY_VOLUME_KEY = "primary";
+    private static final int SNAPSHOT_MAGIC = 0x53544348;
+    private static final int SNAPSHOT_VERSION = 1;
+
+    // The parts of a snapshot that were cached.
+    private static final int PART_SIZE_INFO = 1;
+    private static final int PART_TOTAL_SIZES = 1 << 1;
+    private static final int PART_USED_SIZE = 1 << 2;
+
+    // The snapshots read so far, shared by the helpers of the same user and volume.
+    private static final Map<File, Snapshot> sSnapshots = new ArrayMap<>();
+
+    private final Context mContext;
+    private final int mUserId;
+    @Nullable
+    private final String mVolumeUuid;
+    private final AtomicFile mFile;
 
     public StorageCacheHelper(Context context, int userId) {
-        String sharedPrefName = SHARED_PREFERENCE_NAME + userId;
-        mSharedPreferences = context.getSharedPreferences(sharedPrefName, Context.MODE_PRIVATE);
+        this(context, userId, null /* volumeUuid */);
+    }
+
+    /**
+     * @param volumeUuid the file system UUID of the volume, or {@code null} for the primary one.
+     */
+    public StorageCacheHelper(Context context, int userId, @Nullable String volumeUuid) {
+        mContext = context.getApplicationContext() != null
+                ? context.getApplicationContext() : context;
+        mUserId = userId;
+        mVolumeUuid = volumeUuid;
+        final String volumeKey = volumeUuid == null ? PRIMARY_VOLUME_KEY : volumeUuid;
+        mFile = new AtomicFile(new File(new File(mContext.getFilesDir(), SNAPSHOT_DIR),
+                userId + "_" + volumeKey));
     }
 
     /**
      * Returns true if there's a cached size info.
      */
     public boolean hasCachedSizeInfo() {
-        return mSharedPreferences.getAll().size() > 0;
+        synchronized (sSnapshots) {
+            return getSnapshot().mParts != 0;
+        }
     }
 
     /**
@@ -58,64 +111,245 @@ public class StorageCacheHelper {
      * @param data a data about the file size info.
      */
     public void cacheSizeInfo(StorageCache data) {
-        mSharedPreferences
-                .edit()
-                .putLong(IMAGES_SIZE_KEY, data.imagesSize)
-                .putLong(VIDEOS_SIZE_KEY, data.videosSize)
-                .putLong(AUDIO_SIZE_KEY, data.audioSize)
-                .putLong(APPS_SIZE_KEY, data.allAppsExceptGamesSize)
-                .putLong(GAMES_SIZE_KEY, data.gamesSize)
-                .putLong(DOCUMENTS_SIZE_KEY, data.documentsSize)
-                .putLong(OTHER_SIZE_KEY, data.otherSize)
-                .putLong(TRASH_SIZE_KEY, data.trashSize)
-                .putLong(SYSTEM_SIZE_KEY, data.systemSize)
-                .putLong(TEMPORARY_FILES_SIZE_KEY, data.temporaryFilesSize)
-                .apply();
+        synchronized (sSnapshots) {
+            final Snapshot snapshot = getSnapshot();
+            final StorageCache cache = snapshot.mCache;
+            cache.imagesSize = data.imagesSize;
+            cache.videosSize = data.videosSize;
+            cache.audioSize = data.audioSize;
+            cache.allAppsExceptGamesSize = data.allAppsExceptGamesSize;
+            cache.gamesSize = data.gamesSize;
+            cache.documentsSize = data.documentsSize;
+            cache.otherSize = data.otherSize;
+            cache.trashSize = data.trashSize;
+            cache.systemSize = data.systemSize;
+            cache.temporaryFilesSize = data.temporaryFilesSize;
+            snapshot.mSizeInfoTimestamp = System.currentTimeMillis();
+            snapshot.mParts |= PART_SIZE_INFO;
+            writeAsync(snapshot);
+        }
     }
 
     /**
      * Cache total size and total used size
      */
     public void cacheTotalSizeAndTotalUsedSize(long totalSize, long totalUsedSize) {
-        mSharedPreferences
-                .edit()
-                .putLong(TOTAL_SIZE_KEY, totalSize)
-                .putLong(TOTAL_USED_SIZE_KEY, totalUsedSize)
-                .apply();
+        synchronized (sSnapshots) {
+            final Snapshot snapshot = getSnapshot();
+            snapshot.mCache.totalSize = totalSize;
+            snapshot.mCache.totalUsedSize = totalUsedSize;
+            snapshot.mParts |= PART_TOTAL_SIZES;
+            writeAsync(snapshot);
+        }
     }
 
     /**
      * Cache used size info when a user is treated as a secondary user.
      */
     public void cacheUsedSize(long usedSize) {
-        mSharedPreferences.edit().putLong(USED_SIZE_KEY, usedSize).apply();
+        synchronized (sSnapshots) {
+            final Snapshot snapshot = getSnapshot();
+            snapshot.mUsedSize = usedSize;
+            snapshot.mParts |= PART_USED_SIZE;
+            writeAsync(snapshot);
+        }
     }
 
     /**
      * Returns used size for secondary user.
      */
     public long retrieveUsedSize() {
-        return mSharedPreferences.getLong(USED_SIZE_KEY, 0);
+        synchronized (sSnapshots) {
+            return getSnapshot().mUsedSize;
+        }
     }
 
     /**
      * Returns a cached data about all file size information.
      */
     public StorageCache retrieveCachedSize() {
-        StorageCache result = new StorageCache();
-        result.totalSize = mSharedPreferences.getLong(TOTAL_SIZE_KEY, 0);
-        result.totalUsedSize = mSharedPreferences.getLong(TOTAL_USED_SIZE_KEY, 0);
-        result.imagesSize = mSharedPreferences.getLong(IMAGES_SIZE_KEY, 0);
-        result.videosSize = mSharedPreferences.getLong(VIDEOS_SIZE_KEY, 0);
-        result.audioSize = mSharedPreferences.getLong(AUDIO_SIZE_KEY, 0);
-        result.allAppsExceptGamesSize = mSharedPreferences.getLong(APPS_SIZE_KEY, 0);
-        result.gamesSize = mSharedPreferences.getLong(GAMES_SIZE_KEY, 0);
-        result.documentsSize = mSharedPreferences.getLong(DOCUMENTS_SIZE_KEY, 0);
-        result.otherSize = mSharedPreferences.getLong(OTHER_SIZE_KEY, 0);
-        result.trashSize = mSharedPreferences.getLong(TRASH_SIZE_KEY, 0);
-        result.systemSize = mSharedPreferences.getLong(SYSTEM_SIZE_KEY, 0);
-        result.temporaryFilesSize = mSharedPreferences.getLong(TEMPORARY_FILES_SIZE_KEY, 0);
-        return result;
+        synchronized (sSnapshots) {
+            return getSnapshot().mCache.copy();
+        }
+    }
+
+    /** Drops the snapshots read so far, so the next helpers read them from disk again. */
+    @VisibleForTesting
+    static void clearSnapshotsInMemory() {
+        synchronized (sSnapshots) {
+            sSnapshots.clear();
+        }
+    }
+
+    // Must be called with sSnapshots held.
+    private Snapshot getSnapshot() {
+        final File key = mFile.getBaseFile();
+        Snapshot snapshot = sSnapshots.get(key);
+        if (snapshot == null) {
+            snapshot = readSnapshot();
+            sSnapshots.put(key, snapshot);
+        }
+        return snapshot;
+    }
+
+    private Snapshot readSnapshot() {
+        final Snapshot snapshot = new Snapshot();
+        try (DataInputStream in = new DataInputStream(mFile.openRead())) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                Log.w(TAG, "Dropping snapshot of unknown version " + mFile.getBaseFile());
+                return snapshot;
+            }
+            final long sizeInfoTimestamp = in.readLong();
+            final String volumeUuid = in.readUTF();
+            if (!Objects.equals(volumeUuid, mVolumeUuid == null ? "" : mVolumeUuid)) {
+                Log.w(TAG, "Dropping snapshot of another volume " + mFile.getBaseFile());
+                return snapshot;
+            }
+            final int parts = in.readInt();
+            final StorageCache cache = snapshot.mCache;
+            cache.totalSize = in.readLong();
+            cache.totalUsedSize = in.readLong();
+            cache.gamesSize = in.readLong();
+            cache.allAppsExceptGamesSize = in.readLong();
+            cache.audioSize = in.readLong();
+            cache.imagesSize = in.readLong();
+            cache.videosSize = in.readLong();
+            cache.documentsSize = in.readLong();
+            cache.otherSize = in.readLong();
+            cache.trashSize = in.readLong();
+            cache.systemSize = in.readLong();
+            cache.temporaryFilesSize = in.readLong();
+            snapshot.mUsedSize = in.readLong();
+            snapshot.mSizeInfoTimestamp = sizeInfoTimestamp;
+            snapshot.mParts = parts;
+            return snapshot;
+        } catch (FileNotFoundException e) {
+            if (mVolumeUuid == null) {
+                migrateLegacySharedPreferences(snapshot);
+            }
+            return snapshot;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read snapshot " + mFile.getBaseFile(), e);
+            return new Snapshot();
+        }
+    }
+
+    // The sizes of the primary volume used to be cached in shared preferences. They are copied
+    // to the snapshot, and the shared preferences are deleted once the snapshot is written.
+    private void migrateLegacySharedPreferences(Snapshot snapshot) {
+        final String name = LEGACY_SHARED_PREFERENCE_NAME + mUserId;
+        final SharedPreferences prefs = mContext.getSharedPreferences(name, Context.MODE_PRIVATE);
+        final Map<String, ?> values = prefs.getAll();
+        if (values.isEmpty()) {
+            return;
+        }
+        final StorageCache cache = snapshot.mCache;
+        if (values.containsKey(LEGACY_IMAGES_SIZE_KEY)) {
+            cache.imagesSize = prefs.getLong(LEGACY_IMAGES_SIZE_KEY, 0);
+            cache.videosSize = prefs.getLong(LEGACY_VIDEOS_SIZE_KEY, 0);
+            cache.audioSize = prefs.getLong(LEGACY_AUDIO_SIZE_KEY, 0);
+            cache.allAppsExceptGamesSize = prefs.getLong(LEGACY_APPS_SIZE_KEY, 0);
+            cache.gamesSize = prefs.getLong(LEGACY_GAMES_SIZE_KEY, 0);
+            cache.documentsSize = prefs.getLong(LEGACY_DOCUMENTS_SIZE_KEY, 0);
+            cache.otherSize = prefs.getLong(LEGACY_OTHER_SIZE_KEY, 0);
+            cache.trashSize = prefs.getLong(LEGACY_TRASH_SIZE_KEY, 0);
+            cache.systemSize = prefs.getLong(LEGACY_SYSTEM_SIZE_KEY, 0);
+            cache.temporaryFilesSize = prefs.getLong(LEGACY_TEMPORARY_FILES_SIZE_KEY, 0);
+            // When the sizes were computed is unknown.
+            snapshot.mParts |= PART_SIZE_INFO;
+        }
+        if (values.containsKey(LEGACY_TOTAL_SIZE_KEY)) {
+            cache.totalSize = prefs.getLong(LEGACY_TOTAL_SIZE_KEY, 0);
+            cache.totalUsedSize = prefs.getLong(LEGACY_TOTAL_USED_SIZE_KEY, 0);
+            snapshot.mParts |= PART_TOTAL_SIZES;
+        }
+        if (values.containsKey(LEGACY_USED_SIZE_KEY)) {
+            snapshot.mUsedSize = prefs.getLong(LEGACY_USED_SIZE_KEY, 0);
+            snapshot.mParts |= PART_USED_SIZE;
+        }
+        snapshot.mGeneration++;
+        final Snapshot copy = snapshot.copy();
+        ThreadUtils.postOnBackgroundThread(() -> {
+            writeSnapshot(snapshot, copy);
+            synchronized (snapshot.mWriteLock) {
+                if (snapshot.mWrittenGeneration >= copy.mGeneration) {
+                    mContext.deleteSharedPreferences(name);
+                }
+            }
+        });
+    }
+
+    // Must be called with sSnapshots held.
+    private void writeAsync(Snapshot snapshot) {
+        snapshot.mGeneration++;
+        final Snapshot copy = snapshot.copy();
+        ThreadUtils.postOnBackgroundThread(() -> writeSnapshot(snapshot, copy));
+    }
+
+    private void writeSnapshot(Snapshot snapshot, Snapshot copy) {
+        synchronized (snapshot.mWriteLock) {
+            // The writes may run out of order, a newer copy may already be written.
+            if (copy.mGeneration <= snapshot.mWrittenGeneration) {
+                return;
+            }
+            mFile.getBaseFile().getParentFile().mkdirs();
+            FileOutputStream out = null;
+            try {
+                out = mFile.startWrite();
+                final DataOutputStream data = new DataOutputStream(out);
+                final StorageCache cache = copy.mCache;
+                data.writeInt(SNAPSHOT_MAGIC);
+                data.writeInt(SNAPSHOT_VERSION);
+                data.writeLong(copy.mSizeInfoTimestamp);
+                data.writeUTF(mVolumeUuid == null ? "" : mVolumeUuid);
+                data.writeInt(copy.mParts);
+                data.writeLong(cache.totalSize);
+                data.writeLong(cache.totalUsedSize);
+                data.writeLong(cache.gamesSize);
+                data.writeLong(cache.allAppsExceptGamesSize);
+                data.writeLong(cache.audioSize);
+                data.writeLong(cache.imagesSize);
+                data.writeLong(cache.videosSize);
+                data.writeLong(cache.documentsSize);
+                data.writeLong(cache.otherSize);
+                data.writeLong(cache.trashSize);
+                data.writeLong(cache.systemSize);
+                data.writeLong(cache.temporaryFilesSize);
+                data.writeLong(copy.mUsedSize);
+                data.flush();
+                mFile.finishWrite(out);
+                snapshot.mWrittenGeneration = copy.mGeneration;
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to write snapshot " + mFile.getBaseFile(), e);
+                if (out != null) {
+                    mFile.failWrite(out);
+                }
+            }
+        }
+    }
+
+    // The cached sizes of one user and volume.
+    private static final class Snapshot {
+        final StorageCache mCache = new StorageCache();
+        long mUsedSize;
+        // Wall clock time the size info was cached at, 0 if it never was.
+        long mSizeInfoTimestamp;
+        int mParts;
+        // Incremented by each change, to drop the writes of older copies.
+        long mGeneration;
+        final Object mWriteLock = new Object();
+        // Guarded by mWriteLock.
+        long mWrittenGeneration;
+
+        Snapshot copy() {
+            final Snapshot copy = new Snapshot();
+            copy.mCache.copyFrom(mCache);
+            copy.mUsedSize = mUsedSize;
+            copy.mSizeInfoTimestamp = mSizeInfoTimestamp;
+            copy.mParts = mParts;
+            copy.mGeneration = mGeneration;
+            return copy;
+        }
     }
 
     /**
@@ -134,5 +368,26 @@ public class StorageCacheHelper {
         public long trashSize;
         public long systemSize;
         public long temporaryFilesSize;
+
+        StorageCache copy() {
+            final StorageCache copy = new StorageCache();
+            copy.copyFrom(this);
+            return copy;
+        }
+
+        void copyFrom(StorageCache other) {
+            totalSize = other.totalSize;
+            totalUsedSize = other.totalUsedSize;
+            gamesSize = other.gamesSize;
+            allAppsExceptGamesSize = other.allAppsExceptGamesSize;
+            audioSize = other.audioSize;
+            imagesSize = other.imagesSize;
+            videosSize = other.videosSize;
+            documentsSize = other.documentsSize;
+            otherSize = other.otherSize;
+            trashSize = other.trashSize;
+            systemSize = other.systemSize;
+            temporaryFilesSize = other.temporaryFilesSize;
+        }
     }
 }
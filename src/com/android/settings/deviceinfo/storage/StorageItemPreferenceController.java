@@ -37,6 +37,7 @@ import android.util.Log;
 import android.util.SparseArray;
 import android.widget.Toast;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 import androidx.fragment.app.Fragment;
@@ -280,6 +281,7 @@ public class StorageItemPreferenceController extends AbstractPreferenceControlle
         // onLoadFinished.
         if (isValidPrivateVolume()) {
             mIsDocumentsPrefShown = isDocumentsPrefShown();
+            mStorageCacheHelper = new StorageCacheHelper(mContext, mUserId, volume.getFsUuid());
         } else {
             setPrivateStorageCategoryPreferencesVisibility(false);
         }
@@ -448,19 +450,7 @@ public class StorageItemPreferenceController extends AbstractPreferenceControlle
         // Calculate the size info for each category
         StorageCacheHelper.StorageCache storageCache = getSizeInfo(result, userId);
         // Set size info to each preference
-        mImagesPreference.setStorageSize(storageCache.imagesSize, mTotalSize, animate);
-        mVideosPreference.setStorageSize(storageCache.videosSize, mTotalSize, animate);
-        mAudioPreference.setStorageSize(storageCache.audioSize, mTotalSize, animate);
-        mAppsPreference.setStorageSize(storageCache.allAppsExceptGamesSize, mTotalSize, animate);
-        mGamesPreference.setStorageSize(storageCache.gamesSize, mTotalSize, animate);
-        mDocumentsPreference.setStorageSize(storageCache.documentsSize, mTotalSize, animate);
-        mOtherPreference.setStorageSize(storageCache.otherSize, mTotalSize, animate);
-        mTrashPreference.setStorageSize(storageCache.trashSize, mTotalSize, animate);
-        if (mSystemPreference != null) {
-            mSystemPreference.setStorageSize(storageCache.systemSize, mTotalSize, animate);
-            mSystemPreference.setTitle(mContext.getString(R.string.storage_os_name,
-                    Build.VERSION.RELEASE));
-        }
+        setCategorySizes(storageCache, animate);
         if (mTemporaryFilesPreference != null) {
             mTemporaryFilesPreference.setStorageSize(storageCache.temporaryFilesSize, mTotalSize,
                     animate);
@@ -470,6 +460,24 @@ public class StorageItemPreferenceController extends AbstractPreferenceControlle
             mStorageCacheHelper.cacheSizeInfo(storageCache);
         }
 
+        showPrivateStorageCategoryPreferences();
+    }
+
+    /**
+     * Shows the sizes of {@code userId} from a load still in progress. The temporary files are
+     * what the other users leave unattributed, so their size is only updated by
+     * {@link #onLoadFinished}.
+     */
+    public void onPartialLoad(@NonNull SparseArray<StorageAsyncLoader.StorageResult> result,
+            int userId) {
+        if (result.get(userId) == null) {
+            return;
+        }
+        setCategorySizes(getSizeInfo(result, userId), mIsPreferenceOrderedBySize /* animate */);
+        showPrivateStorageCategoryPreferences();
+    }
+
+    private void showPrivateStorageCategoryPreferences() {
         // Sort the preference according to size info in descending order
         if (!mIsPreferenceOrderedBySize) {
             updatePrivateStorageCategoryPreferencesOrder();
@@ -478,6 +486,22 @@ public class StorageItemPreferenceController extends AbstractPreferenceControlle
         setPrivateStorageCategoryPreferencesVisibility(true);
     }
 
+    private void setCategorySizes(StorageCacheHelper.StorageCache storageCache, boolean animate) {
+        mImagesPreference.setStorageSize(storageCache.imagesSize, mTotalSize, animate);
+        mVideosPreference.setStorageSize(storageCache.videosSize, mTotalSize, animate);
+        mAudioPreference.setStorageSize(storageCache.audioSize, mTotalSize, animate);
+        mAppsPreference.setStorageSize(storageCache.allAppsExceptGamesSize, mTotalSize, animate);
+        mGamesPreference.setStorageSize(storageCache.gamesSize, mTotalSize, animate);
+        mDocumentsPreference.setStorageSize(storageCache.documentsSize, mTotalSize, animate);
+        mOtherPreference.setStorageSize(storageCache.otherSize, mTotalSize, animate);
+        mTrashPreference.setStorageSize(storageCache.trashSize, mTotalSize, animate);
+        if (mSystemPreference != null) {
+            mSystemPreference.setStorageSize(storageCache.systemSize, mTotalSize, animate);
+            mSystemPreference.setTitle(mContext.getString(R.string.storage_os_name,
+                    Build.VERSION.RELEASE));
+        }
+    }
+
     private StorageCacheHelper.StorageCache getSizeInfo(
             SparseArray<StorageAsyncLoader.StorageResult> result, int userId) {
         if (result == null) {
@@ -48,13 +48,11 @@ public class StorageUsageProgressBarPreferenceController extends BasePreferenceC
     private UsageProgressBarPreference mUsageProgressBarPreference;
     private StorageEntry mStorageEntry;
     boolean mIsUpdateStateFromSelectedStorageEntry;
-    private StorageCacheHelper mStorageCacheHelper;
 
     public StorageUsageProgressBarPreferenceController(Context context, String key) {
         super(context, key);
 
         mStorageStatsManager = context.getSystemService(StorageStatsManager.class);
-        mStorageCacheHelper = new StorageCacheHelper(context, UserHandle.myUserId());
     }
 
     /** Set StorageEntry to display. */
@@ -76,7 +74,8 @@ public class StorageUsageProgressBarPreferenceController extends BasePreferenceC
     private void getStorageStatsAndUpdateUi() {
         // Use cached data for both total size and used size.
         if (mStorageEntry != null && mStorageEntry.isMounted() && mStorageEntry.isPrivate()) {
-            StorageCacheHelper.StorageCache cachedData = mStorageCacheHelper.retrieveCachedSize();
+            final StorageCacheHelper.StorageCache cachedData = new StorageCacheHelper(mContext,
+                    UserHandle.myUserId(), mStorageEntry.getFsUuid()).retrieveCachedSize();
             mTotalBytes = cachedData.totalSize;
             mUsedBytes = cachedData.totalUsedSize;
             mIsUpdateStateFromSelectedStorageEntry = true;
@@ -34,6 +34,7 @@ import com.android.settings.R;
 import com.android.settings.activityembedding.ActivityEmbeddingRulesController;
 import com.android.settings.activityembedding.ActivityEmbeddingUtils;
 import com.android.settings.core.BasePreferenceController;
+import com.android.settings.core.InvalidationBus;
 import com.android.settingslib.RestrictedLockUtilsInternal;
 import com.android.settingslib.RestrictedTopLevelPreference;
 
@@ -94,6 +95,12 @@ public class TopLevelWallpaperPreferenceController extends BasePreferenceControl
                 ? AVAILABLE_UNSEARCHABLE : CONDITIONALLY_UNAVAILABLE;
     }
 
+    @Override
+    public InvalidationBus.Dependencies getAvailabilityDependencies() {
+        // The wallpaper picker components only change when packages change.
+        return InvalidationBus.Dependencies.of(InvalidationBus.SOURCE_PACKAGES);
+    }
+
     @Override
     public void updateState(Preference preference) {
         disablePreferenceIfManaged((RestrictedTopLevelPreference) preference);
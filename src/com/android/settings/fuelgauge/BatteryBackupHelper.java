@@ -183,14 +183,16 @@ public final class BatteryBackupHelper implements BackupHelper {
         }
         int backupCount = 0;
         final StringBuilder builder = new StringBuilder();
-        final AppOpsManager appOps = mContext.getSystemService(AppOpsManager.class);
+        // Loads the modes of all the apps at once, the allowlist is already known.
+        final BatteryOptimizeModeSnapshot modeSnapshot = BatteryOptimizeModeSnapshot.load(
+                mContext.getSystemService(AppOpsManager.class), /* backend= */ null);
         final SharedPreferences sharedPreferences = getSharedPreferences(mContext);
         final Map<Integer, AppOptimizationModeEvent> appOptModeMap =
                 AppOptModeSharedPreferencesUtils.getAllEvents(mContext).stream()
                         .collect(Collectors.toMap(AppOptimizationModeEvent::getUid, e -> e));
         // Converts application into the AppUsageState.
         for (ApplicationInfo info : applications) {
-            final int mode = BatteryOptimizeUtils.getMode(appOps, info.uid, info.packageName);
+            final int mode = modeSnapshot.getMode(info.uid, info.packageName);
             @BatteryOptimizeUtils.OptimizationMode
             final int optimizationMode =
                     appOptModeMap.containsKey(info.uid)
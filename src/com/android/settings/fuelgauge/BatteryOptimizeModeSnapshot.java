@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge;
+
+import android.app.AppOpsManager;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.PowerManager;
+import android.util.ArrayMap;
+import android.util.Log;
+import android.util.SparseArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.android.settingslib.fuelgauge.PowerAllowlistBackend;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The battery optimization mode of every app, shared by the battery pages.
+ * <p>
+ * Reading the mode of one app costs an AppOps binder call, so the {@link
+ * AppOpsManager#OP_RUN_ANY_IN_BACKGROUND} modes of all the apps are loaded at once with {@link
+ * AppOpsManager#getPackagesForOps}; the apps it doesn't list have the default mode of the op. The
+ * allowlist is refreshed once per load, and the allowlisted state of each app is then computed at
+ * most once. The shared snapshot is loaded again on its next use after an app op mode or the
+ * allowlist changed.
+ */
+public final class BatteryOptimizeModeSnapshot {
+    private static final String TAG = "BatteryOptModeSnapshot";
+    private static final int OP = AppOpsManager.OP_RUN_ANY_IN_BACKGROUND;
+
+    // Bumped by every change of the modes, the shared snapshot is stale once it differs.
+    private static final AtomicLong sGeneration = new AtomicLong();
+    private static final Object sLock = new Object();
+    private static volatile BatteryOptimizeModeSnapshot sSnapshot;
+    // Guarded by sLock.
+    private static boolean sObserving;
+
+    private final long mGeneration;
+    private final int mDefaultMode;
+    // The modes differing from the default mode, per uid then package.
+    private final SparseArray<Map<String, Integer>> mModes;
+    @Nullable private final PowerAllowlistBackend mBackend;
+    // Guarded by itself.
+    private final SparseArray<Map<String, Boolean>> mAllowlisted = new SparseArray<>();
+
+    private BatteryOptimizeModeSnapshot(
+            long generation,
+            int defaultMode,
+            SparseArray<Map<String, Integer>> modes,
+            @Nullable PowerAllowlistBackend backend) {
+        mGeneration = generation;
+        mDefaultMode = defaultMode;
+        mModes = modes;
+        mBackend = backend;
+    }
+
+    /**
+     * Returns the snapshot shared by the battery pages, loading it again if the modes changed
+     * since it was loaded.
+     */
+    @WorkerThread
+    @NonNull
+    public static BatteryOptimizeModeSnapshot get(@NonNull Context context) {
+        final Context appContext = context.getApplicationContext();
+        final long generation = sGeneration.get();
+        final BatteryOptimizeModeSnapshot snapshot = sSnapshot;
+        if (snapshot != null && snapshot.mGeneration == generation) {
+            return snapshot;
+        }
+        synchronized (sLock) {
+            startObservingLocked(appContext);
+            // Read again, the modes may have been loaded while waiting for the lock.
+            final long currentGeneration = sGeneration.get();
+            if (sSnapshot == null || sSnapshot.mGeneration != currentGeneration) {
+                sSnapshot = load(
+                        currentGeneration,
+                        appContext.getSystemService(AppOpsManager.class),
+                        PowerAllowlistBackend.getInstance(appContext));
+            }
+            return sSnapshot;
+        }
+    }
+
+    /**
+     * Loads a snapshot that is not shared, for one-shot readers such as the backup.
+     *
+     * @param backend the allowlist, or {@code null} if {@link #isAllowlisted} is not used
+     */
+    @WorkerThread
+    @NonNull
+    public static BatteryOptimizeModeSnapshot load(
+            @NonNull AppOpsManager appOpsManager, @Nullable PowerAllowlistBackend backend) {
+        return load(sGeneration.get(), appOpsManager, backend);
+    }
+
+    /** Marks the shared snapshot stale, to be called after changing the mode of an app. */
+    public static void invalidate() {
+        sGeneration.incrementAndGet();
+    }
+
+    @VisibleForTesting
+    static void resetForTesting() {
+        synchronized (sLock) {
+            sSnapshot = null;
+            invalidate();
+        }
+    }
+
+    /** Returns the {@link AppOpsManager#OP_RUN_ANY_IN_BACKGROUND} mode of the app. */
+    public int getMode(int uid, @NonNull String packageName) {
+        final Map<String, Integer> modes = mModes.get(uid);
+        final Integer mode = modes != null ? modes.get(packageName) : null;
+        return mode != null ? mode : mDefaultMode;
+    }
+
+    /** Returns whether the app is in the power allowlist. */
+    public boolean isAllowlisted(int uid, @NonNull String packageName) {
+        if (mBackend == null) {
+            throw new IllegalStateException("Snapshot loaded without the allowlist");
+        }
+        synchronized (mAllowlisted) {
+            Map<String, Boolean> allowlisted = mAllowlisted.get(uid);
+            if (allowlisted == null) {
+                allowlisted = new ArrayMap<>();
+                mAllowlisted.put(uid, allowlisted);
+            }
+            Boolean result = allowlisted.get(packageName);
+            if (result == null) {
+                result = mBackend.isAllowlisted(packageName, uid);
+                allowlisted.put(packageName, result);
+            }
+            return result;
+        }
+    }
+
+    /** Returns the {@link BatteryOptimizeUtils.OptimizationMode} of the app. */
+    @BatteryOptimizeUtils.OptimizationMode
+    public int getAppOptimizationMode(int uid, @NonNull String packageName) {
+        return BatteryOptimizeUtils.getAppOptimizationMode(
+                getMode(uid, packageName), isAllowlisted(uid, packageName));
+    }
+
+    private static BatteryOptimizeModeSnapshot load(
+            long generation,
+            AppOpsManager appOpsManager,
+            @Nullable PowerAllowlistBackend backend) {
+        final long timestamp = System.currentTimeMillis();
+        if (backend != null) {
+            backend.refreshList();
+        }
+        final SparseArray<Map<String, Integer>> modes = new SparseArray<>();
+        final int defaultMode = AppOpsManager.opToDefaultMode(OP);
+        final List<AppOpsManager.PackageOps> packageOpsList =
+                appOpsManager.getPackagesForOps(new int[] {OP});
+        final int size = packageOpsList == null ? 0 : packageOpsList.size();
+        for (int i = 0; i < size; i++) {
+            final AppOpsManager.PackageOps packageOps = packageOpsList.get(i);
+            for (AppOpsManager.OpEntry entry : packageOps.getOps()) {
+                if (entry.getOp() != OP || entry.getMode() == defaultMode) {
+                    continue;
+                }
+                Map<String, Integer> uidModes = modes.get(packageOps.getUid());
+                if (uidModes == null) {
+                    uidModes = new ArrayMap<>();
+                    modes.put(packageOps.getUid(), uidModes);
+                }
+                uidModes.put(packageOps.getPackageName(), entry.getMode());
+            }
+        }
+        Log.d(TAG, "load() " + modes.size() + " uids in "
+                + (System.currentTimeMillis() - timestamp) + "/ms");
+        return new BatteryOptimizeModeSnapshot(generation, defaultMode, modes, backend);
+    }
+
+    private static void startObservingLocked(Context appContext) {
+        if (sObserving) {
+            return;
+        }
+        sObserving = true;
+        appContext.getSystemService(AppOpsManager.class).startWatchingMode(
+                OP, null /* packageName */, (op, packageName) -> invalidate());
+        appContext.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                invalidate();
+            }
+        }, new IntentFilter(PowerManager.ACTION_POWER_SAVE_WHITELIST_CHANGED),
+                Context.RECEIVER_NOT_EXPORTED);
+    }
+}
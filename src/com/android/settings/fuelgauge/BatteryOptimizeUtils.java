@@ -360,6 +360,7 @@ public class BatteryOptimizeUtils {
             appStandbyMode = -1;
             Log.e(TAG, "set OPTIMIZATION MODE failed for " + packageName, e);
         }
+        BatteryOptimizeModeSnapshot.invalidate();
         BatteryOptimizeLogUtils.writeLog(
                 context, action, packageNameKey, createLogEvent(appStandbyMode, allowListed));
         if (action != Action.RESET) { // reset has been notified in resetAppOptimizationMode
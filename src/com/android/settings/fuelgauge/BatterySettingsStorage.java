@@ -334,14 +334,16 @@ public final class BatterySettingsStorage extends ObservableBackupRestoreStorage
             }
             int backupCount = 0;
             final StringBuilder builder = new StringBuilder();
-            final AppOpsManager appOps = mApplication.getSystemService(AppOpsManager.class);
+            // Loads the modes of all the apps at once, the allowlist is already known.
+            final BatteryOptimizeModeSnapshot modeSnapshot = BatteryOptimizeModeSnapshot.load(
+                    mApplication.getSystemService(AppOpsManager.class), /* backend= */ null);
             final SharedPreferences sharedPreferences = getSharedPreferences(mApplication);
             final Map<Integer, AppOptimizationModeEvent> appOptModeMap =
                     AppOptModeSharedPreferencesUtils.getAllEvents(mApplication).stream()
                             .collect(Collectors.toMap(AppOptimizationModeEvent::getUid, e -> e));
             // Converts application into the AppUsageState.
             for (ApplicationInfo info : applications) {
-                final int mode = BatteryOptimizeUtils.getMode(appOps, info.uid, info.packageName);
+                final int mode = modeSnapshot.getMode(info.uid, info.packageName);
                 @BatteryOptimizeUtils.OptimizationMode
                 final int optimizationMode =
                         appOptModeMap.containsKey(info.uid)
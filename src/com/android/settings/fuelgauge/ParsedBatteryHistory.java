@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge;
+
+import android.os.BatteryStats.HistoryItem;
+import android.os.BatteryUsageStats;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.internal.os.BatteryStatsHistoryIterator;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The battery history of a {@link BatteryUsageStats}, parsed once into primitive arrays and
+ * replayed to every {@link BatteryInfo.BatteryDataParser}.
+ * <p>
+ * The history is kept as long as its {@link BatteryUsageStats} is reachable, so the BatteryInfo
+ * objects built from the same stats don't iterate it again. The records replayed to the parsers
+ * only carry the {@code batteryLevel}, {@code currentTime}, {@code states} and {@code states2} of
+ * the history items.
+ */
+final class ParsedBatteryHistory {
+    private static final byte TYPE_DATA_POINT = 0;
+    private static final byte TYPE_DATA_GAP = 1;
+
+    // Guarded by itself.
+    private static final Map<BatteryUsageStats, ParsedBatteryHistory> sCache =
+            new WeakHashMap<>();
+
+    private final long mStartWalltime;
+    private final long mEndWalltime;
+    private final int mSize;
+    private final byte[] mTypes;
+    private final long[] mTimes;
+    private final long[] mCurrentTimes;
+    private final byte[] mLevels;
+    private final int[] mStates;
+    private final int[] mStates2;
+
+    private ParsedBatteryHistory(
+            long startWalltime,
+            long endWalltime,
+            int size,
+            byte[] types,
+            long[] times,
+            long[] currentTimes,
+            byte[] levels,
+            int[] states,
+            int[] states2) {
+        mStartWalltime = startWalltime;
+        mEndWalltime = endWalltime;
+        mSize = size;
+        mTypes = types;
+        mTimes = times;
+        mCurrentTimes = currentTimes;
+        mLevels = levels;
+        mStates = states;
+        mStates2 = states2;
+    }
+
+    /** Returns the parsed history of the stats, parsing it if it's not the cached one. */
+    @NonNull
+    static ParsedBatteryHistory get(@NonNull BatteryUsageStats batteryUsageStats) {
+        synchronized (sCache) {
+            ParsedBatteryHistory history = sCache.get(batteryUsageStats);
+            if (history == null) {
+                history = parse(batteryUsageStats);
+                sCache.put(batteryUsageStats, history);
+            }
+            return history;
+        }
+    }
+
+    @VisibleForTesting
+    static void clearCache() {
+        synchronized (sCache) {
+            sCache.clear();
+        }
+    }
+
+    /** Replays the parsed history to the parsers. */
+    void replay(BatteryInfo.BatteryDataParser... parsers) {
+        for (int j = 0; j < parsers.length; j++) {
+            parsers[j].onParsingStarted(mStartWalltime, mEndWalltime);
+        }
+        final HistoryItem record = new HistoryItem();
+        record.cmd = HistoryItem.CMD_UPDATE;
+        for (int i = 0; i < mSize; i++) {
+            if (mTypes[i] == TYPE_DATA_GAP) {
+                for (int j = 0; j < parsers.length; j++) {
+                    parsers[j].onDataGap();
+                }
+                continue;
+            }
+            record.currentTime = mCurrentTimes[i];
+            record.batteryLevel = mLevels[i];
+            record.states = mStates[i];
+            record.states2 = mStates2[i];
+            for (int j = 0; j < parsers.length; j++) {
+                parsers[j].onDataPoint(mTimes[i], record);
+            }
+        }
+        for (int j = 0; j < parsers.length; j++) {
+            parsers[j].onParsingDone();
+        }
+    }
+
+    private static ParsedBatteryHistory parse(BatteryUsageStats batteryUsageStats) {
+        long startWalltime = 0;
+        long endWalltime = 0;
+        long historyStart = 0;
+        long historyEnd = 0;
+        long curWalltime = startWalltime;
+        long lastWallTime = 0;
+        long lastRealtime = 0;
+        int lastInteresting = 0;
+        int pos = 0;
+        boolean first = true;
+        final BatteryStatsHistoryIterator iterator1 =
+                batteryUsageStats.iterateBatteryStatsHistory();
+        HistoryItem rec;
+        while ((rec = iterator1.next()) != null) {
+            pos++;
+            if (first) {
+                first = false;
+                historyStart = rec.time;
+            }
+            if (rec.cmd == HistoryItem.CMD_CURRENT_TIME || rec.cmd == HistoryItem.CMD_RESET) {
+                // If there is a ridiculously large jump in time, then we won't be
+                // able to create a good chart with that data, so just ignore the
+                // times we got before and pretend like our data extends back from
+                // the time we have now.
+                // Also, if we are getting a time change and we are less than 5 minutes
+                // since the start of the history real time, then also use this new
+                // time to compute the base time, since whatever time we had before is
+                // pretty much just noise.
+                if (rec.currentTime > (lastWallTime + (180 * 24 * 60 * 60 * 1000L))
+                        || rec.time < (historyStart + (5 * 60 * 1000L))) {
+                    startWalltime = 0;
+                }
+                lastWallTime = rec.currentTime;
+                lastRealtime = rec.time;
+                if (startWalltime == 0) {
+                    startWalltime = lastWallTime - (lastRealtime - historyStart);
+                }
+            }
+            if (rec.isDeltaData()) {
+                lastInteresting = pos;
+                historyEnd = rec.time;
+            }
+        }
+
+        endWalltime = lastWallTime + historyEnd - lastRealtime;
+
+        int i = 0;
+        final int N = lastInteresting;
+        // At most one data point or gap is recorded per history item.
+        final int capacity = endWalltime > startWalltime ? N : 0;
+        final byte[] types = new byte[capacity];
+        final long[] times = new long[capacity];
+        final long[] currentTimes = new long[capacity];
+        final byte[] levels = new byte[capacity];
+        final int[] states = new int[capacity];
+        final int[] states2 = new int[capacity];
+        int size = 0;
+
+        if (endWalltime > startWalltime) {
+            final BatteryStatsHistoryIterator iterator2 =
+                    batteryUsageStats.iterateBatteryStatsHistory();
+            while ((rec = iterator2.next()) != null && i < N) {
+                if (rec.isDeltaData()) {
+                    curWalltime += rec.time - lastRealtime;
+                    lastRealtime = rec.time;
+                    long x = (curWalltime - startWalltime);
+                    if (x < 0) {
+                        x = 0;
+                    }
+                    types[size] = TYPE_DATA_POINT;
+                    times[size] = x;
+                    currentTimes[size] = rec.currentTime;
+                    levels[size] = rec.batteryLevel;
+                    states[size] = rec.states;
+                    states2[size] = rec.states2;
+                    size++;
+                } else {
+                    long lastWalltime = curWalltime;
+                    if (rec.cmd == HistoryItem.CMD_CURRENT_TIME
+                            || rec.cmd == HistoryItem.CMD_RESET) {
+                        if (rec.currentTime >= startWalltime) {
+                            curWalltime = rec.currentTime;
+                        } else {
+                            curWalltime = startWalltime + (rec.time - historyStart);
+                        }
+                        lastRealtime = rec.time;
+                    }
+
+                    if (rec.cmd != HistoryItem.CMD_OVERFLOW
+                            && (rec.cmd != HistoryItem.CMD_CURRENT_TIME
+                                    || Math.abs(lastWalltime - curWalltime) > (60 * 60 * 1000))) {
+                        types[size] = TYPE_DATA_GAP;
+                        size++;
+                    }
+                }
+                i++;
+            }
+        }
+        return new ParsedBatteryHistory(
+                startWalltime,
+                endWalltime,
+                size,
+                types,
+                times,
+                currentTimes,
+                levels,
+                states,
+                states2);
+    }
+}
@@ -18,12 +18,16 @@ package com.android.settings.fuelgauge.batterytip;
 
 import android.content.Context;
 import android.os.BatteryUsageStats;
+import android.util.Log;
 
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
+import com.android.settings.core.SettingsExecutor;
 import com.android.settings.fuelgauge.BatteryInfo;
 import com.android.settings.fuelgauge.BatteryUtils;
 import com.android.settings.fuelgauge.batterytip.detectors.BatteryDefenderDetector;
+import com.android.settings.fuelgauge.batterytip.detectors.BatteryTipDetector;
 import com.android.settings.fuelgauge.batterytip.detectors.HighUsageDetector;
 import com.android.settings.fuelgauge.batterytip.detectors.IncompatibleChargerDetector;
 import com.android.settings.fuelgauge.batterytip.tips.BatteryTip;
@@ -33,17 +37,28 @@ import com.android.settingslib.utils.AsyncLoaderCompat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
- * Loader to compute and return a battery tip list. It will always return a full length list even
- * though some tips may have state {@code BaseBatteryTip.StateType.INVISIBLE}.
+ * Loader to compute and return a sorted battery tip list. Some tips may have state {@code
+ * BaseBatteryTip.StateType.INVISIBLE}, and the tips of a detector that failed or ran out of time
+ * are left out.
  */
 public class BatteryTipLoader extends AsyncLoaderCompat<List<BatteryTip>> {
     private static final String TAG = "BatteryTipLoader";
 
+    @VisibleForTesting static final String TASK_NAME_PREFIX = "BatteryTip";
+    private static final long DETECTOR_TIMEOUT_MS = 500;
+    private static final long QUEUE_TIMEOUT_MS = 2000;
+
     private BatteryUsageStats mBatteryUsageStats;
 
     @VisibleForTesting BatteryUtils mBatteryUtils;
+    @VisibleForTesting long mDetectorTimeoutMs = DETECTOR_TIMEOUT_MS;
 
     public BatteryTipLoader(Context context, BatteryUsageStats batteryUsageStats) {
         super(context);
@@ -53,23 +68,155 @@ public class BatteryTipLoader extends AsyncLoaderCompat<List<BatteryTip>> {
 
     @Override
     public List<BatteryTip> loadInBackground() {
-        final List<BatteryTip> tips = new ArrayList<>();
+        // The inputs are loaded once and only read by the detectors, so they can run concurrently.
         final BatteryTipPolicy batteryTipPolicy = new BatteryTipPolicy(getContext());
         final BatteryInfo batteryInfo = mBatteryUtils.getBatteryInfo(TAG);
+        final BatteryUsageStats batteryUsageStats = mBatteryUsageStats;
         final Context context = getContext().getApplicationContext();
 
-        tips.add(
-                new HighUsageDetector(context, batteryTipPolicy, mBatteryUsageStats, batteryInfo)
-                        .detect());
-        tips.add(new BatteryDefenderDetector(batteryInfo, context).detect());
-        tips.add(new IncompatibleChargerDetector(context).detect());
-        FeatureFactory.getFeatureFactory()
-                .getBatterySettingsFeatureProvider()
-                .addBatteryTipDetector(context, tips, batteryInfo, batteryTipPolicy);
-        Collections.sort(tips);
-        return tips;
+        final List<DetectorTask> detectorTasks = new ArrayList<>();
+        detectorTasks.add(
+                new DetectorTask(
+                        "HighUsageDetector",
+                        () ->
+                                new HighUsageDetector(
+                                                context,
+                                                batteryTipPolicy,
+                                                batteryUsageStats,
+                                                batteryInfo)
+                                        .detect()));
+        detectorTasks.add(
+                new DetectorTask(
+                        "BatteryDefenderDetector",
+                        () -> new BatteryDefenderDetector(batteryInfo, context).detect()));
+        detectorTasks.add(
+                new DetectorTask(
+                        "IncompatibleChargerDetector",
+                        () -> new IncompatibleChargerDetector(context).detect()));
+
+        final List<Future<List<BatteryTip>>> futures = new ArrayList<>();
+        for (DetectorTask detectorTask : detectorTasks) {
+            futures.add(submit(detectorTask));
+        }
+        final List<BatteryTip> tips = new ArrayList<>();
+        for (int i = 0; i < futures.size(); i++) {
+            final List<BatteryTip> detectedTips = await(detectorTasks.get(i), futures.get(i));
+            if (Thread.currentThread().isInterrupted()) {
+                Collections.sort(tips);
+                return tips;
+            }
+            if (detectedTips != null) {
+                tips.addAll(detectedTips);
+            }
+        }
+
+        // The detectors of the feature provider see the tips of the others, and may change them,
+        // so they run last. Their list replaces the tips once they succeed.
+        final DetectorTask featureProviderTask =
+                new DetectorTask(
+                        "FeatureProviderDetectors",
+                        tips,
+                        featureProviderTips ->
+                                FeatureFactory.getFeatureFactory()
+                                        .getBatterySettingsFeatureProvider()
+                                        .addBatteryTipDetector(
+                                                context,
+                                                featureProviderTips,
+                                                batteryInfo,
+                                                batteryTipPolicy));
+        final List<BatteryTip> featureProviderTips =
+                await(featureProviderTask, submit(featureProviderTask));
+        final List<BatteryTip> result = featureProviderTips != null ? featureProviderTips : tips;
+        Collections.sort(result);
+        return result;
+    }
+
+    // Each detector runs as its own named task, so its latency is traced and recorded in the task
+    // stats of the executor.
+    private static Future<List<BatteryTip>> submit(DetectorTask detectorTask) {
+        detectorTask.mQueueDeadlineNanos =
+                System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(QUEUE_TIMEOUT_MS);
+        return SettingsExecutor.getInstance()
+                .submit(
+                        SettingsExecutor.LANE_UI_CRITICAL,
+                        TASK_NAME_PREFIX + detectorTask.mName,
+                        detectorTask);
+    }
+
+    /**
+     * Waits for the detector, and returns its tips, or {@code null} if it failed or timed out. The
+     * time budget of a detector only starts once it runs, so the time it spends queued in the
+     * shared lane is not held against it.
+     */
+    @Nullable
+    private List<BatteryTip> await(DetectorTask detectorTask, Future<List<BatteryTip>> future) {
+        final long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(mDetectorTimeoutMs);
+        try {
+            while (true) {
+                final boolean started = detectorTask.mStarted;
+                // Future.get() counts its timeout with System.nanoTime(), so do the deadlines.
+                final long deadlineNanos =
+                        started
+                                ? detectorTask.mStartNanos + timeoutNanos
+                                : detectorTask.mQueueDeadlineNanos;
+                try {
+                    return future.get(
+                            Math.max(0, deadlineNanos - System.nanoTime()),
+                            TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    if (started || !detectorTask.mStarted) {
+                        throw e;
+                    }
+                    // Started while we waited for it to leave the queue, give it its budget.
+                }
+            }
+        } catch (TimeoutException e) {
+            future.cancel(/* mayInterruptIfRunning= */ true);
+            Log.w(TAG, "Timeout detecting battery tips in " + detectorTask.mName);
+        } catch (ExecutionException e) {
+            Log.w(TAG, "Failed to detect battery tips in " + detectorTask.mName, e.getCause());
+        } catch (InterruptedException e) {
+            Log.w(TAG, "Interrupted detecting battery tips in " + detectorTask.mName);
+            Thread.currentThread().interrupt();
+        }
+        return null;
     }
 
     @Override
     protected void onDiscardResult(List<BatteryTip> result) {}
+
+    /** Runs one detector. */
+    private static final class DetectorTask implements Callable<List<BatteryTip>> {
+        /** Adds the detected tips into the list. */
+        interface Detector {
+            void detect(List<BatteryTip> tips);
+        }
+
+        final String mName;
+        private final List<BatteryTip> mInputTips;
+        private final Detector mDetector;
+        long mQueueDeadlineNanos;
+        volatile boolean mStarted;
+        volatile long mStartNanos;
+
+        DetectorTask(String name, BatteryTipDetector detector) {
+            this(name, Collections.emptyList(), tips -> tips.add(detector.detect()));
+        }
+
+        DetectorTask(String name, List<BatteryTip> inputTips, Detector detector) {
+            mName = name;
+            // Copied, the detector may still run after the loader gave up on it.
+            mInputTips = new ArrayList<>(inputTips);
+            mDetector = detector;
+        }
+
+        @Override
+        public List<BatteryTip> call() {
+            mStartNanos = System.nanoTime();
+            mStarted = true;
+            final List<BatteryTip> tips = new ArrayList<>(mInputTips);
+            mDetector.detect(tips);
+            return tips;
+        }
+    }
 }
@@ -33,9 +33,9 @@ import android.graphics.Path;
 import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
 import android.os.Bundle;
-import android.util.ArraySet;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.util.SparseBooleanArray;
 import android.view.HapticFeedbackConstants;
 import android.view.MotionEvent;
 import android.view.View;
@@ -57,7 +57,6 @@ import com.android.settingslib.Utils;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
-import java.util.Set;
 
 /** A widget component to draw chart graph. */
 public class BatteryChartView extends AppCompatImageView implements View.OnClickListener {
@@ -76,7 +75,9 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
     private final Rect mIndent = new Rect();
     private final Rect[] mPercentageBounds = new Rect[] {new Rect(), new Rect(), new Rect()};
     private final List<Rect> mAxisLabelsBounds = new ArrayList<>();
-    private final Set<Integer> mLabelDrawnIndexes = new ArraySet<>();
+    private final SparseBooleanArray mLabelDrawnIndexes = new SparseBooleanArray();
+    // Reused by every draw() to avoid allocating on each hover or selection change.
+    private final Path mTrapezoidPath = new Path();
     private final int mLayoutDirection =
             getContext().getResources().getConfiguration().getLayoutDirection();
 
@@ -105,8 +106,15 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
     private Paint mTextPaint;
     private AccessibilityNodeProvider mAccessibilityNodeProvider;
     private BatteryChartView.OnSelectListener mOnSelectListener;
+    // Whether the text bounds are measured for the current view model and text paint.
+    private boolean mTextBoundsMeasured;
+    // Whether the geometry below must be computed again before the next draw().
+    private boolean mGeometryDirty = true;
+    private float mUnitWidth;
+    private int mAxisLabelDisplayAreaCount;
 
     @VisibleForTesting TrapezoidSlot[] mTrapezoidSlots;
+    @VisibleForTesting Rect[] mAxisLabelDisplayAreas = new Rect[0];
     // Records the location to calculate selected index.
     @VisibleForTesting float mTouchUpEventX = Float.MIN_VALUE;
 
@@ -127,6 +135,7 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
     public void setViewModel(BatteryChartViewModel viewModel) {
         if (viewModel == null) {
             mViewModel = null;
+            mGeometryDirty = true;
             invalidate();
             return;
         }
@@ -139,6 +148,8 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
                         viewModel.selectedIndex(),
                         viewModel.getHighlightSlotIndex()));
         mViewModel = viewModel;
+        mTextBoundsMeasured = false;
+        mGeometryDirty = true;
         initializeAxisLabelsBounds();
         initializeTrapezoidSlots(viewModel.size() - 1);
         setClickable(hasAnyValidTrapezoid(viewModel));
@@ -160,21 +171,18 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
         } else {
             mTextPaint = null;
         }
+        mTextBoundsMeasured = false;
         requestLayout();
     }
 
     @Override
     public void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
-        // Measures text bounds and updates indent configuration.
+        mGeometryDirty = true;
+        // Measures text bounds once per view model and updates indent configuration.
         if (mTextPaint != null) {
-            mTextPaint.setTextAlign(Paint.Align.LEFT);
-            for (int index = 0; index < mPercentages.length; index++) {
-                mTextPaint.getTextBounds(
-                        mPercentages[index],
-                        0,
-                        mPercentages[index].length(),
-                        mPercentageBounds[index]);
+            if (!mTextBoundsMeasured) {
+                measureTextBounds();
             }
             // Updates the indent configurations.
             mIndent.top = mPercentageBounds[0].height() + mTransomViewHeight;
@@ -188,18 +196,21 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
             if (mViewModel != null) {
                 int maxTop = 0;
                 for (int index = 0; index < mViewModel.size(); index++) {
-                    final String text = mViewModel.getText(index);
-                    mTextPaint.getTextBounds(text, 0, text.length(), mAxisLabelsBounds.get(index));
                     maxTop = Math.max(maxTop, -mAxisLabelsBounds.get(index).top);
                 }
                 mIndent.bottom = maxTop + round(mTextPadding * 2f);
             }
-            Log.d(TAG, "setIndent:" + mPercentageBounds[0]);
         } else {
             mIndent.set(0, 0, 0, 0);
         }
     }
 
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        mGeometryDirty = true;
+    }
+
     @Override
     public void draw(Canvas canvas) {
         super.draw(canvas);
@@ -209,6 +220,9 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
         if (mViewModel == null) {
             return;
         }
+        if (mGeometryDirty) {
+            updateGeometry();
+        }
         drawVerticalDividers(canvas);
         drawTrapezoids(canvas);
         drawTransomLine(canvas);
@@ -432,72 +446,80 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
     }
 
     private void drawVerticalDividers(Canvas canvas) {
-        final int width = getWidth() - abs(mIndent.width());
         final int dividerCount = mTrapezoidSlots.length + 1;
-        final float dividerSpace = dividerCount * mDividerWidth;
-        final float unitWidth = (width - dividerSpace) / (float) mTrapezoidSlots.length;
         final float bottomY = getHeight() - mIndent.bottom;
         final float startY = bottomY - mDividerHeight;
-        final float trapezoidSlotOffset = mTrapezoidHOffset + mDividerWidth * .5f;
         // Draws the axis label slot information.
-        if (mViewModel != null) {
-            final float baselineY = getHeight() - mTextPadding;
-            Rect[] axisLabelDisplayAreas;
-            switch (mViewModel.axisLabelPosition()) {
-                case CENTER_OF_TRAPEZOIDS:
-                    axisLabelDisplayAreas =
-                            getAxisLabelDisplayAreas(
-                                    /* size= */ mViewModel.size() - 1,
-                                    /* baselineX= */ mIndent.left + mDividerWidth + unitWidth * .5f,
-                                    /* offsetX= */ mDividerWidth + unitWidth,
-                                    baselineY,
-                                    /* shiftFirstAndLast= */ false);
-                    break;
-                case BETWEEN_TRAPEZOIDS:
-                default:
-                    axisLabelDisplayAreas =
-                            getAxisLabelDisplayAreas(
-                                    /* size= */ mViewModel.size(),
-                                    /* baselineX= */ mIndent.left + mDividerWidth * .5f,
-                                    /* offsetX= */ mDividerWidth + unitWidth,
-                                    baselineY,
-                                    /* shiftFirstAndLast= */ true);
-                    break;
-            }
-            drawAxisLabels(canvas, axisLabelDisplayAreas, baselineY);
-        }
+        drawAxisLabels(canvas, mAxisLabelDisplayAreas, getHeight() - mTextPadding);
         // Draws each vertical dividers.
         float startX = mDividerWidth * .5f + mIndent.left;
         for (int index = 0; index < dividerCount; index++) {
             float dividerY = bottomY;
             if (mViewModel.axisLabelPosition() == BETWEEN_TRAPEZOIDS
-                    && mLabelDrawnIndexes.contains(index)) {
+                    && mLabelDrawnIndexes.get(index)) {
                 mDividerPaint.setColor(mTrapezoidSolidColor);
                 dividerY += mDividerHeight / 4f;
             } else {
                 mDividerPaint.setColor(DIVIDER_COLOR);
             }
             canvas.drawLine(startX, startY, startX, dividerY, mDividerPaint);
-            final float nextX = startX + mDividerWidth + unitWidth;
-            // Updates the trapezoid slots for drawing.
-            if (index < mTrapezoidSlots.length) {
-                final int trapezoidIndex = isRTL() ? mTrapezoidSlots.length - index - 1 : index;
-                mTrapezoidSlots[trapezoidIndex].mLeft = round(startX + trapezoidSlotOffset);
-                mTrapezoidSlots[trapezoidIndex].mRight = round(nextX - trapezoidSlotOffset);
-            }
+            startX += mDividerWidth + mUnitWidth;
+        }
+    }
+
+    /**
+     * Computes the trapezoid slots and the axis label display areas. They only depend on the
+     * layout and the view model, so they are computed once per layout pass instead of on every
+     * draw.
+     */
+    private void updateGeometry() {
+        mGeometryDirty = false;
+        final int width = getWidth() - abs(mIndent.width());
+        final int dividerCount = mTrapezoidSlots.length + 1;
+        final float dividerSpace = dividerCount * mDividerWidth;
+        mUnitWidth = (width - dividerSpace) / (float) mTrapezoidSlots.length;
+        final float trapezoidSlotOffset = mTrapezoidHOffset + mDividerWidth * .5f;
+        // Updates the axis label display areas.
+        final float baselineY = getHeight() - mTextPadding;
+        switch (mViewModel.axisLabelPosition()) {
+            case CENTER_OF_TRAPEZOIDS:
+                updateAxisLabelDisplayAreas(
+                        /* size= */ mViewModel.size() - 1,
+                        /* baselineX= */ mIndent.left + mDividerWidth + mUnitWidth * .5f,
+                        /* offsetX= */ mDividerWidth + mUnitWidth,
+                        baselineY,
+                        /* shiftFirstAndLast= */ false);
+                break;
+            case BETWEEN_TRAPEZOIDS:
+            default:
+                updateAxisLabelDisplayAreas(
+                        /* size= */ mViewModel.size(),
+                        /* baselineX= */ mIndent.left + mDividerWidth * .5f,
+                        /* offsetX= */ mDividerWidth + mUnitWidth,
+                        baselineY,
+                        /* shiftFirstAndLast= */ true);
+                break;
+        }
+        // Updates the trapezoid slots for drawing.
+        float startX = mDividerWidth * .5f + mIndent.left;
+        for (int index = 0; index < mTrapezoidSlots.length; index++) {
+            final float nextX = startX + mDividerWidth + mUnitWidth;
+            final int trapezoidIndex = isRTL() ? mTrapezoidSlots.length - index - 1 : index;
+            mTrapezoidSlots[trapezoidIndex].mLeft = round(startX + trapezoidSlotOffset);
+            mTrapezoidSlots[trapezoidIndex].mRight = round(nextX - trapezoidSlotOffset);
             startX = nextX;
         }
     }
 
-    /** Gets all the axis label texts displaying area positions if they are shown. */
-    private Rect[] getAxisLabelDisplayAreas(
+    /** Updates all the axis label texts displaying area positions if they are shown. */
+    private void updateAxisLabelDisplayAreas(
             final int size,
             final float baselineX,
             final float offsetX,
             final float baselineY,
             final boolean shiftFirstAndLast) {
-        final Rect[] result = new Rect[size];
-        for (int index = 0; index < result.length; index++) {
+        mAxisLabelDisplayAreaCount = size;
+        for (int index = 0; index < size; index++) {
             final float width = mAxisLabelsBounds.get(index).width();
             float middle = baselineX + index * offsetX;
             if (shiftFirstAndLast) {
@@ -512,19 +534,19 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
             final float right = left + width;
             final float top = baselineY + mAxisLabelsBounds.get(index).top;
             final float bottom = top + mAxisLabelsBounds.get(index).height();
-            result[index] = new Rect(round(left), round(top), round(right), round(bottom));
+            mAxisLabelDisplayAreas[index].set(
+                    round(left), round(top), round(right), round(bottom));
         }
-        return result;
     }
 
     private void drawAxisLabels(Canvas canvas, final Rect[] displayAreas, final float baselineY) {
-        final int lastIndex = displayAreas.length - 1;
+        final int lastIndex = mAxisLabelDisplayAreaCount - 1;
         mLabelDrawnIndexes.clear();
         // Suppose first and last labels are always able to draw.
         drawAxisLabelText(canvas, 0, displayAreas[0], baselineY);
-        mLabelDrawnIndexes.add(0);
+        mLabelDrawnIndexes.put(0, true);
         drawAxisLabelText(canvas, lastIndex, displayAreas[lastIndex], baselineY);
-        mLabelDrawnIndexes.add(lastIndex);
+        mLabelDrawnIndexes.put(lastIndex, true);
         drawAxisLabelsBetweenStartIndexAndEndIndex(canvas, displayAreas, 0, lastIndex, baselineY);
     }
 
@@ -551,7 +573,7 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
                 return;
             }
             drawAxisLabelText(canvas, middleIndex, displayAreas[middleIndex], baselineY);
-            mLabelDrawnIndexes.add(middleIndex);
+            mLabelDrawnIndexes.put(middleIndex, true);
             drawAxisLabelsBetweenStartIndexAndEndIndex(
                     canvas, displayAreas, startIndex, middleIndex, baselineY);
             drawAxisLabelsBetweenStartIndexAndEndIndex(
@@ -565,9 +587,9 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
                 return;
             }
             drawAxisLabelText(canvas, middleIndex1, displayAreas[middleIndex1], baselineY);
-            mLabelDrawnIndexes.add(middleIndex1);
+            mLabelDrawnIndexes.put(middleIndex1, true);
             drawAxisLabelText(canvas, middleIndex2, displayAreas[middleIndex2], baselineY);
-            mLabelDrawnIndexes.add(middleIndex2);
+            mLabelDrawnIndexes.put(middleIndex2, true);
             drawAxisLabelsBetweenStartIndexAndEndIndex(
                     canvas, displayAreas, startIndex, middleIndex1, baselineY);
             drawAxisLabelsBetweenStartIndexAndEndIndex(
@@ -598,7 +620,7 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
                             : mViewModel.size() - index - 2; // for daily
         }
         canvas.drawText(mViewModel.getText(index), displayArea.centerX(), baselineY, mTextPaint);
-        mLabelDrawnIndexes.add(index);
+        mLabelDrawnIndexes.put(index, true);
     }
 
     private void drawTrapezoids(Canvas canvas) {
@@ -612,8 +634,7 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
                 trapezoidBottom - mDividerWidth * .5f - mIndent.top - mTrapezoidVOffset;
         final float unitHeight = availableSpace / 100f;
         // Draws all trapezoid shapes into the canvas.
-        final Path trapezoidPath = new Path();
-        Path trapezoidCurvePath = null;
+        final Path trapezoidPath = mTrapezoidPath;
         for (int index = 0; index < mTrapezoidSlots.length; index++) {
             // Not draws the trapezoid for corner or not initialization cases.
             if (!isValidToDraw(mViewModel, index)) {
@@ -730,6 +751,29 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
         for (int i = 0; i < mViewModel.size(); i++) {
             mAxisLabelsBounds.add(new Rect());
         }
+        if (mAxisLabelDisplayAreas.length != mViewModel.size()) {
+            mAxisLabelDisplayAreas = new Rect[mViewModel.size()];
+            for (int i = 0; i < mAxisLabelDisplayAreas.length; i++) {
+                mAxisLabelDisplayAreas[i] = new Rect();
+            }
+        }
+        mAxisLabelDisplayAreaCount = 0;
+    }
+
+    private void measureTextBounds() {
+        mTextBoundsMeasured = true;
+        mTextPaint.setTextAlign(Paint.Align.LEFT);
+        for (int index = 0; index < mPercentages.length; index++) {
+            mTextPaint.getTextBounds(
+                    mPercentages[index], 0, mPercentages[index].length(), mPercentageBounds[index]);
+        }
+        if (mViewModel != null) {
+            for (int index = 0; index < mViewModel.size(); index++) {
+                final String text = mViewModel.getText(index);
+                mTextPaint.getTextBounds(text, 0, text.length(), mAxisLabelsBounds.get(index));
+            }
+        }
+        Log.d(TAG, "measureTextBounds:" + mPercentageBounds[0]);
     }
 
     private static boolean isTrapezoidValid(
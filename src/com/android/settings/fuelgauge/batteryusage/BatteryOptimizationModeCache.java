@@ -21,8 +21,7 @@ import android.util.ArrayMap;
 
 import androidx.annotation.VisibleForTesting;
 
-import com.android.settings.fuelgauge.BatteryOptimizeUtils;
-import com.android.settingslib.fuelgauge.PowerAllowlistBackend;
+import com.android.settings.fuelgauge.BatteryOptimizeModeSnapshot;
 
 import java.util.Map;
 
@@ -37,17 +36,15 @@ final class BatteryOptimizationModeCache {
     BatteryOptimizationModeCache(final Context context) {
         mContext = context;
         mBatteryOptimizeModeCacheMap = new ArrayMap<>();
-        PowerAllowlistBackend.getInstance(mContext).refreshList();
     }
 
     BatteryOptimizationMode getBatteryOptimizeMode(final int uid, final String packageName) {
         if (!mBatteryOptimizeModeCacheMap.containsKey(uid)) {
-            final BatteryOptimizeUtils batteryOptimizeUtils =
-                    new BatteryOptimizeUtils(mContext, uid, packageName);
             mBatteryOptimizeModeCacheMap.put(
                     uid,
                     BatteryOptimizationMode.forNumber(
-                            batteryOptimizeUtils.getAppOptimizationMode(/* refreshList= */ false)));
+                            BatteryOptimizeModeSnapshot.get(mContext)
+                                    .getAppOptimizationMode(uid, packageName)));
         }
         return mBatteryOptimizeModeCacheMap.get(uid);
     }
@@ -17,7 +17,10 @@
 package com.android.settings.fuelgauge.batteryusage;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.net.Uri;
@@ -27,6 +30,8 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
+import androidx.sqlite.db.SupportSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteQueryBuilder;
 
 import com.android.settings.fuelgauge.batteryusage.db.AppUsageEventDao;
 import com.android.settings.fuelgauge.batteryusage.db.AppUsageEventEntity;
@@ -44,6 +49,7 @@ import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 
 /** {@link ContentProvider} class to fetch battery usage data. */
 public class BatteryUsageContentProvider extends ContentProvider {
@@ -64,6 +70,16 @@ public class BatteryUsageContentProvider extends ContentProvider {
 
     private static final List<Integer> ALL_BATTERY_EVENT_TYPES =
             Arrays.stream(BatteryEventType.values()).map(type -> type.getNumber()).toList();
+    private static final Set<String> BATTERY_STATE_COLUMNS =
+            Set.of(
+                    BatteryHistEntry.KEY_UID,
+                    BatteryHistEntry.KEY_USER_ID,
+                    BatteryHistEntry.KEY_PACKAGE_NAME,
+                    BatteryHistEntry.KEY_TIMESTAMP,
+                    BatteryHistEntry.KEY_CONSUMER_TYPE,
+                    BatteryHistEntry.KEY_IS_FULL_CHARGE_CYCLE_START,
+                    BatteryHistEntry.KEY_BATTERY_INFORMATION,
+                    BatteryHistEntry.KEY_BATTERY_INFORMATION_DEBUG);
     private static final UriMatcher sUriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
 
     static {
@@ -98,6 +114,7 @@ public class BatteryUsageContentProvider extends ContentProvider {
     }
 
     private Clock mClock;
+    private BatteryStateDatabase mDatabase;
     private BatteryStateDao mBatteryStateDao;
     private AppUsageEventDao mAppUsageEventDao;
     private BatteryEventDao mBatteryEventDao;
@@ -115,11 +132,11 @@ public class BatteryUsageContentProvider extends ContentProvider {
             return false;
         }
         mClock = Clock.systemUTC();
-        final BatteryStateDatabase database = BatteryStateDatabase.getInstance(getContext());
-        mBatteryStateDao = database.batteryStateDao();
-        mAppUsageEventDao = database.appUsageEventDao();
-        mBatteryEventDao = database.batteryEventDao();
-        mBatteryUsageSlotDao = database.batteryUsageSlotDao();
+        mDatabase = BatteryStateDatabase.getInstance(getContext());
+        mBatteryStateDao = mDatabase.batteryStateDao();
+        mAppUsageEventDao = mDatabase.appUsageEventDao();
+        mBatteryEventDao = mDatabase.batteryEventDao();
+        mBatteryUsageSlotDao = mDatabase.batteryUsageSlotDao();
         Log.w(TAG, "create content provider from " + getCallingPackage());
         return true;
     }
@@ -134,7 +151,7 @@ public class BatteryUsageContentProvider extends ContentProvider {
             @Nullable String s1) {
         switch (sUriMatcher.match(uri)) {
             case BATTERY_STATE_CODE:
-                return getBatteryStates(uri);
+                return getBatteryStates(uri, strings);
             case APP_USAGE_EVENT_CODE:
                 return getAppUsageEvents(uri);
             case APP_USAGE_LATEST_TIMESTAMP_CODE:
@@ -188,6 +205,67 @@ public class BatteryUsageContentProvider extends ContentProvider {
         return uri;
     }
 
+    /** Inserts all rows with a single DAO call, which is a single database transaction. */
+    @Override
+    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
+        final long timestamp = mClock.millis();
+        try {
+            switch (sUriMatcher.match(uri)) {
+                case BATTERY_STATE_CODE:
+                    final List<BatteryState> states = new ArrayList<>(values.length);
+                    for (ContentValues contentValues : values) {
+                        states.add(BatteryState.create(contentValues));
+                    }
+                    mBatteryStateDao.insertAll(states);
+                    break;
+                case APP_USAGE_EVENT_CODE:
+                    final List<AppUsageEventEntity> events = new ArrayList<>(values.length);
+                    for (ContentValues contentValues : values) {
+                        events.add(AppUsageEventEntity.create(contentValues));
+                    }
+                    mAppUsageEventDao.insertAll(events);
+                    break;
+                case BATTERY_EVENT_CODE:
+                    final List<BatteryEventEntity> batteryEvents = new ArrayList<>(values.length);
+                    for (ContentValues contentValues : values) {
+                        batteryEvents.add(BatteryEventEntity.create(contentValues));
+                    }
+                    mBatteryEventDao.insertAll(batteryEvents);
+                    break;
+                case BATTERY_USAGE_SLOT_CODE:
+                    final List<BatteryUsageSlotEntity> slots = new ArrayList<>(values.length);
+                    for (ContentValues contentValues : values) {
+                        slots.add(BatteryUsageSlotEntity.create(contentValues));
+                    }
+                    mBatteryUsageSlotDao.insertAll(slots);
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown URI: " + uri);
+            }
+        } catch (RuntimeException e) {
+            if (e instanceof IllegalArgumentException) {
+                throw e;
+            }
+            Log.e(TAG, "bulkInsert() from:" + uri + " error:", e);
+            return 0;
+        }
+        Log.d(
+                TAG,
+                String.format(
+                        "bulkInsert() %d rows into %s in %d/ms",
+                        values.length, uri, mClock.millis() - timestamp));
+        return values.length;
+    }
+
+    /** Applies all operations in a single database transaction. */
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(
+            @NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        return mDatabase.runInTransaction(() -> super.applyBatch(operations));
+    }
+
     @Override
     public int delete(@NonNull Uri uri, @Nullable String s, @Nullable String[] strings) {
         throw new UnsupportedOperationException("unsupported!");
@@ -234,12 +312,18 @@ public class BatteryUsageContentProvider extends ContentProvider {
         return cursor;
     }
 
-    private Cursor getBatteryStates(Uri uri) {
+    private Cursor getBatteryStates(Uri uri, @Nullable String[] projection) {
         final long queryTimestamp = getQueryTimestamp(uri);
         final long timestamp = mClock.millis();
         Cursor cursor = null;
         try {
-            cursor = mBatteryStateDao.getBatteryStatesAfter(queryTimestamp);
+            if (projection == null) {
+                cursor = mBatteryStateDao.getBatteryStatesAfter(queryTimestamp);
+            } else {
+                cursor = mDatabase.query(createBatteryStatesQuery(projection, queryTimestamp));
+            }
+        } catch (IllegalArgumentException e) {
+            throw e;
         } catch (RuntimeException e) {
             Log.e(TAG, "query() from:" + uri + " error:", e);
         }
@@ -318,6 +402,21 @@ public class BatteryUsageContentProvider extends ContentProvider {
         return cursor;
     }
 
+    // Same query as BatteryStateDao.getBatteryStatesAfter(), loading only the given columns.
+    private static SupportSQLiteQuery createBatteryStatesQuery(
+            String[] projection, long queryTimestamp) {
+        for (String column : projection) {
+            if (!BATTERY_STATE_COLUMNS.contains(column)) {
+                throw new IllegalArgumentException("unknown column: " + column);
+            }
+        }
+        return SupportSQLiteQueryBuilder.builder(DatabaseUtils.BATTERY_STATE_TABLE)
+                .columns(projection)
+                .selection("timestamp >= ?", new Object[] {queryTimestamp})
+                .orderBy("timestamp ASC")
+                .create();
+    }
+
     private List<Integer> getQueryBatteryEventTypes(Uri uri) {
         Log.d(TAG, "getQueryBatteryEventTypes from uri: " + uri);
         final String batteryEventTypesParameter =
@@ -22,6 +22,7 @@ import android.os.AsyncTask;
 import android.os.BatteryUsageStats;
 import android.os.Handler;
 import android.os.Looper;
+import android.util.ArrayMap;
 import android.util.Log;
 
 import androidx.annotation.VisibleForTesting;
@@ -31,6 +32,7 @@ import com.android.settings.fuelgauge.PowerUsageFeatureProvider;
 import com.android.settings.fuelgauge.batteryusage.bugreport.BatteryUsageLogUtils;
 import com.android.settings.overlay.FeatureFactory;
 
+import java.util.Calendar;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Supplier;
@@ -54,6 +56,18 @@ public final class BatteryUsageDataLoader {
                 });
     }
 
+    /**
+     * Stores the battery usage slots completed since the last periodic job, the same way the
+     * periodic job does. Runs serially with the periodic job, so a slot is only computed once.
+     */
+    static void enqueuePreprocessWork(final Context context) {
+        AsyncTask.execute(
+                () -> {
+                    Log.d(TAG, "preprocessBatteryUsageSlotsSafely() in the AsyncTask");
+                    preprocessBatteryUsageSlotsSafely(context.getApplicationContext());
+                });
+    }
+
     @VisibleForTesting
     static void loadBatteryStatsData(final Context context, final boolean isFullChargeStart) {
         BatteryUsageLogUtils.writeLog(context, Action.FETCH_USAGE_DATA, "");
@@ -124,30 +138,8 @@ public final class BatteryUsageDataLoader {
                         handler,
                         userIdsSeries,
                         /* isFromPeriodJob= */ true,
-                        batteryDiffDataMap -> {
-                            final PowerUsageFeatureProvider featureProvider =
-                                    FeatureFactory.getFeatureFactory()
-                                            .getPowerUsageFeatureProvider();
-                            DatabaseUtils.sendBatteryUsageSlotData(
-                                    context,
-                                    ConvertUtils.convertToBatteryUsageSlotList(
-                                            context,
-                                            batteryDiffDataMap,
-                                            featureProvider.isAppOptimizationModeLogged()));
-                            if (batteryDiffDataMap.values().stream()
-                                    .anyMatch(
-                                            data ->
-                                                    data != null
-                                                            && (!data.getSystemDiffEntryList()
-                                                                            .isEmpty()
-                                                                    || !data.getAppDiffEntryList()
-                                                                            .isEmpty()))) {
-                                featureProvider.detectPowerAnomaly(
-                                        context,
-                                        /* displayDrain= */ 0,
-                                        DetectRequestSourceType.TYPE_DATA_LOADER);
-                            }
-                        });
+                        batteryDiffDataMap ->
+                                persistBatteryUsageSlots(context, batteryDiffDataMap));
         if (batteryLevelData == null) {
             Log.d(TAG, "preprocessBatteryUsageSlots() no new battery usage data.");
             return;
@@ -162,6 +154,66 @@ public final class BatteryUsageDataLoader {
                         batteryLevelData, System.currentTimeMillis() - start));
     }
 
+    /**
+     * Stores the battery usage slots of {@code batteryDiffDataMap} that are not stored yet, and
+     * detects power anomalies if any slot has usage.
+     */
+    @VisibleForTesting
+    static void persistBatteryUsageSlots(
+            final Context context, final Map<Long, BatteryDiffData> batteryDiffDataMap) {
+        final PowerUsageFeatureProvider featureProvider =
+                FeatureFactory.getFeatureFactory().getPowerUsageFeatureProvider();
+        // The slot table has no unique key, skip the slots a previous run already stored.
+        final Map<Long, BatteryDiffData> newBatteryDiffDataMap = new ArrayMap<>();
+        long earliestStartTimestamp = Long.MAX_VALUE;
+        for (Map.Entry<Long, BatteryDiffData> entry : batteryDiffDataMap.entrySet()) {
+            if (entry.getValue() != null) {
+                newBatteryDiffDataMap.put(entry.getKey(), entry.getValue());
+                earliestStartTimestamp =
+                        Math.min(earliestStartTimestamp, entry.getValue().getStartTimestamp());
+            }
+        }
+        if (!newBatteryDiffDataMap.isEmpty()) {
+            for (BatteryUsageSlot batteryUsageSlot :
+                    DatabaseUtils.getBatteryUsageSlots(
+                            context, Calendar.getInstance(), earliestStartTimestamp)) {
+                newBatteryDiffDataMap
+                        .values()
+                        .removeIf(
+                                data ->
+                                        data.getStartTimestamp()
+                                                == batteryUsageSlot.getStartTimestamp());
+            }
+        }
+        DatabaseUtils.sendBatteryUsageSlotData(
+                context,
+                ConvertUtils.convertToBatteryUsageSlotList(
+                        context,
+                        newBatteryDiffDataMap,
+                        featureProvider.isAppOptimizationModeLogged()));
+        if (batteryDiffDataMap.values().stream()
+                .anyMatch(
+                        data ->
+                                data != null
+                                        && (!data.getSystemDiffEntryList().isEmpty()
+                                                || !data.getAppDiffEntryList().isEmpty()))) {
+            featureProvider.detectPowerAnomaly(
+                    context, /* displayDrain= */ 0, DetectRequestSourceType.TYPE_DATA_LOADER);
+        }
+    }
+
+    private static void preprocessBatteryUsageSlotsSafely(final Context context) {
+        try {
+            final UserIdsSeries userIdsSeries =
+                    new UserIdsSeries(context, /* isNonUIRequest= */ true);
+            if (!userIdsSeries.isCurrentUserLocked()) {
+                preprocessBatteryUsageSlots(context, userIdsSeries);
+            }
+        } catch (RuntimeException e) {
+            Log.e(TAG, "preprocessBatteryUsageSlots:", e);
+        }
+    }
+
     private static void loadUsageDataSafely(
             final Context context, final boolean isFullChargeStart) {
         try {
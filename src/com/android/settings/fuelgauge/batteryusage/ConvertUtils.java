@@ -105,40 +105,15 @@ public final class ConvertUtils {
             final long bootTimestamp,
             final long timestamp,
             final boolean isFullChargeStart) {
-        final ContentValues values = new ContentValues();
-        if (entry != null && batteryUsageStats != null) {
-            values.put(BatteryHistEntry.KEY_UID, Long.valueOf(entry.getUid()));
-            values.put(
-                    BatteryHistEntry.KEY_USER_ID,
-                    Long.valueOf(UserHandle.getUserId(entry.getUid())));
-            final String packageName = entry.getDefaultPackageName();
-            values.put(BatteryHistEntry.KEY_PACKAGE_NAME, packageName != null ? packageName : "");
-            values.put(
-                    BatteryHistEntry.KEY_CONSUMER_TYPE, Integer.valueOf(entry.getConsumerType()));
-        } else {
-            values.put(BatteryHistEntry.KEY_PACKAGE_NAME, FAKE_PACKAGE_NAME);
-        }
-        values.put(BatteryHistEntry.KEY_TIMESTAMP, Long.valueOf(timestamp));
-        values.put(
-                BatteryHistEntry.KEY_IS_FULL_CHARGE_CYCLE_START,
-                Boolean.valueOf(isFullChargeStart));
-        final BatteryInformation batteryInformation =
-                constructBatteryInformation(
-                        entry,
+        return new BatteryEntryConverter(
                         batteryUsageStats,
                         batteryLevel,
                         batteryStatus,
                         batteryHealth,
-                        bootTimestamp);
-        values.put(
-                BatteryHistEntry.KEY_BATTERY_INFORMATION,
-                convertBatteryInformationToString(batteryInformation));
-        // Save the BatteryInformation unencoded string into database for debugging.
-        if (Build.TYPE.equals("userdebug")) {
-            values.put(
-                    BatteryHistEntry.KEY_BATTERY_INFORMATION_DEBUG, batteryInformation.toString());
-        }
-        return values;
+                        bootTimestamp,
+                        timestamp,
+                        isFullChargeStart)
+                .convert(entry);
     }
 
     /** Converts {@link AppUsageEvent} to {@link ContentValues} */
@@ -180,25 +155,44 @@ public final class ConvertUtils {
         return Base64.encodeToString(batteryInformation.toByteArray(), Base64.DEFAULT);
     }
 
+    /**
+     * Gets the serialized {@link BatteryInformation} bytes from {@link ContentValues}, which holds
+     * either the bytes or the legacy Base64 encoded string.
+     */
+    @Nullable
+    public static byte[] getBatteryInformationBytes(final ContentValues values, final String key) {
+        final Object value = values != null ? values.get(key) : null;
+        if (value instanceof byte[]) {
+            return (byte[]) value;
+        }
+        if (value instanceof String) {
+            try {
+                return Base64.decode((String) value, Base64.DEFAULT);
+            } catch (IllegalArgumentException e) {
+                Log.e(TAG, "invalid battery information: " + value, e);
+            }
+        }
+        return null;
+    }
+
     /** Gets the {@link BatteryInformation} instance from {@link ContentValues}. */
     public static BatteryInformation getBatteryInformation(
             final ContentValues values, final String key) {
-        final BatteryInformation defaultInstance = BatteryInformation.getDefaultInstance();
-        if (values != null && values.containsKey(key)) {
-            return BatteryUtils.parseProtoFromString(values.getAsString(key), defaultInstance);
-        }
-        return defaultInstance;
+        return BatteryUtils.parseProtoFromBytes(
+                getBatteryInformationBytes(values, key), BatteryInformation.getDefaultInstance());
     }
 
     /** Gets the {@link BatteryInformation} instance from {@link Cursor}. */
     public static BatteryInformation getBatteryInformation(final Cursor cursor, final String key) {
         final BatteryInformation defaultInstance = BatteryInformation.getDefaultInstance();
         final int columnIndex = cursor.getColumnIndex(key);
-        if (columnIndex >= 0) {
-            return BatteryUtils.parseProtoFromString(
-                    cursor.getString(columnIndex), defaultInstance);
+        if (columnIndex < 0) {
+            return defaultInstance;
         }
-        return defaultInstance;
+        // Parses the bytes directly, or the Base64 string stored before the database version 3.
+        return cursor.getType(columnIndex) == Cursor.FIELD_TYPE_STRING
+                ? BatteryUtils.parseProtoFromString(cursor.getString(columnIndex), defaultInstance)
+                : BatteryUtils.parseProtoFromBytes(cursor.getBlob(columnIndex), defaultInstance);
     }
 
     /** Gets the encoded string from {@link BatteryReattribute} instance. */
@@ -622,29 +616,88 @@ public final class ConvertUtils {
                 /* isAccumulated= */ false);
     }
 
-    private static BatteryInformation constructBatteryInformation(
-            final BatteryEntry entry,
-            final BatteryUsageStats batteryUsageStats,
-            final int batteryLevel,
-            final int batteryStatus,
-            final int batteryHealth,
-            final long bootTimestamp) {
-        final DeviceBatteryState deviceBatteryState =
-                DeviceBatteryState.newBuilder()
-                        .setBatteryLevel(batteryLevel)
-                        .setBatteryStatus(batteryStatus)
-                        .setBatteryHealth(batteryHealth)
-                        .build();
-        final BatteryInformation.Builder batteryInformationBuilder =
-                BatteryInformation.newBuilder()
-                        .setDeviceBatteryState(deviceBatteryState)
-                        .setBootTimestamp(bootTimestamp)
-                        .setZoneId(TimeZone.getDefault().getID());
-        if (entry != null && batteryUsageStats != null) {
-            batteryInformationBuilder
-                    .setIsHidden(entry.isHidden())
+    /**
+     * Converts the {@link BatteryEntry} list of one snapshot to {@link ContentValues}. The state
+     * shared by every entry of the snapshot is built once, and the proto builder is reused.
+     */
+    static final class BatteryEntryConverter {
+        // Number of keys put into the ContentValues of one entry.
+        private static final int CONTENT_VALUES_SIZE = 8;
+
+        private final BatteryUsageStats mBatteryUsageStats;
+        private final long mTimestamp;
+        private final boolean mIsFullChargeStart;
+        private final boolean mNeedDebugString;
+        private final BatteryInformation.Builder mBuilder;
+        private final BatteryInformation mSnapshotInformation;
+
+        BatteryEntryConverter(
+                final BatteryUsageStats batteryUsageStats,
+                final int batteryLevel,
+                final int batteryStatus,
+                final int batteryHealth,
+                final long bootTimestamp,
+                final long timestamp,
+                final boolean isFullChargeStart) {
+            mBatteryUsageStats = batteryUsageStats;
+            mTimestamp = timestamp;
+            mIsFullChargeStart = isFullChargeStart;
+            mNeedDebugString = Build.TYPE.equals("userdebug");
+            final DeviceBatteryState deviceBatteryState =
+                    DeviceBatteryState.newBuilder()
+                            .setBatteryLevel(batteryLevel)
+                            .setBatteryStatus(batteryStatus)
+                            .setBatteryHealth(batteryHealth)
+                            .build();
+            mSnapshotInformation =
+                    BatteryInformation.newBuilder()
+                            .setDeviceBatteryState(deviceBatteryState)
+                            .setBootTimestamp(bootTimestamp)
+                            .setZoneId(TimeZone.getDefault().getID())
+                            .build();
+            mBuilder = mSnapshotInformation.toBuilder();
+        }
+
+        /** Converts {@code entry}, or the fake entry of an empty snapshot if it is null. */
+        ContentValues convert(final BatteryEntry entry) {
+            final ContentValues values = new ContentValues(CONTENT_VALUES_SIZE);
+            final boolean hasEntry = entry != null && mBatteryUsageStats != null;
+            if (hasEntry) {
+                values.put(BatteryHistEntry.KEY_UID, Long.valueOf(entry.getUid()));
+                values.put(
+                        BatteryHistEntry.KEY_USER_ID,
+                        Long.valueOf(UserHandle.getUserId(entry.getUid())));
+                final String packageName = entry.getDefaultPackageName();
+                values.put(
+                        BatteryHistEntry.KEY_PACKAGE_NAME, packageName != null ? packageName : "");
+                values.put(
+                        BatteryHistEntry.KEY_CONSUMER_TYPE,
+                        Integer.valueOf(entry.getConsumerType()));
+            } else {
+                values.put(BatteryHistEntry.KEY_PACKAGE_NAME, FAKE_PACKAGE_NAME);
+            }
+            values.put(BatteryHistEntry.KEY_TIMESTAMP, Long.valueOf(mTimestamp));
+            values.put(
+                    BatteryHistEntry.KEY_IS_FULL_CHARGE_CYCLE_START,
+                    Boolean.valueOf(mIsFullChargeStart));
+            final BatteryInformation batteryInformation =
+                    hasEntry ? constructBatteryInformation(entry) : mSnapshotInformation;
+            values.put(
+                    BatteryHistEntry.KEY_BATTERY_INFORMATION, batteryInformation.toByteArray());
+            // Save the BatteryInformation unencoded string into database for debugging.
+            if (mNeedDebugString) {
+                values.put(
+                        BatteryHistEntry.KEY_BATTERY_INFORMATION_DEBUG,
+                        batteryInformation.toString());
+            }
+            return values;
+        }
+
+        private BatteryInformation constructBatteryInformation(final BatteryEntry entry) {
+            // Every per entry field is set, so nothing is left over from the previous entry.
+            return mBuilder.setIsHidden(entry.isHidden())
                     .setAppLabel(entry.getLabel() != null ? entry.getLabel() : "")
-                    .setTotalPower(batteryUsageStats.getConsumedPower())
+                    .setTotalPower(mBatteryUsageStats.getConsumedPower())
                     .setConsumePower(entry.getConsumedPower())
                     .setForegroundUsageConsumePower(entry.getConsumedPowerInForeground())
                     .setForegroundServiceUsageConsumePower(
@@ -655,10 +708,9 @@ public final class ConvertUtils {
                     .setDrainType(entry.getPowerComponentId())
                     .setForegroundUsageTimeInMs(entry.getTimeInForegroundMs())
                     .setForegroundServiceUsageTimeInMs(entry.getTimeInForegroundServiceMs())
-                    .setBackgroundUsageTimeInMs(entry.getTimeInBackgroundMs());
+                    .setBackgroundUsageTimeInMs(entry.getTimeInBackgroundMs())
+                    .build();
         }
-
-        return batteryInformationBuilder.build();
     }
 
     private static int getIntegerFromCursor(final Cursor cursor, final String key) {
@@ -62,6 +62,8 @@ import java.util.Set;
  *   <li>Then after all 3 async tasks complete, the battery history data and app usage data will be
  *       combined to generate final data used for UI rendering. And the callback function will be
  *       applied.
+ *   <li>The slots completed since the latest persisted one are stored as battery usage slots, so
+ *       that later page opens only compute the slots after them from the raw history.
  *   <li>If current user is locked, which means we couldn't get the latest app usage data, screen-on
  *       time will not be shown in the UI and empty screen-on time data will be returned.
  * </ul>
@@ -506,7 +508,8 @@ public class DataProcessManager {
                                     getSystemAppsPackageNames(),
                                     getSystemAppsUids()));
                 }
-                batteryDiffDataMap.putAll(
+                // Only the slots after the latest persisted one are computed from raw history.
+                final Map<Long, BatteryDiffData> currentBatteryDiffDataMap =
                         DataProcessor.getBatteryDiffDataMap(
                                 mContext,
                                 mUserIdsSeries,
@@ -514,7 +517,8 @@ public class DataProcessManager {
                                 mBatteryHistoryMap,
                                 mAppUsagePeriodMap,
                                 getSystemAppsPackageNames(),
-                                getSystemAppsUids()));
+                                getSystemAppsUids());
+                batteryDiffDataMap.putAll(currentBatteryDiffDataMap);
                 // Process the reattributate data for the following two cases:
                 // 1) the latest slot for the timestamp "until now"
                 // 2) walkthrough all BatteryDiffData again to handle "re-compute" case
@@ -523,6 +527,17 @@ public class DataProcessManager {
                                 .getPowerUsageFeatureProvider();
                 featureProvider.processBatteryReattributeData(
                         mContext, batteryDiffDataMap, mBatteryEventList, mIsFromPeriodJob);
+                if (!mIsFromPeriodJob
+                        && mUserIdsSeries.isMainUserProfileOnly()
+                        && !getCompletedBatteryDiffDataMap(
+                                        currentBatteryDiffDataMap,
+                                        TimestampUtils.getLastEvenHourTimestamp(
+                                                System.currentTimeMillis()))
+                                .isEmpty()) {
+                    // Stores the completed slots through the periodic job path, so they get the
+                    // period job reattribution and anomaly detection, without waiting for it.
+                    BatteryUsageDataLoader.enqueuePreprocessWork(mContext);
+                }
 
                 Log.d(
                         TAG,
@@ -545,6 +560,25 @@ public class DataProcessManager {
         }.execute();
     }
 
+    /**
+     * Returns the slots of {@code batteryDiffDataMap} ending at or before {@code
+     * lastEvenHourTimestamp}, which will not change anymore.
+     */
+    @VisibleForTesting
+    static Map<Long, BatteryDiffData> getCompletedBatteryDiffDataMap(
+            final Map<Long, BatteryDiffData> batteryDiffDataMap,
+            final long lastEvenHourTimestamp) {
+        final Map<Long, BatteryDiffData> completedBatteryDiffDataMap = new ArrayMap<>();
+        for (Map.Entry<Long, BatteryDiffData> entry : batteryDiffDataMap.entrySet()) {
+            final BatteryDiffData batteryDiffData = entry.getValue();
+            if (batteryDiffData != null
+                    && batteryDiffData.getEndTimestamp() <= lastEvenHourTimestamp) {
+                completedBatteryDiffDataMap.put(entry.getKey(), batteryDiffData);
+            }
+        }
+        return completedBatteryDiffDataMap;
+    }
+
     // Whether we should load app usage data from service or database.
     private synchronized boolean shouldLoadAppUsageData() {
         if (!mShowScreenOnTime) {
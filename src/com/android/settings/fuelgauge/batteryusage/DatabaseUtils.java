@@ -31,14 +31,13 @@ import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.BatteryManager;
 import android.os.BatteryUsageStats;
-import android.os.Handler;
-import android.os.Looper;
 import android.os.RemoteException;
 import android.os.SystemClock;
 import android.os.UserManager;
 import android.util.ArrayMap;
 import android.util.ArraySet;
 import android.util.Log;
+import android.util.LongSparseArray;
 
 import androidx.annotation.VisibleForTesting;
 
@@ -66,13 +65,18 @@ import java.util.stream.Collectors;
 public final class DatabaseUtils {
     private static final String TAG = "DatabaseUtils";
     private static final String SHARED_PREFS_FILE = "battery_usage_shared_prefs";
-    private static final boolean EXPLICIT_CLEAR_MEMORY_ENABLED = false;
-
-    /** Clear memory threshold for device booting phase. */
-    private static final long CLEAR_MEMORY_THRESHOLD_MS = Duration.ofMinutes(5).toMillis();
-    private static final long CLEAR_MEMORY_DELAYED_MS = Duration.ofSeconds(2).toMillis();
     private static final long INVALID_TIMESTAMP = 0L;
 
+    /** Columns read by {@link BatteryHistEntry}, the debug string is never loaded. */
+    private static final String[] HISTORY_PROJECTION = {
+        BatteryHistEntry.KEY_UID,
+        BatteryHistEntry.KEY_USER_ID,
+        BatteryHistEntry.KEY_PACKAGE_NAME,
+        BatteryHistEntry.KEY_TIMESTAMP,
+        BatteryHistEntry.KEY_CONSUMER_TYPE,
+        BatteryHistEntry.KEY_BATTERY_INFORMATION,
+    };
+
     static final int DATA_RETENTION_INTERVAL_DAY = 9;
     static final String KEY_LAST_LOAD_FULL_CHARGE_TIME = "last_load_full_charge_time";
     static final String KEY_LAST_UPLOAD_FULL_CHARGE_TIME = "last_upload_full_charge_time";
@@ -357,21 +361,13 @@ public final class DatabaseUtils {
                         .appendQueryParameter(QUERY_KEY_TIMESTAMP, Long.toString(queryTimestamp))
                         .build();
 
-        final List<BatteryHistEntry> batteryHistEntryList =
-                loadListFromContentProvider(
-                        context, batteryStateUri, cursor -> new BatteryHistEntry(cursor));
-        final Map<Long, Map<String, BatteryHistEntry>> resultMap = new ArrayMap();
-        for (final BatteryHistEntry entry : batteryHistEntryList) {
-            final long timestamp = entry.mTimestamp;
-            final String key = entry.getKey();
-            Map batteryHistEntryMap = resultMap.get(timestamp);
-            // Creates new one if there is no corresponding map.
-            if (batteryHistEntryMap == null) {
-                batteryHistEntryMap = new ArrayMap();
-                resultMap.put(timestamp, batteryHistEntryMap);
-            }
-            batteryHistEntryMap.put(key, entry);
-        }
+        final Map<Long, Map<String, BatteryHistEntry>> resultMap =
+                loadFromContentProvider(
+                        context,
+                        batteryStateUri,
+                        HISTORY_PROJECTION,
+                        new ArrayMap<>(),
+                        DatabaseUtils::buildHistoryMap);
 
         if (resultMap == null || resultMap.isEmpty()) {
             Log.d(TAG, "getBatteryHistoryMap() returns empty or null");
@@ -385,6 +381,42 @@ public final class DatabaseUtils {
         return resultMap;
     }
 
+    /**
+     * Builds the battery history map in a single pass over the cursor, without materializing the
+     * intermediate list of entries. Rows sharing a timestamp are expected to be adjacent, as the
+     * provider orders them by timestamp, so the snapshot map is only looked up once per run.
+     */
+    @VisibleForTesting
+    static Map<Long, Map<String, BatteryHistEntry>> buildHistoryMap(Cursor cursor) {
+        final LongSparseArray<Map<String, BatteryHistEntry>> historyMaps =
+                new LongSparseArray<>();
+        Map<String, BatteryHistEntry> currentMap = null;
+        long currentTimestamp = INVALID_TIMESTAMP;
+        int lastMapSize = 0;
+        while (cursor.moveToNext()) {
+            final BatteryHistEntry entry = new BatteryHistEntry(cursor);
+            if (currentMap == null || entry.mTimestamp != currentTimestamp) {
+                currentTimestamp = entry.mTimestamp;
+                currentMap = historyMaps.get(currentTimestamp);
+                // Creates new one if there is no corresponding map, sized as the previous
+                // snapshot since consecutive snapshots mostly contain the same consumers.
+                if (currentMap == null) {
+                    currentMap = new ArrayMap<>(lastMapSize);
+                    historyMaps.put(currentTimestamp, currentMap);
+                }
+            }
+            currentMap.put(entry.getKey(), entry);
+            lastMapSize = Math.max(lastMapSize, currentMap.size());
+        }
+
+        final int size = historyMaps.size();
+        final Map<Long, Map<String, BatteryHistEntry>> resultMap = new ArrayMap<>(size);
+        for (int index = 0; index < size; index++) {
+            resultMap.put(historyMaps.keyAt(index), historyMaps.valueAt(index));
+        }
+        return resultMap;
+    }
+
     /**
      * Returns the battery history map since the latest record no later than the given timestamp. If
      * there is no record before the given timestamp or the given timestamp is before last full
@@ -574,7 +606,6 @@ public final class DatabaseUtils {
                 String.format(
                         "sendAppUsageEventData() size=%d in %d/ms",
                         size, (System.currentTimeMillis() - startTime)));
-        clearMemory();
         return valuesList;
     }
 
@@ -594,7 +625,6 @@ public final class DatabaseUtils {
                 String.format(
                         "sendBatteryEventData() in %d/ms",
                         (System.currentTimeMillis() - startTime)));
-        clearMemory();
         return contentValues;
     }
 
@@ -628,7 +658,6 @@ public final class DatabaseUtils {
                 String.format(
                         "sendBatteryEventData() size=%d in %d/ms",
                         size, (System.currentTimeMillis() - startTime)));
-        clearMemory();
         return valuesList;
     }
 
@@ -662,7 +691,6 @@ public final class DatabaseUtils {
                 String.format(
                         "sendBatteryUsageSlotData() size=%d in %d/ms",
                         size, (System.currentTimeMillis() - startTime)));
-        clearMemory();
         return valuesList;
     }
 
@@ -676,7 +704,6 @@ public final class DatabaseUtils {
         final Intent intent = BatteryUtils.getBatteryIntent(context);
         if (intent == null) {
             Log.e(TAG, "sendBatteryEntryData(): cannot fetch battery intent");
-            clearMemory();
             return null;
         }
         final int batteryLevel = BatteryStatus.getBatteryLevel(intent);
@@ -689,8 +716,19 @@ public final class DatabaseUtils {
         // We should use the same timestamp for each data snapshot.
         final long snapshotBootTimestamp = SystemClock.elapsedRealtime();
 
+        final ConvertUtils.BatteryEntryConverter converter =
+                new ConvertUtils.BatteryEntryConverter(
+                        batteryUsageStats,
+                        batteryLevel,
+                        batteryStatus,
+                        batteryHealth,
+                        snapshotBootTimestamp,
+                        snapshotTimestamp,
+                        isFullChargeStart);
+
         // Creates the ContentValues list to insert them into provider.
-        final List<ContentValues> valuesList = new ArrayList<>();
+        final List<ContentValues> valuesList =
+                new ArrayList<>(batteryEntryList != null ? batteryEntryList.size() : 1);
         if (batteryEntryList != null) {
             for (BatteryEntry entry : batteryEntryList) {
                 final long foregroundMs = entry.getTimeInForegroundMs();
@@ -714,16 +752,7 @@ public final class DatabaseUtils {
                         && backgroundMs == 0) {
                     continue;
                 }
-                valuesList.add(
-                        ConvertUtils.convertBatteryEntryToContentValues(
-                                entry,
-                                batteryUsageStats,
-                                batteryLevel,
-                                batteryStatus,
-                                batteryHealth,
-                                snapshotBootTimestamp,
-                                snapshotTimestamp,
-                                isFullChargeStart));
+                valuesList.add(converter.convert(entry));
             }
         }
 
@@ -745,16 +774,7 @@ public final class DatabaseUtils {
             }
         } else {
             // Inserts one fake data into battery provider.
-            final ContentValues contentValues =
-                    ConvertUtils.convertBatteryEntryToContentValues(
-                            /* entry= */ null,
-                            /* batteryUsageStats= */ null,
-                            batteryLevel,
-                            batteryStatus,
-                            batteryHealth,
-                            snapshotBootTimestamp,
-                            snapshotTimestamp,
-                            isFullChargeStart);
+            final ContentValues contentValues = converter.convert(/* entry= */ null);
             try {
                 resolver.insert(BATTERY_CONTENT_URI, contentValues);
                 Log.d(
@@ -777,7 +797,6 @@ public final class DatabaseUtils {
         if (isFullChargeStart) {
             recordDateTime(context, KEY_LAST_UPLOAD_FULL_CHARGE_TIME);
         }
-        clearMemory();
         return valuesList;
     }
 
@@ -879,6 +898,16 @@ public final class DatabaseUtils {
     @VisibleForTesting
     static <T> T loadFromContentProvider(
             Context context, Uri uri, T defaultValue, Function<Cursor, T> cursorReader) {
+        return loadFromContentProvider(
+                context, uri, /* projection= */ null, defaultValue, cursorReader);
+    }
+
+    private static <T> T loadFromContentProvider(
+            Context context,
+            Uri uri,
+            String[] projection,
+            T defaultValue,
+            Function<Cursor, T> cursorReader) {
         // Transfer work profile to user profile. Please see b/297036263.
         context = getParentContext(context);
         if (context == null) {
@@ -887,7 +916,7 @@ public final class DatabaseUtils {
         try (Cursor cursor =
                 sFakeSupplier != null
                         ? sFakeSupplier.get()
-                        : context.getContentResolver().query(uri, null, null, null)) {
+                        : context.getContentResolver().query(uri, projection, null, null)) {
             return (cursor == null || cursor.getCount() == 0)
                     ? defaultValue
                     : cursorReader.apply(cursor);
@@ -975,20 +1004,4 @@ public final class DatabaseUtils {
             writer.println(String.format("\t\t%s: %s", prefix, results.toString()));
         }
     }
-
-    private static void clearMemory() {
-        if (!EXPLICIT_CLEAR_MEMORY_ENABLED
-                || SystemClock.uptimeMillis() > CLEAR_MEMORY_THRESHOLD_MS) {
-            return;
-        }
-        final Handler mainHandler = new Handler(Looper.getMainLooper());
-        mainHandler.postDelayed(
-                () -> {
-                    System.gc();
-                    System.runFinalization();
-                    System.gc();
-                    Log.w(TAG, "invoke clearMemory()");
-                },
-                CLEAR_MEMORY_DELAYED_MS);
-    }
 }
@@ -42,7 +42,8 @@ public class BatteryState {
     public final long timestamp;
     public final int consumerType;
     public final boolean isFullChargeCycleStart;
-    public final String batteryInformation;
+    /** The serialized {@link BatteryInformation} proto. */
+    public final byte[] batteryInformation;
 
     /**
      * This field is filled only when build type is "userdebug".
@@ -64,7 +65,7 @@ public class BatteryState {
             long timestamp,
             int consumerType,
             boolean isFullChargeCycleStart,
-            String batteryInformation,
+            byte[] batteryInformation,
             String batteryInformationDebug) {
         // Records the app relative information.
         this.uid = uid;
@@ -91,7 +92,7 @@ public class BatteryState {
     public String toString() {
         final String recordAtDateTime = ConvertUtils.utcToLocalTimeForLogging(timestamp);
         final BatteryInformation batteryInformationInstance =
-                BatteryUtils.parseProtoFromString(
+                BatteryUtils.parseProtoFromBytes(
                         batteryInformation, BatteryInformation.getDefaultInstance());
         final StringBuilder builder =
                 new StringBuilder()
@@ -137,7 +138,8 @@ public class BatteryState {
             builder.setIsFullChargeCycleStart(contentValues.getAsBoolean("isFullChargeCycleStart"));
         }
         if (contentValues.containsKey("batteryInformation")) {
-            builder.setBatteryInformation(contentValues.getAsString("batteryInformation"));
+            builder.setBatteryInformation(
+                    ConvertUtils.getBatteryInformationBytes(contentValues, "batteryInformation"));
         }
         if (contentValues.containsKey("batteryInformationDebug")) {
             builder.setBatteryInformationDebug(
@@ -159,7 +161,7 @@ public class BatteryState {
         private long mTimestamp;
         private int mConsumerType;
         private boolean mIsFullChargeCycleStart;
-        private String mBatteryInformation;
+        private byte[] mBatteryInformation;
         private String mBatteryInformationDebug;
 
         /** Sets the uid. */
@@ -206,7 +208,7 @@ public class BatteryState {
 
         /** Sets the battery information. */
         @CanIgnoreReturnValue
-        public Builder setBatteryInformation(String batteryInformation) {
+        public Builder setBatteryInformation(byte[] batteryInformation) {
             this.mBatteryInformation = batteryInformation;
             return this;
         }
@@ -16,13 +16,21 @@
 
 package com.android.settings.fuelgauge.batteryusage.db;
 
+import android.content.ContentValues;
 import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Base64;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
 /** A {@link RoomDatabase} for battery usage states history. */
 @Database(
@@ -33,13 +41,26 @@ import androidx.room.RoomDatabase;
             BatteryUsageSlotEntity.class,
             BatteryReattributeEntity.class
         },
-        version = 2)
+        version = 3)
 public abstract class BatteryStateDatabase extends RoomDatabase {
     private static final String TAG = "BatteryStateDatabase";
     private static final String DB_FILE_NAME = "battery-usage-db-v10";
 
     private static BatteryStateDatabase sBatteryStateDatabase;
 
+    /**
+     * Stores {@link BatteryState#batteryInformation} as the serialized proto BLOB instead of its
+     * Base64 encoded string.
+     */
+    @VisibleForTesting
+    static final Migration MIGRATION_2_3 =
+            new Migration(2, 3) {
+                @Override
+                public void migrate(@NonNull SupportSQLiteDatabase database) {
+                    migrateBatteryInformationToBlob(database);
+                }
+            };
+
     /** Provides DAO for app usage event table. */
     public abstract AppUsageEventDao appUsageEventDao();
 
@@ -63,6 +84,7 @@ public abstract class BatteryStateDatabase extends RoomDatabase {
                     Room.databaseBuilder(context, BatteryStateDatabase.class, DB_FILE_NAME)
                             // Allows accessing data in the main thread for dumping bugreport.
                             .allowMainThreadQueries()
+                            .addMigrations(MIGRATION_2_3)
                             .fallbackToDestructiveMigration()
                             .build();
             Log.d(TAG, "initialize battery states database");
@@ -74,4 +96,52 @@ public abstract class BatteryStateDatabase extends RoomDatabase {
     public static void setBatteryStateDatabase(BatteryStateDatabase database) {
         BatteryStateDatabase.sBatteryStateDatabase = database;
     }
+
+    private static void migrateBatteryInformationToBlob(SupportSQLiteDatabase database) {
+        final long timestamp = System.currentTimeMillis();
+        database.execSQL(
+                "CREATE TABLE IF NOT EXISTS `BatteryState_new` ("
+                        + "`mId` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL,"
+                        + " `uid` INTEGER NOT NULL,"
+                        + " `userId` INTEGER NOT NULL,"
+                        + " `packageName` TEXT,"
+                        + " `timestamp` INTEGER NOT NULL,"
+                        + " `consumerType` INTEGER NOT NULL,"
+                        + " `isFullChargeCycleStart` INTEGER NOT NULL,"
+                        + " `batteryInformation` BLOB,"
+                        + " `batteryInformationDebug` TEXT)");
+        int count = 0;
+        // Room runs the migration in a transaction, so the rows are committed together.
+        try (Cursor cursor = database.query("SELECT * FROM `BatteryState`")) {
+            final ContentValues values = new ContentValues();
+            while (cursor.moveToNext()) {
+                values.clear();
+                DatabaseUtils.cursorRowToContentValues(cursor, values);
+                values.put(
+                        "batteryInformation",
+                        decodeBase64(values.getAsString("batteryInformation")));
+                database.insert("BatteryState_new", SQLiteDatabase.CONFLICT_REPLACE, values);
+                count++;
+            }
+        }
+        database.execSQL("DROP TABLE `BatteryState`");
+        database.execSQL("ALTER TABLE `BatteryState_new` RENAME TO `BatteryState`");
+        Log.d(
+                TAG,
+                String.format(
+                        "migrate %d battery states to version 3 in %d/ms",
+                        count, System.currentTimeMillis() - timestamp));
+    }
+
+    private static byte[] decodeBase64(String content) {
+        if (content == null || content.isEmpty()) {
+            return null;
+        }
+        try {
+            return Base64.decode(content, Base64.DEFAULT);
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "invalid battery information: " + content, e);
+            return null;
+        }
+    }
 }
@@ -26,7 +26,7 @@ import android.text.TextUtils;
 import android.util.ArrayMap;
 import android.util.Log;
 
-import com.android.settings.core.PreferenceXmlParserUtils;
+import com.android.settings.core.PreferenceXmlMetadataCache;
 import com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag;
 
 import org.xmlpull.v1.XmlPullParserException;
@@ -70,7 +70,7 @@ public class HighlightableMenu {
         Log.d(TAG, "parsing highlightable menu from xml");
         final List<Bundle> preferenceMetadata;
         try {
-            preferenceMetadata = PreferenceXmlParserUtils.extractMetadata(context, xmlResId,
+            preferenceMetadata = PreferenceXmlMetadataCache.extractMetadata(context, xmlResId,
                     MetadataFlag.FLAG_NEED_KEY | MetadataFlag.FLAG_NEED_HIGHLIGHTABLE_MENU_KEY);
         } catch (IOException | XmlPullParserException e) {
             Log.e(TAG, "Failed to parse preference xml for getting highlightable menu keys", e);
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.homepage;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.UserManager;
+import android.text.TextUtils;
+import android.util.ArrayMap;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.preference.Preference;
+import androidx.preference.PreferenceGroup;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The titles and summaries shown by the homepage the last time it was rendered.
+ * <p>
+ * Many top-level summaries (and the titles of some injected tiles) are loaded asynchronously, so
+ * a cold start first shows them blank. The snapshot is painted on the first frame of the next
+ * cold start instead, and is then replaced preference by preference as the live data arrives.
+ * It is dropped when the locale changed since it was written.
+ * <p>
+ * The snapshot holds personal data (account names, device names, ...), so it is kept in
+ * credential protected storage and is neither read nor written before the user is unlocked.
+ */
+class HomepageSnapshot {
+
+    @VisibleForTesting
+    static final String PREFS_NAME = "homepage_snapshot";
+    private static final String KEY_LOCALE = "locale";
+    private static final String SUFFIX_TITLE = "#title";
+    private static final String SUFFIX_SUMMARY = "#summary";
+
+    private final String mLocale;
+    // Preference key to title and summary, stored as "<key>#title" and "<key>#summary".
+    private final Map<String, String> mValues;
+
+    private HomepageSnapshot(String locale, Map<String, String> values) {
+        mLocale = locale;
+        mValues = values;
+    }
+
+    /** Starts loading the stored snapshot in the background, ahead of {@link #read}. */
+    static void preload(Context context) {
+        if (isUserUnlocked(context)) {
+            getSharedPreferences(context);
+        }
+    }
+
+    /** Captures the titles and summaries currently shown in {@code group}. */
+    @NonNull
+    static HomepageSnapshot capture(Context context, @NonNull PreferenceGroup group) {
+        final Map<String, String> values = new ArrayMap<>();
+        capture(group, values);
+        return new HomepageSnapshot(getLocale(context), values);
+    }
+
+    /**
+     * Returns the stored snapshot, or {@code null} if there is none, it was written for another
+     * locale or the user is still locked.
+     */
+    @Nullable
+    static HomepageSnapshot read(Context context) {
+        if (!isUserUnlocked(context)) {
+            return null;
+        }
+        final SharedPreferences prefs = getSharedPreferences(context);
+        final String locale = prefs.getString(KEY_LOCALE, null);
+        if (!TextUtils.equals(locale, getLocale(context))) {
+            return null;
+        }
+        final Map<String, String> values = new ArrayMap<>();
+        for (Map.Entry<String, ?> entry : prefs.getAll().entrySet()) {
+            if (!KEY_LOCALE.equals(entry.getKey()) && entry.getValue() instanceof String) {
+                values.put(entry.getKey(), (String) entry.getValue());
+            }
+        }
+        return new HomepageSnapshot(locale, values);
+    }
+
+    /** Stores this snapshot, unless it is the one already stored or the user is still locked. */
+    void write(Context context) {
+        if (!isUserUnlocked(context) || equals(read(context))) {
+            return;
+        }
+        final SharedPreferences.Editor editor = getSharedPreferences(context).edit().clear();
+        editor.putString(KEY_LOCALE, mLocale);
+        mValues.forEach(editor::putString);
+        editor.apply();
+    }
+
+    /**
+     * Paints the titles and summaries of the snapshot on the preferences of {@code group} that
+     * have none yet. Live values set later simply replace them.
+     *
+     * @return the number of preferences painted
+     */
+    int paint(@NonNull PreferenceGroup group) {
+        int painted = 0;
+        for (int i = 0; i < group.getPreferenceCount(); i++) {
+            final Preference preference = group.getPreference(i);
+            final String key = preference.getKey();
+            if (!TextUtils.isEmpty(key)) {
+                boolean changed = false;
+                final String title = mValues.get(key + SUFFIX_TITLE);
+                if (title != null && TextUtils.isEmpty(preference.getTitle())) {
+                    preference.setTitle(title);
+                    changed = true;
+                }
+                final String summary = mValues.get(key + SUFFIX_SUMMARY);
+                if (summary != null && TextUtils.isEmpty(preference.getSummary())) {
+                    preference.setSummary(summary);
+                    changed = true;
+                }
+                if (changed) {
+                    painted++;
+                }
+            }
+            if (preference instanceof PreferenceGroup) {
+                painted += paint((PreferenceGroup) preference);
+            }
+        }
+        return painted;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof HomepageSnapshot)) {
+            return false;
+        }
+        final HomepageSnapshot other = (HomepageSnapshot) o;
+        return TextUtils.equals(mLocale, other.mLocale) && mValues.equals(other.mValues);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(mLocale, mValues);
+    }
+
+    private static void capture(PreferenceGroup group, Map<String, String> values) {
+        for (int i = 0; i < group.getPreferenceCount(); i++) {
+            final Preference preference = group.getPreference(i);
+            final String key = preference.getKey();
+            if (!TextUtils.isEmpty(key) && preference.isVisible()) {
+                if (!TextUtils.isEmpty(preference.getTitle())) {
+                    values.put(key + SUFFIX_TITLE, preference.getTitle().toString());
+                }
+                if (!TextUtils.isEmpty(preference.getSummary())) {
+                    values.put(key + SUFFIX_SUMMARY, preference.getSummary().toString());
+                }
+            }
+            if (preference instanceof PreferenceGroup) {
+                capture((PreferenceGroup) preference, values);
+            }
+        }
+    }
+
+    private static String getLocale(Context context) {
+        return context.getResources().getConfiguration().getLocales().toLanguageTags();
+    }
+
+    private static boolean isUserUnlocked(Context context) {
+        return context.getSystemService(UserManager.class).isUserUnlocked();
+    }
+
+    private static SharedPreferences getSharedPreferences(Context context) {
+        // Settings defaults to device protected storage, which is readable before unlock.
+        return context.getApplicationContext().createCredentialProtectedStorageContext()
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -35,6 +35,7 @@ import android.content.res.Configuration;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.Process;
+import android.os.SystemClock;
 import android.os.UserHandle;
 import android.os.UserManager;
 import android.text.TextUtils;
@@ -122,6 +123,8 @@ public class SettingsHomepageActivity extends FragmentActivity implements
     private SplitControllerCallbackAdapter mSplitControllerAdapter;
     private SplitInfoCallback mCallback;
     private boolean mAllowUpdateSuggestion = true;
+    private long mCreateUptimeMillis;
+    private boolean mFullyDrawnReported;
 
     /** A listener receiving homepage loaded events. */
     public interface HomepageLoadedListener {
@@ -191,6 +194,7 @@ public class SettingsHomepageActivity extends FragmentActivity implements
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        mCreateUptimeMillis = SystemClock.uptimeMillis();
         super.onCreate(savedInstanceState);
 
         // Ensure device is provisioned in order to access Settings home
@@ -307,6 +311,20 @@ public class SettingsHomepageActivity extends FragmentActivity implements
         enableTaskLocaleOverride();
     }
 
+    @Override
+    public void reportFullyDrawn() {
+        if (!mFullyDrawnReported) {
+            mFullyDrawnReported = true;
+            // Startup time of the homepage, to compare cold starts painted from the snapshot with
+            // the ones that are not.
+            final long now = SystemClock.uptimeMillis();
+            Log.i(TAG, "Homepage fully drawn " + (now - mCreateUptimeMillis)
+                    + " ms after onCreate, " + (now - Process.getStartUptimeMillis())
+                    + " ms after process start");
+        }
+        super.reportFullyDrawn();
+    }
+
     @VisibleForTesting
     void initSplitPairRules() {
         new ActivityEmbeddingRulesController(getApplicationContext()).initRules();
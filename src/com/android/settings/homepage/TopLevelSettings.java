@@ -65,6 +65,9 @@ public class TopLevelSettings extends DashboardFragment implements SplitLayoutLi
     private static final String SAVED_HIGHLIGHT_MIXIN = "highlight_mixin";
     private static final String PREF_KEY_SUPPORT = "top_level_support";
 
+    // Only the first homepage of the process, i.e. a cold start, is painted from the snapshot.
+    private static boolean sSnapshotPainted;
+
     private boolean mIsEmbeddingActivityEnabled;
     private TopLevelHighlightMixin mHighlightMixin;
     private int mPaddingHorizontal;
@@ -104,6 +107,9 @@ public class TopLevelSettings extends DashboardFragment implements SplitLayoutLi
     @Override
     public void onAttach(Context context) {
         super.onAttach(context);
+        if (!sSnapshotPainted) {
+            HomepageSnapshot.preload(context);
+        }
         HighlightableMenu.fromXml(context, getPreferenceScreenResId());
         use(SupportPreferenceController.class).setActivity(getActivity());
     }
@@ -195,6 +201,16 @@ public class TopLevelSettings extends DashboardFragment implements SplitLayoutLi
         super.onStart();
     }
 
+    @Override
+    public void onStop() {
+        super.onStop();
+        // The live data has been shown by now, keep it for the next cold start.
+        final PreferenceScreen screen = getPreferenceScreen();
+        if (screen != null) {
+            HomepageSnapshot.capture(getContext(), screen).write(getContext());
+        }
+    }
+
     private boolean isOnlyOneActivityInTask() {
         final ActivityManager.RunningTaskInfo taskInfo = getSystemService(ActivityManager.class)
                 .getRunningTasks(1).get(0);
@@ -359,6 +375,26 @@ public class TopLevelSettings extends DashboardFragment implements SplitLayoutLi
         }
     }
 
+    @Override
+    protected void onAllPreferencesAdded(String tag) {
+        // Report fully drawn once the first frame shows the snapshot, not the blank summaries.
+        if (!sSnapshotPainted) {
+            sSnapshotPainted = true;
+            paintSnapshot();
+        }
+        super.onAllPreferencesAdded(tag);
+    }
+
+    private void paintSnapshot() {
+        final PreferenceScreen screen = getPreferenceScreen();
+        final HomepageSnapshot snapshot = HomepageSnapshot.read(getContext());
+        if (screen == null || snapshot == null) {
+            Log.d(TAG, "No homepage snapshot to paint");
+            return;
+        }
+        Log.d(TAG, "Painted " + snapshot.paint(screen) + " preferences from snapshot");
+    }
+
     private void iteratePreferences(PreferenceJob job) {
         if (job == null || getPreferenceManager() == null) {
             return;
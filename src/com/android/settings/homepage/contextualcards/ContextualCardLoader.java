@@ -33,6 +33,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.VisibleForTesting;
 
 import com.android.settings.R;
+import com.android.settings.core.SettingsExecutor;
 import com.android.settings.homepage.contextualcards.logging.ContextualCardLogUtils;
 import com.android.settings.overlay.FeatureFactory;
 import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
@@ -41,7 +42,6 @@ import com.android.settingslib.utils.AsyncLoaderCompat;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -187,7 +187,8 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
             return candidates;
         }
 
-        final ExecutorService executor = Executors.newFixedThreadPool(candidates.size());
+        final ExecutorService executor = SettingsExecutor.getInstance().getExecutor(
+                SettingsExecutor.LANE_UI_CRITICAL, "ContextualCardEligibility");
         final List<ContextualCard> cards = new ArrayList<>();
         List<Future<ContextualCard>> eligibleCards = new ArrayList<>();
 
@@ -200,7 +201,6 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
         } catch (InterruptedException e) {
             Log.w(TAG, "Failed to get eligible states for all cards", e);
         }
-        executor.shutdown();
 
         // Collect future and eligible cards
         for (int i = 0; i < eligibleCards.size(); i++) {
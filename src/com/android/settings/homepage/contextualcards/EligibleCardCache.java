@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.homepage.contextualcards;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.slice.Slice;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the slices bound by {@link EligibleCardChecker} per slice uri, so warm homepage loads
+ * don't bind the slices of unchanged cards again.
+ * <p>
+ * An entry is dropped as soon as its slice notifies a change on its uri, and is not reused once
+ * it is older than {@link #DEFAULT_TTL_MS}.
+ */
+class EligibleCardCache {
+
+    @VisibleForTesting
+    static final long DEFAULT_TTL_MS = 30000;
+
+    private static EligibleCardCache sInstance;
+
+    private final Context mAppContext;
+    private final long mTtlMillis;
+    private final Map<Uri, Entry> mEntries = new ConcurrentHashMap<>();
+    // Number of changes notified per observed uri.
+    private final Map<Uri, Long> mGenerations = new ConcurrentHashMap<>();
+
+    private final ContentObserver mObserver = new ContentObserver(null /* handler */) {
+        @Override
+        public void onChange(boolean selfChange, @Nullable Uri uri) {
+            if (uri != null) {
+                mGenerations.computeIfPresent(uri, (key, generation) -> generation + 1);
+                mEntries.remove(uri);
+            }
+        }
+    };
+
+    static final class Entry {
+        final Slice mSlice;
+        final boolean mToggleable;
+        final long mTimestamp;
+
+        Entry(Slice slice, boolean toggleable, long timestamp) {
+            mSlice = slice;
+            mToggleable = toggleable;
+            mTimestamp = timestamp;
+        }
+    }
+
+    /**
+     * Returns the cache of the application of {@code context}. The cache is tied to one
+     * application instance so cached slices never outlive it.
+     */
+    static synchronized EligibleCardCache getInstance(Context context) {
+        final Context appContext = context.getApplicationContext() != null
+                ? context.getApplicationContext() : context;
+        if (sInstance == null || sInstance.mAppContext != appContext) {
+            sInstance = new EligibleCardCache(appContext, DEFAULT_TTL_MS);
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    EligibleCardCache(Context appContext, long ttlMillis) {
+        mAppContext = appContext;
+        mTtlMillis = ttlMillis;
+    }
+
+    /** Returns the slice bound for {@code uri}, or {@code null} if it must be bound again. */
+    @Nullable
+    Entry get(@NonNull Uri uri) {
+        final Entry entry = mEntries.get(uri);
+        if (entry == null) {
+            return null;
+        }
+        if (SystemClock.elapsedRealtime() - entry.mTimestamp >= mTtlMillis) {
+            mEntries.remove(uri, entry);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Starts observing {@code uri} if needed, and returns its generation. Call it before binding
+     * the slice to cache, and pass the result to {@link #put}.
+     */
+    long getGeneration(@NonNull Uri uri) {
+        final Long generation = mGenerations.putIfAbsent(uri, 0L);
+        if (generation != null) {
+            return generation;
+        }
+        mAppContext.getContentResolver().registerContentObserver(uri,
+                false /* notifyForDescendants */, mObserver);
+        return 0L;
+    }
+
+    /**
+     * Caches {@code slice} bound for {@code uri} until it changes. Nothing is cached when the
+     * slice notified a change since {@code generation} was read, since the bound slice may
+     * already be stale.
+     */
+    void put(@NonNull Uri uri, long generation, @NonNull Slice slice, boolean toggleable) {
+        final Entry entry = new Entry(slice, toggleable, SystemClock.elapsedRealtime());
+        mEntries.put(uri, entry);
+        final Long current = mGenerations.get(uri);
+        if (current == null || current != generation) {
+            mEntries.remove(uri, entry);
+        }
+    }
+}
@@ -43,6 +43,7 @@ public class EligibleCardChecker implements Callable<ContextualCard> {
     private static final String TAG = "EligibleCardChecker";
 
     private final Context mContext;
+    private final EligibleCardCache mCache;
 
     @VisibleForTesting
     ContextualCard mCard;
@@ -50,6 +51,7 @@ public class EligibleCardChecker implements Callable<ContextualCard> {
     EligibleCardChecker(Context context, ContextualCard card) {
         mContext = context;
         mCard = card;
+        mCache = EligibleCardCache.getInstance(context);
     }
 
     @Override
@@ -93,16 +95,31 @@ public class EligibleCardChecker implements Callable<ContextualCard> {
             return false;
         }
 
-        final Slice slice = bindSlice(uri);
+        final EligibleCardCache.Entry entry = mCache.get(uri);
+        final Slice slice;
+        final boolean toggleable;
+        if (entry != null) {
+            slice = entry.mSlice;
+            toggleable = entry.mToggleable;
+        } else {
+            final long generation = mCache.getGeneration(uri);
+            slice = bindSlice(uri);
+            if (slice == null) {
+                Log.w(TAG, "Failed to bind slice, not eligible for display " + uri);
+                return false;
+            }
+            toggleable = !slice.hasHint(HINT_ERROR) && isSliceToggleable(slice);
+            mCache.put(uri, generation, slice, toggleable);
+        }
 
-        if (slice == null || slice.hasHint(HINT_ERROR)) {
+        if (slice.hasHint(HINT_ERROR)) {
             Log.w(TAG, "Failed to bind slice, not eligible for display " + uri);
             return false;
         }
 
         mCard = card.mutate().setSlice(slice).build();
 
-        if (isSliceToggleable(slice)) {
+        if (toggleable) {
             mCard = card.mutate().setHasInlineAction(true).build();
         }
 
@@ -22,8 +22,11 @@ import android.content.Context;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.os.UserHandle;
+import android.text.TextUtils;
 import android.util.Slog;
 
+import androidx.annotation.VisibleForTesting;
+
 import com.android.settings.notification.NotificationBackend;
 import com.android.settingslib.utils.ThreadUtils;
 
@@ -33,11 +36,24 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Loads the notification history grouped by package, most recent packages first.
+ * <p>
+ * The packages are delivered in pages so the first ones show before the labels and icons of all
+ * the others are resolved. Only the most recent notifications of each package are retained, the
+ * others are loaded again by {@link #loadAllNotifications} when the package is expanded.
+ */
 public class HistoryLoader {
     private static final String TAG = "HistoryLoader";
+    @VisibleForTesting
+    static final int PAGE_SIZE = 10;
+    @VisibleForTesting
+    static final int MAX_RETAINED_NOTIFICATIONS = 25;
+
     private final Context mContext;
     private final NotificationBackend mBackend;
     private final PackageManager mPm;
+    private volatile boolean mCanceled;
 
     public HistoryLoader(Context context, NotificationBackend backend, PackageManager pm) {
         mContext = context;
@@ -52,48 +68,106 @@ public class HistoryLoader {
                 NotificationHistory history =
                         mBackend.getNotificationHistory(mContext.getPackageName(),
                                 mContext.getAttributionTag());
-                while (history.hasNextNotification()) {
+                while (history.hasNextNotification() && !mCanceled) {
                     HistoricalNotification hn = history.getNextNotification();
 
                     String key = hn.getPackage() + "|" + hn.getUid();
-                    NotificationHistoryPackage hnsForPackage = historicalNotifications.getOrDefault(
-                            key,
-                            new NotificationHistoryPackage(hn.getPackage(), hn.getUid()));
-                    hnsForPackage.notifications.add(hn);
-                    historicalNotifications.put(key, hnsForPackage);
+                    historicalNotifications.computeIfAbsent(key,
+                            k -> new NotificationHistoryPackage(hn.getPackage(), hn.getUid()))
+                            .add(hn, MAX_RETAINED_NOTIFICATIONS);
                 }
                 List<NotificationHistoryPackage> packages =
                         new ArrayList<>(historicalNotifications.values());
                 Collections.sort(packages,
                         (o1, o2) -> -1 * Long.compare(o1.getMostRecent(), o2.getMostRecent()));
-                for (NotificationHistoryPackage nhp : packages) {
-                    ApplicationInfo info;
-                    try {
-                        info = mPm.getApplicationInfoAsUser(
-                                nhp.pkgName,
-                                PackageManager.MATCH_UNINSTALLED_PACKAGES
-                                        | PackageManager.MATCH_DISABLED_COMPONENTS
-                                        | PackageManager.MATCH_DIRECT_BOOT_UNAWARE
-                                        | PackageManager.MATCH_DIRECT_BOOT_AWARE,
-                                UserHandle.getUserId(nhp.uid));
-                        if (info != null) {
-                            nhp.label = String.valueOf(mPm.getApplicationLabel(info));
-                            nhp.icon = mPm.getUserBadgedIcon(mPm.getApplicationIcon(info),
-                                    UserHandle.of(UserHandle.getUserId(nhp.uid)));
-                        }
-                    } catch (PackageManager.NameNotFoundException e) {
-                        // app is gone, just show package name and generic icon
-                        nhp.icon = mPm.getDefaultActivityIcon();
+                // At least one page is delivered, even if empty.
+                for (int start = 0; start == 0 || start < packages.size(); start += PAGE_SIZE) {
+                    if (mCanceled) {
+                        return;
                     }
+                    final List<NotificationHistoryPackage> page = new ArrayList<>(
+                            packages.subList(start, Math.min(start + PAGE_SIZE, packages.size())));
+                    page.forEach(this::loadLabelAndIcon);
+                    final boolean isFirstPage = start == 0;
+                    ThreadUtils.postOnMainThread(() -> {
+                        if (!mCanceled) {
+                            listener.onHistoryLoaded(page, isFirstPage);
+                        }
+                    });
                 }
-                ThreadUtils.postOnMainThread(() -> listener.onHistoryLoaded(packages));
             } catch (Exception e) {
                 Slog.e(TAG, "Error loading history", e);
             }
         });
     }
 
+    /**
+     * Loads all the notifications of {@code nhp}, including the ones not retained by
+     * {@link #load}.
+     */
+    public void loadAllNotifications(NotificationHistoryPackage nhp,
+            OnPackageLoadedListener listener) {
+        ThreadUtils.postOnBackgroundThread(() -> {
+            try {
+                final NotificationHistoryPackage allNotifications =
+                        new NotificationHistoryPackage(nhp.pkgName, nhp.uid);
+                NotificationHistory history =
+                        mBackend.getNotificationHistory(mContext.getPackageName(),
+                                mContext.getAttributionTag());
+                while (history.hasNextNotification() && !mCanceled) {
+                    HistoricalNotification hn = history.getNextNotification();
+                    if (hn.getUid() == nhp.uid && TextUtils.equals(hn.getPackage(), nhp.pkgName)) {
+                        allNotifications.add(hn, Integer.MAX_VALUE);
+                    }
+                }
+                ThreadUtils.postOnMainThread(() -> {
+                    if (!mCanceled) {
+                        listener.onPackageLoaded(allNotifications);
+                    }
+                });
+            } catch (Exception e) {
+                Slog.e(TAG, "Error loading history of " + nhp.pkgName, e);
+            }
+        });
+    }
+
+    /** Stops delivering the history, to be called once it is no longer shown. */
+    public void cancel() {
+        mCanceled = true;
+    }
+
+    private void loadLabelAndIcon(NotificationHistoryPackage nhp) {
+        ApplicationInfo info;
+        try {
+            info = mPm.getApplicationInfoAsUser(
+                    nhp.pkgName,
+                    PackageManager.MATCH_UNINSTALLED_PACKAGES
+                            | PackageManager.MATCH_DISABLED_COMPONENTS
+                            | PackageManager.MATCH_DIRECT_BOOT_UNAWARE
+                            | PackageManager.MATCH_DIRECT_BOOT_AWARE,
+                    UserHandle.getUserId(nhp.uid));
+            if (info != null) {
+                nhp.label = String.valueOf(mPm.getApplicationLabel(info));
+                nhp.icon = mPm.getUserBadgedIcon(mPm.getApplicationIcon(info),
+                        UserHandle.of(UserHandle.getUserId(nhp.uid)));
+            }
+        } catch (PackageManager.NameNotFoundException e) {
+            // app is gone, just show package name and generic icon
+            nhp.icon = mPm.getDefaultActivityIcon();
+        }
+    }
+
     interface OnHistoryLoaderListener {
-        void onHistoryLoaded(List<NotificationHistoryPackage> notificationsByPackage);
+        /**
+         * Called with the next page of packages, in most recent first order.
+         *
+         * @param isFirstPage whether the page is the first one, which may be empty
+         */
+        void onHistoryLoaded(List<NotificationHistoryPackage> notificationsByPackage,
+                boolean isFirstPage);
+    }
+
+    interface OnPackageLoadedListener {
+        void onPackageLoaded(NotificationHistoryPackage allNotifications);
     }
 }
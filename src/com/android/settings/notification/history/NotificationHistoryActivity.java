@@ -156,14 +156,17 @@ public class NotificationHistoryActivity extends CollapsingToolbarBaseActivity {
         }
     }
 
-    private HistoryLoader.OnHistoryLoaderListener mOnHistoryLoaderListener = notifications -> {
-        findViewById(R.id.today_list).setVisibility(
-                notifications.isEmpty() ? View.GONE : View.VISIBLE);
-        mCountdownLatch.countDown();
-        View recyclerView = mTodayView.findViewById(R.id.apps);
-        recyclerView.setClipToOutline(true);
-        mTodayView.setOutlineProvider(mOutlineProvider);
-        mSnoozeView.setOutlineProvider(mOutlineProvider);
+    private HistoryLoader.OnHistoryLoaderListener mOnHistoryLoaderListener =
+            (notifications, isFirstPage) -> {
+        if (isFirstPage) {
+            findViewById(R.id.today_list).setVisibility(
+                    notifications.isEmpty() ? View.GONE : View.VISIBLE);
+            mCountdownLatch.countDown();
+            View recyclerView = mTodayView.findViewById(R.id.apps);
+            recyclerView.setClipToOutline(true);
+            mTodayView.setOutlineProvider(mOutlineProvider);
+            mSnoozeView.setOutlineProvider(mOutlineProvider);
+        }
         // for each package, new header and recycler view
         for (int i = 0, notificationsSize = notifications.size(); i < notificationsSize; i++) {
             NotificationHistoryPackage nhp = notifications.get(i);
@@ -172,6 +175,9 @@ public class NotificationHistoryActivity extends CollapsingToolbarBaseActivity {
 
             final View container = viewForPackage.findViewById(R.id.notification_list_wrapper);
             container.setVisibility(View.GONE);
+            final TextView count = viewForPackage.findViewById(R.id.count);
+            final NotificationHistoryRecyclerView rv =
+                    viewForPackage.findViewById(R.id.notification_list);
             View header = viewForPackage.findViewById(R.id.app_header);
             NotificationExpandButton expand = viewForPackage.findViewById(
                     com.android.internal.R.id.expand_button);
@@ -184,7 +190,8 @@ public class NotificationHistoryActivity extends CollapsingToolbarBaseActivity {
             header.setStateDescription(container.getVisibility() == View.VISIBLE
                     ? getString(R.string.condition_expand_hide)
                     : getString(R.string.condition_expand_show));
-            int finalI = i;
+            // Pages are appended in order, so the position is the number of packages shown.
+            int finalI = mTodayView.getChildCount();
             header.setOnClickListener(v -> {
                 container.setVisibility(container.getVisibility() == View.VISIBLE
                         ? View.GONE : View.VISIBLE);
@@ -193,6 +200,9 @@ public class NotificationHistoryActivity extends CollapsingToolbarBaseActivity {
                         ? getString(R.string.condition_expand_hide)
                         : getString(R.string.condition_expand_show));
                 header.sendAccessibilityEvent(TYPE_VIEW_ACCESSIBILITY_FOCUSED);
+                if (container.getVisibility() == View.VISIBLE && nhp.isTruncated()) {
+                    loadAllNotifications(nhp, rv, count);
+                }
                 mUiEventLogger.logWithPosition((container.getVisibility() == View.VISIBLE)
                                 ? NotificationHistoryEvent.NOTIFICATION_HISTORY_PACKAGE_HISTORY_OPEN
                               : NotificationHistoryEvent.NOTIFICATION_HISTORY_PACKAGE_HISTORY_CLOSE,
@@ -206,17 +216,16 @@ public class NotificationHistoryActivity extends CollapsingToolbarBaseActivity {
             ImageView icon = viewForPackage.findViewById(R.id.icon);
             icon.setImageDrawable(nhp.icon);
 
-            TextView count = viewForPackage.findViewById(R.id.count);
-            count.setText(StringUtil.getIcuPluralsString(this, nhp.notifications.size(),
+            count.setText(StringUtil.getIcuPluralsString(this, nhp.count,
                     R.string.notification_history_count));
 
-            final NotificationHistoryRecyclerView rv =
-                    viewForPackage.findViewById(R.id.notification_list);
             rv.setAdapter(new NotificationHistoryAdapter(mNm, rv,
                     newCount -> {
-                        count.setText(StringUtil.getIcuPluralsString(this, newCount,
+                        // The adapter may only hold the most recent notifications of the package.
+                        nhp.count--;
+                        count.setText(StringUtil.getIcuPluralsString(this, nhp.count,
                                 R.string.notification_history_count));
-                        if (newCount == 0) {
+                        if (nhp.count == 0) {
                             viewForPackage.setVisibility(View.GONE);
                         }
                     }, mUiEventLogger));
@@ -227,6 +236,26 @@ public class NotificationHistoryActivity extends CollapsingToolbarBaseActivity {
         }
     };
 
+    private void loadAllNotifications(NotificationHistoryPackage nhp,
+            NotificationHistoryRecyclerView rv, TextView count) {
+        mHistoryLoader.loadAllNotifications(nhp, allNotifications -> {
+            nhp.notifications = allNotifications.notifications;
+            nhp.count = allNotifications.count;
+            count.setText(StringUtil.getIcuPluralsString(this, nhp.count,
+                    R.string.notification_history_count));
+            ((NotificationHistoryAdapter) rv.getAdapter()).onRebuildComplete(
+                    new ArrayList<>(nhp.notifications));
+        });
+    }
+
+    /** Removes the packages shown and drops the pages still loading. */
+    private void cancelHistoryLoading() {
+        if (mHistoryLoader != null) {
+            mHistoryLoader.cancel();
+        }
+        mTodayView.removeAllViews();
+    }
+
     private void configureNotificationList(View recyclerView) {
         recyclerView.setClipToOutline(true);
         recyclerView.setOutlineProvider(mOutlineProvider);
@@ -266,7 +295,7 @@ public class NotificationHistoryActivity extends CollapsingToolbarBaseActivity {
         // wait for history loading and recent/snooze loading
         mCountdownLatch = new CountDownLatch(2);
 
-        mTodayView.removeAllViews();
+        cancelHistoryLoading();
         mHistoryLoader = new HistoryLoader(this, new NotificationBackend(), mPm);
         mHistoryLoader.load(mOnHistoryLoaderListener);
 
@@ -350,7 +379,7 @@ public class NotificationHistoryActivity extends CollapsingToolbarBaseActivity {
         } else {
             mHistoryOn.setVisibility(View.GONE);
             mHistoryOff.setVisibility(View.VISIBLE);
-            mTodayView.removeAllViews();
+            cancelHistoryLoading();
         }
         mHistoryEmpty.setVisibility(View.GONE);
     }
@@ -380,7 +409,7 @@ public class NotificationHistoryActivity extends CollapsingToolbarBaseActivity {
                     mHistoryOff.setVisibility(View.VISIBLE);
                     mHistoryEmpty.setVisibility(View.GONE);
                 }
-                mTodayView.removeAllViews();
+                cancelHistoryLoading();
             };
 
     private final NotificationListenerService mListener = new NotificationListenerService() {
@@ -30,6 +30,8 @@ public class NotificationHistoryPackage {
     String pkgName;
     int uid;
     TreeSet<NotificationHistory.HistoricalNotification> notifications;
+    // The number of notifications of the package, including the ones not retained.
+    int count;
     CharSequence label;
     Drawable icon;
 
@@ -40,6 +42,24 @@ public class NotificationHistoryPackage {
                 (o1, o2) -> Long.compare(o2.getPostedTimeMs(), o1.getPostedTimeMs()));
     }
 
+    /**
+     * Adds a notification of the package, retaining only the {@code maxRetained} most recent
+     * ones.
+     */
+    void add(NotificationHistory.HistoricalNotification hn, int maxRetained) {
+        if (notifications.add(hn)) {
+            count++;
+            if (notifications.size() > maxRetained) {
+                notifications.pollLast();
+            }
+        }
+    }
+
+    /** Returns whether some notifications of the package are not retained. */
+    boolean isTruncated() {
+        return count > notifications.size();
+    }
+
     public long getMostRecent() {
         if (notifications.isEmpty()) {
             return 0;
@@ -53,6 +73,7 @@ public class NotificationHistoryPackage {
         if (o == null || getClass() != o.getClass()) return false;
         NotificationHistoryPackage that = (NotificationHistoryPackage) o;
         return uid == that.uid &&
+                count == that.count &&
                 Objects.equals(pkgName, that.pkgName) &&
                 Objects.equals(notifications, that.notifications) &&
                 Objects.equals(label, that.label) &&
@@ -61,6 +82,6 @@ public class NotificationHistoryPackage {
 
     @Override
     public int hashCode() {
-        return Objects.hash(pkgName, uid, notifications, label, icon);
+        return Objects.hash(pkgName, uid, count, notifications, label, icon);
     }
 }
@@ -36,6 +36,8 @@ import androidx.annotation.NonNull;
 import androidx.annotation.VisibleForTesting;
 import androidx.appcompat.content.res.AppCompatResources;
 
+import com.android.settings.core.SettingsExecutor;
+
 import com.google.common.util.concurrent.FluentFuture;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -43,7 +45,6 @@ import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
 
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 class IconLoader {
 
@@ -65,7 +66,8 @@ class IconLoader {
     }
 
     private IconLoader() {
-        this(Executors.newFixedThreadPool(4));
+        this(SettingsExecutor.getInstance().getExecutor(
+                SettingsExecutor.LANE_UI_CRITICAL, "ZenIconLoader"));
     }
 
     @VisibleForTesting
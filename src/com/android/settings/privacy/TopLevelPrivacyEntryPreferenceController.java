@@ -21,6 +21,7 @@ import android.content.Context;
 import androidx.annotation.NonNull;
 
 import com.android.settings.core.BasePreferenceController;
+import com.android.settings.core.InvalidationBus;
 import com.android.settings.safetycenter.SafetyCenterManagerWrapper;
 
 /** The preference controller for the top level privacy tile. */
@@ -37,4 +38,10 @@ public class TopLevelPrivacyEntryPreferenceController  extends BasePreferenceCon
         }
         return CONDITIONALLY_UNAVAILABLE;
     }
+
+    @Override
+    public InvalidationBus.Dependencies getAvailabilityDependencies() {
+        // Whether Safety Center is enabled is a flag of the privacy DeviceConfig namespace.
+        return InvalidationBus.Dependencies.of(InvalidationBus.SOURCE_DEVICE_CONFIG);
+    }
 }
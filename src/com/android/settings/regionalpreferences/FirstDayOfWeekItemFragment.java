@@ -60,5 +60,12 @@ public class FirstDayOfWeekItemFragment extends DashboardFragment {
     }
 
     public static final BaseSearchIndexProvider SEARCH_INDEX_DATA_PROVIDER =
-            new BaseSearchIndexProvider(R.xml.regional_preferences_first_day_of_week);
+            new BaseSearchIndexProvider(R.xml.regional_preferences_first_day_of_week) {
+
+                @Override
+                public int getNonIndexableKeysDependencies() {
+                    // Every preference of the page is always available.
+                    return DEPENDENCY_NONE;
+                }
+            };
 }
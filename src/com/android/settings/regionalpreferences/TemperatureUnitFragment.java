@@ -60,5 +60,12 @@ public class TemperatureUnitFragment extends DashboardFragment {
     }
 
     public static final BaseSearchIndexProvider SEARCH_INDEX_DATA_PROVIDER =
-            new BaseSearchIndexProvider(R.xml.regional_preferences_temperature);
+            new BaseSearchIndexProvider(R.xml.regional_preferences_temperature) {
+
+                @Override
+                public int getNonIndexableKeysDependencies() {
+                    // Every preference of the page is always available.
+                    return DEPENDENCY_NONE;
+                }
+            };
 }
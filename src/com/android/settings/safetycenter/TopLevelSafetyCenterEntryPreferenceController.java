@@ -25,6 +25,7 @@ import android.util.Log;
 import androidx.preference.Preference;
 
 import com.android.settings.core.BasePreferenceController;
+import com.android.settings.core.InvalidationBus;
 
 /** Controller for the SafetyCenter entry in top level Settings. */
 public class TopLevelSafetyCenterEntryPreferenceController extends BasePreferenceController {
@@ -43,6 +44,12 @@ public class TopLevelSafetyCenterEntryPreferenceController extends BasePreferenc
         return CONDITIONALLY_UNAVAILABLE;
     }
 
+    @Override
+    public InvalidationBus.Dependencies getAvailabilityDependencies() {
+        // Whether Safety Center is enabled is a flag of the privacy DeviceConfig namespace.
+        return InvalidationBus.Dependencies.of(InvalidationBus.SOURCE_DEVICE_CONFIG);
+    }
+
     @Override
     public boolean handlePreferenceTreeClick(Preference preference) {
         if (!TextUtils.equals(preference.getKey(), getPreferenceKey())) {
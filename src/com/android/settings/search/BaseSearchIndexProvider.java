@@ -29,12 +29,14 @@ import android.provider.SearchIndexableResource;
 import android.util.Log;
 
 import androidx.annotation.CallSuper;
+import androidx.annotation.IntDef;
 import androidx.annotation.VisibleForTesting;
 
 import com.android.settings.core.BasePreferenceController;
+import com.android.settings.core.InvalidationBus;
 import com.android.settings.core.PreferenceControllerListHelper;
 import com.android.settings.core.PreferenceControllerMixin;
-import com.android.settings.core.PreferenceXmlParserUtils;
+import com.android.settings.core.PreferenceXmlMetadataCache;
 import com.android.settingslib.core.AbstractPreferenceController;
 import com.android.settingslib.search.Indexable;
 import com.android.settingslib.search.SearchIndexableRaw;
@@ -42,6 +44,8 @@ import com.android.settingslib.search.SearchIndexableRaw;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -53,6 +57,36 @@ import java.util.stream.Collectors;
 public class BaseSearchIndexProvider implements Indexable.SearchIndexProvider {
 
     private static final String TAG = "BaseSearchIndex";
+
+    /**
+     * Inputs the non-indexable keys of a page can depend on. When one of them changes, the
+     * non-indexable keys cached by {@link NonIndexableKeysCache} for the pages depending on it
+     * are recomputed. The values are the matching {@link InvalidationBus.Source} flags.
+     */
+    @IntDef(flag = true, value = {
+            DEPENDENCY_NONE,
+            DEPENDENCY_PACKAGES,
+            DEPENDENCY_USER_RESTRICTIONS,
+            DEPENDENCY_DEVICE_CONFIG,
+            DEPENDENCY_SUBSCRIPTIONS})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface NonIndexableKeysDependency {
+    }
+
+    /** The non-indexable keys never change while the process is alive. */
+    public static final int DEPENDENCY_NONE = InvalidationBus.SOURCE_NONE;
+    /** The non-indexable keys depend on installed, removed or updated packages. */
+    public static final int DEPENDENCY_PACKAGES = InvalidationBus.SOURCE_PACKAGES;
+    /** The non-indexable keys depend on user restrictions. */
+    public static final int DEPENDENCY_USER_RESTRICTIONS =
+            InvalidationBus.SOURCE_USER_RESTRICTIONS;
+    /** The non-indexable keys depend on {@link android.provider.DeviceConfig} flags. */
+    public static final int DEPENDENCY_DEVICE_CONFIG = InvalidationBus.SOURCE_DEVICE_CONFIG;
+    /** The non-indexable keys depend on the active subscriptions. */
+    public static final int DEPENDENCY_SUBSCRIPTIONS = InvalidationBus.SOURCE_SUBSCRIPTIONS;
+    /** The non-indexable keys depend on undeclared inputs and must not be cached. */
+    public static final int DEPENDENCY_UNKNOWN = -1;
+
     private int mXmlRes = 0;
 
     public BaseSearchIndexProvider() {
@@ -187,6 +221,18 @@ public class BaseSearchIndexProvider implements Indexable.SearchIndexProvider {
         return null;
     }
 
+    /**
+     * Returns the inputs {@link #getNonIndexableKeys(Context)} depends on, as a combination of
+     * {@link NonIndexableKeysDependency} flags, or {@link #DEPENDENCY_UNKNOWN} if the keys must be
+     * recomputed on every query.
+     * <p/>
+     * Only override this if the availability of the page and of all its controllers is fully
+     * determined by the declared inputs.
+     */
+    public int getNonIndexableKeysDependencies() {
+        return DEPENDENCY_UNKNOWN;
+    }
+
     /**
      * Returns true if the page should be considered in search query. If return false, entire page
      * will be suppressed during search query.
@@ -223,7 +269,7 @@ public class BaseSearchIndexProvider implements Indexable.SearchIndexProvider {
             boolean suppressAllPage) {
         final List<String> keys = new ArrayList<>();
         try {
-            final List<Bundle> metadata = PreferenceXmlParserUtils.extractMetadata(context,
+            final List<Bundle> metadata = PreferenceXmlMetadataCache.extractMetadata(context,
                     xmlResId, FLAG_NEED_KEY | FLAG_INCLUDE_PREF_SCREEN | FLAG_NEED_SEARCHABLE);
             for (Bundle bundle : metadata) {
                 if (suppressAllPage || !bundle.getBoolean(METADATA_SEARCHABLE, true)) {
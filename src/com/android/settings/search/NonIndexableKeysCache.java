@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.search;
+
+import static com.android.settings.search.BaseSearchIndexProvider.DEPENDENCY_DEVICE_CONFIG;
+import static com.android.settings.search.BaseSearchIndexProvider.DEPENDENCY_PACKAGES;
+import static com.android.settings.search.BaseSearchIndexProvider.DEPENDENCY_SUBSCRIPTIONS;
+import static com.android.settings.search.BaseSearchIndexProvider.DEPENDENCY_UNKNOWN;
+import static com.android.settings.search.BaseSearchIndexProvider.DEPENDENCY_USER_RESTRICTIONS;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.core.InvalidationBus;
+import com.android.settingslib.search.Indexable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Memoizes {@link Indexable.SearchIndexProvider#getNonIndexableKeys(Context)} per provider.
+ * <p>
+ * Providers declare the inputs their keys depend on through
+ * {@link BaseSearchIndexProvider#getNonIndexableKeysDependencies()}. Every input has a
+ * generation counter that is bumped when it changes; a cached entry is only reused while the
+ * generations of the inputs it depends on are the ones it was computed with. Providers that do
+ * not declare their inputs are recomputed on every query.
+ */
+public class NonIndexableKeysCache {
+
+    private static final int[] DEPENDENCIES = {
+            DEPENDENCY_PACKAGES,
+            DEPENDENCY_USER_RESTRICTIONS,
+            DEPENDENCY_DEVICE_CONFIG,
+            DEPENDENCY_SUBSCRIPTIONS,
+    };
+
+    private static NonIndexableKeysCache sInstance;
+
+    private final Map<Indexable.SearchIndexProvider, Entry> mEntries = new ConcurrentHashMap<>();
+    private final long[] mGenerations = new long[DEPENDENCIES.length];
+
+    private static final class Entry {
+        final List<String> mKeys;
+        final long[] mGenerations;
+
+        Entry(List<String> keys, long[] generations) {
+            mKeys = keys;
+            mGenerations = generations;
+        }
+    }
+
+    /** Returns the process-wide cache, registering the invalidation listeners on first use. */
+    public static synchronized NonIndexableKeysCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new NonIndexableKeysCache();
+            sInstance.registerListeners(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    NonIndexableKeysCache() {
+    }
+
+    /**
+     * Returns the non-indexable keys of {@code provider}, from the cache when none of its
+     * declared inputs changed since they were computed. The returned list can be modified.
+     */
+    @Nullable
+    public List<String> getNonIndexableKeys(Context context,
+            @NonNull Indexable.SearchIndexProvider provider) {
+        final int dependencies = getDependencies(provider);
+        if (dependencies == DEPENDENCY_UNKNOWN) {
+            return provider.getNonIndexableKeys(context);
+        }
+
+        final long[] generations = snapshotGenerations(dependencies);
+        final Entry entry = mEntries.get(provider);
+        if (entry != null && sameGenerations(entry.mGenerations, generations)) {
+            return copy(entry.mKeys);
+        }
+
+        final List<String> keys = provider.getNonIndexableKeys(context);
+        // Generations are captured before computing, so a change racing with the computation
+        // leaves a stale generation behind and the next query recomputes.
+        mEntries.put(provider, new Entry(copy(keys), generations));
+        return keys;
+    }
+
+    /**
+     * Invalidates the cached keys of every provider depending on one of {@code dependencies}.
+     */
+    public void onDependencyChanged(@BaseSearchIndexProvider.NonIndexableKeysDependency
+            int dependencies) {
+        synchronized (mGenerations) {
+            for (int i = 0; i < DEPENDENCIES.length; i++) {
+                if ((dependencies & DEPENDENCIES[i]) != 0) {
+                    mGenerations[i]++;
+                }
+            }
+        }
+    }
+
+    /** Drops every cached entry. */
+    public void clear() {
+        mEntries.clear();
+    }
+
+    private void registerListeners(Context context) {
+        // The dependency flags are the InvalidationBus sources.
+        InvalidationBus.getInstance(context).addListener(this::onDependencyChanged);
+    }
+
+    private static int getDependencies(Indexable.SearchIndexProvider provider) {
+        if (provider instanceof BaseSearchIndexProvider) {
+            return ((BaseSearchIndexProvider) provider).getNonIndexableKeysDependencies();
+        }
+        return DEPENDENCY_UNKNOWN;
+    }
+
+    private long[] snapshotGenerations(int dependencies) {
+        final long[] generations = new long[DEPENDENCIES.length];
+        synchronized (mGenerations) {
+            for (int i = 0; i < DEPENDENCIES.length; i++) {
+                // Inputs the provider does not depend on are left at 0 so they never invalidate.
+                if ((dependencies & DEPENDENCIES[i]) != 0) {
+                    generations[i] = mGenerations[i];
+                }
+            }
+        }
+        return generations;
+    }
+
+    private static boolean sameGenerations(long[] a, long[] b) {
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Nullable
+    private static List<String> copy(@Nullable List<String> keys) {
+        return keys == null ? null : new ArrayList<>(keys);
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.search;
+
+import static com.android.settings.search.SettingsSearchIndexablesProvider.SYSPROP_CRASH_ON_ERROR;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.core.SettingsExecutor;
+import com.android.settingslib.search.SearchIndexableData;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs a query against every {@link com.android.settingslib.search.Indexable.SearchIndexProvider}
+ * concurrently in the prefetch lane of {@link SettingsExecutor}, and merges the results in the
+ * order of the providers. The timeout of a provider includes its queue time, so the queries
+ * don't run in the maintenance lane where they could wait behind other work.
+ * <p>
+ * Each provider is isolated from the others: a provider that throws is skipped (unless
+ * {@link SettingsSearchIndexablesProvider#SYSPROP_CRASH_ON_ERROR} is set), and a provider running
+ * longer than the per-provider timeout is cancelled and skipped. A query never waits longer than
+ * the overall timeout: the providers not done by then are cancelled, and the results of the
+ * others are returned.
+ */
+public class SearchIndexProviderFanOut {
+
+    private static final String TAG = "SearchIndexFanOut";
+    private static final boolean DEBUG = SettingsSearchIndexablesProvider.DEBUG;
+
+    @VisibleForTesting
+    static final long PROVIDER_TIMEOUT_MS = 5000;
+    @VisibleForTesting
+    static final long QUERY_TIMEOUT_MS = 30000;
+    private static final long SLOW_PROVIDER_THRESHOLD_MS = 200;
+    private final ExecutorService mExecutor;
+    private final long mProviderTimeoutMs;
+    private final long mQueryTimeoutMs;
+
+    /**
+     * Queries one provider.
+     */
+    public interface ProviderQuery<T> {
+        /**
+         * @return the results of the provider, or {@code null} if there is none.
+         */
+        @Nullable
+        List<T> query(@NonNull SearchIndexableData bundle) throws Exception;
+    }
+
+    public SearchIndexProviderFanOut() {
+        this(SettingsExecutor.getInstance().getExecutor(
+                SettingsExecutor.LANE_PREFETCH, "SearchIndex"), PROVIDER_TIMEOUT_MS,
+                QUERY_TIMEOUT_MS);
+    }
+
+    @VisibleForTesting
+    SearchIndexProviderFanOut(ExecutorService executor, long providerTimeoutMs,
+            long queryTimeoutMs) {
+        mExecutor = executor;
+        mProviderTimeoutMs = providerTimeoutMs;
+        mQueryTimeoutMs = queryTimeoutMs;
+    }
+
+    /**
+     * Runs {@code query} for every bundle and returns the concatenated results, in the iteration
+     * order of {@code bundles} regardless of the completion order.
+     *
+     * @param operation name of the operation, used for logging only
+     */
+    @NonNull
+    public <T> List<T> query(@NonNull String operation,
+            @NonNull Collection<SearchIndexableData> bundles, @NonNull ProviderQuery<T> query) {
+        final long startTime = SystemClock.elapsedRealtime();
+        // Future.get() counts its timeout with System.nanoTime(), so does the deadline.
+        final long deadlineNanos = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(mQueryTimeoutMs);
+        final List<ProviderTask<T>> tasks = new ArrayList<>(bundles.size());
+        for (SearchIndexableData bundle : bundles) {
+            final ProviderTask<T> task = new ProviderTask<>(bundle, query);
+            task.mFuture = mExecutor.submit(task::run);
+            tasks.add(task);
+        }
+
+        final List<T> results = new ArrayList<>();
+        for (int i = 0; i < tasks.size(); i++) {
+            final ProviderTask<T> task = tasks.get(i);
+            final List<T> providerResults;
+            try {
+                providerResults = await(task, deadlineNanos);
+            } catch (InterruptedException e) {
+                Log.w(TAG, operation + " interrupted, cancelling remaining providers");
+                for (int j = i; j < tasks.size(); j++) {
+                    tasks.get(j).mFuture.cancel(true /* mayInterruptIfRunning */);
+                }
+                Thread.currentThread().interrupt();
+                break;
+            } catch (TimeoutException e) {
+                // The providers done by the deadline of the query are still merged.
+                task.mFuture.cancel(true /* mayInterruptIfRunning */);
+                final long timeoutMs = System.nanoTime() - deadlineNanos >= 0
+                        ? mQueryTimeoutMs : mProviderTimeoutMs;
+                Log.e(TAG, operation + " timed out after " + timeoutMs + " ms for: "
+                        + getName(task.mBundle));
+                continue;
+            } catch (CancellationException e) {
+                Log.w(TAG, operation + " cancelled for: " + getName(task.mBundle));
+                continue;
+            } catch (ExecutionException e) {
+                // Catch a generic crash so that a crash in a specific provider does not lose the
+                // results of all other providers. We crash when the system property exists so
+                // that we can still find specific crashes in development.
+                if (System.getProperty(SYSPROP_CRASH_ON_ERROR) != null) {
+                    throw new RuntimeException(e.getCause());
+                }
+                Log.e(TAG, "Error running " + operation + " for: " + getName(task.mBundle),
+                        e.getCause());
+                continue;
+            }
+            logLatency(operation, task, providerResults);
+            if (providerResults != null) {
+                results.addAll(providerResults);
+            }
+        }
+
+        if (DEBUG) {
+            Log.d(TAG, operation + " for " + tasks.size() + " providers, total time "
+                    + (SystemClock.elapsedRealtime() - startTime));
+        }
+        return results;
+    }
+
+    /**
+     * Waits for the task to finish, at most until {@code deadlineNanos}. The per-provider timeout
+     * only starts counting once the task has started running, so that providers queued behind
+     * slow ones are not penalized.
+     */
+    private <T> List<T> await(ProviderTask<T> task, long deadlineNanos)
+            throws InterruptedException, TimeoutException, ExecutionException {
+        final long providerTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(mProviderTimeoutMs);
+        while (true) {
+            final long remainingNanos = deadlineNanos - System.nanoTime();
+            if (remainingNanos <= 0 && !task.mFuture.isDone()) {
+                throw new TimeoutException();
+            }
+            final boolean started = task.mStarted;
+            final long timeoutNanos = Math.max(0, Math.min(providerTimeoutNanos, remainingNanos));
+            try {
+                return task.mFuture.get(timeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                if (started && timeoutNanos == providerTimeoutNanos) {
+                    throw e;
+                }
+                // Still queued when we started waiting: give it a full timeout once running,
+                // unless the deadline of the query is reached first.
+            }
+        }
+    }
+
+    private void logLatency(String operation, ProviderTask<?> task, @Nullable List<?> results) {
+        final long latency = task.mEndTime - task.mStartTime;
+        final int count = results == null ? 0 : results.size();
+        if (latency >= SLOW_PROVIDER_THRESHOLD_MS) {
+            Log.w(TAG, operation + " slow for " + getName(task.mBundle) + ": " + latency
+                    + " ms, " + count + " results");
+        } else if (DEBUG) {
+            Log.d(TAG, operation + " for " + getName(task.mBundle) + ": " + latency + " ms, "
+                    + count + " results");
+        }
+    }
+
+    private static String getName(SearchIndexableData bundle) {
+        return bundle.getTargetClass().getName();
+    }
+
+    private static final class ProviderTask<T> {
+        final SearchIndexableData mBundle;
+        final ProviderQuery<T> mQuery;
+        Future<List<T>> mFuture;
+        volatile boolean mStarted;
+        volatile long mStartTime;
+        volatile long mEndTime;
+
+        ProviderTask(SearchIndexableData bundle, ProviderQuery<T> query) {
+            mBundle = bundle;
+            mQuery = query;
+        }
+
+        List<T> run() throws Exception {
+            mStarted = true;
+            mStartTime = SystemClock.elapsedRealtime();
+            try {
+                return mQuery.query(mBundle);
+            } finally {
+                mEndTime = SystemClock.elapsedRealtime();
+            }
+        }
+    }
+}
@@ -100,6 +100,8 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
     // Search enabled states for injection (key: category key, value: search enabled)
     private Map<String, Boolean> mSearchEnabledByCategoryKeyMap;
 
+    private SearchIndexProviderFanOut mFanOut;
+
     static {
         INVALID_KEYS = new ArraySet<>();
         INVALID_KEYS.add(null);
@@ -109,6 +111,7 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
     @Override
     public boolean onCreate() {
         mSearchEnabledByCategoryKeyMap = new ArrayMap<>();
+        mFanOut = new SearchIndexProviderFanOut();
         return true;
     }
 
@@ -172,13 +175,12 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
     @Override
     public Cursor queryDynamicRawData(String[] projection) {
         final Context context = getContext();
-        final List<SearchIndexableRaw> rawList = new ArrayList<>();
         final Collection<SearchIndexableData> bundles = FeatureFactory.getFeatureFactory()
                 .getSearchFeatureProvider().getSearchIndexableResources().getProviderValues();
+        final List<SearchIndexableRaw> rawList = mFanOut.query("queryDynamicRawData", bundles,
+                bundle -> getDynamicSearchIndexableRawData(context, bundle));
 
         for (SearchIndexableData bundle : bundles) {
-            rawList.addAll(getDynamicSearchIndexableRawData(context, bundle));
-
             // Refresh the search enabled state for indexing injection raw data
             final Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
             if (provider instanceof BaseSearchIndexProvider) {
@@ -274,65 +276,34 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
         final Collection<SearchIndexableData> bundles = FeatureFactory.getFeatureFactory()
                 .getSearchFeatureProvider().getSearchIndexableResources().getProviderValues();
 
-        final List<String> nonIndexableKeys = new ArrayList<>();
-
-        for (SearchIndexableData bundle : bundles) {
-            final long startTime = System.currentTimeMillis();
-            Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
-            List<String> providerNonIndexableKeys;
-            try {
-                providerNonIndexableKeys = provider.getNonIndexableKeys(context);
-            } catch (Exception e) {
-                // Catch a generic crash. In the absence of the catch, the background thread will
-                // silently fail anyway, so we aren't losing information by catching the exception.
-                // We crash when the system property exists so that we can test if crashes need to
-                // be fixed.
-                // The gain is that if there is a crash in a specific controller, we don't lose all
-                // non-indexable keys, but we can still find specific crashes in development.
-                if (System.getProperty(SYSPROP_CRASH_ON_ERROR) != null) {
-                    throw new RuntimeException(e);
-                }
-                Log.e(TAG, "Error trying to get non-indexable keys from: "
-                        + bundle.getTargetClass().getName(), e);
-                continue;
-            }
+        final NonIndexableKeysCache cache = NonIndexableKeysCache.getInstance(context);
 
+        return mFanOut.query("queryNonIndexableKeys", bundles, bundle -> {
+            final Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
+            final List<String> providerNonIndexableKeys =
+                    cache.getNonIndexableKeys(context, provider);
             if (providerNonIndexableKeys == null || providerNonIndexableKeys.isEmpty()) {
-                if (DEBUG) {
-                    final long totalTime = System.currentTimeMillis() - startTime;
-                    Log.d(TAG, "No indexable, total time " + totalTime);
-                }
-                continue;
+                return null;
             }
 
             if (providerNonIndexableKeys.removeAll(INVALID_KEYS)) {
                 Log.v(TAG, provider + " tried to add an empty non-indexable key");
             }
-
-            if (DEBUG) {
-                final long totalTime = System.currentTimeMillis() - startTime;
-                Log.d(TAG, "Non-indexables " + providerNonIndexableKeys.size() + ", total time "
-                        + totalTime);
-            }
-
-            nonIndexableKeys.addAll(providerNonIndexableKeys);
-        }
-
-        return nonIndexableKeys;
+            return providerNonIndexableKeys;
+        });
     }
 
     private List<SearchIndexableResource> getSearchIndexableResourcesFromProvider(Context context) {
         final Collection<SearchIndexableData> bundles = FeatureFactory.getFeatureFactory()
                 .getSearchFeatureProvider().getSearchIndexableResources().getProviderValues();
-        List<SearchIndexableResource> resourceList = new ArrayList<>();
 
-        for (SearchIndexableData bundle : bundles) {
+        return mFanOut.query("queryXmlResources", bundles, bundle -> {
             Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
             final List<SearchIndexableResource> resList =
                     provider.getXmlResourcesToIndex(context, true);
 
             if (resList == null) {
-                continue;
+                return null;
             }
 
             for (SearchIndexableResource item : resList) {
@@ -340,25 +311,21 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
                         ? bundle.getTargetClass().getName()
                         : item.className;
             }
-
-            resourceList.addAll(resList);
-        }
-
-        return resourceList;
+            return resList;
+        });
     }
 
     private List<SearchIndexableRaw> getSearchIndexableRawFromProvider(Context context) {
         final Collection<SearchIndexableData> bundles = FeatureFactory.getFeatureFactory()
                 .getSearchFeatureProvider().getSearchIndexableResources().getProviderValues();
-        final List<SearchIndexableRaw> rawList = new ArrayList<>();
 
-        for (SearchIndexableData bundle : bundles) {
+        return mFanOut.query("queryRawData", bundles, bundle -> {
             Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
             final List<SearchIndexableRaw> providerRaws = provider.getRawDataToIndex(context,
                     true /* enabled */);
 
             if (providerRaws == null) {
-                continue;
+                return null;
             }
 
             for (SearchIndexableRaw raw : providerRaws) {
@@ -366,10 +333,8 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
                 // This will be more clear when provider conversion is done at PreIndex time.
                 raw.className = bundle.getTargetClass().getName();
             }
-            rawList.addAll(providerRaws);
-        }
-
-        return rawList;
+            return providerRaws;
+        });
     }
 
     private List<SearchIndexableRaw> getDynamicSearchIndexableRawData(Context context,
@@ -22,6 +22,7 @@ import android.text.TextUtils;
 import androidx.preference.Preference;
 
 import com.android.settings.core.BasePreferenceController;
+import com.android.settings.core.InvalidationBus;
 import com.android.settings.core.SubSettingLauncher;
 import com.android.settings.overlay.FeatureFactory;
 import com.android.settings.safetycenter.SafetyCenterManagerWrapper;
@@ -44,6 +45,12 @@ public class TopLevelSecurityEntryPreferenceController extends BasePreferenceCon
         return CONDITIONALLY_UNAVAILABLE;
     }
 
+    @Override
+    public InvalidationBus.Dependencies getAvailabilityDependencies() {
+        // Whether Safety Center is enabled is a flag of the privacy DeviceConfig namespace.
+        return InvalidationBus.Dependencies.of(InvalidationBus.SOURCE_DEVICE_CONFIG);
+    }
+
     @Override
     public boolean handlePreferenceTreeClick(Preference preference) {
         if (!TextUtils.equals(preference.getKey(), getPreferenceKey())) {
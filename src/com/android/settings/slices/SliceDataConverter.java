@@ -50,7 +50,7 @@ import com.android.settings.R;
 import com.android.settings.accessibility.AccessibilitySettings;
 import com.android.settings.accessibility.AccessibilitySlicePreferenceController;
 import com.android.settings.core.BasePreferenceController;
-import com.android.settings.core.PreferenceXmlParserUtils;
+import com.android.settings.core.PreferenceXmlMetadataCache;
 import com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag;
 import com.android.settings.dashboard.DashboardFragment;
 import com.android.settings.notification.RingerModeAffectedVolumePreferenceController;
@@ -160,7 +160,7 @@ class SliceDataConverter {
             // TODO (b/67996923) Investigate if we need headers for Slices, since they never
             // correspond to an actual setting.
 
-            final List<Bundle> metadata = PreferenceXmlParserUtils.extractMetadata(mContext,
+            final List<Bundle> metadata = PreferenceXmlMetadataCache.extractMetadata(mContext,
                     xmlResId,
                     MetadataFlag.FLAG_INCLUDE_PREF_SCREEN
                             | MetadataFlag.FLAG_NEED_KEY
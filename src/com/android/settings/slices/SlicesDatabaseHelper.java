@@ -183,12 +183,21 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
      * {@link#isNewIndexingState(Context)} will return {@code true}.
      */
     void reconstruct(SQLiteDatabase db) {
+        clearIndexedState();
+        dropTables(db);
+        createDatabases(db);
+    }
+
+    /**
+     * Un-marks the state of the data such that any subsequent call to
+     * {@link #isSliceDataIndexed()} will return {@code false}. Should be called before the
+     * TABLE_SLICES_INDEX is modified in place.
+     */
+    void clearIndexedState() {
         mContext.getSharedPreferences(SHARED_PREFS_TAG, Context.MODE_PRIVATE)
                 .edit()
                 .clear()
                 .apply();
-        dropTables(db);
-        createDatabases(db);
     }
 
     /**
@@ -16,9 +16,12 @@
 
 package com.android.settings.slices;
 
-import android.content.ContentValues;
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.util.ArrayMap;
 import android.util.Log;
 
 import androidx.annotation.VisibleForTesting;
@@ -29,7 +32,11 @@ import com.android.settings.overlay.FeatureFactory;
 import com.android.settings.slices.SlicesDatabaseHelper.IndexColumns;
 import com.android.settings.slices.SlicesDatabaseHelper.Tables;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * Manages the conversion of {@link DashboardFragment} and {@link BasePreferenceController} to
@@ -39,6 +46,37 @@ class SlicesIndexer implements Runnable {
 
     private static final String TAG = "SlicesIndexer";
 
+    /**
+     * Serializes the indexing, so that the async indexing and the lazy indexing of the slice
+     * lookups never write the index at the same time.
+     */
+    private static final Object sIndexLock = new Object();
+
+    private static final String[] INDEX_COLUMNS = {
+            IndexColumns.KEY,
+            IndexColumns.SLICE_URI,
+            IndexColumns.TITLE,
+            IndexColumns.SUMMARY,
+            IndexColumns.SCREENTITLE,
+            IndexColumns.KEYWORDS,
+            IndexColumns.ICON_RESOURCE,
+            IndexColumns.FRAGMENT,
+            IndexColumns.CONTROLLER,
+            IndexColumns.SLICE_TYPE,
+            IndexColumns.UNAVAILABLE_SLICE_SUBTITLE,
+            IndexColumns.PUBLIC_SLICE,
+            IndexColumns.HIGHLIGHT_MENU_RESOURCE,
+            IndexColumns.USER_RESTRICTION,
+    };
+
+    private static final String INSERT_SQL = "INSERT INTO " + Tables.TABLE_SLICES_INDEX
+            + " (" + String.join(", ", INDEX_COLUMNS) + ") VALUES ("
+            + String.join(", ", Arrays.stream(INDEX_COLUMNS).map(c -> "?").toArray(String[]::new))
+            + ")";
+
+    private static final String DELETE_SQL = "DELETE FROM " + Tables.TABLE_SLICES_INDEX
+            + " WHERE rowid = ?";
+
     private Context mContext;
 
     private SlicesDatabaseHelper mHelper;
@@ -58,32 +96,37 @@ class SlicesIndexer implements Runnable {
 
     /**
      * Synchronously takes data obtained from {@link SliceDataConverter} and indexes it into a
-     * SQLite database
+     * SQLite database. Only the rows that differ from the existing index are written.
      */
     protected void indexSliceData() {
+        synchronized (sIndexLock) {
+            indexSliceDataLocked();
+        }
+    }
+
+    private void indexSliceDataLocked() {
+        // Checked under the lock: a concurrent indexing may have just completed.
         if (mHelper.isSliceDataIndexed()) {
             Log.d(TAG, "Slices already indexed - returning.");
             return;
         }
 
-        final SQLiteDatabase database = mHelper.getWritableDatabase();
+        final long startTime = SystemClock.elapsedRealtime();
+        final List<SliceData> indexData = getSliceData();
+        final long convertTime = SystemClock.elapsedRealtime();
 
-        long startTime = System.currentTimeMillis();
-        database.beginTransaction();
-        try {
-            mHelper.reconstruct(database);
-            List<SliceData> indexData = getSliceData();
-            insertSliceData(database, indexData);
-
-            mHelper.setIndexedState();
+        final SQLiteDatabase database = mHelper.getWritableDatabase();
+        // The stored rows are about to change: the index is not valid for any other build or
+        // locale anymore.
+        mHelper.clearIndexedState();
+        final int writtenRows = updateSliceData(database, indexData);
+        mHelper.setIndexedState();
 
-            // TODO (b/71503044) Log indexing time.
-            Log.d(TAG,
-                    "Indexing slices database took: " + (System.currentTimeMillis() - startTime));
-            database.setTransactionSuccessful();
-        } finally {
-            database.endTransaction();
-        }
+        final long endTime = SystemClock.elapsedRealtime();
+        Log.d(TAG, "Indexing slices database took: " + (endTime - startTime)
+                + " ms (converting " + indexData.size() + " slices: "
+                + (convertTime - startTime) + " ms, writing " + writtenRows + " rows: "
+                + (endTime - convertTime) + " ms)");
     }
 
     @VisibleForTesting
@@ -94,33 +137,218 @@ class SlicesIndexer implements Runnable {
                 .getSliceData();
     }
 
+    /**
+     * Inserts every row of {@code indexData} into the index, without looking at the existing
+     * rows.
+     */
     @VisibleForTesting
     void insertSliceData(SQLiteDatabase database, List<SliceData> indexData) {
-        ContentValues values;
+        final List<IndexRow> rows = new ArrayList<>(indexData.size());
+        for (SliceData dataRow : indexData) {
+            rows.add(new IndexRow(dataRow));
+        }
+        writeRows(database, new long[0], rows);
+    }
 
+    /**
+     * Diffs {@code indexData} against the rows already stored in the index by key and content,
+     * and only deletes and inserts the rows that changed. The rows are read and written in one
+     * transaction, so readers never see a partially updated index.
+     *
+     * @return the number of rows deleted or inserted.
+     */
+    @VisibleForTesting
+    int updateSliceData(SQLiteDatabase database, List<SliceData> indexData) {
+        final Map<String, List<IndexRow>> newRowsByKey = new ArrayMap<>(indexData.size());
         for (SliceData dataRow : indexData) {
-            values = new ContentValues();
-            values.put(IndexColumns.KEY, dataRow.getKey());
-            values.put(IndexColumns.SLICE_URI, dataRow.getUri().toString());
-            values.put(IndexColumns.TITLE, dataRow.getTitle());
-            values.put(IndexColumns.SUMMARY, dataRow.getSummary());
-            final CharSequence screenTitle = dataRow.getScreenTitle();
-            if (screenTitle != null) {
-                values.put(IndexColumns.SCREENTITLE, screenTitle.toString());
+            final IndexRow row = new IndexRow(dataRow);
+            newRowsByKey.computeIfAbsent(row.getKey(), k -> new ArrayList<>(1)).add(row);
+        }
+        database.beginTransaction();
+        try {
+            final int writtenRows = updateSliceDataInTransaction(database, newRowsByKey);
+            database.setTransactionSuccessful();
+            return writtenRows;
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    private int updateSliceDataInTransaction(SQLiteDatabase database,
+            Map<String, List<IndexRow>> newRowsByKey) {
+        final Map<String, List<IndexRow>> oldRowsByKey = readIndexedRows(database);
+
+        final List<Long> rowIdsToDelete = new ArrayList<>();
+        final List<IndexRow> rowsToInsert = new ArrayList<>();
+        for (Map.Entry<String, List<IndexRow>> entry : newRowsByKey.entrySet()) {
+            final List<IndexRow> newRows = entry.getValue();
+            final List<IndexRow> oldRows = oldRowsByKey.remove(entry.getKey());
+            if (oldRows != null && oldRows.size() == 1 && newRows.size() == 1
+                    && oldRows.get(0).hasSameContent(newRows.get(0))) {
+                continue;
+            }
+            if (oldRows != null) {
+                for (IndexRow oldRow : oldRows) {
+                    rowIdsToDelete.add(oldRow.mRowId);
+                }
+            }
+            rowsToInsert.addAll(newRows);
+        }
+        // Remaining rows are not indexed anymore.
+        for (List<IndexRow> oldRows : oldRowsByKey.values()) {
+            for (IndexRow oldRow : oldRows) {
+                rowIdsToDelete.add(oldRow.mRowId);
+            }
+        }
+
+        final long[] rowIds = new long[rowIdsToDelete.size()];
+        for (int i = 0; i < rowIds.length; i++) {
+            rowIds[i] = rowIdsToDelete.get(i);
+        }
+        writeRows(database, rowIds, rowsToInsert);
+        return rowIds.length + rowsToInsert.size();
+    }
+
+    private Map<String, List<IndexRow>> readIndexedRows(SQLiteDatabase database) {
+        final Map<String, List<IndexRow>> rowsByKey = new ArrayMap<>();
+        final String[] projection = new String[INDEX_COLUMNS.length + 1];
+        projection[0] = "rowid";
+        System.arraycopy(INDEX_COLUMNS, 0, projection, 1, INDEX_COLUMNS.length);
+        try (Cursor cursor = database.query(Tables.TABLE_SLICES_INDEX, projection,
+                null /* selection */, null /* selectionArgs */, null /* groupBy */,
+                null /* having */, null /* orderBy */)) {
+            while (cursor.moveToNext()) {
+                final IndexRow row = new IndexRow(cursor);
+                rowsByKey.computeIfAbsent(row.getKey(), k -> new ArrayList<>(1)).add(row);
             }
-            values.put(IndexColumns.KEYWORDS, dataRow.getKeywords());
-            values.put(IndexColumns.ICON_RESOURCE, dataRow.getIconResource());
-            values.put(IndexColumns.FRAGMENT, dataRow.getFragmentClassName());
-            values.put(IndexColumns.CONTROLLER, dataRow.getPreferenceController());
-            values.put(IndexColumns.SLICE_TYPE, dataRow.getSliceType());
-            values.put(IndexColumns.UNAVAILABLE_SLICE_SUBTITLE,
-                    dataRow.getUnavailableSliceSubtitle());
-            values.put(IndexColumns.PUBLIC_SLICE, dataRow.isPublicSlice());
-            values.put(IndexColumns.HIGHLIGHT_MENU_RESOURCE, dataRow.getHighlightMenuRes());
-            values.put(IndexColumns.USER_RESTRICTION, dataRow.getUserRestriction());
-
-            database.replaceOrThrow(Tables.TABLE_SLICES_INDEX, null /* nullColumnHack */,
-                    values);
+        }
+        return rowsByKey;
+    }
+
+    /**
+     * Deletes {@code rowIdsToDelete} and inserts {@code rowsToInsert} through compiled
+     * statements, in a single transaction.
+     */
+    private void writeRows(SQLiteDatabase database, long[] rowIdsToDelete,
+            List<IndexRow> rowsToInsert) {
+        if (rowIdsToDelete.length == 0 && rowsToInsert.isEmpty()) {
+            return;
+        }
+        final SQLiteStatement deleteStatement = database.compileStatement(DELETE_SQL);
+        final SQLiteStatement insertStatement = database.compileStatement(INSERT_SQL);
+        database.beginTransaction();
+        try {
+            for (long rowId : rowIdsToDelete) {
+                deleteStatement.bindLong(1, rowId);
+                deleteStatement.executeUpdateDelete();
+            }
+            for (IndexRow row : rowsToInsert) {
+                row.bind(insertStatement);
+                insertStatement.executeInsert();
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+            deleteStatement.close();
+            insertStatement.close();
+        }
+    }
+
+    /**
+     * The values of a row of {@link Tables#TABLE_SLICES_INDEX}, in {@link #INDEX_COLUMNS} order.
+     * Values are either {@code null}, a {@link String} or a {@link Long}.
+     */
+    private static final class IndexRow {
+        final long mRowId;
+        final Object[] mValues;
+        final int mHash;
+
+        IndexRow(SliceData data) {
+            final CharSequence screenTitle = data.getScreenTitle();
+            mRowId = -1;
+            mValues = new Object[]{
+                    data.getKey(),
+                    data.getUri().toString(),
+                    data.getTitle(),
+                    data.getSummary(),
+                    screenTitle != null ? screenTitle.toString() : null,
+                    data.getKeywords(),
+                    (long) data.getIconResource(),
+                    data.getFragmentClassName(),
+                    data.getPreferenceController(),
+                    (long) data.getSliceType(),
+                    data.getUnavailableSliceSubtitle(),
+                    data.isPublicSlice() ? 1L : 0L,
+                    (long) data.getHighlightMenuRes(),
+                    data.getUserRestriction(),
+            };
+            mHash = contentHash(mValues);
+        }
+
+        IndexRow(Cursor cursor) {
+            mRowId = cursor.getLong(0);
+            mValues = new Object[INDEX_COLUMNS.length];
+            for (int i = 0; i < INDEX_COLUMNS.length; i++) {
+                final int column = i + 1;
+                switch (cursor.getType(column)) {
+                    case Cursor.FIELD_TYPE_NULL:
+                        mValues[i] = null;
+                        break;
+                    case Cursor.FIELD_TYPE_INTEGER:
+                        mValues[i] = cursor.getLong(column);
+                        break;
+                    default:
+                        mValues[i] = cursor.getString(column);
+                        break;
+                }
+            }
+            mHash = contentHash(mValues);
+        }
+
+        String getKey() {
+            return mValues[0] == null ? "" : mValues[0].toString();
+        }
+
+        boolean hasSameContent(IndexRow other) {
+            if (mHash != other.mHash) {
+                return false;
+            }
+            for (int i = 0; i < mValues.length; i++) {
+                if (!Objects.equals(toText(mValues[i]), toText(other.mValues[i]))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void bind(SQLiteStatement statement) {
+            statement.clearBindings();
+            for (int i = 0; i < mValues.length; i++) {
+                final Object value = mValues[i];
+                if (value == null) {
+                    statement.bindNull(i + 1);
+                } else if (value instanceof Long) {
+                    statement.bindLong(i + 1, (Long) value);
+                } else {
+                    statement.bindString(i + 1, (String) value);
+                }
+            }
+        }
+
+        /**
+         * Hashes the text form of the values, so that the hash does not depend on whether the
+         * database returns a number as an integer or as text.
+         */
+        private static int contentHash(Object[] values) {
+            int hash = 1;
+            for (Object value : values) {
+                hash = 31 * hash + Objects.hashCode(toText(value));
+            }
+            return hash;
+        }
+
+        private static String toText(Object value) {
+            return value == null ? null : value.toString();
         }
     }
 }
@@ -37,7 +37,6 @@ import android.graphics.drawable.Drawable;
 import android.graphics.drawable.LayerDrawable;
 import android.multiuser.Flags;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
@@ -72,6 +71,7 @@ import com.android.settings.R;
 import com.android.settings.SettingsActivity;
 import com.android.settings.SettingsPreferenceFragment;
 import com.android.settings.Utils;
+import com.android.settings.core.SettingsExecutor;
 import com.android.settings.core.SubSettingLauncher;
 import com.android.settings.password.ChooseLockGeneric;
 import com.android.settings.search.BaseSearchIndexProvider;
@@ -97,8 +97,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
@@ -231,7 +230,8 @@ public class UserSettings extends SettingsPreferenceFragment
     private TimeoutToDockUserPreferenceController mTimeoutToDockUserPreferenceController;
     private UserCreatingDialog mUserCreatingDialog;
     private final AtomicBoolean mGuestCreationScheduled = new AtomicBoolean();
-    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final Executor mExecutor = SettingsExecutor.getInstance().newSerialExecutor(
+            SettingsExecutor.LANE_PREFETCH, "UserSettingsGuestCreation");
 
     private CharSequence mPendingUserName;
     private Drawable mPendingUserIcon;
@@ -516,22 +516,16 @@ public class UserSettings extends SettingsPreferenceFragment
             return;
         }
 
-        new AsyncTask<Void, Void, String>() {
-            @Override
-            protected void onPostExecute(String result) {
-                finishLoadProfile(result);
-            }
-
-            @Override
-            protected String doInBackground(Void... values) {
-                UserInfo user = mUserManager.getUserInfo(UserHandle.myUserId());
-                if (user.iconPath == null || user.iconPath.equals("")) {
-                    // Assign profile photo.
-                    copyMeProfilePhoto(getActivity(), user);
-                }
-                return user.name;
-            }
-        }.execute();
+        final Context context = getActivity();
+        SettingsExecutor.getInstance().submit(this, SettingsExecutor.LANE_UI_CRITICAL,
+                "UserSettingsProfile", () -> {
+                    UserInfo user = mUserManager.getUserInfo(UserHandle.myUserId());
+                    if (user.iconPath == null || user.iconPath.equals("")) {
+                        // Assign profile photo.
+                        copyMeProfilePhoto(context, user);
+                    }
+                    return user.name;
+                }, this::finishLoadProfile);
     }
 
     private void finishLoadProfile(String profileName) {
@@ -1549,24 +1543,28 @@ public class UserSettings extends SettingsPreferenceFragment
     }
 
     private void loadIconsAsync(List<Integer> missingIcons) {
-        new AsyncTask<List<Integer>, Void, Void>() {
-            @Override
-            protected void onPostExecute(Void result) {
-                updateUserList();
-            }
-
-            @Override
-            protected Void doInBackground(List<Integer>... values) {
-                for (int userId : values[0]) {
-                    Bitmap bitmap = mUserManager.getUserIcon(userId);
-                    if (bitmap == null) {
-                        bitmap = getDefaultUserIconAsBitmap(getContext().getResources(), userId);
+        final Context context = getContext();
+        SettingsExecutor.getInstance().submit(this, SettingsExecutor.LANE_UI_CRITICAL,
+                "UserSettingsIcons", () -> {
+                    // mUserIcons is only touched on the main thread, see finishLoadIcons().
+                    final SparseArray<Bitmap> icons = new SparseArray<>(missingIcons.size());
+                    for (int userId : missingIcons) {
+                        Bitmap bitmap = mUserManager.getUserIcon(userId);
+                        if (bitmap == null) {
+                            bitmap = getDefaultUserIconAsBitmap(context.getResources(),
+                                    userId);
+                        }
+                        icons.append(userId, bitmap);
                     }
-                    mUserIcons.append(userId, bitmap);
-                }
-                return null;
-            }
-        }.execute(missingIcons);
+                    return icons;
+                }, this::finishLoadIcons);
+    }
+
+    private void finishLoadIcons(SparseArray<Bitmap> icons) {
+        for (int i = 0; i < icons.size(); i++) {
+            mUserIcons.put(icons.keyAt(i), icons.valueAt(i));
+        }
+        updateUserList();
     }
 
     private Drawable getEncircledDefaultIcon() {
@@ -113,6 +113,54 @@ public class BasePreferenceControllerTest {
         assertThat(mPreferenceController.isAvailable()).isTrue();
     }
 
+    @Test
+    public void isAvailable_noDependencies_evaluatesEveryCall() {
+        mPreferenceController.isAvailable();
+        mPreferenceController.setAvailability(UNSUPPORTED_ON_DEVICE);
+
+        assertThat(mPreferenceController.isAvailable()).isFalse();
+    }
+
+    @Test
+    public void isAvailable_withDependencies_evaluatesOncePerPageAndSearch() {
+        final CachedPreferenceController pageController =
+                new CachedPreferenceController(mContext, KEY);
+        final CachedPreferenceController searchController =
+                new CachedPreferenceController(mContext, KEY);
+
+        pageController.isAvailable();
+        pageController.displayPreference(mock(PreferenceScreen.class));
+        searchController.updateNonIndexableKeys(new ArrayList<>());
+
+        assertThat(pageController.mCount).isEqualTo(1);
+        assertThat(searchController.mCount).isEqualTo(0);
+    }
+
+    @Test
+    public void isAvailable_withDependencies_dependencyChanged_reevaluates() {
+        final CachedPreferenceController controller =
+                new CachedPreferenceController(mContext, KEY);
+
+        assertThat(controller.isAvailable()).isTrue();
+        controller.mAvailable = CONDITIONALLY_UNAVAILABLE;
+        InvalidationBus.getInstance(mContext).invalidate(InvalidationBus.SOURCE_PACKAGES);
+
+        assertThat(controller.isAvailable()).isFalse();
+        assertThat(controller.mCount).isEqualTo(2);
+    }
+
+    @Test
+    public void isAvailable_withDependencies_otherSourceChanged_reusesStatus() {
+        final CachedPreferenceController controller =
+                new CachedPreferenceController(mContext, KEY);
+
+        controller.isAvailable();
+        InvalidationBus.getInstance(mContext).invalidate(InvalidationBus.SOURCE_SUBSCRIPTIONS);
+        controller.isAvailable();
+
+        assertThat(controller.mCount).isEqualTo(1);
+    }
+
     @Test
     public void isSupported_availableStatusAvailable_returnsTrue() {
         mPreferenceController.setAvailability(AVAILABLE);
@@ -233,4 +281,25 @@ public class BasePreferenceControllerTest {
             mAvailable = availability;
         }
     }
-}
\ No newline at end of file
+
+    private static class CachedPreferenceController extends BasePreferenceController {
+
+        private int mAvailable = AVAILABLE;
+        private int mCount;
+
+        private CachedPreferenceController(Context context, String preferenceKey) {
+            super(context, preferenceKey);
+        }
+
+        @Override
+        public int getAvailabilityStatus() {
+            mCount++;
+            return mAvailable;
+        }
+
+        @Override
+        public InvalidationBus.Dependencies getAvailabilityDependencies() {
+            return InvalidationBus.Dependencies.of(InvalidationBus.SOURCE_PACKAGES);
+        }
+    }
+}
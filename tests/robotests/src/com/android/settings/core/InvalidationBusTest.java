@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static com.android.settings.core.InvalidationBus.SOURCE_PACKAGES;
+import static com.android.settings.core.InvalidationBus.SOURCE_SUBSCRIPTIONS;
+import static com.android.settings.core.InvalidationBus.SOURCE_USER_RESTRICTIONS;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.provider.Settings;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class InvalidationBusTest {
+
+    private static final Uri URI = Settings.Global.getUriFor(Settings.Global.AIRPLANE_MODE_ON);
+
+    private InvalidationBus mBus;
+
+    @Before
+    public void setUp() {
+        mBus = new InvalidationBus();
+    }
+
+    @Test
+    public void getGeneration_declaredSourceInvalidated_shouldChange() {
+        final InvalidationBus.Dependencies dependencies =
+                InvalidationBus.Dependencies.of(SOURCE_PACKAGES | SOURCE_USER_RESTRICTIONS);
+        final long generation = mBus.getGeneration(dependencies);
+
+        mBus.invalidate(SOURCE_USER_RESTRICTIONS);
+
+        assertThat(mBus.getGeneration(dependencies)).isNotEqualTo(generation);
+    }
+
+    @Test
+    public void getGeneration_otherSourceInvalidated_shouldNotChange() {
+        final InvalidationBus.Dependencies dependencies =
+                InvalidationBus.Dependencies.of(SOURCE_PACKAGES);
+        final long generation = mBus.getGeneration(dependencies);
+
+        mBus.invalidate(SOURCE_SUBSCRIPTIONS);
+        mBus.invalidateUri(URI);
+
+        assertThat(mBus.getGeneration(dependencies)).isEqualTo(generation);
+    }
+
+    @Test
+    public void getGeneration_uriAndBroadcastInvalidated_shouldChange() {
+        final InvalidationBus.Dependencies dependencies = new InvalidationBus.Dependencies.Builder()
+                .addUri(URI)
+                .addBroadcast(Intent.ACTION_AIRPLANE_MODE_CHANGED, Context.RECEIVER_EXPORTED)
+                .build();
+        final long generation = mBus.getGeneration(dependencies);
+
+        mBus.invalidateUri(URI);
+        final long uriGeneration = mBus.getGeneration(dependencies);
+        mBus.invalidateBroadcast(Intent.ACTION_AIRPLANE_MODE_CHANGED);
+
+        assertThat(uriGeneration).isNotEqualTo(generation);
+        assertThat(mBus.getGeneration(dependencies)).isNotEqualTo(uriGeneration);
+    }
+
+    @Test
+    public void invalidate_shouldNotifyListeners() {
+        final List<Integer> invalidated = new ArrayList<>();
+        mBus.addListener(invalidated::add);
+
+        mBus.invalidate(SOURCE_PACKAGES);
+
+        assertThat(invalidated).containsExactly(SOURCE_PACKAGES);
+    }
+}
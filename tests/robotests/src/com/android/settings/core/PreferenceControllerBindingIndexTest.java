@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.provider.SearchIndexableResource;
+
+import com.android.settings.R;
+import com.android.settings.search.SearchFeatureProvider;
+import com.android.settings.search.SearchFeatureProviderImpl;
+import com.android.settings.slices.FakePreferenceController;
+import com.android.settings.testutils.FakeFeatureFactory;
+import com.android.settingslib.search.Indexable;
+import com.android.settingslib.search.SearchIndexableData;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+
+@RunWith(RobolectricTestRunner.class)
+public class PreferenceControllerBindingIndexTest {
+
+    private Context mContext;
+    private SearchFeatureProvider mSearchProvider;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mSearchProvider = new SearchFeatureProviderImpl();
+        FakeFeatureFactory.setupForTest().searchFeatureProvider = mSearchProvider;
+        PreferenceControllerBindingIndex.clear();
+    }
+
+    @After
+    public void tearDown() {
+        PreferenceControllerBindingIndex.clear();
+    }
+
+    @Test
+    public void getBindings_allIndexableXml_shouldMatchReflectiveControllers() {
+        for (int xmlResId : getIndexableXml()) {
+            final List<BasePreferenceController> expected = PreferenceControllerListHelper
+                    .getPreferenceControllersFromXmlReflectively(mContext, xmlResId);
+            final List<BasePreferenceController> actual =
+                    PreferenceControllerListHelper.getPreferenceControllersFromXml(mContext,
+                            xmlResId);
+
+            final String xmlName = mContext.getResources().getResourceEntryName(xmlResId);
+            assertWithMessage("Controller count of " + xmlName)
+                    .that(actual.size()).isEqualTo(expected.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertWithMessage("Controller class in " + xmlName)
+                        .that(actual.get(i).getClass()).isEqualTo(expected.get(i).getClass());
+                assertWithMessage("Controller key in " + xmlName)
+                        .that(actual.get(i).getPreferenceKey())
+                        .isEqualTo(expected.get(i).getPreferenceKey());
+            }
+        }
+    }
+
+    @Test
+    @Config(qualifiers = "mcc999")
+    public void getBindings_calledTwice_shouldReuseIndex() {
+        final List<PreferenceControllerBindingIndex.Binding> first =
+                PreferenceControllerBindingIndex.getBindings(mContext, R.xml.location_settings);
+        final List<PreferenceControllerBindingIndex.Binding> second =
+                PreferenceControllerBindingIndex.getBindings(mContext, R.xml.location_settings);
+
+        assertThat(first).isNotEmpty();
+        assertThat(second).isSameInstanceAs(first);
+    }
+
+    @Test
+    @Config(qualifiers = "mcc999")
+    public void getBindings_windowSizeChanged_shouldReuseIndex() {
+        final List<PreferenceControllerBindingIndex.Binding> first =
+                PreferenceControllerBindingIndex.getBindings(mContext, R.xml.location_settings);
+        final Configuration configuration =
+                new Configuration(mContext.getResources().getConfiguration());
+        configuration.screenWidthDp += 100;
+        configuration.screenHeightDp += 100;
+
+        final List<PreferenceControllerBindingIndex.Binding> second =
+                PreferenceControllerBindingIndex.getBindings(
+                        mContext.createConfigurationContext(configuration),
+                        R.xml.location_settings);
+
+        assertThat(second).isSameInstanceAs(first);
+    }
+
+    @Test
+    @Config(qualifiers = "mcc999")
+    public void getBindings_localeChanged_shouldRebuildIndex() {
+        final List<PreferenceControllerBindingIndex.Binding> first =
+                PreferenceControllerBindingIndex.getBindings(mContext, R.xml.location_settings);
+        final Configuration configuration =
+                new Configuration(mContext.getResources().getConfiguration());
+        configuration.setLocale(Locale.FRANCE);
+
+        final List<PreferenceControllerBindingIndex.Binding> second =
+                PreferenceControllerBindingIndex.getBindings(
+                        mContext.createConfigurationContext(configuration),
+                        R.xml.location_settings);
+
+        assertThat(second).isNotSameInstanceAs(first);
+    }
+
+    @Test
+    @Config(qualifiers = "mcc999")
+    public void getBindings_shouldCreateNewControllerEachTime() {
+        final List<BasePreferenceController> first =
+                PreferenceControllerListHelper.getPreferenceControllersFromXml(mContext,
+                        R.xml.location_settings);
+        final List<BasePreferenceController> second =
+                PreferenceControllerListHelper.getPreferenceControllersFromXml(mContext,
+                        R.xml.location_settings);
+
+        assertThat(second).hasSize(first.size());
+        for (int i = 0; i < first.size(); i++) {
+            assertThat(first.get(i)).isInstanceOf(FakePreferenceController.class);
+            assertThat(second.get(i)).isNotSameInstanceAs(first.get(i));
+        }
+    }
+
+    @Test
+    @Config(qualifiers = "mcc998")
+    public void getBindings_invalidController_shouldBeSkipped() {
+        final List<BasePreferenceController> controllers =
+                PreferenceControllerListHelper.getPreferenceControllersFromXml(mContext,
+                        R.xml.location_settings);
+
+        assertThat(controllers).hasSize(1);
+        assertThat(controllers.get(0)).isInstanceOf(FakePreferenceController.class);
+    }
+
+    @Test
+    public void getBindings_invalidXml_shouldReturnEmpty() {
+        assertThat(PreferenceControllerBindingIndex.getBindings(mContext, 0)).isEmpty();
+    }
+
+    private Set<Integer> getIndexableXml() {
+        final Set<Integer> xmlResSet = new TreeSet<>();
+        for (SearchIndexableData data :
+                mSearchProvider.getSearchIndexableResources().getProviderValues()) {
+            final Indexable.SearchIndexProvider provider = data.getSearchIndexProvider();
+            if (provider == null) {
+                continue;
+            }
+            final List<SearchIndexableResource> resources =
+                    provider.getXmlResourcesToIndex(mContext, true);
+            if (resources == null) {
+                continue;
+            }
+            for (SearchIndexableResource resource : resources) {
+                if (resource.xmlResId > 0) {
+                    xmlResSet.add(resource.xmlResId);
+                }
+            }
+        }
+        return xmlResSet;
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Bundle;
+
+import com.android.settings.R;
+import com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.List;
+import java.util.Locale;
+
+@RunWith(RobolectricTestRunner.class)
+public class PreferenceXmlMetadataCacheTest {
+
+    private static final int SEARCH_FLAGS = MetadataFlag.FLAG_NEED_KEY
+            | MetadataFlag.FLAG_INCLUDE_PREF_SCREEN
+            | MetadataFlag.FLAG_NEED_SEARCHABLE;
+    private static final int SLICE_FLAGS = MetadataFlag.FLAG_INCLUDE_PREF_SCREEN
+            | MetadataFlag.FLAG_NEED_KEY
+            | MetadataFlag.FLAG_NEED_PREF_CONTROLLER
+            | MetadataFlag.FLAG_NEED_PREF_TYPE
+            | MetadataFlag.FLAG_NEED_PREF_TITLE
+            | MetadataFlag.FLAG_NEED_PREF_ICON
+            | MetadataFlag.FLAG_NEED_PREF_SUMMARY
+            | MetadataFlag.FLAG_UNAVAILABLE_SLICE_SUBTITLE
+            | MetadataFlag.FLAG_NEED_USER_RESTRICTION;
+    private static final int NO_SCREEN_FLAGS = MetadataFlag.FLAG_NEED_KEY
+            | MetadataFlag.FLAG_NEED_PREF_APPEND;
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = getApplicationContext();
+        PreferenceXmlMetadataCache.reset();
+    }
+
+    @After
+    public void tearDown() {
+        PreferenceXmlMetadataCache.reset();
+    }
+
+    @Test
+    public void extractMetadata_shouldMatchParser() throws Exception {
+        for (int flags : new int[]{SEARCH_FLAGS, SLICE_FLAGS, NO_SCREEN_FLAGS}) {
+            final List<Bundle> expected = PreferenceXmlParserUtils.extractMetadata(mContext,
+                    R.xml.display_settings, flags);
+            final List<Bundle> actual = PreferenceXmlMetadataCache.extractMetadata(mContext,
+                    R.xml.display_settings, flags);
+
+            assertMetadataEquals(actual, expected);
+        }
+    }
+
+    @Test
+    public void extractMetadata_sameFlagsTwice_shouldParseOnce() throws Exception {
+        PreferenceXmlMetadataCache.extractMetadata(mContext, R.xml.display_settings,
+                SEARCH_FLAGS);
+        PreferenceXmlMetadataCache.extractMetadata(mContext, R.xml.display_settings,
+                SEARCH_FLAGS);
+
+        assertThat(PreferenceXmlMetadataCache.getMissCount()).isEqualTo(1);
+        assertThat(PreferenceXmlMetadataCache.getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void extractMetadata_subsetOfCachedFlags_shouldHit() throws Exception {
+        PreferenceXmlMetadataCache.extractMetadata(mContext, R.xml.display_settings,
+                SLICE_FLAGS);
+        final List<Bundle> metadata = PreferenceXmlMetadataCache.extractMetadata(mContext,
+                R.xml.display_settings, MetadataFlag.FLAG_NEED_KEY);
+
+        assertThat(PreferenceXmlMetadataCache.getMissCount()).isEqualTo(1);
+        assertThat(PreferenceXmlMetadataCache.getHitCount()).isEqualTo(1);
+        assertMetadataEquals(metadata, PreferenceXmlParserUtils.extractMetadata(mContext,
+                R.xml.display_settings, MetadataFlag.FLAG_NEED_KEY));
+    }
+
+    @Test
+    public void extractMetadata_disjointFlags_shouldWidenEntry() throws Exception {
+        PreferenceXmlMetadataCache.extractMetadata(mContext, R.xml.display_settings,
+                MetadataFlag.FLAG_NEED_SEARCHABLE);
+        PreferenceXmlMetadataCache.extractMetadata(mContext, R.xml.display_settings,
+                MetadataFlag.FLAG_NEED_PREF_CONTROLLER);
+        PreferenceXmlMetadataCache.extractMetadata(mContext, R.xml.display_settings,
+                MetadataFlag.FLAG_NEED_SEARCHABLE | MetadataFlag.FLAG_NEED_PREF_CONTROLLER);
+
+        assertThat(PreferenceXmlMetadataCache.getMissCount()).isEqualTo(2);
+        assertThat(PreferenceXmlMetadataCache.getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void extractMetadata_returnedBundleModified_shouldNotAffectCache() throws Exception {
+        final List<Bundle> first = PreferenceXmlMetadataCache.extractMetadata(mContext,
+                R.xml.display_settings, SEARCH_FLAGS);
+        first.get(0).putString(PreferenceXmlParserUtils.METADATA_KEY, "modified");
+
+        final List<Bundle> second = PreferenceXmlMetadataCache.extractMetadata(mContext,
+                R.xml.display_settings, SEARCH_FLAGS);
+
+        assertThat(second.get(0).getString(PreferenceXmlParserUtils.METADATA_KEY))
+                .isNotEqualTo("modified");
+    }
+
+    @Test
+    public void invalidate_shouldParseAgain() throws Exception {
+        PreferenceXmlMetadataCache.extractMetadata(mContext, R.xml.display_settings,
+                SEARCH_FLAGS);
+
+        PreferenceXmlMetadataCache.invalidate();
+        PreferenceXmlMetadataCache.extractMetadata(mContext, R.xml.display_settings,
+                SEARCH_FLAGS);
+
+        assertThat(PreferenceXmlMetadataCache.getInvalidationCount()).isEqualTo(1);
+        assertThat(PreferenceXmlMetadataCache.getMissCount()).isEqualTo(2);
+        assertThat(PreferenceXmlMetadataCache.getHitCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void extractMetadata_windowSizeChanged_shouldHit() throws Exception {
+        PreferenceXmlMetadataCache.extractMetadata(mContext, R.xml.display_settings,
+                SEARCH_FLAGS);
+        final Configuration configuration =
+                new Configuration(mContext.getResources().getConfiguration());
+        configuration.screenWidthDp += 100;
+        configuration.screenHeightDp += 100;
+
+        PreferenceXmlMetadataCache.extractMetadata(
+                mContext.createConfigurationContext(configuration), R.xml.display_settings,
+                SEARCH_FLAGS);
+
+        assertThat(PreferenceXmlMetadataCache.getInvalidationCount()).isEqualTo(0);
+        assertThat(PreferenceXmlMetadataCache.getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void extractMetadata_localeChanged_shouldParseAgain() throws Exception {
+        PreferenceXmlMetadataCache.extractMetadata(mContext, R.xml.display_settings,
+                SEARCH_FLAGS);
+        final Configuration configuration =
+                new Configuration(mContext.getResources().getConfiguration());
+        configuration.setLocale(Locale.FRANCE);
+
+        PreferenceXmlMetadataCache.extractMetadata(
+                mContext.createConfigurationContext(configuration), R.xml.display_settings,
+                SEARCH_FLAGS);
+
+        assertThat(PreferenceXmlMetadataCache.getInvalidationCount()).isEqualTo(1);
+        assertThat(PreferenceXmlMetadataCache.getMissCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void extractMetadata_fontScaleChanged_shouldParseAgain() throws Exception {
+        PreferenceXmlMetadataCache.extractMetadata(mContext, R.xml.display_settings,
+                SEARCH_FLAGS);
+        final Configuration configuration =
+                new Configuration(mContext.getResources().getConfiguration());
+        configuration.fontScale *= 2;
+
+        PreferenceXmlMetadataCache.extractMetadata(
+                mContext.createConfigurationContext(configuration), R.xml.display_settings,
+                SEARCH_FLAGS);
+
+        assertThat(PreferenceXmlMetadataCache.getMissCount()).isEqualTo(2);
+    }
+
+    private static void assertMetadataEquals(List<Bundle> actual, List<Bundle> expected) {
+        assertThat(actual).hasSize(expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            final Bundle actualBundle = actual.get(i);
+            final Bundle expectedBundle = expected.get(i);
+            assertThat(actualBundle.keySet()).containsExactlyElementsIn(expectedBundle.keySet());
+            for (String key : expectedBundle.keySet()) {
+                assertThat(actualBundle.get(key)).isEqualTo(expectedBundle.get(key));
+            }
+        }
+    }
+}
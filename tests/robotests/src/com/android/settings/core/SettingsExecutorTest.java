@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static com.android.settings.core.SettingsExecutor.LANE_MAINTENANCE;
+import static com.android.settings.core.SettingsExecutor.LANE_PREFETCH;
+import static com.android.settings.core.SettingsExecutor.LANE_UI_CRITICAL;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.LifecycleRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+@RunWith(RobolectricTestRunner.class)
+public class SettingsExecutorTest {
+
+    private SettingsExecutor mExecutor;
+    private List<String> mRun;
+
+    @Before
+    public void setUp() {
+        // A single thread, so the tasks queued behind a blocked one run one by one.
+        mExecutor = new SettingsExecutor(1);
+        mRun = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    @Test
+    public void execute_queuedTasks_shouldRunInLaneOrder() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        mExecutor.execute(LANE_MAINTENANCE, "blocker", () -> awaitUninterruptibly(blocked));
+        mExecutor.execute(LANE_MAINTENANCE, "maintenance", () -> mRun.add("maintenance"));
+        mExecutor.execute(LANE_PREFETCH, "prefetch1", () -> mRun.add("prefetch1"));
+        mExecutor.execute(LANE_UI_CRITICAL, "ui", () -> mRun.add("ui"));
+        mExecutor.execute(LANE_PREFETCH, "prefetch2", () -> mRun.add("prefetch2"));
+
+        blocked.countDown();
+        drain();
+
+        assertThat(mRun).containsExactly("ui", "prefetch1", "prefetch2", "maintenance").inOrder();
+    }
+
+    @Test
+    public void newSerialExecutor_shouldRunInSubmissionOrder() throws Exception {
+        final SettingsExecutor executor = new SettingsExecutor(4);
+        final Executor serial = executor.newSerialExecutor(LANE_PREFETCH, "serial");
+        final CountDownLatch done = new CountDownLatch(20);
+        for (int i = 0; i < 20; i++) {
+            final String name = String.valueOf(i);
+            serial.execute(() -> {
+                mRun.add(name);
+                done.countDown();
+            });
+        }
+
+        done.await();
+
+        final List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            expected.add(String.valueOf(i));
+        }
+        assertThat(mRun).containsExactlyElementsIn(expected).inOrder();
+    }
+
+    @Test
+    public void submit_ownerResumed_shouldPostResult() throws Exception {
+        final TestLifecycleOwner owner = new TestLifecycleOwner();
+        owner.mRegistry.setCurrentState(Lifecycle.State.RESUMED);
+
+        mExecutor.submit(owner, LANE_UI_CRITICAL, "task", () -> "result", mRun::add).get();
+        drain();
+
+        assertThat(mRun).containsExactly("result");
+    }
+
+    @Test
+    public void submit_ownerDestroyed_shouldCancelAndNotPostResult() throws Exception {
+        final TestLifecycleOwner owner = new TestLifecycleOwner();
+        owner.mRegistry.setCurrentState(Lifecycle.State.RESUMED);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        mExecutor.execute(LANE_UI_CRITICAL, "blocker", () -> awaitUninterruptibly(blocked));
+
+        final Future<String> future =
+                mExecutor.submit(owner, LANE_UI_CRITICAL, "task", () -> "result", mRun::add);
+        owner.mRegistry.setCurrentState(Lifecycle.State.DESTROYED);
+        blocked.countDown();
+        drain();
+
+        assertThat(future.isCancelled()).isTrue();
+        assertThat(mRun).isEmpty();
+    }
+
+    @Test
+    public void getTaskStats_shouldCountTasksPerName() throws Exception {
+        mExecutor.execute(LANE_PREFETCH, "a", () -> {}).get();
+        mExecutor.execute(LANE_PREFETCH, "a", () -> {}).get();
+        mExecutor.submit(LANE_MAINTENANCE, "b", () -> null).get();
+        drain();
+
+        assertThat(mExecutor.getTaskStats().get("a").getCount()).isEqualTo(2);
+        assertThat(mExecutor.getTaskStats().get("b").getCount()).isEqualTo(1);
+    }
+
+    private void drain() throws Exception {
+        // The single thread completes the previous tasks, recording their stats and posting their
+        // results, before running this one.
+        mExecutor.execute(LANE_MAINTENANCE, "last", () -> {}).get();
+        ShadowLooper.idleMainLooper();
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class TestLifecycleOwner implements LifecycleOwner {
+        final LifecycleRegistry mRegistry = new LifecycleRegistry(this);
+
+        @NonNull
+        @Override
+        public Lifecycle getLifecycle() {
+            return mRegistry;
+        }
+    }
+}
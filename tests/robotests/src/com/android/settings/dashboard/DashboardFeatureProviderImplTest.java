@@ -158,6 +158,8 @@ public class DashboardFeatureProviderImplTest {
                 .thenReturn(new ResolveInfo());
         mFeatureFactory = FakeFeatureFactory.setupForTest();
         mImpl = new DashboardFeatureProviderImpl(mContext);
+        mImpl.mTileDataLoader = new DynamicTileDataLoader(Runnable::run,
+                mFeatureFactory.metricsFeatureProvider);
         mFragment = new TestFragment();
     }
 
@@ -20,11 +20,16 @@ import static com.android.settingslib.drawer.TileUtils.META_DATA_PREFERENCE_GROU
 import static com.android.settingslib.drawer.TileUtils.META_DATA_PREFERENCE_KEYHINT;
 import static com.android.settingslib.drawer.TileUtils.META_DATA_PREFERENCE_PENDING_INTENT;
 import static com.android.settingslib.drawer.TileUtils.META_DATA_PREFERENCE_SWITCH_URI;
+import static com.android.settingslib.drawer.TileUtils.META_DATA_PREFERENCE_TITLE;
 
 import static com.google.common.truth.Truth.assertThat;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
@@ -70,6 +75,7 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
@@ -77,13 +83,17 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 import org.robolectric.annotation.Implementation;
 import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowLooper;
 import org.robolectric.util.ReflectionHelpers;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 @RunWith(RobolectricTestRunner.class)
 public class DashboardFragmentTest {
@@ -225,6 +235,137 @@ public class DashboardFragmentTest {
         verify(groupPreference).addPreference(nullable(Preference.class));
     }
 
+    @Test
+    public void displayTilesAsPreference_observersLoaded_shouldUpdateUiRightAway() {
+        final TestDynamicDataObserver first = new TestDynamicDataObserver();
+        final TestDynamicDataObserver second = new TestDynamicDataObserver();
+        first.load();
+        second.load();
+        setUpTileObservers(first, second);
+
+        mTestFragment.onCreatePreferences(new Bundle(), "rootKey");
+
+        assertThat(first.mUpdated).isTrue();
+        assertThat(second.mUpdated).isTrue();
+    }
+
+    @Test
+    public void displayTilesAsPreference_observerPending_shouldUpdateUiWhenAllLoaded() {
+        final TestDynamicDataObserver loaded = new TestDynamicDataObserver();
+        final TestDynamicDataObserver pending = new TestDynamicDataObserver();
+        loaded.load();
+        setUpTileObservers(loaded, pending);
+
+        mTestFragment.onCreatePreferences(new Bundle(), "rootKey");
+
+        assertThat(loaded.mUpdated).isFalse();
+
+        pending.load();
+        ShadowLooper.idleMainLooper();
+
+        assertThat(loaded.mUpdated).isTrue();
+        assertThat(pending.mUpdated).isTrue();
+    }
+
+    @Test
+    public void displayTilesAsPreference_observerTimesOut_shouldUpdateLoadedObservers() {
+        final TestDynamicDataObserver loaded = new TestDynamicDataObserver();
+        final TestDynamicDataObserver pending = new TestDynamicDataObserver();
+        loaded.load();
+        setUpTileObservers(loaded, pending);
+
+        mTestFragment.onCreatePreferences(new Bundle(), "rootKey");
+        ShadowLooper.idleMainLooper(50, TimeUnit.MILLISECONDS);
+
+        assertThat(loaded.mUpdated).isTrue();
+        assertThat(pending.mUpdated).isFalse();
+
+        // Loaded after the batched update, the observer updates its preference on its own.
+        pending.load();
+
+        assertThat(pending.mUpdated).isTrue();
+    }
+
+    @Test
+    public void onCategoriesChanged_tilesUnchanged_shouldNotRecreateOrRebindPreferences() {
+        setUpTileKeys();
+        mTestFragment.onCreatePreferences(new Bundle(), "rootKey");
+        final ArgumentCaptor<Preference> addedPreferences =
+                ArgumentCaptor.forClass(Preference.class);
+        verify(mTestFragment.mScreen, times(2)).addPreference(addedPreferences.capture());
+
+        mTestFragment.onCategoriesChanged(getCategoryKeys());
+
+        verify(mTestFragment.mScreen, times(2)).addPreference(nullable(Preference.class));
+        verify(mTestFragment.mScreen, never()).removePreference(nullable(Preference.class));
+        verify(mTestFragment.mScreen, never()).removePreferenceRecursively(nullable(String.class));
+        verify(mFakeFeatureFactory.dashboardFeatureProvider, times(2))
+                .bindPreferenceToTileAndGetObservers(any(), any(), anyBoolean(), any(), any(),
+                        any(), anyInt());
+        assertThat(mTestFragment.mDashboardTilePrefKeys.keySet())
+                .containsExactly("injected_tile_key", "injected_tile_key2");
+        assertThat(addedPreferences.getAllValues()).hasSize(2);
+    }
+
+    @Test
+    public void onCategoriesChanged_tileMetaDataChanged_shouldOnlyRebindChangedTile() {
+        setUpTileKeys();
+        mTestFragment.onCreatePreferences(new Bundle(), "rootKey");
+
+        mActivityTile.getMetaData().putString(META_DATA_PREFERENCE_TITLE, "new title");
+        mTestFragment.onCategoriesChanged(getCategoryKeys());
+
+        verify(mTestFragment.mScreen, times(2)).addPreference(nullable(Preference.class));
+        verify(mFakeFeatureFactory.dashboardFeatureProvider, times(2))
+                .bindPreferenceToTileAndGetObservers(any(), any(), anyBoolean(), any(),
+                        eq(mActivityTile), any(), anyInt());
+        verify(mFakeFeatureFactory.dashboardFeatureProvider, times(1))
+                .bindPreferenceToTileAndGetObservers(any(), any(), anyBoolean(), any(),
+                        eq(mProviderTile), any(), anyInt());
+    }
+
+    @Test
+    public void onCategoriesChanged_tileRemoved_shouldOnlyRemoveItsPreference() {
+        setUpTileKeys();
+        mTestFragment.onCreatePreferences(new Bundle(), "rootKey");
+
+        mDashboardCategory.removeTile(mDashboardCategory.getTiles().indexOf(mProviderTile));
+        mTestFragment.onCategoriesChanged(getCategoryKeys());
+
+        verify(mTestFragment.mScreen, times(2)).addPreference(nullable(Preference.class));
+        assertThat(mTestFragment.mDashboardTilePrefKeys.keySet())
+                .containsExactly("injected_tile_key");
+    }
+
+    @Test
+    public void onCategoriesChanged_forceRefresh_shouldRebindAllTiles() {
+        setUpTileKeys();
+        mTestFragment.onCreatePreferences(new Bundle(), "rootKey");
+
+        mTestFragment.onCategoriesChanged(null);
+
+        verify(mTestFragment.mScreen, times(2)).addPreference(nullable(Preference.class));
+        verify(mFakeFeatureFactory.dashboardFeatureProvider, times(4))
+                .bindPreferenceToTileAndGetObservers(any(), any(), anyBoolean(), any(), any(),
+                        any(), anyInt());
+    }
+
+    @Test
+    public void findIndexedPreference_shouldSearchHierarchyOnce() {
+        final PreferenceScreen spyScreen = spy(
+                new PreferenceManager(mContext).createPreferenceScreen(mContext));
+        final Preference preference = new Preference(mContext);
+        preference.setKey("key");
+        spyScreen.addPreference(preference);
+        final TestFragment fragment = spy(mTestFragment);
+        doReturn(spyScreen).when(fragment).getPreferenceScreen();
+
+        assertThat(fragment.findIndexedPreference("key")).isSameInstanceAs(preference);
+        assertThat(fragment.findIndexedPreference("key")).isSameInstanceAs(preference);
+
+        verify(spyScreen, times(1)).findPreference("key");
+    }
+
     @Test
     public void displayTilesAsPreference_shouldNotAddTilesWithoutIntent() {
         mTestFragment.onCreatePreferences(new Bundle(), "rootKey");
@@ -598,7 +739,29 @@ public class DashboardFragmentTest {
 
     }
 
+    private void setUpTileKeys() {
+        when(mFakeFeatureFactory.dashboardFeatureProvider
+                .getDashboardKeyForTile(any(Tile.class)))
+                .then(invocation -> ((Tile) invocation.getArgument(0)).getKey(mContext));
+    }
+
+    private Set<String> getCategoryKeys() {
+        final Set<String> categories = new HashSet<>();
+        categories.add(mTestFragment.getCategoryKey());
+        return categories;
+    }
+
+    private void setUpTileObservers(DynamicDataObserver... observers) {
+        when(mFakeFeatureFactory.dashboardFeatureProvider
+                .getDashboardKeyForTile(any(Tile.class)))
+                .then(invocation -> ((Tile) invocation.getArgument(0)).getKey(mContext));
+        when(mFakeFeatureFactory.dashboardFeatureProvider.bindPreferenceToTileAndGetObservers(
+                any(), any(), anyBoolean(), any(), any(ActivityTile.class), any(), anyInt()))
+                .thenReturn(Arrays.asList(observers));
+    }
+
     private static class TestDynamicDataObserver extends DynamicDataObserver {
+        boolean mUpdated;
 
         @Override
         public Uri getUri() {
@@ -608,6 +771,10 @@ public class DashboardFragmentTest {
         @Override
         public void onDataChanged() {
         }
+
+        void load() {
+            post(() -> mUpdated = true);
+        }
     }
 
     @Implements(PreferenceFragmentCompat.class)
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.dashboard;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import android.app.settings.SettingsEnums;
+import android.content.IContentProvider;
+import android.net.Uri;
+
+import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@RunWith(RobolectricTestRunner.class)
+public class DynamicTileDataLoaderTest {
+
+    private static final Uri TITLE_URI = Uri.parse("content://com.android.foo/getDynamicTitle/a");
+    private static final Uri SUMMARY_URI =
+            Uri.parse("content://com.android.foo/getDynamicSummary/a");
+    private static final Uri OTHER_URI = Uri.parse("content://com.android.bar/getDynamicTitle/b");
+
+    @Rule
+    public final MockitoRule mMockitoRule = MockitoJUnit.rule();
+
+    @Mock
+    private MetricsFeatureProvider mMetricsFeatureProvider;
+
+    private final List<Runnable> mTasks = new ArrayList<>();
+    private DynamicTileDataLoader mLoader;
+
+    @Before
+    public void setUp() {
+        mLoader = new DynamicTileDataLoader(mTasks::add, mMetricsFeatureProvider);
+    }
+
+    @Test
+    public void load_sameAuthority_shouldRunInOneTaskSharingProviders() {
+        final List<Map<String, IContentProvider>> providerMaps = new ArrayList<>();
+
+        mLoader.load(TITLE_URI, providerMaps::add);
+        mLoader.load(SUMMARY_URI, providerMaps::add);
+
+        assertThat(mTasks).hasSize(1);
+        runTasks();
+        assertThat(providerMaps).hasSize(2);
+        assertThat(providerMaps.get(0)).isSameInstanceAs(providerMaps.get(1));
+    }
+
+    @Test
+    public void load_differentAuthorities_shouldRunInSeparateTasks() {
+        final List<Uri> loaded = new ArrayList<>();
+
+        mLoader.load(TITLE_URI, providerMap -> loaded.add(TITLE_URI));
+        mLoader.load(OTHER_URI, providerMap -> loaded.add(OTHER_URI));
+
+        assertThat(mTasks).hasSize(2);
+        runTasks();
+        assertThat(loaded).containsExactly(TITLE_URI, OTHER_URI).inOrder();
+    }
+
+    @Test
+    public void load_whileDraining_shouldJoinRunningTask() {
+        final List<Uri> loaded = new ArrayList<>();
+
+        mLoader.load(TITLE_URI, providerMap -> {
+            loaded.add(TITLE_URI);
+            mLoader.load(SUMMARY_URI, map -> loaded.add(SUMMARY_URI));
+        });
+        runTasks();
+
+        assertThat(loaded).containsExactly(TITLE_URI, SUMMARY_URI).inOrder();
+        // The task is done, a new query schedules a new task.
+        mLoader.load(TITLE_URI, providerMap -> loaded.add(TITLE_URI));
+        assertThat(mTasks).hasSize(1);
+    }
+
+    @Test
+    public void load_queryThrows_shouldRunRemainingQueries() {
+        final List<Uri> loaded = new ArrayList<>();
+
+        mLoader.load(TITLE_URI, providerMap -> {
+            throw new IllegalStateException("boom");
+        });
+        mLoader.load(SUMMARY_URI, providerMap -> loaded.add(SUMMARY_URI));
+        runTasks();
+
+        assertThat(loaded).containsExactly(SUMMARY_URI);
+    }
+
+    @Test
+    public void load_shouldCountLatencyPerUri() {
+        mLoader.load(TITLE_URI, providerMap -> {});
+        runTasks();
+        mLoader.load(TITLE_URI, providerMap -> {});
+        runTasks();
+
+        assertThat(mLoader.getLatencyCounter(TITLE_URI).mCount).isEqualTo(2);
+        assertThat(mLoader.getLatencyCounter(SUMMARY_URI)).isNull();
+    }
+
+    @Test
+    public void load_shouldReportLatencyPerUri() {
+        mLoader.load(TITLE_URI, providerMap -> {});
+        mLoader.load(SUMMARY_URI, providerMap -> {});
+        runTasks();
+        mLoader.load(TITLE_URI, providerMap -> {});
+        runTasks();
+
+        verify(mMetricsFeatureProvider, times(2)).action(eq(SettingsEnums.PAGE_UNKNOWN),
+                eq(SettingsEnums.ACTION_SETTINGS_TILE_DATA_LOAD), eq(SettingsEnums.PAGE_UNKNOWN),
+                eq(TITLE_URI.toString()), anyInt());
+        verify(mMetricsFeatureProvider).action(eq(SettingsEnums.PAGE_UNKNOWN),
+                eq(SettingsEnums.ACTION_SETTINGS_TILE_DATA_LOAD), eq(SettingsEnums.PAGE_UNKNOWN),
+                eq(SUMMARY_URI.toString()), anyInt());
+    }
+
+    private void runTasks() {
+        while (!mTasks.isEmpty()) {
+            mTasks.remove(0).run();
+        }
+    }
+}
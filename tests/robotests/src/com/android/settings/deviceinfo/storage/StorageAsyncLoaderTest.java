@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.deviceinfo.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.ContentProvider;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.UserInfo;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.CancellationSignal;
+import android.os.UserHandle;
+import android.os.UserManager;
+import android.provider.MediaStore;
+import android.provider.MediaStore.Files.FileColumns;
+import android.util.SparseArray;
+
+import androidx.core.os.OperationCanceledException;
+
+import com.android.settingslib.applications.StorageStatsSource;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class StorageAsyncLoaderTest {
+    private static final int PRIMARY_USER_ID = 0;
+    private static final int SECONDARY_USER_ID = 10;
+    private static final String PACKAGE_NAME = "com.android.settings.test";
+
+    @Mock
+    private StorageStatsSource mSource;
+    @Mock
+    private PackageManager mPackageManager;
+    @Mock
+    private UserManager mUserManager;
+    private Context mContext;
+    private StorageAsyncLoader mLoader;
+    private List<SparseArray<StorageAsyncLoader.StorageResult>> mPartialResults;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        mContext = spy(RuntimeEnvironment.application);
+        doReturn(mContext).when(mContext)
+                .createPackageContextAsUser(anyString(), anyInt(), any(UserHandle.class));
+        // The secondary user is listed first, the users must still be completed in order.
+        when(mUserManager.getUsers()).thenReturn(new ArrayList<>(Arrays.asList(
+                createUserInfo(SECONDARY_USER_ID), createUserInfo(PRIMARY_USER_ID))));
+        when(mPackageManager.getInstalledApplicationsAsUser(anyInt(), anyInt()))
+                .thenReturn(new ArrayList<>());
+        mPartialResults = new ArrayList<>();
+        StorageAsyncLoader.sFilesAggregationSupported = true;
+        // Run the sizing tasks inline so they complete in submission order.
+        mLoader = new StorageAsyncLoader(mContext, mUserManager, "id", mSource, mPackageManager,
+                Runnable::run);
+        mLoader.setPartialResultListener(mPartialResults::add);
+    }
+
+    @Test
+    public void loadInBackground_shouldNotifyUsersInAscendingOrder() {
+        final SparseArray<StorageAsyncLoader.StorageResult> result = mLoader.loadInBackground();
+        ShadowLooper.idleMainLooper();
+
+        assertThat(mPartialResults).hasSize(1);
+        assertThat(mPartialResults.get(0).size()).isEqualTo(1);
+        assertThat(mPartialResults.get(0).get(PRIMARY_USER_ID)).isNotNull();
+        assertThat(result.size()).isEqualTo(2);
+        assertThat(result.get(SECONDARY_USER_ID)).isNotNull();
+    }
+
+    @Test
+    public void loadInBackground_sharedPackage_shouldAttributeCodeToFirstUser() throws Exception {
+        installPackage(PRIMARY_USER_ID);
+        installPackage(SECONDARY_USER_ID);
+
+        final SparseArray<StorageAsyncLoader.StorageResult> result = mLoader.loadInBackground();
+
+        assertThat(result.get(PRIMARY_USER_ID).duplicateCodeSize).isEqualTo(0L);
+        assertThat(result.get(SECONDARY_USER_ID).duplicateCodeSize).isEqualTo(100L);
+    }
+
+    @Test
+    public void loadInBackground_groupingHonored_shouldQueryFilesOncePerUser() {
+        final FakeMediaProvider provider = registerMediaProvider();
+
+        final SparseArray<StorageAsyncLoader.StorageResult> result = mLoader.loadInBackground();
+
+        final StorageAsyncLoader.StorageResult primary = result.get(PRIMARY_USER_ID);
+        assertThat(provider.mQueryCount).isEqualTo(2);
+        assertThat(primary.imagesSize).isEqualTo(100L);
+        assertThat(primary.videosSize).isEqualTo(200L);
+        assertThat(primary.audioSize).isEqualTo(0L);
+        assertThat(primary.documentsSize).isEqualTo(300L);
+        assertThat(primary.otherSize).isEqualTo(40L);
+        assertThat(primary.trashSize).isEqualTo(5L);
+    }
+
+    @Test
+    public void loadInBackground_groupingRejected_shouldQueryEachCategory() {
+        final FakeMediaProvider provider = registerMediaProvider();
+        provider.mRejectGrouping = true;
+
+        final SparseArray<StorageAsyncLoader.StorageResult> result = mLoader.loadInBackground();
+
+        final StorageAsyncLoader.StorageResult primary = result.get(PRIMARY_USER_ID);
+        assertThat(StorageAsyncLoader.sFilesAggregationSupported).isFalse();
+        // One rejected query, then six queries per user as the grouping is no longer tried.
+        assertThat(provider.mQueryCount).isEqualTo(13);
+        assertThat(primary.imagesSize).isEqualTo(FakeMediaProvider.CATEGORY_SIZE);
+        assertThat(primary.trashSize).isEqualTo(FakeMediaProvider.CATEGORY_SIZE);
+    }
+
+    @Test
+    public void loadInBackground_canceled_shouldStopSizingAndNotNotify() {
+        when(mPackageManager.getInstalledApplicationsAsUser(anyInt(), eq(PRIMARY_USER_ID)))
+                .thenAnswer(invocation -> {
+                    mLoader.cancelLoadInBackground();
+                    return new ArrayList<>();
+                });
+
+        assertThrows(OperationCanceledException.class, () -> mLoader.loadInBackground());
+        ShadowLooper.idleMainLooper();
+
+        verify(mPackageManager, never())
+                .getInstalledApplicationsAsUser(anyInt(), eq(SECONDARY_USER_ID));
+        assertThat(mPartialResults).isEmpty();
+    }
+
+    private void installPackage(int userId) throws Exception {
+        final StorageStatsSource.AppStorageStats stats =
+                mock(StorageStatsSource.AppStorageStats.class);
+        when(stats.getCodeBytes()).thenReturn(100L);
+        when(mSource.getStatsForPackage(anyString(), eq(PACKAGE_NAME), eq(UserHandle.of(userId))))
+                .thenReturn(stats);
+        final ApplicationInfo info = new ApplicationInfo();
+        info.packageName = PACKAGE_NAME;
+        final List<ApplicationInfo> infos = new ArrayList<>();
+        infos.add(info);
+        when(mPackageManager.getInstalledApplicationsAsUser(anyInt(), eq(userId)))
+                .thenReturn(infos);
+    }
+
+    private FakeMediaProvider registerMediaProvider() {
+        return Robolectric.buildContentProvider(FakeMediaProvider.class)
+                .create(MediaStore.AUTHORITY).get();
+    }
+
+    private static UserInfo createUserInfo(int userId) {
+        final UserInfo info = new UserInfo();
+        info.id = userId;
+        return info;
+    }
+
+    public static class FakeMediaProvider extends ContentProvider {
+        static final long CATEGORY_SIZE = 10L;
+
+        int mQueryCount;
+        boolean mRejectGrouping;
+
+        @Override
+        public Cursor query(Uri uri, String[] projection, Bundle queryArgs,
+                CancellationSignal cancellationSignal) {
+            mQueryCount++;
+            if (!queryArgs.containsKey(ContentResolver.QUERY_ARG_SQL_GROUP_BY)) {
+                final MatrixCursor cursor = new MatrixCursor(projection);
+                cursor.addRow(new Object[] {CATEGORY_SIZE});
+                return cursor;
+            }
+            if (mRejectGrouping) {
+                throw new IllegalArgumentException("Grouping not supported");
+            }
+            final MatrixCursor cursor = new MatrixCursor(projection);
+            cursor.addRow(new Object[] {FileColumns.MEDIA_TYPE_IMAGE, 0, 100L});
+            cursor.addRow(new Object[] {FileColumns.MEDIA_TYPE_VIDEO, 0, 200L});
+            cursor.addRow(new Object[] {FileColumns.MEDIA_TYPE_DOCUMENT, 0, 300L});
+            cursor.addRow(new Object[] {FileColumns.MEDIA_TYPE_NONE, 0, 30L});
+            cursor.addRow(new Object[] {FileColumns.MEDIA_TYPE_PLAYLIST, 0, 10L});
+            cursor.addRow(new Object[] {FileColumns.MEDIA_TYPE_IMAGE, 1, 5L});
+            return cursor;
+        }
+
+        @Override
+        public boolean onCreate() {
+            return true;
+        }
+
+        @Override
+        public Cursor query(Uri uri, String[] projection, String selection,
+                String[] selectionArgs, String sortOrder) {
+            return null;
+        }
+
+        @Override
+        public String getType(Uri uri) {
+            return null;
+        }
+
+        @Override
+        public Uri insert(Uri uri, ContentValues values) {
+            return null;
+        }
+
+        @Override
+        public int delete(Uri uri, String selection, String[] selectionArgs) {
+            return 0;
+        }
+
+        @Override
+        public int update(Uri uri, ContentValues values, String selection,
+                String[] selectionArgs) {
+            return 0;
+        }
+    }
+}
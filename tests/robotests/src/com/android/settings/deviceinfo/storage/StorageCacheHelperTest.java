@@ -24,9 +24,12 @@ import android.os.UserHandle;
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 
+import com.android.settings.testutils.shadow.ShadowThreadUtils;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
 
 @RunWith(AndroidJUnit4.class)
 public class StorageCacheHelperTest {
@@ -43,6 +46,7 @@ public class StorageCacheHelperTest {
     private static final long FAKE_TOTAL_USED_SIZE = 50000L;
     private static final long FAKE_USED_SIZE = 6500L;
     private static final long FAKE_TEMPORARY_FILES_SIZE = 2500L;
+    private static final String FAKE_VOLUME_UUID = "1234-ABCD";
 
     private Context mContext;
     private StorageCacheHelper mHelper;
@@ -50,6 +54,7 @@ public class StorageCacheHelperTest {
     @Before
     public void setUp() {
         mContext = ApplicationProvider.getApplicationContext();
+        StorageCacheHelper.clearSnapshotsInMemory();
         mHelper = new StorageCacheHelper(mContext, UserHandle.myUserId());
     }
 
@@ -95,6 +100,63 @@ public class StorageCacheHelperTest {
         assertThat(mHelper.retrieveUsedSize()).isEqualTo(FAKE_USED_SIZE);
     }
 
+    @Test
+    @Config(shadows = ShadowThreadUtils.class)
+    public void cacheSizeInfo_shouldBeReadBackFromDisk() {
+        mHelper.cacheSizeInfo(getFakeStorageCache());
+        mHelper.cacheTotalSizeAndTotalUsedSize(FAKE_TOTAL_SIZE, FAKE_TOTAL_USED_SIZE);
+        StorageCacheHelper.clearSnapshotsInMemory();
+
+        final StorageCacheHelper helper = new StorageCacheHelper(mContext, UserHandle.myUserId());
+        final StorageCacheHelper.StorageCache storageCache = helper.retrieveCachedSize();
+
+        assertThat(helper.hasCachedSizeInfo()).isTrue();
+        assertThat(storageCache.imagesSize).isEqualTo(FAKE_IMAGES_SIZE);
+        assertThat(storageCache.temporaryFilesSize).isEqualTo(FAKE_TEMPORARY_FILES_SIZE);
+        assertThat(storageCache.totalSize).isEqualTo(FAKE_TOTAL_SIZE);
+    }
+
+    @Test
+    public void cacheSizeInfo_otherVolume_shouldNotBeShared() {
+        final StorageCacheHelper otherVolumeHelper =
+                new StorageCacheHelper(mContext, UserHandle.myUserId(), FAKE_VOLUME_UUID);
+
+        mHelper.cacheSizeInfo(getFakeStorageCache());
+
+        assertThat(otherVolumeHelper.hasCachedSizeInfo()).isFalse();
+        assertThat(new StorageCacheHelper(mContext, UserHandle.myUserId())
+                .retrieveCachedSize().imagesSize).isEqualTo(FAKE_IMAGES_SIZE);
+    }
+
+    @Test
+    @Config(shadows = ShadowThreadUtils.class)
+    public void retrieveCachedSize_legacySharedPreferences_shouldMigrate() {
+        final String name = "StorageCache" + UserHandle.myUserId();
+        mContext.getSharedPreferences(name, Context.MODE_PRIVATE).edit()
+                .putLong("images_size_key", FAKE_IMAGES_SIZE)
+                .putLong("temporary_files_size_key", FAKE_TEMPORARY_FILES_SIZE)
+                .putLong("total_size_key", FAKE_TOTAL_SIZE)
+                .putLong("total_used_size_key", FAKE_TOTAL_USED_SIZE)
+                .putLong("used_size_key", FAKE_USED_SIZE)
+                .commit();
+        StorageCacheHelper.clearSnapshotsInMemory();
+
+        final StorageCacheHelper helper = new StorageCacheHelper(mContext, UserHandle.myUserId());
+        final StorageCacheHelper.StorageCache storageCache = helper.retrieveCachedSize();
+
+        assertThat(helper.hasCachedSizeInfo()).isTrue();
+        assertThat(storageCache.imagesSize).isEqualTo(FAKE_IMAGES_SIZE);
+        assertThat(storageCache.temporaryFilesSize).isEqualTo(FAKE_TEMPORARY_FILES_SIZE);
+        assertThat(storageCache.totalSize).isEqualTo(FAKE_TOTAL_SIZE);
+        assertThat(storageCache.totalUsedSize).isEqualTo(FAKE_TOTAL_USED_SIZE);
+        assertThat(helper.retrieveUsedSize()).isEqualTo(FAKE_USED_SIZE);
+
+        // Read back from the migrated snapshot.
+        StorageCacheHelper.clearSnapshotsInMemory();
+        assertThat(new StorageCacheHelper(mContext, UserHandle.myUserId())
+                .retrieveCachedSize().imagesSize).isEqualTo(FAKE_IMAGES_SIZE);
+    }
+
     private StorageCacheHelper.StorageCache getFakeStorageCache() {
         StorageCacheHelper.StorageCache result = new StorageCacheHelper.StorageCache();
         result.trashSize = FAKE_TRASH_SIZE;
@@ -76,6 +76,7 @@ import org.robolectric.annotation.Resetter;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -423,19 +424,18 @@ public final class BatteryBackupHelperTest {
                                         applicationInfo1, applicationInfo2, applicationInfo3)))
                 .when(mIPackageManager)
                 .getInstalledApplications(anyLong(), anyInt());
-        // Sets the AppOpsManager for checkOpNoThrow() method.
-        doReturn(AppOpsManager.MODE_ALLOWED)
-                .when(mAppOpsManager)
-                .checkOpNoThrow(
-                        AppOpsManager.OP_RUN_ANY_IN_BACKGROUND,
-                        applicationInfo1.uid,
-                        applicationInfo1.packageName);
-        doReturn(AppOpsManager.MODE_IGNORED)
-                .when(mAppOpsManager)
-                .checkOpNoThrow(
-                        AppOpsManager.OP_RUN_ANY_IN_BACKGROUND,
+        // Sets the AppOpsManager for getPackagesForOps() method, the apps it doesn't list have
+        // the default MODE_ALLOWED.
+        final AppOpsManager.PackageOps packageOps2 =
+                new AppOpsManager.PackageOps(
+                        applicationInfo2.packageName,
                         applicationInfo2.uid,
-                        applicationInfo2.packageName);
+                        List.of(
+                                new AppOpsManager.OpEntry(
+                                        AppOpsManager.OP_RUN_ANY_IN_BACKGROUND,
+                                        AppOpsManager.MODE_IGNORED,
+                                        Collections.emptyMap())));
+        doReturn(List.of(packageOps2)).when(mAppOpsManager).getPackagesForOps(any(int[].class));
         mBatteryBackupHelper.mTestApplicationInfoList =
                 new ArraySet<>(Arrays.asList(applicationInfo1, applicationInfo2, applicationInfo3));
     }
@@ -35,6 +35,7 @@ import static org.mockito.Mockito.when;
 
 import android.content.Context;
 import android.content.Intent;
+import android.graphics.Color;
 import android.os.BatteryManager;
 import android.os.BatteryStats;
 import android.os.BatteryUsageStats;
@@ -62,6 +63,8 @@ import org.robolectric.RuntimeEnvironment;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
@@ -134,6 +137,7 @@ public class BatteryInfoTest {
     @After
     public void tearDown() throws Exception {
         TimeZone.setDefault(mOriginalTimeZone);
+        ParsedBatteryHistory.clearCache();
     }
 
     @Test
@@ -882,10 +886,15 @@ public class BatteryInfoTest {
     }
 
     private BatteryStats.HistoryItem makeHistoryIterm(long time, int batteryLevel) {
+        return makeHistoryIterm(time, batteryLevel, /* states= */ 0);
+    }
+
+    private BatteryStats.HistoryItem makeHistoryIterm(long time, int batteryLevel, int states) {
         BatteryStats.HistoryItem record = new BatteryStats.HistoryItem();
         record.cmd = BatteryStats.HistoryItem.CMD_UPDATE;
         record.time = time;
         record.batteryLevel = (byte) batteryLevel;
+        record.states = states;
         return record;
     }
 
@@ -991,4 +1000,72 @@ public class BatteryInfoTest {
         info = getBatteryInfo(true /* charging */, true /* enhanced */, true /* estimate */);
         assertHistoryAndLinearProjection(info);
     }
+
+    @Test
+    public void parseBatteryHistory_infosWithSameStats_iteratesHistoryOnce() {
+        mockBatteryStatsHistory();
+        final BatteryInfo info1 =
+                getBatteryInfo(false /* charging */, false /* enhanced */, false /* estimate */);
+        final BatteryInfo info2 =
+                getBatteryInfo(false /* charging */, false /* enhanced */, false /* estimate */);
+        final List<Integer> levels1 = new ArrayList<>();
+        final List<Integer> levels2 = new ArrayList<>();
+
+        info1.parseBatteryHistory(createLevelParser(levels1));
+        info2.parseBatteryHistory(createLevelParser(levels2));
+
+        // Two passes over the history, for the first parse only.
+        verify(mBatteryUsageStats, times(2)).iterateBatteryStatsHistory();
+        assertThat(levels1).containsExactly(99, 98, 97).inOrder();
+        assertThat(levels2).isEqualTo(levels1);
+    }
+
+    private static BatteryInfo.BatteryDataParser createLevelParser(List<Integer> levels) {
+        return new BatteryInfo.BatteryDataParser() {
+            @Override
+            public void onParsingStarted(long startTime, long endTime) {}
+
+            @Override
+            public void onDataPoint(long time, BatteryStats.HistoryItem record) {
+                levels.add((int) record.batteryLevel);
+            }
+
+            @Override
+            public void onDataGap() {}
+
+            @Override
+            public void onParsingDone() {}
+        };
+    }
+
+    @Test
+    public void parseBatteryHistory_flagParser_seesHistoryStates() {
+        final int flag = BatteryStats.HistoryItem.STATE_SCREEN_ON_FLAG;
+        doAnswer(
+                        invocation -> {
+                            BatteryStatsHistoryIterator iterator =
+                                    mock(BatteryStatsHistoryIterator.class);
+                            when(iterator.next())
+                                    .thenReturn(
+                                            makeHistoryIterm(1000, 99),
+                                            makeHistoryIterm(1500, 98, flag),
+                                            makeHistoryIterm(2000, 97),
+                                            null);
+                            return iterator;
+                        })
+                .when(mBatteryUsageStats)
+                .iterateBatteryStatsHistory();
+        final BatteryInfo info =
+                getBatteryInfo(false /* charging */, false /* enhanced */, false /* estimate */);
+        final BatteryFlagParser parser =
+                new BatteryFlagParser(Color.RED, false /* state2 */, flag);
+
+        info.parseBatteryHistory(parser);
+
+        assertThat(parser.hasData()).isTrue();
+        final SparseIntArray colors = parser.getColorArray();
+        assertThat(colors.size()).isEqualTo(2);
+        assertThat(colors.get(1500)).isEqualTo(Color.RED);
+        assertThat(colors.get(2000)).isEqualTo(0);
+    }
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import android.app.AppOpsManager;
+
+import com.android.settingslib.fuelgauge.PowerAllowlistBackend;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class BatteryOptimizeModeSnapshotTest {
+    private static final int UID = 12345;
+    private static final String PACKAGE_NAME = "com.android.testing.restricted";
+    private static final String OTHER_PACKAGE_NAME = "com.android.testing.other";
+
+    @Mock private AppOpsManager mAppOpsManager;
+    @Mock private PowerAllowlistBackend mBackend;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        BatteryOptimizeModeSnapshot.resetForTesting();
+        final AppOpsManager.PackageOps packageOps =
+                new AppOpsManager.PackageOps(
+                        PACKAGE_NAME,
+                        UID,
+                        List.of(
+                                new AppOpsManager.OpEntry(
+                                        AppOpsManager.OP_RUN_ANY_IN_BACKGROUND,
+                                        AppOpsManager.MODE_IGNORED,
+                                        Collections.emptyMap())));
+        doReturn(List.of(packageOps)).when(mAppOpsManager).getPackagesForOps(any(int[].class));
+    }
+
+    @Test
+    public void getMode_listedApp_returnsListedMode() {
+        final BatteryOptimizeModeSnapshot snapshot =
+                BatteryOptimizeModeSnapshot.load(mAppOpsManager, /* backend= */ null);
+
+        assertThat(snapshot.getMode(UID, PACKAGE_NAME)).isEqualTo(AppOpsManager.MODE_IGNORED);
+    }
+
+    @Test
+    public void getMode_unlistedApp_returnsDefaultMode() {
+        final BatteryOptimizeModeSnapshot snapshot =
+                BatteryOptimizeModeSnapshot.load(mAppOpsManager, /* backend= */ null);
+
+        assertThat(snapshot.getMode(UID, OTHER_PACKAGE_NAME))
+                .isEqualTo(AppOpsManager.opToDefaultMode(AppOpsManager.OP_RUN_ANY_IN_BACKGROUND));
+    }
+
+    @Test
+    public void isAllowlisted_calledTwice_readsBackendOnce() {
+        doReturn(true).when(mBackend).isAllowlisted(OTHER_PACKAGE_NAME, UID);
+        final BatteryOptimizeModeSnapshot snapshot =
+                BatteryOptimizeModeSnapshot.load(mAppOpsManager, mBackend);
+
+        assertThat(snapshot.isAllowlisted(UID, OTHER_PACKAGE_NAME)).isTrue();
+        assertThat(snapshot.isAllowlisted(UID, OTHER_PACKAGE_NAME)).isTrue();
+        verify(mBackend).refreshList();
+        verify(mBackend, times(1)).isAllowlisted(OTHER_PACKAGE_NAME, UID);
+    }
+
+    @Test
+    public void getAppOptimizationMode_allowlistedApp_returnsUnrestricted() {
+        doReturn(true).when(mBackend).isAllowlisted(OTHER_PACKAGE_NAME, UID);
+        final BatteryOptimizeModeSnapshot snapshot =
+                BatteryOptimizeModeSnapshot.load(mAppOpsManager, mBackend);
+
+        assertThat(snapshot.getAppOptimizationMode(UID, OTHER_PACKAGE_NAME))
+                .isEqualTo(BatteryOptimizeUtils.MODE_UNRESTRICTED);
+        assertThat(snapshot.getAppOptimizationMode(UID, PACKAGE_NAME))
+                .isEqualTo(BatteryOptimizeUtils.MODE_RESTRICTED);
+    }
+
+    @Test
+    public void isAllowlisted_loadedWithoutBackend_throwsException() {
+        final BatteryOptimizeModeSnapshot snapshot =
+                BatteryOptimizeModeSnapshot.load(mAppOpsManager, /* backend= */ null);
+
+        assertThrows(IllegalStateException.class,
+                () -> snapshot.isAllowlisted(UID, PACKAGE_NAME));
+    }
+}
@@ -19,6 +19,7 @@ package com.android.settings.fuelgauge.batterytip;
 import static com.google.common.truth.Truth.assertThat;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.spy;
 
@@ -32,6 +33,7 @@ import com.android.settings.fuelgauge.BatteryUtils;
 import com.android.settings.fuelgauge.batterytip.tips.AppLabelPredicate;
 import com.android.settings.fuelgauge.batterytip.tips.AppRestrictionPredicate;
 import com.android.settings.fuelgauge.batterytip.tips.BatteryTip;
+import com.android.settings.testutils.FakeFeatureFactory;
 
 import org.junit.After;
 import org.junit.Before;
@@ -44,7 +46,9 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
 import org.robolectric.util.ReflectionHelpers;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
 @RunWith(RobolectricTestRunner.class)
 public class BatteryTipLoaderTest {
@@ -94,4 +98,52 @@ public class BatteryTipLoaderTest {
             assertThat(batteryTips.get(i).getType()).isEqualTo(TIP_ORDER[i]);
         }
     }
+
+    @Test
+    public void testLoadBackground_slowDetector_returnsOtherTips()
+            throws Exception {
+        final FakeFeatureFactory featureFactory = FakeFeatureFactory.setupForTest();
+        final CountDownLatch blocked = new CountDownLatch(1);
+        doAnswer(
+                        invocation -> {
+                            blocked.await();
+                            return null;
+                        })
+                .when(featureFactory.batterySettingsFeatureProvider)
+                .addBatteryTipDetector(any(), any(), any(), any());
+        mBatteryTipLoader.mDetectorTimeoutMs = 100;
+
+        final List<BatteryTip> batteryTips = mBatteryTipLoader.loadInBackground();
+        blocked.countDown();
+
+        assertThat(batteryTips.size()).isEqualTo(TIP_ORDER.length - 1);
+        for (int i = 0, size = batteryTips.size(); i < size; i++) {
+            assertThat(batteryTips.get(i).getType()).isEqualTo(TIP_ORDER[i + 1]);
+        }
+    }
+
+    @Test
+    public void testLoadBackground_featureProviderDetectors_receivePrecedingTips() {
+        final FakeFeatureFactory featureFactory = FakeFeatureFactory.setupForTest();
+        final List<Integer> receivedTypes = new ArrayList<>();
+        doAnswer(
+                        invocation -> {
+                            final List<BatteryTip> tips = invocation.getArgument(1);
+                            for (BatteryTip tip : tips) {
+                                receivedTypes.add(tip.getType());
+                            }
+                            return null;
+                        })
+                .when(featureFactory.batterySettingsFeatureProvider)
+                .addBatteryTipDetector(any(), any(), any(), any());
+
+        final List<BatteryTip> batteryTips = mBatteryTipLoader.loadInBackground();
+
+        assertThat(receivedTypes)
+                .containsExactly(
+                        BatteryTip.TipType.HIGH_DEVICE_USAGE,
+                        BatteryTip.TipType.BATTERY_DEFENDER,
+                        BatteryTip.TipType.INCOMPATIBLE_CHARGER);
+        assertThat(batteryTips.size()).isEqualTo(TIP_ORDER.length - 1);
+    }
 }
@@ -20,8 +20,13 @@ import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.Mockito.spy;
 
 import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
 import android.os.LocaleList;
+import android.view.MotionEvent;
 import android.view.View;
+import android.widget.TextView;
 
 import com.android.settings.fuelgauge.PowerUsageFeatureProvider;
 import com.android.settings.testutils.FakeFeatureFactory;
@@ -91,4 +96,42 @@ public final class BatteryChartViewTest {
         mBatteryChartView.onClick(mMockView);
         assertThat(selectedIndex[0]).isEqualTo(BatteryChartViewModel.SELECTED_INDEX_ALL);
     }
+
+    @Test
+    public void draw_repeatedly_reusesGeometryAndTextBounds() {
+        final BatteryChartView chartView = new BatteryChartView(mContext, /* attrs= */ null);
+        chartView.setCompanionTextView(new TextView(mContext));
+        chartView.setViewModel(
+                new BatteryChartViewModel(
+                        List.of(90, 80, 70, 60),
+                        List.of(0L, 0L, 0L, 0L),
+                        BatteryChartViewModel.AxisLabelPosition.BETWEEN_TRAPEZOIDS,
+                        null));
+        chartView.measure(
+                View.MeasureSpec.makeMeasureSpec(1000, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(500, View.MeasureSpec.EXACTLY));
+        chartView.layout(0, 0, 1000, 500);
+        final Canvas canvas = new Canvas(Bitmap.createBitmap(1000, 500, Bitmap.Config.ARGB_8888));
+        chartView.draw(canvas);
+        final Rect[] displayAreas = chartView.mAxisLabelDisplayAreas;
+        final Rect firstDisplayArea = displayAreas[0];
+        final Rect expectedFirstDisplayArea = new Rect(firstDisplayArea);
+        final BatteryChartView.TrapezoidSlot[] trapezoidSlots = chartView.mTrapezoidSlots;
+        final float firstSlotLeft = trapezoidSlots[0].mLeft;
+
+        // Hovering only invalidates the view, drawing again must reuse the same geometry.
+        for (int i = 0; i < 10; i++) {
+            final MotionEvent event =
+                    MotionEvent.obtain(0, 0, MotionEvent.ACTION_HOVER_MOVE, i * 100, 250, 0);
+            chartView.onHoverEvent(event);
+            event.recycle();
+            chartView.draw(canvas);
+        }
+
+        assertThat(chartView.mAxisLabelDisplayAreas).isSameInstanceAs(displayAreas);
+        assertThat(chartView.mAxisLabelDisplayAreas[0]).isSameInstanceAs(firstDisplayArea);
+        assertThat(firstDisplayArea).isEqualTo(expectedFirstDisplayArea);
+        assertThat(chartView.mTrapezoidSlots).isSameInstanceAs(trapezoidSlots);
+        assertThat(trapezoidSlots[0].mLeft).isEqualTo(firstSlotLeft);
+    }
 }
@@ -19,7 +19,13 @@ package com.android.settings.fuelgauge.batteryusage;
 import static com.google.common.truth.Truth.assertThat;
 
 import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
@@ -44,6 +50,7 @@ import org.robolectric.RobolectricTestRunner;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
 
 /** Tests for {@link BatteryUsageContentProvider}. */
@@ -174,6 +181,48 @@ public final class BatteryUsageContentProviderTest {
         cursor.close();
     }
 
+    @Test
+    public void query_batteryStateWithProjection_returnsProjectedColumns() throws Exception {
+        mProvider.onCreate();
+        final Duration currentTime = Duration.ofHours(52);
+        final long expiredTimeCutoff = currentTime.toMillis() - 8;
+        insertBatteryState(currentTime, Long.toString(expiredTimeCutoff)).close();
+        final String[] projection = {
+            BatteryHistEntry.KEY_PACKAGE_NAME, BatteryHistEntry.KEY_TIMESTAMP
+        };
+
+        final Cursor cursor =
+                mProvider.query(
+                        getBatteryStateUri(expiredTimeCutoff),
+                        projection,
+                        /* s= */ null,
+                        /* strings1= */ null,
+                        /* s1= */ null);
+
+        assertThat(cursor.getColumnNames()).asList().containsExactlyElementsIn(projection);
+        assertThat(cursor.getCount()).isEqualTo(3);
+        cursor.moveToFirst();
+        assertThat(cursor.getString(0)).isEqualTo(PACKAGE_NAME1);
+        cursor.moveToLast();
+        assertThat(cursor.getString(0)).isEqualTo(PACKAGE_NAME3);
+        cursor.close();
+    }
+
+    @Test
+    public void query_batteryStateWithUnknownColumn_throwsIllegalArgumentException() {
+        mProvider.onCreate();
+
+        assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                        mProvider.query(
+                                getBatteryStateUri(/* queryTimestamp= */ 0),
+                                new String[] {"mId; DROP TABLE BatteryState"},
+                                /* s= */ null,
+                                /* strings1= */ null,
+                                /* s1= */ null));
+    }
+
     @Test
     public void query_batteryStateTimestamp_returnsExpectedResult() throws Exception {
         mProvider.onCreate();
@@ -317,7 +366,7 @@ public final class BatteryUsageContentProviderTest {
         assertThat(states.get(0).timestamp).isEqualTo(2100021L);
         assertThat(states.get(0).consumerType).isEqualTo(2);
         assertThat(states.get(0).isFullChargeCycleStart).isTrue();
-        assertThat(states.get(0).batteryInformation).isEqualTo(expectedBatteryInformationString);
+        assertThat(states.get(0).batteryInformation).isEqualTo(batteryInformation.toByteArray());
     }
 
     @Test
@@ -347,7 +396,7 @@ public final class BatteryUsageContentProviderTest {
         assertThat(states).hasSize(1);
         assertThat(states.get(0).packageName).isEqualTo("fake_data");
         assertThat(states.get(0).timestamp).isEqualTo(2100022L);
-        assertThat(states.get(0).batteryInformation).isEqualTo(expectedBatteryInformationString);
+        assertThat(states.get(0).batteryInformation).isEqualTo(batteryInformation.toByteArray());
     }
 
     @Test
@@ -450,6 +499,96 @@ public final class BatteryUsageContentProviderTest {
         assertThat(cursor2.getCount()).isEqualTo(0);
     }
 
+    @Test
+    public void bulkInsert_batteryState_insertsInSingleTransaction() {
+        final BatteryStateDatabase database = spyBatteryStateDatabase();
+        mProvider.onCreate();
+        final ContentValues[] values = createBatteryStateValues(/* size= */ 5);
+
+        // Single-row inserts use one transaction per row.
+        for (ContentValues contentValues : values) {
+            mProvider.insert(VALID_BATTERY_STATE_CONTENT_URI, contentValues);
+        }
+        verify(database, times(values.length)).beginTransaction();
+        clearInvocations(database);
+
+        final int count = mProvider.bulkInsert(VALID_BATTERY_STATE_CONTENT_URI, values);
+
+        assertThat(count).isEqualTo(values.length);
+        verify(database, times(1)).beginTransaction();
+        assertThat(database.batteryStateDao().getAllAfter(0)).hasSize(values.length);
+    }
+
+    @Test
+    public void bulkInsert_allTables_returnsExpectedResult() {
+        mProvider.onCreate();
+        final ContentValues appUsageEvent = new ContentValues();
+        appUsageEvent.put(AppUsageEventEntity.KEY_UID, 101L);
+        appUsageEvent.put(AppUsageEventEntity.KEY_TIMESTAMP, 10001L);
+        final ContentValues batteryEvent = new ContentValues();
+        batteryEvent.put(BatteryEventEntity.KEY_TIMESTAMP, 10001L);
+        batteryEvent.put(
+                BatteryEventEntity.KEY_BATTERY_EVENT_TYPE,
+                BatteryEventType.POWER_CONNECTED.getNumber());
+        final ContentValues batteryUsageSlot = new ContentValues();
+        batteryUsageSlot.put(BatteryUsageSlotEntity.KEY_TIMESTAMP, 10001L);
+        batteryUsageSlot.put(BatteryUsageSlotEntity.KEY_BATTERY_USAGE_SLOT, "TEST_STRING");
+
+        assertThat(
+                        mProvider.bulkInsert(
+                                DatabaseUtils.APP_USAGE_EVENT_URI,
+                                new ContentValues[] {appUsageEvent}))
+                .isEqualTo(1);
+        assertThat(
+                        mProvider.bulkInsert(
+                                DatabaseUtils.BATTERY_EVENT_URI,
+                                new ContentValues[] {batteryEvent}))
+                .isEqualTo(1);
+        assertThat(
+                        mProvider.bulkInsert(
+                                DatabaseUtils.BATTERY_USAGE_SLOT_URI,
+                                new ContentValues[] {batteryUsageSlot}))
+                .isEqualTo(1);
+
+        final BatteryStateDatabase database = BatteryStateDatabase.getInstance(mContext);
+        assertThat(database.appUsageEventDao().getAllAfter(0)).hasSize(1);
+        assertThat(database.batteryEventDao().getAll()).hasSize(1);
+        assertThat(database.batteryUsageSlotDao().getAll()).hasSize(1);
+    }
+
+    @Test
+    public void bulkInsert_incorrectContentUri_throwsIllegalArgumentException() {
+        mProvider.onCreate();
+        final Uri uri =
+                new Uri.Builder()
+                        .scheme(ContentResolver.SCHEME_CONTENT)
+                        .authority(DatabaseUtils.AUTHORITY)
+                        .appendPath(DatabaseUtils.APP_USAGE_LATEST_TIMESTAMP_PATH)
+                        .build();
+
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> mProvider.bulkInsert(uri, createBatteryStateValues(/* size= */ 1)));
+    }
+
+    @Test
+    public void applyBatch_insertsInSingleTransaction() throws Exception {
+        final BatteryStateDatabase database = spyBatteryStateDatabase();
+        mProvider.onCreate();
+        final ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        for (ContentValues contentValues : createBatteryStateValues(/* size= */ 3)) {
+            operations.add(
+                    ContentProviderOperation.newInsert(VALID_BATTERY_STATE_CONTENT_URI)
+                            .withValues(contentValues)
+                            .build());
+        }
+
+        assertThat(mProvider.applyBatch(operations)).hasLength(operations.size());
+
+        verify(database, times(1)).runInTransaction(any(Callable.class));
+        assertThat(database.batteryStateDao().getAllAfter(0)).hasSize(operations.size());
+    }
+
     @Test
     public void delete_throwsUnsupportedOperationException() {
         assertThrows(
@@ -496,6 +635,16 @@ public final class BatteryUsageContentProviderTest {
         return cursor;
     }
 
+    private static Uri getBatteryStateUri(long queryTimestamp) {
+        return new Uri.Builder()
+                .scheme(ContentResolver.SCHEME_CONTENT)
+                .authority(DatabaseUtils.AUTHORITY)
+                .appendPath(DatabaseUtils.BATTERY_STATE_TABLE)
+                .appendQueryParameter(
+                        DatabaseUtils.QUERY_KEY_TIMESTAMP, Long.toString(queryTimestamp))
+                .build();
+    }
+
     private Cursor getCursorOfLastFullChargeTimestamp() {
         final Uri lastFullChargeTimestampContentUri =
                 new Uri.Builder()
@@ -598,4 +747,24 @@ public final class BatteryUsageContentProviderTest {
         return mProvider.query(
                 uri, /* strings= */ null, /* s= */ null, /* strings1= */ null, /* s1= */ null);
     }
+
+    private BatteryStateDatabase spyBatteryStateDatabase() {
+        // DAOs are created by the spy, so their transactions go through it and can be counted.
+        final BatteryStateDatabase database =
+                spy(BatteryTestUtils.setUpBatteryStateDatabase(mContext));
+        BatteryStateDatabase.setBatteryStateDatabase(database);
+        return database;
+    }
+
+    private static ContentValues[] createBatteryStateValues(int size) {
+        final ContentValues[] valuesArray = new ContentValues[size];
+        for (int i = 0; i < size; i++) {
+            final ContentValues values = new ContentValues();
+            values.put(BatteryHistEntry.KEY_UID, Long.valueOf(100L + i));
+            values.put(BatteryHistEntry.KEY_PACKAGE_NAME, PACKAGE_NAME1);
+            values.put(BatteryHistEntry.KEY_TIMESTAMP, Long.valueOf(TIMESTAMP1 + i));
+            valuesArray[i] = values;
+        }
+        return valuesArray;
+    }
 }
@@ -19,21 +19,31 @@ package com.android.settings.fuelgauge.batteryusage;
 import static com.google.common.truth.Truth.assertThat;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import android.content.ContentResolver;
+import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
+import android.database.MatrixCursor;
 import android.os.BatteryStatsManager;
 import android.os.BatteryUsageStats;
 import android.os.BatteryUsageStatsQuery;
 import android.os.UserManager;
+import android.util.Base64;
 
+import com.android.settings.fuelgauge.batteryusage.db.BatteryUsageSlotEntity;
+import com.android.settings.testutils.FakeFeatureFactory;
+
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -47,11 +57,14 @@ import org.robolectric.RuntimeEnvironment;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @RunWith(RobolectricTestRunner.class)
 public final class BatteryUsageDataLoaderTest {
 
     private Context mContext;
+    private FakeFeatureFactory mFeatureFactory;
     @Mock private UserIdsSeries mUserIdsSeries;
     @Mock private ContentResolver mMockContentResolver;
     @Mock private BatteryStatsManager mBatteryStatsManager;
@@ -73,6 +86,12 @@ public final class BatteryUsageDataLoaderTest {
         doReturn(mUserManager).when(mContext).getSystemService(UserManager.class);
         doReturn(mMockContentResolver).when(mContext).getContentResolver();
         doReturn(new Intent()).when(mContext).registerReceiver(any(), any());
+        mFeatureFactory = FakeFeatureFactory.setupForTest();
+    }
+
+    @After
+    public void tearDown() {
+        DatabaseUtils.sFakeSupplier = null;
     }
 
     @Test
@@ -155,4 +174,108 @@ public final class BatteryUsageDataLoaderTest {
 
         verifyNoMoreInteractions(mMockContentResolver);
     }
+
+    @Test
+    public void persistBatteryUsageSlots_withUsage_insertsSlotsAndDetectsPowerAnomaly() {
+        final Map<Long, BatteryDiffData> batteryDiffDataMap = new HashMap<>();
+        batteryDiffDataMap.put(1000L, createBatteryDiffData(1000L, /* withUsage= */ true));
+
+        BatteryUsageDataLoader.persistBatteryUsageSlots(mContext, batteryDiffDataMap);
+
+        assertThat(captureInsertedSlotTimestamps()).containsExactly(1000L);
+        verify(mFeatureFactory.powerUsageFeatureProvider)
+                .detectPowerAnomaly(
+                        mContext,
+                        /* displayDrain= */ 0,
+                        DetectRequestSourceType.TYPE_DATA_LOADER);
+    }
+
+    @Test
+    public void persistBatteryUsageSlots_withoutUsage_doesNotDetectPowerAnomaly() {
+        final Map<Long, BatteryDiffData> batteryDiffDataMap = new HashMap<>();
+        batteryDiffDataMap.put(1000L, createBatteryDiffData(1000L, /* withUsage= */ false));
+
+        BatteryUsageDataLoader.persistBatteryUsageSlots(mContext, batteryDiffDataMap);
+
+        verify(mFeatureFactory.powerUsageFeatureProvider, never())
+                .detectPowerAnomaly(any(), anyDouble(), any());
+    }
+
+    @Test
+    public void persistBatteryUsageSlots_slotAlreadyStored_insertsOnlyNewSlots() {
+        final MatrixCursor cursor =
+                new MatrixCursor(
+                        new String[] {
+                            BatteryUsageSlotEntity.KEY_TIMESTAMP,
+                            BatteryUsageSlotEntity.KEY_BATTERY_USAGE_SLOT
+                        });
+        cursor.addRow(
+                new Object[] {
+                    1000L,
+                    Base64.encodeToString(
+                            BatteryUsageSlot.newBuilder()
+                                    .setStartTimestamp(1000L)
+                                    .build()
+                                    .toByteArray(),
+                            Base64.DEFAULT)
+                });
+        DatabaseUtils.sFakeSupplier = () -> cursor;
+        final Map<Long, BatteryDiffData> batteryDiffDataMap = new HashMap<>();
+        batteryDiffDataMap.put(1000L, createBatteryDiffData(1000L, /* withUsage= */ true));
+        batteryDiffDataMap.put(2000L, createBatteryDiffData(2000L, /* withUsage= */ true));
+
+        BatteryUsageDataLoader.persistBatteryUsageSlots(mContext, batteryDiffDataMap);
+
+        assertThat(captureInsertedSlotTimestamps()).containsExactly(2000L);
+    }
+
+    private List<Long> captureInsertedSlotTimestamps() {
+        final ArgumentCaptor<ContentValues[]> valuesCaptor =
+                ArgumentCaptor.forClass(ContentValues[].class);
+        verify(mMockContentResolver)
+                .bulkInsert(eq(DatabaseUtils.BATTERY_USAGE_SLOT_URI), valuesCaptor.capture());
+        final List<Long> timestamps = new ArrayList<>();
+        for (ContentValues values : valuesCaptor.getValue()) {
+            timestamps.add(values.getAsLong(BatteryUsageSlotEntity.KEY_TIMESTAMP));
+        }
+        return timestamps;
+    }
+
+    private BatteryDiffData createBatteryDiffData(long startTimestamp, boolean withUsage) {
+        final List<BatteryDiffEntry> appDiffEntries = new ArrayList<>();
+        if (withUsage) {
+            appDiffEntries.add(
+                    new BatteryDiffEntry(
+                            mContext,
+                            /* uid= */ 10001L,
+                            /* userId= */ 0L,
+                            /* key= */ "10001",
+                            /* isHidden= */ false,
+                            /* componentId= */ 0,
+                            /* legacyPackageName= */ "com.example.app",
+                            /* legacyLabel= */ "App",
+                            ConvertUtils.CONSUMER_TYPE_UID_BATTERY,
+                            /* foregroundUsageTimeInMs= */ 1000L,
+                            /* foregroundServiceUsageTimeInMs= */ 0L,
+                            /* backgroundUsageTimeInMs= */ 0L,
+                            /* screenOnTimeInMs= */ 1000L,
+                            /* consumePower= */ 10.0,
+                            /* foregroundUsageConsumePower= */ 10.0,
+                            /* foregroundServiceUsageConsumePower= */ 0.0,
+                            /* backgroundUsageConsumePower= */ 0.0,
+                            /* cachedUsageConsumePower= */ 0.0));
+        }
+        return new BatteryDiffData(
+                mContext,
+                startTimestamp,
+                startTimestamp + 1000L,
+                /* startBatteryLevel= */ 100,
+                /* endBatteryLevel= */ 90,
+                /* screenOnTime= */ 0L,
+                appDiffEntries,
+                /* systemDiffEntries= */ new ArrayList<>(),
+                Set.of(),
+                Set.of(),
+                /* isAccumulated= */ true);
+    }
 }
@@ -499,6 +499,58 @@ public final class DataProcessManagerTest {
                 hourlyResultData, expectedHourlyTimestamps, expectedHourlyLevels);
     }
 
+    @Test
+    public void getCompletedBatteryDiffDataMap_returnsSlotsEndingBeforeLastEvenHour() {
+        final long lastEvenHourTimestamp = 4 * DateUtils.HOUR_IN_MILLIS;
+        final BatteryDiffData completedData =
+                createBatteryDiffData(/* startTimestamp= */ 0L, 2 * DateUtils.HOUR_IN_MILLIS);
+        final BatteryDiffData lastCompletedData =
+                createBatteryDiffData(2 * DateUtils.HOUR_IN_MILLIS, lastEvenHourTimestamp);
+        final BatteryDiffData openData =
+                createBatteryDiffData(lastEvenHourTimestamp, lastEvenHourTimestamp + 10L);
+        final Map<Long, BatteryDiffData> batteryDiffDataMap = new HashMap<>();
+        batteryDiffDataMap.put(completedData.getStartTimestamp(), completedData);
+        batteryDiffDataMap.put(lastCompletedData.getStartTimestamp(), lastCompletedData);
+        batteryDiffDataMap.put(openData.getStartTimestamp(), openData);
+        batteryDiffDataMap.put(-1L, null);
+
+        final Map<Long, BatteryDiffData> completedBatteryDiffDataMap =
+                DataProcessManager.getCompletedBatteryDiffDataMap(
+                        batteryDiffDataMap, lastEvenHourTimestamp);
+
+        assertThat(completedBatteryDiffDataMap)
+                .containsExactly(
+                        completedData.getStartTimestamp(), completedData,
+                        lastCompletedData.getStartTimestamp(), lastCompletedData);
+    }
+
+    @Test
+    public void getCompletedBatteryDiffDataMap_onlyOpenSlot_returnsEmptyMap() {
+        final BatteryDiffData openData =
+                createBatteryDiffData(2 * DateUtils.HOUR_IN_MILLIS, 3 * DateUtils.HOUR_IN_MILLIS);
+
+        assertThat(
+                        DataProcessManager.getCompletedBatteryDiffDataMap(
+                                Map.of(openData.getStartTimestamp(), openData),
+                                /* lastEvenHourTimestamp= */ 2 * DateUtils.HOUR_IN_MILLIS))
+                .isEmpty();
+    }
+
+    private BatteryDiffData createBatteryDiffData(long startTimestamp, long endTimestamp) {
+        return new BatteryDiffData(
+                mContext,
+                startTimestamp,
+                endTimestamp,
+                /* startBatteryLevel= */ 100,
+                /* endBatteryLevel= */ 90,
+                /* screenOnTime= */ 0L,
+                List.of(),
+                List.of(),
+                Set.of(),
+                Set.of(),
+                /* isAccumulated= */ false);
+    }
+
     private static void verifyExpectedDailyBatteryLevelData(
             final BatteryLevelData.PeriodBatteryLevelData dailyResultData,
             final List<Long> expectedDailyTimestamps,
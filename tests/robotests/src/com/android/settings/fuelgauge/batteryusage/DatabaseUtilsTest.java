@@ -25,6 +25,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -37,17 +38,21 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
+import android.database.Cursor;
 import android.database.MatrixCursor;
 import android.net.Uri;
 import android.os.BatteryManager;
 import android.os.BatteryUsageStats;
 import android.os.RemoteException;
+import android.os.SystemClock;
 import android.os.UserHandle;
 import android.os.UserManager;
+import android.util.ArrayMap;
 
 import com.android.settings.fuelgauge.batteryusage.db.AppUsageEventEntity;
 import com.android.settings.fuelgauge.batteryusage.db.BatteryEventEntity;
 import com.android.settings.testutils.BatteryTestUtils;
+import com.android.settingslib.fuelgauge.BatteryStatus;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -201,6 +206,48 @@ public final class DatabaseUtilsTest {
                 .notifyChange(DatabaseUtils.BATTERY_CONTENT_URI, /* observer= */ null);
     }
 
+    @Test
+    public void sendBatteryEntryData_multipleEntries_sharesSnapshotStateOnly() {
+        doReturn(getBatteryIntent()).when(mContext).registerReceiver(any(), any());
+        final List<BatteryEntry> batteryEntryList = new ArrayList<>();
+        for (int index = 0; index < 3; index++) {
+            final BatteryEntry entry = mock(BatteryEntry.class);
+            doReturn(1000 + index).when(entry).getUid();
+            doReturn(0.5 + index).when(entry).getConsumedPower();
+            // The label of the last entry is not set, it must not be left over from the others.
+            doReturn(index < 2 ? "app" + index : null).when(entry).getLabel();
+            batteryEntryList.add(entry);
+        }
+        final long timestamp = System.currentTimeMillis();
+
+        final List<ContentValues> valuesList =
+                DatabaseUtils.sendBatteryEntryData(
+                        mContext,
+                        timestamp,
+                        batteryEntryList,
+                        mBatteryUsageStats,
+                        /* isFullChargeStart= */ false);
+
+        // The battery state is read once for the whole snapshot.
+        verify(mContext).registerReceiver(any(), any());
+        final List<ContentValues> expectedList = convertEachEntry(batteryEntryList, timestamp);
+        assertThat(valuesList).hasSize(expectedList.size());
+        for (int index = 0; index < expectedList.size(); index++) {
+            final BatteryInformation batteryInformation =
+                    ConvertUtils.getBatteryInformation(
+                            valuesList.get(index), BatteryHistEntry.KEY_BATTERY_INFORMATION);
+            assertThat(valuesList.get(index).keySet())
+                    .isEqualTo(expectedList.get(index).keySet());
+            assertThat(batteryInformation)
+                    .isEqualTo(
+                            ConvertUtils.getBatteryInformation(
+                                    expectedList.get(index),
+                                    BatteryHistEntry.KEY_BATTERY_INFORMATION));
+            assertThat(batteryInformation.getAppLabel()).isEqualTo(index < 2 ? "app" + index : "");
+            assertThat(batteryInformation.getConsumePower()).isEqualTo(0.5 + index);
+        }
+    }
+
     @Test
     public void sendBatteryEntryData_emptyBatteryEntryList_sendFakeDataIntoProvider() {
         doReturn(getBatteryIntent()).when(mContext).registerReceiver(any(), any());
@@ -430,6 +477,68 @@ public final class DatabaseUtilsTest {
         assertThat(batteryMap.get("4").mPackageName).isEqualTo("app name4");
     }
 
+    @Test
+    public void buildHistoryMap_nonAdjacentTimestamps_returnExpectedMap() {
+        final MatrixCursor cursor = getMatrixCursor();
+        cursor.addRow(
+                new Object[] {
+                    "app name1", 1001L, 1, ConvertUtils.CONSUMER_TYPE_UID_BATTERY, true
+                });
+        cursor.addRow(
+                new Object[] {
+                    "app name2", 1002L, 2, ConvertUtils.CONSUMER_TYPE_UID_BATTERY, false
+                });
+        cursor.addRow(
+                new Object[] {
+                    "app name3", 1001L, 3, ConvertUtils.CONSUMER_TYPE_UID_BATTERY, false
+                });
+
+        final Map<Long, Map<String, BatteryHistEntry>> batteryHistMap =
+                DatabaseUtils.buildHistoryMap(cursor);
+
+        assertThat(batteryHistMap).hasSize(2);
+        assertThat(batteryHistMap.get(1001L).keySet()).containsExactly("1", "3");
+        assertThat(batteryHistMap.get(1002L).keySet()).containsExactly("2");
+    }
+
+    @Test
+    public void buildHistoryMap_manySnapshots_matchesListBasedGrouping() {
+        final int snapshotCount = 24;
+        final int consumerCount = 20;
+        final MatrixCursor cursor = getMatrixCursor();
+        for (int snapshot = 0; snapshot < snapshotCount; snapshot++) {
+            for (int uid = 0; uid < consumerCount; uid++) {
+                cursor.addRow(
+                        new Object[] {
+                            "app name" + uid,
+                            1000L + snapshot,
+                            uid,
+                            ConvertUtils.CONSUMER_TYPE_UID_BATTERY,
+                            false
+                        });
+            }
+        }
+        final Map<Long, Map<String, BatteryHistEntry>> expectedMap =
+                buildHistoryMapFromList(cursor);
+        cursor.moveToPosition(-1);
+
+        final Map<Long, Map<String, BatteryHistEntry>> batteryHistMap =
+                DatabaseUtils.buildHistoryMap(cursor);
+
+        assertThat(batteryHistMap).hasSize(snapshotCount);
+        assertThat(batteryHistMap.keySet()).containsExactlyElementsIn(expectedMap.keySet());
+        for (Map.Entry<Long, Map<String, BatteryHistEntry>> entry : expectedMap.entrySet()) {
+            final Map<String, BatteryHistEntry> entries = batteryHistMap.get(entry.getKey());
+            assertThat(entries.keySet()).containsExactlyElementsIn(entry.getValue().keySet());
+            for (BatteryHistEntry expectedEntry : entry.getValue().values()) {
+                final BatteryHistEntry histEntry = entries.get(expectedEntry.getKey());
+                assertThat(histEntry.mTimestamp).isEqualTo(entry.getKey());
+                assertThat(histEntry.mUid).isEqualTo(expectedEntry.mUid);
+                assertThat(histEntry.mPackageName).isEqualTo(expectedEntry.mPackageName);
+            }
+        }
+    }
+
     @Test
     public void getHistoryMap_withWorkProfile_returnExpectedMap()
             throws PackageManager.NameNotFoundException {
@@ -602,4 +711,37 @@ public final class DatabaseUtilsTest {
                     BatteryHistEntry.KEY_IS_FULL_CHARGE_CYCLE_START
                 });
     }
+
+    // The grouping used before the history map was built while reading the cursor.
+    private static Map<Long, Map<String, BatteryHistEntry>> buildHistoryMapFromList(
+            Cursor cursor) {
+        final List<BatteryHistEntry> entries = new ArrayList<>();
+        while (cursor.moveToNext()) {
+            entries.add(new BatteryHistEntry(cursor));
+        }
+        final Map<Long, Map<String, BatteryHistEntry>> resultMap = new ArrayMap<>();
+        for (BatteryHistEntry entry : entries) {
+            resultMap.computeIfAbsent(entry.mTimestamp, key -> new ArrayMap<>())
+                    .put(entry.getKey(), entry);
+        }
+        return resultMap;
+    }
+
+    private List<ContentValues> convertEachEntry(List<BatteryEntry> entries, long timestamp) {
+        final Intent intent = getBatteryIntent();
+        final List<ContentValues> valuesList = new ArrayList<>();
+        for (BatteryEntry entry : entries) {
+            valuesList.add(
+                    ConvertUtils.convertBatteryEntryToContentValues(
+                            entry,
+                            mBatteryUsageStats,
+                            BatteryStatus.getBatteryLevel(intent),
+                            intent.getIntExtra(BatteryManager.EXTRA_STATUS, 0),
+                            intent.getIntExtra(BatteryManager.EXTRA_HEALTH, 0),
+                            SystemClock.elapsedRealtime(),
+                            timestamp,
+                            /* isFullChargeStart= */ false));
+        }
+        return valuesList;
+    }
 }
@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge.batteryusage.db;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.annotation.NonNull;
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.android.settings.fuelgauge.batteryusage.BatteryInformation;
+import com.android.settings.fuelgauge.batteryusage.ConvertUtils;
+import com.android.settings.fuelgauge.batteryusage.DeviceBatteryState;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.List;
+
+/** Tests for {@link BatteryStateDatabase}. */
+@RunWith(RobolectricTestRunner.class)
+public final class BatteryStateDatabaseTest {
+    private static final String LEGACY_BATTERY_STATE_TABLE =
+            "CREATE TABLE IF NOT EXISTS `BatteryState` ("
+                    + "`mId` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL,"
+                    + " `uid` INTEGER NOT NULL,"
+                    + " `userId` INTEGER NOT NULL,"
+                    + " `packageName` TEXT,"
+                    + " `timestamp` INTEGER NOT NULL,"
+                    + " `consumerType` INTEGER NOT NULL,"
+                    + " `isFullChargeCycleStart` INTEGER NOT NULL,"
+                    + " `batteryInformation` TEXT,"
+                    + " `batteryInformationDebug` TEXT)";
+
+    private Context mContext;
+    private SupportSQLiteOpenHelper mOpenHelper;
+    private SupportSQLiteDatabase mDatabase;
+    private BatteryInformation mBatteryInformation;
+
+    @Before
+    public void setUp() {
+        mContext = ApplicationProvider.getApplicationContext();
+        mOpenHelper =
+                new FrameworkSQLiteOpenHelperFactory()
+                        .create(
+                                SupportSQLiteOpenHelper.Configuration.builder(mContext)
+                                        .name(null)
+                                        .callback(
+                                                new SupportSQLiteOpenHelper.Callback(2) {
+                                                    @Override
+                                                    public void onCreate(
+                                                            @NonNull SupportSQLiteDatabase db) {
+                                                        db.execSQL(LEGACY_BATTERY_STATE_TABLE);
+                                                    }
+
+                                                    @Override
+                                                    public void onUpgrade(
+                                                            @NonNull SupportSQLiteDatabase db,
+                                                            int oldVersion,
+                                                            int newVersion) {}
+                                                })
+                                        .build());
+        mDatabase = mOpenHelper.getWritableDatabase();
+        mBatteryInformation =
+                BatteryInformation.newBuilder()
+                        .setDeviceBatteryState(
+                                DeviceBatteryState.newBuilder()
+                                        .setBatteryLevel(45)
+                                        .setBatteryStatus(2)
+                                        .setBatteryHealth(3)
+                                        .build())
+                        .setAppLabel("Settings")
+                        .setConsumePower(9)
+                        .setForegroundUsageTimeInMs(1000)
+                        .build();
+    }
+
+    @After
+    public void tearDown() {
+        mOpenHelper.close();
+    }
+
+    @Test
+    public void migration2To3_convertsBatteryInformationToBlob() {
+        insertLegacyBatteryState(
+                /* id= */ 5,
+                "com.android.settings",
+                ConvertUtils.convertBatteryInformationToString(mBatteryInformation),
+                "debug");
+        insertLegacyBatteryState(/* id= */ 9, "fake_data", /* batteryInformation= */ null, null);
+
+        BatteryStateDatabase.MIGRATION_2_3.migrate(mDatabase);
+
+        try (Cursor cursor =
+                mDatabase.query(
+                        "SELECT `mId`, `packageName`, typeof(`batteryInformation`),"
+                                + " `batteryInformation`, `batteryInformationDebug`"
+                                + " FROM `BatteryState` ORDER BY `mId`")) {
+            assertThat(cursor.getCount()).isEqualTo(2);
+            cursor.moveToFirst();
+            assertThat(cursor.getLong(0)).isEqualTo(5);
+            assertThat(cursor.getString(1)).isEqualTo("com.android.settings");
+            assertThat(cursor.getString(2)).isEqualTo("blob");
+            assertThat(cursor.getBlob(3)).isEqualTo(mBatteryInformation.toByteArray());
+            assertThat(cursor.getString(4)).isEqualTo("debug");
+            cursor.moveToNext();
+            assertThat(cursor.getLong(0)).isEqualTo(9);
+            assertThat(cursor.isNull(3)).isTrue();
+            assertThat(cursor.isNull(4)).isTrue();
+        }
+    }
+
+    @Test
+    public void migration2To3_migratedRowsReadAsBatteryInformation() {
+        insertLegacyBatteryState(
+                /* id= */ 1,
+                "com.android.settings",
+                ConvertUtils.convertBatteryInformationToString(mBatteryInformation),
+                /* batteryInformationDebug= */ null);
+
+        BatteryStateDatabase.MIGRATION_2_3.migrate(mDatabase);
+
+        try (Cursor cursor = mDatabase.query("SELECT * FROM `BatteryState`")) {
+            cursor.moveToFirst();
+            assertThat(ConvertUtils.getBatteryInformation(cursor, "batteryInformation"))
+                    .isEqualTo(mBatteryInformation);
+        }
+    }
+
+    @Test
+    public void migration2To3_updatesColumnType() {
+        BatteryStateDatabase.MIGRATION_2_3.migrate(mDatabase);
+
+        try (Cursor cursor = mDatabase.query("PRAGMA table_info(`BatteryState`)")) {
+            final int nameIndex = cursor.getColumnIndex("name");
+            final int typeIndex = cursor.getColumnIndex("type");
+            String type = null;
+            while (cursor.moveToNext()) {
+                if ("batteryInformation".equals(cursor.getString(nameIndex))) {
+                    type = cursor.getString(typeIndex);
+                }
+            }
+            assertThat(type).isEqualTo("BLOB");
+        }
+    }
+
+    @Test
+    public void batteryStateDao_insertAndQuery_keepsBatteryInformationBytes() {
+        final BatteryStateDatabase database =
+                Room.inMemoryDatabaseBuilder(mContext, BatteryStateDatabase.class)
+                        .allowMainThreadQueries()
+                        .build();
+        final BatteryState state =
+                BatteryState.newBuilder()
+                        .setPackageName("com.android.settings")
+                        .setTimestamp(100L)
+                        .setBatteryInformation(mBatteryInformation.toByteArray())
+                        .build();
+
+        database.batteryStateDao().insert(state);
+
+        final List<BatteryState> states = database.batteryStateDao().getAllAfter(0);
+        assertThat(states).hasSize(1);
+        assertThat(states.get(0).batteryInformation)
+                .isEqualTo(mBatteryInformation.toByteArray());
+        database.close();
+    }
+
+    private void insertLegacyBatteryState(
+            long id, String packageName, String batteryInformation, String batteryInformationDebug) {
+        final ContentValues values = new ContentValues();
+        values.put("mId", id);
+        values.put("uid", 1001L);
+        values.put("userId", 0L);
+        values.put("packageName", packageName);
+        values.put("timestamp", 100L + id);
+        values.put("consumerType", 1);
+        values.put("isFullChargeCycleStart", 0);
+        values.put("batteryInformation", batteryInformation);
+        values.put("batteryInformationDebug", batteryInformationDebug);
+        mDatabase.insert("BatteryState", SQLiteDatabase.CONFLICT_REPLACE, values);
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.homepage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.os.UserManager;
+
+import androidx.preference.Preference;
+import androidx.preference.PreferenceManager;
+import androidx.preference.PreferenceScreen;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+public class HomepageSnapshotTest {
+
+    private Context mContext;
+    private PreferenceManager mPreferenceManager;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mPreferenceManager = new PreferenceManager(mContext);
+    }
+
+    @Test
+    public void read_nothingWritten_shouldReturnNull() {
+        assertThat(HomepageSnapshot.read(mContext)).isNull();
+    }
+
+    @Test
+    public void writeAndRead_shouldRestoreSnapshot() {
+        final HomepageSnapshot snapshot = HomepageSnapshot.capture(mContext,
+                createScreen(createPreference("battery", "Battery", "80%")));
+
+        snapshot.write(mContext);
+
+        assertThat(HomepageSnapshot.read(mContext)).isEqualTo(snapshot);
+    }
+
+    @Test
+    @Config(qualifiers = "fr")
+    public void read_otherLocale_shouldReturnNull() {
+        mContext.createCredentialProtectedStorageContext()
+                .getSharedPreferences(HomepageSnapshot.PREFS_NAME, Context.MODE_PRIVATE).edit()
+                .putString("locale", "en-US")
+                .putString("battery#summary", "80%")
+                .commit();
+
+        assertThat(HomepageSnapshot.read(mContext)).isNull();
+    }
+
+    @Test
+    public void paint_shouldOnlyFillMissingValues() {
+        HomepageSnapshot.capture(mContext, createScreen(
+                createPreference("battery", "Battery", "80%"),
+                createPreference("storage", "Storage", "42% used"))).write(mContext);
+        final Preference battery = createPreference("battery", "Battery", null);
+        final Preference storage = createPreference("storage", "Storage", "43% used");
+
+        final int painted = HomepageSnapshot.read(mContext).paint(createScreen(battery, storage));
+
+        assertThat(painted).isEqualTo(1);
+        assertThat(battery.getSummary().toString()).isEqualTo("80%");
+        assertThat(storage.getSummary().toString()).isEqualTo("43% used");
+    }
+
+    @Test
+    public void write_userLocked_shouldNotStoreSnapshot() {
+        shadowOf(mContext.getSystemService(UserManager.class)).setUserUnlocked(false);
+
+        HomepageSnapshot.capture(mContext,
+                createScreen(createPreference("battery", "Battery", "80%"))).write(mContext);
+
+        assertThat(mContext.createCredentialProtectedStorageContext()
+                .getSharedPreferences(HomepageSnapshot.PREFS_NAME, Context.MODE_PRIVATE)
+                .getAll()).isEmpty();
+        assertThat(HomepageSnapshot.read(mContext)).isNull();
+    }
+
+    @Test
+    public void capture_invisiblePreference_shouldBeSkipped() {
+        final Preference hidden = createPreference("hidden", "Hidden", "summary");
+        hidden.setVisible(false);
+        HomepageSnapshot.capture(mContext, createScreen(hidden)).write(mContext);
+        final Preference preference = createPreference("hidden", null, null);
+
+        HomepageSnapshot.read(mContext).paint(createScreen(preference));
+
+        assertThat(preference.getTitle()).isNull();
+        assertThat(preference.getSummary()).isNull();
+    }
+
+    private PreferenceScreen createScreen(Preference... preferences) {
+        final PreferenceScreen screen = mPreferenceManager.createPreferenceScreen(mContext);
+        for (Preference preference : preferences) {
+            screen.addPreference(preference);
+        }
+        return screen;
+    }
+
+    private Preference createPreference(String key, String title, String summary) {
+        final Preference preference = new Preference(mContext);
+        preference.setKey(key);
+        preference.setTitle(title);
+        preference.setSummary(summary);
+        return preference;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.homepage.contextualcards;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.slice.Slice;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class EligibleCardCacheTest {
+
+    private static final Uri TEST_SLICE_URI = Uri.parse("content://test/test");
+
+    private Context mContext;
+    private Slice mSlice;
+    private EligibleCardCache mCache;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mSlice = new Slice.Builder(TEST_SLICE_URI).build();
+        mCache = new EligibleCardCache(mContext, EligibleCardCache.DEFAULT_TTL_MS);
+    }
+
+    @Test
+    public void get_afterPut_shouldReturnSlice() {
+        mCache.put(TEST_SLICE_URI, mCache.getGeneration(TEST_SLICE_URI), mSlice,
+                true /* toggleable */);
+
+        final EligibleCardCache.Entry entry = mCache.get(TEST_SLICE_URI);
+
+        assertThat(entry.mSlice).isSameInstanceAs(mSlice);
+        assertThat(entry.mToggleable).isTrue();
+    }
+
+    @Test
+    public void get_sliceChanged_shouldReturnNull() {
+        mCache.put(TEST_SLICE_URI, mCache.getGeneration(TEST_SLICE_URI), mSlice,
+                false /* toggleable */);
+
+        mContext.getContentResolver().notifyChange(TEST_SLICE_URI, null /* observer */);
+
+        assertThat(mCache.get(TEST_SLICE_URI)).isNull();
+    }
+
+    @Test
+    public void put_sliceChangedWhileBinding_shouldNotCache() {
+        final long generation = mCache.getGeneration(TEST_SLICE_URI);
+
+        mContext.getContentResolver().notifyChange(TEST_SLICE_URI, null /* observer */);
+        mCache.put(TEST_SLICE_URI, generation, mSlice, false /* toggleable */);
+
+        assertThat(mCache.get(TEST_SLICE_URI)).isNull();
+    }
+
+    @Test
+    public void get_expired_shouldReturnNull() {
+        mCache = new EligibleCardCache(mContext, 0 /* ttlMillis */);
+        mCache.put(TEST_SLICE_URI, mCache.getGeneration(TEST_SLICE_URI), mSlice,
+                false /* toggleable */);
+
+        assertThat(mCache.get(TEST_SLICE_URI)).isNull();
+    }
+}
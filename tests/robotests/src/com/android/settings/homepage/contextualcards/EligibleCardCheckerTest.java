@@ -22,7 +22,10 @@ import static com.google.common.truth.Truth.assertThat;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 import android.app.Activity;
 import android.app.PendingIntent;
@@ -131,6 +134,42 @@ public class EligibleCardCheckerTest {
         assertThat(mEligibleCardChecker.mCard.getSlice()).isNotNull();
     }
 
+    @Test
+    public void isCardEligibleToDisplay_sliceBoundBefore_shouldNotBindAgain() {
+        final Slice slice = buildSlice();
+        doReturn(slice).when(mEligibleCardChecker).bindSlice(any(Uri.class));
+        mEligibleCardChecker.isCardEligibleToDisplay(getContextualCard(TEST_SLICE_URI));
+        final EligibleCardChecker checker =
+                spy(new EligibleCardChecker(mContext, getContextualCard(TEST_SLICE_URI)));
+
+        assertThat(checker.isCardEligibleToDisplay(getContextualCard(TEST_SLICE_URI))).isTrue();
+
+        verify(checker, never()).bindSlice(any(Uri.class));
+        assertThat(checker.mCard.hasInlineAction()).isTrue();
+    }
+
+    @Test
+    public void isCardEligibleToDisplay_sliceChanged_shouldBindAgain() {
+        final Slice slice = buildSlice();
+        doReturn(slice).when(mEligibleCardChecker).bindSlice(any(Uri.class));
+        mEligibleCardChecker.isCardEligibleToDisplay(getContextualCard(TEST_SLICE_URI));
+
+        mContext.getContentResolver().notifyChange(TEST_SLICE_URI, null /* observer */);
+        mEligibleCardChecker.isCardEligibleToDisplay(getContextualCard(TEST_SLICE_URI));
+
+        verify(mEligibleCardChecker, times(2)).bindSlice(any(Uri.class));
+    }
+
+    @Test
+    public void isCardEligibleToDisplay_nullSlice_shouldNotBeCached() {
+        doReturn(null).when(mEligibleCardChecker).bindSlice(any(Uri.class));
+        mEligibleCardChecker.isCardEligibleToDisplay(getContextualCard(TEST_SLICE_URI));
+        doReturn(buildSlice()).when(mEligibleCardChecker).bindSlice(any(Uri.class));
+
+        assertThat(mEligibleCardChecker.isCardEligibleToDisplay(getContextualCard(TEST_SLICE_URI)))
+                .isTrue();
+    }
+
     private ContextualCard getContextualCard(Uri sliceUri) {
         return new ContextualCard.Builder()
                 .setName("test_card")
@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.notification.history;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import android.app.NotificationHistory;
+import android.app.NotificationHistory.HistoricalNotification;
+import android.content.Context;
+import android.content.pm.PackageManager;
+
+import com.android.settings.notification.NotificationBackend;
+import com.android.settings.testutils.shadow.ShadowThreadUtils;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = ShadowThreadUtils.class)
+public class HistoryLoaderTest {
+
+    private static final int UID = 10001;
+
+    @Rule
+    public final MockitoRule mMockitoRule = MockitoJUnit.rule();
+
+    @Mock
+    private NotificationBackend mBackend;
+    @Mock
+    private PackageManager mPackageManager;
+
+    private final List<HistoricalNotification> mNotifications = new ArrayList<>();
+    private final List<List<NotificationHistoryPackage>> mPages = new ArrayList<>();
+    private final List<Boolean> mFirstPages = new ArrayList<>();
+    private HistoryLoader mLoader;
+
+    @Before
+    public void setUp() {
+        final Context context = RuntimeEnvironment.application;
+        when(mBackend.getNotificationHistory(any(), any()))
+                .thenAnswer(invocation -> createHistory(mNotifications));
+        mLoader = new HistoryLoader(context, mBackend, mPackageManager);
+    }
+
+    @Test
+    public void load_noHistory_shouldDeliverEmptyFirstPage() {
+        mLoader.load(this::onHistoryLoaded);
+
+        assertThat(mPages).hasSize(1);
+        assertThat(mPages.get(0)).isEmpty();
+        assertThat(mFirstPages).containsExactly(true);
+    }
+
+    @Test
+    public void load_manyPackages_shouldDeliverPagesMostRecentFirst() {
+        final int packageCount = 2 * HistoryLoader.PAGE_SIZE + 5;
+        for (int i = 0; i < packageCount; i++) {
+            mNotifications.add(createNotification("pkg" + i, 1000L * (i + 1)));
+        }
+
+        mLoader.load(this::onHistoryLoaded);
+
+        assertThat(mPages).hasSize(3);
+        assertThat(mFirstPages).containsExactly(true, false, false).inOrder();
+        assertThat(mPages.get(0)).hasSize(HistoryLoader.PAGE_SIZE);
+        assertThat(mPages.get(1)).hasSize(HistoryLoader.PAGE_SIZE);
+        assertThat(mPages.get(2)).hasSize(5);
+        final List<String> packageNames = new ArrayList<>();
+        for (List<NotificationHistoryPackage> page : mPages) {
+            for (NotificationHistoryPackage nhp : page) {
+                packageNames.add(nhp.pkgName);
+            }
+        }
+        assertThat(packageNames).hasSize(packageCount);
+        assertThat(packageNames.get(0)).isEqualTo("pkg" + (packageCount - 1));
+        assertThat(packageNames.get(packageCount - 1)).isEqualTo("pkg0");
+    }
+
+    @Test
+    public void load_manyNotifications_shouldRetainMostRecentAndCountAll() {
+        final int notificationCount = HistoryLoader.MAX_RETAINED_NOTIFICATIONS + 10;
+        for (int i = 0; i < notificationCount; i++) {
+            mNotifications.add(createNotification("pkg", 1000L * (i + 1)));
+        }
+
+        mLoader.load(this::onHistoryLoaded);
+
+        final NotificationHistoryPackage nhp = mPages.get(0).get(0);
+        assertThat(nhp.notifications).hasSize(HistoryLoader.MAX_RETAINED_NOTIFICATIONS);
+        assertThat(nhp.count).isEqualTo(notificationCount);
+        assertThat(nhp.isTruncated()).isTrue();
+        assertThat(nhp.getMostRecent()).isEqualTo(1000L * notificationCount);
+    }
+
+    @Test
+    public void load_canceled_shouldNotDeliver() {
+        mNotifications.add(createNotification("pkg", 1000L));
+
+        mLoader.cancel();
+        mLoader.load(this::onHistoryLoaded);
+
+        assertThat(mPages).isEmpty();
+    }
+
+    @Test
+    public void load_canceledAfterFirstPage_shouldNotDeliverOtherPages() {
+        for (int i = 0; i < 2 * HistoryLoader.PAGE_SIZE; i++) {
+            mNotifications.add(createNotification("pkg" + i, 1000L * (i + 1)));
+        }
+
+        mLoader.load((notificationsByPackage, isFirstPage) -> {
+            onHistoryLoaded(notificationsByPackage, isFirstPage);
+            mLoader.cancel();
+        });
+
+        assertThat(mPages).hasSize(1);
+        assertThat(mFirstPages).containsExactly(true);
+    }
+
+    @Test
+    public void loadAllNotifications_shouldLoadEveryNotificationOfPackage() {
+        final int notificationCount = HistoryLoader.MAX_RETAINED_NOTIFICATIONS + 10;
+        for (int i = 0; i < notificationCount; i++) {
+            mNotifications.add(createNotification("pkg", 1000L * (i + 1)));
+        }
+        mNotifications.add(createNotification("other", 500L));
+        final List<NotificationHistoryPackage> loaded = new ArrayList<>();
+
+        mLoader.loadAllNotifications(new NotificationHistoryPackage("pkg", UID), loaded::add);
+
+        assertThat(loaded).hasSize(1);
+        assertThat(loaded.get(0).notifications).hasSize(notificationCount);
+        assertThat(loaded.get(0).isTruncated()).isFalse();
+    }
+
+    @Test
+    public void loadAllNotifications_canceled_shouldNotDeliver() {
+        mNotifications.add(createNotification("pkg", 1000L));
+        final List<NotificationHistoryPackage> loaded = new ArrayList<>();
+
+        mLoader.cancel();
+        mLoader.loadAllNotifications(new NotificationHistoryPackage("pkg", UID), loaded::add);
+
+        assertThat(loaded).isEmpty();
+    }
+
+    private void onHistoryLoaded(List<NotificationHistoryPackage> notificationsByPackage,
+            boolean isFirstPage) {
+        mPages.add(notificationsByPackage);
+        mFirstPages.add(isFirstPage);
+    }
+
+    private static NotificationHistory createHistory(List<HistoricalNotification> notifications) {
+        final Deque<HistoricalNotification> remaining = new ArrayDeque<>(notifications);
+        final NotificationHistory history = mock(NotificationHistory.class);
+        when(history.hasNextNotification()).thenAnswer(invocation -> !remaining.isEmpty());
+        when(history.getNextNotification()).thenAnswer(invocation -> remaining.poll());
+        return history;
+    }
+
+    private static HistoricalNotification createNotification(String packageName,
+            long postedTimeMs) {
+        return new HistoricalNotification.Builder()
+                .setPackage(packageName)
+                .setUid(UID)
+                .setChannelId("channel")
+                .setChannelName("Channel")
+                .setPostedTimeMs(postedTimeMs)
+                .build();
+    }
+}
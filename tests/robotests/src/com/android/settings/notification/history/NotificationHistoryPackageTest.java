@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.notification.history;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.app.NotificationHistory.HistoricalNotification;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class NotificationHistoryPackageTest {
+
+    private static final String PACKAGE_NAME = "com.example.app";
+    private static final int UID = 10001;
+
+    private NotificationHistoryPackage mPackage;
+
+    @Before
+    public void setUp() {
+        mPackage = new NotificationHistoryPackage(PACKAGE_NAME, UID);
+    }
+
+    @Test
+    public void add_underLimit_shouldRetainAll() {
+        mPackage.add(createNotification(1000), 3 /* maxRetained */);
+        mPackage.add(createNotification(2000), 3 /* maxRetained */);
+
+        assertThat(mPackage.notifications).hasSize(2);
+        assertThat(mPackage.count).isEqualTo(2);
+        assertThat(mPackage.isTruncated()).isFalse();
+    }
+
+    @Test
+    public void add_overLimit_shouldRetainMostRecentAndCountAll() {
+        mPackage.add(createNotification(3000), 2 /* maxRetained */);
+        mPackage.add(createNotification(1000), 2 /* maxRetained */);
+        mPackage.add(createNotification(4000), 2 /* maxRetained */);
+        mPackage.add(createNotification(2000), 2 /* maxRetained */);
+
+        assertThat(mPackage.notifications).hasSize(2);
+        assertThat(mPackage.notifications.first().getPostedTimeMs()).isEqualTo(4000);
+        assertThat(mPackage.notifications.last().getPostedTimeMs()).isEqualTo(3000);
+        assertThat(mPackage.count).isEqualTo(4);
+        assertThat(mPackage.isTruncated()).isTrue();
+        assertThat(mPackage.getMostRecent()).isEqualTo(4000);
+    }
+
+    @Test
+    public void add_atLimit_shouldNotBeTruncated() {
+        mPackage.add(createNotification(1000), 2 /* maxRetained */);
+        mPackage.add(createNotification(2000), 2 /* maxRetained */);
+
+        assertThat(mPackage.count).isEqualTo(2);
+        assertThat(mPackage.isTruncated()).isFalse();
+    }
+
+    @Test
+    public void add_samePostedTime_shouldCountOnce() {
+        mPackage.add(createNotification(1000), 2 /* maxRetained */);
+        mPackage.add(createNotification(1000), 2 /* maxRetained */);
+
+        assertThat(mPackage.notifications).hasSize(1);
+        assertThat(mPackage.count).isEqualTo(1);
+    }
+
+    @Test
+    public void getMostRecent_noNotification_shouldReturnZero() {
+        assertThat(mPackage.getMostRecent()).isEqualTo(0);
+        assertThat(mPackage.isTruncated()).isFalse();
+    }
+
+    private static HistoricalNotification createNotification(long postedTimeMs) {
+        return new HistoricalNotification.Builder()
+                .setPackage(PACKAGE_NAME)
+                .setUid(UID)
+                .setChannelId("channel")
+                .setChannelName("Channel")
+                .setPostedTimeMs(postedTimeMs)
+                .build();
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.search;
+
+import static com.android.settings.search.BaseSearchIndexProvider.DEPENDENCY_NONE;
+import static com.android.settings.search.BaseSearchIndexProvider.DEPENDENCY_PACKAGES;
+import static com.android.settings.search.BaseSearchIndexProvider.DEPENDENCY_UNKNOWN;
+import static com.android.settings.search.BaseSearchIndexProvider.DEPENDENCY_USER_RESTRICTIONS;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class NonIndexableKeysCacheTest {
+
+    private Context mContext;
+    private NonIndexableKeysCache mCache;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mCache = new NonIndexableKeysCache();
+    }
+
+    @Test
+    public void getNonIndexableKeys_unknownDependencies_shouldAlwaysCompute() {
+        final CountingProvider provider = new CountingProvider(DEPENDENCY_UNKNOWN);
+
+        mCache.getNonIndexableKeys(mContext, provider);
+        mCache.getNonIndexableKeys(mContext, provider);
+
+        assertThat(provider.mCount).isEqualTo(2);
+    }
+
+    @Test
+    public void getNonIndexableKeys_noChange_shouldComputeOnce() {
+        final CountingProvider provider = new CountingProvider(DEPENDENCY_PACKAGES);
+
+        final List<String> first = mCache.getNonIndexableKeys(mContext, provider);
+        final List<String> second = mCache.getNonIndexableKeys(mContext, provider);
+
+        assertThat(provider.mCount).isEqualTo(1);
+        assertThat(second).containsExactlyElementsIn(first).inOrder();
+    }
+
+    @Test
+    public void getNonIndexableKeys_declaredDependencyChanged_shouldRecompute() {
+        final CountingProvider provider = new CountingProvider(DEPENDENCY_PACKAGES);
+
+        mCache.getNonIndexableKeys(mContext, provider);
+        mCache.onDependencyChanged(DEPENDENCY_PACKAGES);
+        mCache.getNonIndexableKeys(mContext, provider);
+
+        assertThat(provider.mCount).isEqualTo(2);
+    }
+
+    @Test
+    public void getNonIndexableKeys_otherDependencyChanged_shouldReuse() {
+        final CountingProvider packages = new CountingProvider(DEPENDENCY_PACKAGES);
+        final CountingProvider restrictions = new CountingProvider(DEPENDENCY_USER_RESTRICTIONS);
+        final CountingProvider none = new CountingProvider(DEPENDENCY_NONE);
+
+        mCache.getNonIndexableKeys(mContext, packages);
+        mCache.getNonIndexableKeys(mContext, restrictions);
+        mCache.getNonIndexableKeys(mContext, none);
+        mCache.onDependencyChanged(DEPENDENCY_USER_RESTRICTIONS);
+        mCache.getNonIndexableKeys(mContext, packages);
+        mCache.getNonIndexableKeys(mContext, restrictions);
+        mCache.getNonIndexableKeys(mContext, none);
+
+        assertThat(packages.mCount).isEqualTo(1);
+        assertThat(restrictions.mCount).isEqualTo(2);
+        assertThat(none.mCount).isEqualTo(1);
+    }
+
+    @Test
+    public void getNonIndexableKeys_resultModified_shouldNotAffectCache() {
+        final CountingProvider provider = new CountingProvider(DEPENDENCY_PACKAGES);
+
+        mCache.getNonIndexableKeys(mContext, provider).clear();
+
+        assertThat(mCache.getNonIndexableKeys(mContext, provider))
+                .containsExactly("key1", "key2");
+    }
+
+    private static class CountingProvider extends BaseSearchIndexProvider {
+        private final int mDependencies;
+        int mCount;
+
+        CountingProvider(int dependencies) {
+            mDependencies = dependencies;
+        }
+
+        @Override
+        public List<String> getNonIndexableKeys(Context context) {
+            mCount++;
+            return new ArrayList<>(Arrays.asList("key1", "key2"));
+        }
+
+        @Override
+        public int getNonIndexableKeysDependencies() {
+            return mDependencies;
+        }
+    }
+}
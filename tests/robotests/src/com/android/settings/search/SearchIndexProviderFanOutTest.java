@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.search;
+
+import static com.android.settings.search.SettingsSearchIndexablesProvider.SYSPROP_CRASH_ON_ERROR;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertThrows;
+
+import com.android.settingslib.search.SearchIndexableData;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@RunWith(RobolectricTestRunner.class)
+public class SearchIndexProviderFanOutTest {
+
+    private static final long TIMEOUT_MS = 500;
+    private static final long QUERY_TIMEOUT_MS = 3 * TIMEOUT_MS;
+
+    private static final SearchIndexableData FIRST = new SearchIndexableData(
+            String.class, FakeSettingsFragment.SEARCH_INDEX_DATA_PROVIDER);
+    private static final SearchIndexableData SECOND = new SearchIndexableData(
+            Integer.class, FakeSettingsFragment.SEARCH_INDEX_DATA_PROVIDER);
+    private static final SearchIndexableData THIRD = new SearchIndexableData(
+            Long.class, FakeSettingsFragment.SEARCH_INDEX_DATA_PROVIDER);
+
+    private final CountDownLatch mRelease = new CountDownLatch(1);
+    private ExecutorService mExecutor;
+    private SearchIndexProviderFanOut mFanOut;
+
+    @Before
+    public void setUp() {
+        mExecutor = Executors.newFixedThreadPool(3);
+        mFanOut = new SearchIndexProviderFanOut(mExecutor, TIMEOUT_MS, QUERY_TIMEOUT_MS);
+    }
+
+    @After
+    public void tearDown() {
+        mRelease.countDown();
+        mExecutor.shutdownNow();
+        System.clearProperty(SYSPROP_CRASH_ON_ERROR);
+    }
+
+    @Test
+    public void query_shouldMergeInProviderOrder() {
+        final CountDownLatch secondDone = new CountDownLatch(1);
+
+        final List<String> results = mFanOut.query("test", Arrays.asList(FIRST, SECOND, THIRD),
+                bundle -> {
+                    if (bundle == FIRST) {
+                        // Finish last, after the second provider.
+                        secondDone.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                    } else if (bundle == SECOND) {
+                        secondDone.countDown();
+                    }
+                    return Collections.singletonList(bundle.getTargetClass().getSimpleName());
+                });
+
+        assertThat(results).containsExactly("String", "Integer", "Long").inOrder();
+    }
+
+    @Test
+    public void query_providerThrows_shouldSkipProvider() {
+        final List<String> results = mFanOut.query("test", Arrays.asList(FIRST, SECOND, THIRD),
+                bundle -> {
+                    if (bundle == SECOND) {
+                        throw new IllegalStateException("boom");
+                    }
+                    return Collections.singletonList(bundle.getTargetClass().getSimpleName());
+                });
+
+        assertThat(results).containsExactly("String", "Long").inOrder();
+    }
+
+    @Test
+    public void query_providerThrowsWithCrashOnError_shouldThrow() {
+        System.setProperty(SYSPROP_CRASH_ON_ERROR, "true");
+
+        assertThrows(RuntimeException.class, () -> mFanOut.query("test",
+                Arrays.asList(FIRST, SECOND), bundle -> {
+                    throw new IllegalStateException("boom");
+                }));
+    }
+
+    @Test
+    public void query_providerNullResult_shouldSkipProvider() {
+        final List<String> results = mFanOut.query("test", Arrays.asList(FIRST, SECOND),
+                bundle -> bundle == FIRST ? null : Collections.singletonList("second"));
+
+        assertThat(results).containsExactly("second");
+    }
+
+    @Test
+    public void query_providerTimesOut_shouldCancelAndSkipProvider() {
+        final AtomicBoolean interrupted = new AtomicBoolean();
+
+        final List<String> results = mFanOut.query("test", Arrays.asList(FIRST, SECOND, THIRD),
+                bundle -> {
+                    if (bundle == SECOND) {
+                        try {
+                            Thread.sleep(TIMEOUT_MS * 20);
+                        } catch (InterruptedException e) {
+                            interrupted.set(true);
+                            throw e;
+                        }
+                    }
+                    return Collections.singletonList(bundle.getTargetClass().getSimpleName());
+                });
+
+        assertThat(results).containsExactly("String", "Long").inOrder();
+        mExecutor.shutdown();
+        try {
+            mExecutor.awaitTermination(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            // Ignore, checked below.
+        }
+        assertThat(interrupted.get()).isTrue();
+    }
+
+    @Test
+    public void query_providerNeverStarts_shouldReturnPartialResultsAtDeadline() {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final SearchIndexProviderFanOut fanOut =
+                new SearchIndexProviderFanOut(executor, TIMEOUT_MS, QUERY_TIMEOUT_MS);
+        final AtomicBoolean thirdRan = new AtomicBoolean();
+
+        try {
+            final long startTime = System.nanoTime();
+            final List<String> results = fanOut.query("test", Arrays.asList(FIRST, SECOND, THIRD),
+                    bundle -> {
+                        if (bundle == SECOND) {
+                            // Ignore the cancellation, keeping the third provider queued.
+                            awaitUninterruptibly(mRelease);
+                        } else if (bundle == THIRD) {
+                            thirdRan.set(true);
+                        }
+                        return Collections.singletonList(bundle.getTargetClass().getSimpleName());
+                    });
+            final long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+
+            assertThat(results).containsExactly("String");
+            assertThat(elapsedMs).isLessThan(QUERY_TIMEOUT_MS + TIMEOUT_MS);
+            mRelease.countDown();
+            executor.shutdown();
+            executor.awaitTermination(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            assertThat(thirdRan.get()).isFalse();
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        while (true) {
+            try {
+                latch.await();
+                return;
+            } catch (InterruptedException e) {
+                // Keep waiting.
+            }
+        }
+    }
+}
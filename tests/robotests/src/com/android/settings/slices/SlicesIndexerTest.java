@@ -205,6 +205,106 @@ public class SlicesIndexerTest {
         }
     }
 
+    @Test
+    public void updateSliceData_emptyIndex_insertsAllRows() {
+        final SQLiteDatabase db = SlicesDatabaseHelper.getInstance(mContext).getWritableDatabase();
+        final List<SliceData> sliceData = getMockIndexableData(false);
+
+        final int written = mManager.updateSliceData(db, sliceData);
+
+        assertThat(written).isEqualTo(sliceData.size());
+        assertThat(getIndexedKeys(db)).containsExactly((Object[]) KEYS);
+    }
+
+    @Test
+    public void updateSliceData_unchangedData_writesNothing() {
+        final SQLiteDatabase db = SlicesDatabaseHelper.getInstance(mContext).getWritableDatabase();
+        mManager.updateSliceData(db, getMockIndexableData(false));
+
+        final int written = mManager.updateSliceData(db, getMockIndexableData(false));
+
+        assertThat(written).isEqualTo(0);
+        assertThat(getIndexedKeys(db)).containsExactly((Object[]) KEYS);
+    }
+
+    @Test
+    public void updateSliceData_changedAndRemovedRows_onlyWritesDelta() {
+        final SQLiteDatabase db = SlicesDatabaseHelper.getInstance(mContext).getWritableDatabase();
+        mManager.updateSliceData(db, getMockIndexableData(false));
+        final List<SliceData> sliceData = getMockIndexableData(false);
+        final SliceData changed = new SliceData.Builder()
+                .setKey(KEYS[0])
+                .setTitle("new title")
+                .setFragmentName(FRAGMENT_NAME)
+                .setUri(URI)
+                .setPreferenceControllerClassName(PREF_CONTROLLER)
+                .build();
+        sliceData.set(0, changed);
+        sliceData.remove(2);
+
+        final int written = mManager.updateSliceData(db, sliceData);
+
+        // One delete and one insert for the changed row, one delete for the removed row.
+        assertThat(written).isEqualTo(3);
+        assertThat(getIndexedKeys(db)).containsExactly(KEYS[0], KEYS[1]);
+        try (Cursor cursor = db.rawQuery("SELECT title FROM slices_index WHERE key = ?",
+                new String[]{KEYS[0]})) {
+            assertThat(cursor.moveToFirst()).isTrue();
+            assertThat(cursor.getString(0)).isEqualTo("new title");
+        }
+    }
+
+    @Test
+    public void updateSliceData_thousandsOfRows_reindexWritesOnlyChangedRows() {
+        final int rowCount = 5000;
+        final int changedCount = 10;
+        final SQLiteDatabase db = SlicesDatabaseHelper.getInstance(mContext).getWritableDatabase();
+
+        final int initialWrites = mManager.updateSliceData(db, getSyntheticData(rowCount, 0));
+        final int unchangedWrites = mManager.updateSliceData(db, getSyntheticData(rowCount, 0));
+
+        final int changedWrites = mManager.updateSliceData(db,
+                getSyntheticData(rowCount, changedCount));
+
+        assertThat(initialWrites).isEqualTo(rowCount);
+        assertThat(unchangedWrites).isEqualTo(0);
+        assertThat(changedWrites).isEqualTo(2 * changedCount);
+        try (Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM slices_index", null)) {
+            cursor.moveToFirst();
+            assertThat(cursor.getInt(0)).isEqualTo(rowCount);
+        }
+    }
+
+    private static List<String> getIndexedKeys(SQLiteDatabase db) {
+        final List<String> keys = new ArrayList<>();
+        try (Cursor cursor = db.rawQuery("SELECT key FROM slices_index", null)) {
+            while (cursor.moveToNext()) {
+                keys.add(cursor.getString(0));
+            }
+        }
+        return keys;
+    }
+
+    private static List<SliceData> getSyntheticData(int count, int changedCount) {
+        final List<SliceData> sliceData = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            sliceData.add(new SliceData.Builder()
+                    .setKey("key" + i)
+                    .setTitle((i < changedCount ? "changed title" : "title") + i)
+                    .setSummary(SUMMARY)
+                    .setScreenTitle(SCREEN_TITLE)
+                    .setKeywords(KEYWORDS)
+                    .setFragmentName(FRAGMENT_NAME)
+                    .setIcon(ICON)
+                    .setUri(Uri.withAppendedPath(URI, "key" + i))
+                    .setPreferenceControllerClassName(PREF_CONTROLLER)
+                    .setSliceType(SLICE_TYPE)
+                    .setHighlightMenuRes(HIGHLIGHT_MENU_KEY)
+                    .build());
+        }
+        return sliceData;
+    }
+
     private void insertSpecialCase(String key, String title) {
         final ContentValues values = new ContentValues();
         values.put(IndexColumns.KEY, key);
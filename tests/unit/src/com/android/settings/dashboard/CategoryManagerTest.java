@@ -22,12 +22,20 @@ import static com.android.settingslib.drawer.TileUtils.META_DATA_PREFERENCE_KEYH
 
 import static com.google.common.truth.Truth.assertThat;
 
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.when;
 
 import android.content.Context;
+import android.content.Intent;
 import android.content.pm.ActivityInfo;
 import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
 import android.content.pm.ProviderInfo;
+import android.content.pm.ResolveInfo;
 import android.os.Bundle;
 import android.util.Pair;
 
@@ -47,12 +55,19 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 
 @RunWith(AndroidJUnit4.class)
 public class CategoryManagerTest {
 
+    private static final String UNKNOWN_PACKAGE = "com.android.settings.test.unknown";
+    private static final String OPERATOR_PACKAGE = "com.android.settings.test.operator";
+
     private ActivityInfo mActivityInfo;
     private Context mContext;
     private CategoryManager mCategoryManager;
@@ -408,6 +423,85 @@ public class CategoryManagerTest {
         assertThat(category.getTilesCount()).isEqualTo(1);
     }
 
+    @Test
+    public void reloadCategoriesForPackage_notLoadedYet_shouldReload() {
+        final CategoryManager categoryManager = new CategoryManager(mContext);
+
+        assertThat(categoryManager.reloadCategoriesForPackage(mContext, UNKNOWN_PACKAGE))
+                .isTrue();
+    }
+
+    @Test
+    public void reloadCategoriesForPackage_packageWithoutTiles_shouldKeepCategories() {
+        final CategoryManager categoryManager = new CategoryManager(mContext);
+        categoryManager.reloadAllCategories(mContext);
+        final List<DashboardCategory> categories = categoryManager.getCategories(mContext);
+
+        assertThat(categoryManager.reloadCategoriesForPackage(mContext, UNKNOWN_PACKAGE))
+                .isFalse();
+        assertThat(categoryManager.getCategories(mContext)).isSameInstanceAs(categories);
+    }
+
+    @Test
+    public void reloadCategoriesForPackage_unknownPackage_shouldReload() {
+        final CategoryManager categoryManager = new CategoryManager(mContext);
+        categoryManager.reloadAllCategories(mContext);
+
+        assertThat(categoryManager.reloadCategoriesForPackage(mContext, "" /* packageName */))
+                .isTrue();
+    }
+
+    @Test
+    public void reloadCategoriesForPackage_operatorOnlyPackage_shouldReload() {
+        final CategoryManager categoryManager = new CategoryManager(mContext);
+        categoryManager.reloadAllCategories(mContext);
+        final Context context = spy(mContext);
+        final PackageManager packageManager = mock(PackageManager.class);
+        doReturn(packageManager).when(context).getPackageManager();
+        final ResolveInfo resolveInfo = new ResolveInfo();
+        resolveInfo.activityInfo = mActivityInfo;
+        when(packageManager.queryIntentActivitiesAsUser(argThat((Intent intent) ->
+                "com.android.settings.OPERATOR_APPLICATION_SETTING".equals(intent.getAction())
+                        && OPERATOR_PACKAGE.equals(intent.getPackage())), anyInt(), anyInt()))
+                .thenReturn(Collections.singletonList(resolveInfo));
+
+        assertThat(categoryManager.reloadCategoriesForPackage(context, OPERATOR_PACKAGE))
+                .isTrue();
+    }
+
+    @Test
+    public void updateCategoryFromDenylist_shouldNotModifyPublishedCategories() {
+        final CategoryManager categoryManager = new CategoryManager(mContext);
+        categoryManager.reloadAllCategories(mContext);
+        final List<DashboardCategory> categories = categoryManager.getCategories(mContext);
+        final List<Integer> tileCounts = new ArrayList<>();
+        for (DashboardCategory category : categories) {
+            tileCounts.add(category.getTilesCount());
+        }
+
+        categoryManager.updateCategoryFromDenylist(
+                categoryManager.getTileByComponentMap().keySet());
+
+        for (int i = 0; i < categories.size(); i++) {
+            assertThat(categories.get(i).getTilesCount()).isEqualTo(tileCounts.get(i));
+        }
+        for (DashboardCategory category : categoryManager.getCategories(mContext)) {
+            assertThat(category.getTilesCount()).isEqualTo(0);
+        }
+    }
+
+    @Test
+    public void reloadAllCategories_afterDenylistUpdate_shouldKeepDenylistedTilesOut() {
+        final CategoryManager categoryManager = new CategoryManager(mContext);
+        categoryManager.reloadAllCategories(mContext);
+        categoryManager.updateCategoryFromDenylist(
+                new HashSet<>(categoryManager.getTileByComponentMap().keySet()));
+
+        categoryManager.reloadAllCategories(mContext);
+
+        assertThat(categoryManager.getTileByComponentMap()).isEmpty();
+    }
+
     private Tile createActivityTile(String categoryKey, String packageName, String className,
             int order) {
         final ActivityInfo activityInfo = new ActivityInfo();